@@ -0,0 +1,62 @@
+package com.example.famMedical.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A read notification moved out of notifications by NotificationRetentionJob
+ * Keeps the notification's ID and content but only the ID of its user, so the archive has no foreign keys
+ * and can be pruned or partitioned by created_at on its own
+ */
+@Entity
+@Table(name = "notification_archive", indexes = {
+    @Index(name = "idx_archive_user_created", columnList = "user_id, created_at"),
+    @Index(name = "idx_archive_created_at", columnList = "created_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedNotification {
+
+    // Same ID the notification had
+    @Id
+    @Column(name = "notification_id")
+    private Long notificationID;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userID;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, columnDefinition = "VARCHAR(50)")
+    private NotificationType type;
+
+    @Column(name = "title", nullable = false, length = 255)
+    private String title;
+
+    @Column(name = "message", columnDefinition = "TEXT", nullable = false)
+    private String message;
+
+    @Column(name = "related_entity_type", length = 50)
+    private String relatedEntityType;
+
+    @Column(name = "related_entity_id")
+    private Integer relatedEntityID;
+
+    @Column(name = "update_count", nullable = false)
+    private Integer updateCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "read_at")
+    private LocalDateTime readAt;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
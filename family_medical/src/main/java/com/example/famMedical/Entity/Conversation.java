@@ -13,6 +13,7 @@ import java.util.List;
 @Table(name = "conversations", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"doctor_id", "family_id"})
 })
+@EntityListeners(ConversationEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,29 @@
+package com.example.famMedical.Entity;
+
+import com.example.famMedical.service.ConversationAccessCache;
+import com.example.famMedical.service.MessageSearchIndex;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Evicts a conversation from {@link ConversationAccessCache} and {@link MessageSearchIndex} when it is deleted
+ * Participants of a conversation are never reassigned, and updates (lastMessageAt on every message) keep the entry
+ * Instantiated by Hibernate through Spring while the EntityManagerFactory is built, before the beans (which need
+ * repositories) can exist, so they are looked up on each delete; they are absent in slices without them
+ * (e.g. @DataJpaTest)
+ */
+public class ConversationEntityListener {
+
+    @Autowired
+    private ObjectProvider<ConversationAccessCache> conversationAccessCache;
+
+    @Autowired
+    private ObjectProvider<MessageSearchIndex> messageSearchIndex;
+
+    @PostRemove
+    public void onConversationRemoved(Conversation conversation) {
+        conversationAccessCache.ifAvailable(cache -> cache.evict(conversation.getConversationID()));
+        messageSearchIndex.ifAvailable(index -> index.evict(conversation.getConversationID()));
+    }
+}
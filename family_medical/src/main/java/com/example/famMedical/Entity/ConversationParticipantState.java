@@ -0,0 +1,62 @@
+package com.example.famMedical.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inbox read model: one row per (conversation, participant)
+ * Kept up to date when messages are sent or read so inbox screens never aggregate message history
+ * The read watermark (lastReadMessageID, lastReadAt) is the participant's whole read state: every message
+ * of the conversation up to it is read, every later message from the other participant is unread
+ */
+@Entity
+@Table(name = "conversation_participant_state", uniqueConstraints = {
+    @UniqueConstraint(columnNames = {"conversation_id", "user_id"})
+}, indexes = {
+    @Index(name = "idx_participant_state_user", columnList = "user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversationParticipantState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "state_id")
+    private Integer stateID;
+
+    @Column(name = "conversation_id", nullable = false)
+    private Integer conversationID;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userID;
+
+    @Column(name = "last_message_id")
+    private Integer lastMessageID;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Column(name = "unread_count", nullable = false)
+    @Builder.Default
+    private Integer unreadCount = 0;
+
+    @Column(name = "last_read_message_id")
+    private Integer lastReadMessageID;
+
+    @Column(name = "last_read_at")
+    private LocalDateTime lastReadAt;
+
+    /**
+     * Whether the watermark covers a message
+     */
+    public boolean hasRead(Integer messageID) {
+        return lastReadMessageID != null && messageID != null && lastReadMessageID >= messageID;
+    }
+}
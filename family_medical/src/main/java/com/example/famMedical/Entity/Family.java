@@ -9,7 +9,10 @@ import java.time.OffsetDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "Family")
+@Table(name = "Family", indexes = {
+    @Index(name = "uk_family_head_of_family", columnList = "HeadOfFamilyID", unique = true)
+})
+@EntityListeners(FamilyEntityListener.class)
 @Data
 @NoArgsConstructor
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -0,0 +1,43 @@
+package com.example.famMedical.Entity;
+
+import com.example.famMedical.service.ConversationAccessCache;
+import com.example.famMedical.service.FamilyCacheInvalidator;
+import com.example.famMedical.service.FamilyHeadCache;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Keeps {@link FamilyHeadCache} and {@link ConversationAccessCache} consistent with every write to Family,
+ * whichever service or controller made it, through {@link FamilyCacheInvalidator} once the write commits
+ * Instantiated by Hibernate through Spring while the EntityManagerFactory is built, before the invalidator (which
+ * needs repositories) can exist, so it is looked up on each write; it is absent in slices without it (e.g. @DataJpaTest)
+ */
+public class FamilyEntityListener {
+
+    @Autowired
+    private ObjectProvider<FamilyCacheInvalidator> familyCacheInvalidator;
+
+    @PostPersist
+    public void onFamilyCreated(Family family) {
+        familyChanged(family, false);
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onFamilyChanged(Family family) {
+        // The head of family may have changed
+        familyChanged(family, true);
+    }
+
+    private void familyChanged(Family family, boolean participantsChanged) {
+        FamilyCacheInvalidator invalidator = familyCacheInvalidator.getIfAvailable();
+        if (invalidator == null) {
+            return;
+        }
+        Integer headUserID = family.getHeadOfFamily() != null ? family.getHeadOfFamily().getUserID() : null;
+        invalidator.familyChanged(family.getFamilyID(), headUserID, participantsChanged);
+    }
+}
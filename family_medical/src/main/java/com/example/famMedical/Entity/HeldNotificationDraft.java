@@ -0,0 +1,80 @@
+package com.example.famMedical.Entity;
+
+import com.example.famMedical.dto.NotificationDraft;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A notification draft NotificationCoalescer holds until the end of its window or digest interval
+ */
+@Entity
+@Table(name = "held_notification_drafts", indexes = {
+    @Index(name = "idx_held_draft_digest_user", columnList = "digest, user_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class HeldNotificationDraft {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "held_notification_draft_id")
+    @TableGenerator(name = "held_notification_draft_id", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "held_notification_drafts", allocationSize = 50)
+    @Column(name = "draft_id")
+    private Long draftID;
+
+    // Recipient; not a foreign key, a user deleted meanwhile is skipped by NotificationWriter
+    @Column(name = "user_id", nullable = false)
+    private Integer userID;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, columnDefinition = "VARCHAR(50)")
+    private NotificationType type;
+
+    @Column(name = "title", nullable = false, length = 255)
+    private String title;
+
+    @Column(name = "message", columnDefinition = "TEXT", nullable = false)
+    private String message;
+
+    @Column(name = "related_entity_type", length = 50)
+    private String relatedEntityType;
+
+    @Column(name = "related_entity_id")
+    private Integer relatedEntityID;
+
+    @Column(name = "occurrences", nullable = false)
+    private Integer occurrences;
+
+    // Held for the next digest rather than the end of the coalescing window
+    @Column(name = "digest", nullable = false)
+    private Boolean digest;
+
+    @Column(name = "held_at", nullable = false, updatable = false)
+    private LocalDateTime heldAt;
+
+    public static HeldNotificationDraft of(NotificationDraft draft, boolean digest, LocalDateTime heldAt) {
+        return HeldNotificationDraft.builder()
+                .userID(draft.userID())
+                .type(draft.type())
+                .title(draft.title())
+                .message(draft.message())
+                .relatedEntityType(draft.relatedEntityType())
+                .relatedEntityID(draft.relatedEntityID())
+                .occurrences(draft.occurrences())
+                .digest(digest)
+                .heldAt(heldAt)
+                .build();
+    }
+
+    public NotificationDraft toDraft() {
+        return new NotificationDraft(userID, type, title, message, relatedEntityType, relatedEntityID, occurrences);
+    }
+}
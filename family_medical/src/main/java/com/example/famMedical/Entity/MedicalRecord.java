@@ -8,7 +8,9 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "MedicalRecords")
+@Table(name = "MedicalRecords", indexes = {
+    @Index(name = "idx_medical_record_file_link", columnList = "FileLink")
+})
 @Data
 // @NoArgsConstructor
 @AllArgsConstructor
@@ -13,7 +13,8 @@ import java.util.List;
 @Table(name = "messages", indexes = {
     @Index(name = "idx_conversation", columnList = "conversation_id"),
     @Index(name = "idx_sender", columnList = "sender_id"),
-    @Index(name = "idx_created_at", columnList = "created_at")
+    @Index(name = "idx_created_at", columnList = "created_at"),
+    @Index(name = "idx_conversation_created_id", columnList = "conversation_id, created_at, message_id")
 })
 @Data
 @NoArgsConstructor
@@ -37,13 +38,22 @@ public class Message {
     @Column(name = "content", columnDefinition = "TEXT", nullable = false)
     private String content;
 
-    @Column(name = "is_read", nullable = false)
+    // Read state comes from the recipient's watermark in conversation_participant_state and is not stored per message.
+    // ddl-auto does not drop columns, so databases created before the watermark still have is_read and read_at;
+    // MessageReadStateMigration seeds the watermarks from them and, when enabled, runs
+    //   ALTER TABLE messages DROP COLUMN is_read, DROP COLUMN read_at
+    @Transient
     @Builder.Default
     private Boolean isRead = false;
 
-    @Column(name = "read_at")
+    // When the recipient read the conversation up to this message or a later one, not when this message was opened
+    @Transient
     private LocalDateTime readAt;
 
+    // Position in the messageReceived stream, set when the message is published; used to resume after a reconnect
+    @Transient
+    private Long sequence;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
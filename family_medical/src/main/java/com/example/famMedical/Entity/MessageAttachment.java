@@ -10,7 +10,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "message_attachments", indexes = {
-    @Index(name = "idx_message", columnList = "message_id")
+    @Index(name = "idx_message", columnList = "message_id"),
+    @Index(name = "idx_attachment_file_url", columnList = "file_url")
 })
 @Data
 @NoArgsConstructor
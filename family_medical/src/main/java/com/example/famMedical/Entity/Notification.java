@@ -12,7 +12,8 @@ import java.time.LocalDateTime;
 @Table(name = "notifications", indexes = {
     @Index(name = "idx_user", columnList = "user_id"),
     @Index(name = "idx_is_read", columnList = "is_read"),
-    @Index(name = "idx_created_at", columnList = "created_at")
+    @Index(name = "idx_created_at", columnList = "created_at"),
+    @Index(name = "idx_user_created_id", columnList = "user_id, created_at, notification_id")
 })
 @Data
 @NoArgsConstructor
@@ -20,8 +21,15 @@ import java.time.LocalDateTime;
 @Builder
 public class Notification {
 
+    // Name and block size of the ID generator row; IDs are handed out in blocks so inserts can be batched
+    public static final String ID_GENERATOR = "notifications";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "notification_id")
+    @TableGenerator(name = "notification_id", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = ID_GENERATOR, allocationSize = ID_ALLOCATION_SIZE)
     @Column(name = "notification_id")
     private Long notificationID;
 
@@ -29,8 +37,9 @@ public class Notification {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // VARCHAR rather than the native ENUM Hibernate picks on MySQL, which ddl-auto would not widen for new types
     @Enumerated(EnumType.STRING)
-    @Column(name = "type", nullable = false, length = 50)
+    @Column(name = "type", nullable = false, columnDefinition = "VARCHAR(50)")
     private NotificationType type;
 
     @Column(name = "title", nullable = false, length = 255)
@@ -52,10 +61,19 @@ public class Notification {
     @Column(name = "read_at")
     private LocalDateTime readAt;
 
+    // Changes merged into this notification while it was unread; see NotificationCoalescer
+    @Column(name = "update_count", nullable = false, columnDefinition = "integer default 1")
+    @Builder.Default
+    private Integer updateCount = 1;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime createdAt = LocalDateTime.now();
 
+    // Position in the notificationReceived stream, set when the notification is published; used to resume after a reconnect
+    @Transient
+    private Long sequence;
+
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
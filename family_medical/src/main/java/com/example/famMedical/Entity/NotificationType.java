@@ -9,5 +9,6 @@ public enum NotificationType {
     DOCTOR_REQUEST_REJECTED,
     MEDICAL_RECORD_CREATED,
     MEDICAL_RECORD_UPDATED,
-    NEW_MESSAGE
+    NEW_MESSAGE,
+    DIGEST
 }
@@ -0,0 +1,50 @@
+package com.example.famMedical.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A domain event written in the transaction that caused it, waiting for OutboxRelay to hand it to its listeners
+ */
+@Entity
+@Table(name = "event_outbox", indexes = {
+    @Index(name = "idx_outbox_available_at", columnList = "available_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "outbox_event_id")
+    @TableGenerator(name = "outbox_event_id", table = "id_generators",
+            pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "event_outbox", allocationSize = 50)
+    @Column(name = "event_id")
+    private Long eventID;
+
+    // Simple class name of the event
+    @Column(name = "event_type", nullable = false, length = 100)
+    private String eventType;
+
+    // JSON of the event's snapshot
+    @Column(name = "payload", columnDefinition = "TEXT", nullable = false)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // The event can be claimed from this time on; claiming moves it forward by the lease
+    @Column(name = "available_at", nullable = false)
+    private LocalDateTime availableAt;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+}
@@ -0,0 +1,126 @@
+package com.example.famMedical.config;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.ScheduledAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Executors for @Async domain event listeners, one per kind of event, so that a burst of medical record or
+ * appointment notifications cannot delay chat delivery.
+ * Listeners pick theirs with @Async(AsyncConfig.X); sizes come from EventExecutorProperties.
+ * The publishers deliver what other nodes publish on REMOTE_DELIVERY, off the EventBus subscriber thread.
+ * Message attachments upload on ATTACHMENT_UPLOADS.
+ * Read receipt debounces and typing timeouts fire on READ_RECEIPT_TIMERS and TYPING_TIMERS rather than on the
+ * scheduler of the periodic jobs.
+ */
+@Configuration
+public class AsyncConfig {
+
+    public static final String MESSAGE_EVENTS = "messageEventExecutor";
+    public static final String APPOINTMENT_EVENTS = "appointmentEventExecutor";
+    public static final String DOCTOR_REQUEST_EVENTS = "doctorRequestEventExecutor";
+    public static final String MEDICAL_RECORD_EVENTS = "medicalRecordEventExecutor";
+    public static final String REMOTE_DELIVERY = "remoteDeliveryExecutor";
+    public static final String ATTACHMENT_UPLOADS = "attachmentUploadExecutor";
+    public static final String READ_RECEIPT_TIMERS = "readReceiptScheduler";
+    public static final String TYPING_TIMERS = "typingTimerScheduler";
+
+    // Uploads running at the same time across all messages
+    private static final int MAX_PARALLEL_UPLOADS = 4;
+    // Each read receipt flush is one watermark update
+    private static final int READ_RECEIPT_THREADS = 2;
+    // Typing timeouts only touch memory and publish an indicator
+    private static final int TYPING_TIMER_THREADS = 1;
+
+    @Bean(MESSAGE_EVENTS)
+    public EventExecutor messageEventExecutor(EventExecutorProperties properties) {
+        return create(MESSAGE_EVENTS, properties);
+    }
+
+    @Bean(APPOINTMENT_EVENTS)
+    public EventExecutor appointmentEventExecutor(EventExecutorProperties properties) {
+        return create(APPOINTMENT_EVENTS, properties);
+    }
+
+    @Bean(DOCTOR_REQUEST_EVENTS)
+    public EventExecutor doctorRequestEventExecutor(EventExecutorProperties properties) {
+        return create(DOCTOR_REQUEST_EVENTS, properties);
+    }
+
+    @Bean(MEDICAL_RECORD_EVENTS)
+    public EventExecutor medicalRecordEventExecutor(EventExecutorProperties properties) {
+        return create(MEDICAL_RECORD_EVENTS, properties);
+    }
+
+    @Bean(REMOTE_DELIVERY)
+    public EventExecutor remoteDeliveryExecutor(EventExecutorProperties properties) {
+        return create(REMOTE_DELIVERY, properties);
+    }
+
+    /**
+     * Bounded so that a burst of attachments cannot open unbounded connections to cloud storage
+     */
+    @Bean(ATTACHMENT_UPLOADS)
+    public ThreadPoolTaskExecutor attachmentUploadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(MAX_PARALLEL_UPLOADS);
+        executor.setMaxPoolSize(MAX_PARALLEL_UPLOADS);
+        executor.setThreadNamePrefix("attachment-upload-");
+        return executor;
+    }
+
+    /**
+     * Kept apart from the periodic jobs, whose passes can hold the shared scheduler for a while,
+     * so a receipt is written when its debounce window closes
+     */
+    @Bean(READ_RECEIPT_TIMERS)
+    public ThreadPoolTaskScheduler readReceiptScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(READ_RECEIPT_THREADS);
+        scheduler.setThreadNamePrefix("read-receipt-");
+        return scheduler;
+    }
+
+    /**
+     * Separate from the read receipts too, whose flushes write to the database, so typing=false goes out on time
+     */
+    @Bean(TYPING_TIMERS)
+    public ThreadPoolTaskScheduler typingTimerScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(TYPING_TIMER_THREADS);
+        scheduler.setThreadNamePrefix("typing-timer-");
+        // Sending a message cancels the typer's timeout; do not keep it queued until it would have fired
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Boot's default executor, which it stops creating once any other Executor bean exists;
+     * still used by @Async methods without a name and by async MVC and GraphQL handlers
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME, "taskExecutor"})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Boot's scheduler for the @Scheduled jobs, which it stops creating once any other TaskScheduler bean exists;
+     * sized by spring.task.scheduling.pool.size
+     */
+    @Bean(ScheduledAnnotationBeanPostProcessor.DEFAULT_TASK_SCHEDULER_BEAN_NAME)
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    private static EventExecutor create(String name, EventExecutorProperties properties) {
+        EventExecutorProperties.Pool pool = properties.get(name);
+        return new EventExecutor(name, pool.getThreads(), pool.getQueueCapacity(), pool.getOverflowCapacity());
+    }
+}
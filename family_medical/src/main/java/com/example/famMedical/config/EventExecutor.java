@@ -0,0 +1,182 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.dto.ExecutorStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event Executor
+ * Fixed pool with a bounded queue for one kind of domain event listener, so a burst of one kind cannot hold
+ * up the others. Waiting and running times are recorded per task.
+ * When the queue is full, tasks spill into an overflow queue instead of being run on the publishing thread,
+ * and workers move them back as the bounded queue frees up; the overflow size is what to watch when a pool is
+ * too small. The overflow queue is bounded too: once it is full, or the executor is shut down, execute throws
+ * RejectedExecutionException, so OutboxRelay leaves the event in the outbox for a later attempt.
+ * A spilled task that finds the overflow queue refilled when moving back is rejected as well; its future fails
+ * with RejectedExecutionException, which OutboxRelay also treats as "try again later".
+ */
+@Slf4j
+public class EventExecutor extends ThreadPoolExecutor implements AsyncTaskExecutor {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+    private final int queueCapacity;
+    private final BlockingDeque<Runnable> overflow;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public EventExecutor(String name, int threads, int queueCapacity, int overflowCapacity) {
+        super(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory(name), (task, executor) -> ((EventExecutor) executor).spill(task));
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.overflow = new LinkedBlockingDeque<>(overflowCapacity);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        super.execute(new TimedTask(command, command instanceof Future<?> future ? future : null));
+    }
+
+    /**
+     * Used by @Async for methods returning CompletableFuture; keeping the future here lets a task dropped from
+     * the overflow queue fail it instead of leaving the caller waiting forever
+     */
+    @Override
+    public <T> CompletableFuture<T> submitCompletable(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        super.execute(new TimedTask(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }, future));
+        return future;
+    }
+
+    @Override
+    public CompletableFuture<Void> submitCompletable(Runnable task) {
+        return submitCompletable(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    public ExecutorStats stats() {
+        long done = completed.sum();
+        return new ExecutorStats(name, getCorePoolSize(), getActiveCount(), getQueue().size(), queueCapacity,
+                overflow.size(), done, spilled.sum(), rejected.sum(),
+                done == 0 ? 0 : waitNanos.sum() / NANOS_PER_MILLI / done,
+                maxWaitNanos.get() / NANOS_PER_MILLI,
+                done == 0 ? 0 : runNanos.sum() / NANOS_PER_MILLI / done);
+    }
+
+    @Override
+    protected void afterExecute(Runnable task, Throwable failure) {
+        // Anything thrown here would kill the worker
+        try {
+            drainOverflow();
+        } catch (RuntimeException e) {
+            log.error("Executor {} failed to move overflow tasks back to its queue", name, e);
+        }
+    }
+
+    private void spill(Runnable task) {
+        if (isShutdown()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Executor " + name + " is shut down");
+        }
+        if (!overflow.offerLast(task)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Executor " + name + " is full");
+        }
+        spilled.increment();
+        log.warn("Executor {} is full, {} tasks waiting in overflow", name, overflow.size());
+        // The workers may have emptied the queue before the task got here
+        drainOverflow();
+    }
+
+    private void drainOverflow() {
+        Runnable next;
+        while ((next = overflow.poll()) != null) {
+            if (!getQueue().offer(next)) {
+                // spill may have refilled the overflow queue since the poll
+                if (!overflow.offerFirst(next)) {
+                    reject(next);
+                }
+                return;
+            }
+        }
+    }
+
+    private void reject(Runnable task) {
+        rejected.increment();
+        log.warn("Executor {} is full, dropping a task from its overflow queue", name);
+        if (task instanceof TimedTask timed) {
+            timed.reject(new RejectedExecutionException("Executor " + name + " is full"));
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final Future<?> future;
+        private final long submittedAt = System.nanoTime();
+
+        TimedTask(Runnable task, Future<?> future) {
+            this.task = task;
+            this.future = future;
+        }
+
+        void reject(RejectedExecutionException rejection) {
+            if (future instanceof CompletableFuture<?> completable) {
+                completable.completeExceptionally(rejection);
+            } else if (future != null) {
+                future.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            long waited = startedAt - submittedAt;
+            waitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            try {
+                task.run();
+            } finally {
+                runNanos.add(System.nanoTime() - startedAt);
+                completed.increment();
+            }
+        }
+    }
+}
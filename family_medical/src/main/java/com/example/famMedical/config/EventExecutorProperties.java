@@ -0,0 +1,33 @@
+package com.example.famMedical.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Event Executor Properties
+ * Pool sizes of the domain event executors, bound from the event-executors section of application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "event-executors")
+public class EventExecutorProperties {
+
+    // Pools keyed by executor bean name; executors without an entry use the defaults below
+    private Map<String, Pool> pools = new LinkedHashMap<>();
+
+    public Pool get(String name) {
+        return pools.getOrDefault(name, new Pool());
+    }
+
+    @Data
+    public static class Pool {
+        private int threads = 2;
+        private int queueCapacity = 1000;
+        // Tasks waiting beyond the queue before new ones are rejected
+        private int overflowCapacity = 10_000;
+    }
+}
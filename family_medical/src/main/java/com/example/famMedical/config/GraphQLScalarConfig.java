@@ -94,6 +94,7 @@ public class GraphQLScalarConfig {
                 .scalar(localDateTimeScalar)
                 .scalar(ExtendedScalars.Url)
                 .scalar(ExtendedScalars.Json)
+                .scalar(ExtendedScalars.GraphQLLong)
                 .scalar(uploadScalar);
     }
 }
@@ -0,0 +1,52 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.Entity.Notification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves the notification ID generator past the IDs already in the table when the application starts.
+ * Notifications used to get auto-increment IDs, and the generator row starts from scratch, so without this
+ * the first pooled block would collide with existing rows. The generator hands out the block ending at the
+ * stored value, hence the extra block of headroom. Only ever raises the value, so nodes starting next to
+ * running ones are safe.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IdGeneratorInitializer implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        Long maxID = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(notification_id), 0) FROM notifications", Long.class);
+        long floor = maxID + Notification.ID_ALLOCATION_SIZE + 1;
+
+        int updated = jdbcTemplate.update(
+                "UPDATE id_generators SET next_val = ? WHERE sequence_name = ? AND next_val < ?",
+                floor, Notification.ID_GENERATOR, floor);
+        if (updated == 0) {
+            Integer rows = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM id_generators WHERE sequence_name = ?", Integer.class,
+                    Notification.ID_GENERATOR);
+            if (rows == null || rows == 0) {
+                try {
+                    jdbcTemplate.update("INSERT INTO id_generators (sequence_name, next_val) VALUES (?, ?)",
+                            Notification.ID_GENERATOR, floor);
+                    updated = 1;
+                } catch (DuplicateKeyException e) {
+                    // Another node inserted it first; its floor is computed the same way
+                }
+            }
+        }
+        if (updated > 0) {
+            log.info("Notification ID generator moved to {}", floor);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.service.ConversationStateService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves message read state from the old per-message columns (messages.is_read, messages.read_at) into the read
+ * watermarks of conversation_participant_state when the application starts on a database that still has them.
+ * Each participant's watermark starts at the newest message from the other participant they had marked read,
+ * unread counts are recounted from it, and then the old columns are dropped: ddl-auto never drops columns, and
+ * is_read is NOT NULL without a default, so inserts would fail while it is there.
+ * Every step can be run again, so a node that stops halfway or starts next to another one finishes the job.
+ * Dropping the columns cannot be undone, so it only runs with message-read-state-migration.enabled set; otherwise
+ * the statements to run by hand are logged, as on Message.
+ */
+@Slf4j
+@Component
+public class MessageReadStateMigration implements CommandLineRunner {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConversationStateService conversationStateService;
+    private final boolean enabled;
+
+    public MessageReadStateMigration(JdbcTemplate jdbcTemplate, ConversationStateService conversationStateService,
+                                     @Value("${message-read-state-migration.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.conversationStateService = conversationStateService;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!hasColumn("messages", "is_read")) {
+            return;
+        }
+        if (!enabled) {
+            log.warn("messages.is_read is still there and new messages cannot be saved until it is dropped. Set "
+                    + "message-read-state-migration.enabled to migrate read state and drop it on startup, or run "
+                    + "ALTER TABLE messages DROP COLUMN is_read, DROP COLUMN read_at after backing the table up");
+            return;
+        }
+        log.info("Migrating message read state to participant read watermarks");
+
+        // Conversations created before the read model exist only once the backfill has run
+        conversationStateService.backfillMissingStates();
+
+        int seeded = jdbcTemplate.update(
+                "UPDATE conversation_participant_state s SET " +
+                "last_read_message_id = (SELECT MAX(m.message_id) FROM messages m " +
+                "  WHERE m.conversation_id = s.conversation_id AND m.sender_id <> s.user_id AND m.is_read = TRUE), " +
+                "last_read_at = (SELECT MAX(m.read_at) FROM messages m " +
+                "  WHERE m.conversation_id = s.conversation_id AND m.sender_id <> s.user_id AND m.is_read = TRUE) " +
+                "WHERE s.last_read_message_id IS NULL");
+        jdbcTemplate.update(
+                "UPDATE conversation_participant_state s SET unread_count = (SELECT COUNT(*) FROM messages m " +
+                "  WHERE m.conversation_id = s.conversation_id AND m.sender_id <> s.user_id " +
+                "  AND m.message_id > COALESCE(s.last_read_message_id, 0))");
+        log.info("Seeded read watermarks of {} participants from messages.is_read", seeded);
+
+        dropColumn("messages", "is_read");
+        if (hasColumn("messages", "read_at")) {
+            dropColumn("messages", "read_at");
+        }
+    }
+
+    private boolean hasColumn(String table, String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA() " +
+                "AND LOWER(TABLE_NAME) = ? AND LOWER(COLUMN_NAME) = ?", Integer.class, table, column);
+        return count != null && count > 0;
+    }
+
+    private void dropColumn(String table, String column) {
+        try {
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN " + column);
+            log.info("Dropped {}.{}", table, column);
+        } catch (DataAccessException e) {
+            // Another node dropped it first
+            if (hasColumn(table, column)) {
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.Entity.NotificationType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Notification Coalescing Properties
+ * Which notification types are merged or rolled into digests, bound from notification.coalescing in application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "notification.coalescing")
+public class NotificationCoalescingProperties {
+
+    // Changes to one entity for one user within this window become a single write and push
+    private Duration window = Duration.ofMinutes(1);
+
+    // Types merged per (user, type, entity); the others are written right away
+    private Set<NotificationType> types = EnumSet.noneOf(NotificationType.class);
+
+    // Interval between digests
+    private Duration digestInterval = Duration.ofHours(1);
+
+    // Low-priority types only ever delivered inside a digest
+    private Set<NotificationType> digestTypes = EnumSet.noneOf(NotificationType.class);
+}
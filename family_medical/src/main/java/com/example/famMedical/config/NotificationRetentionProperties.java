@@ -0,0 +1,39 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.Entity.NotificationType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Notification Retention Properties
+ * How long read notifications stay in the notifications table, bound from notification.retention in application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "notification.retention")
+public class NotificationRetentionProperties {
+
+    // Time between retention runs; zero turns the job off
+    private Duration interval = Duration.ofHours(1);
+
+    // Age after which a read notification is archived, unless its type has its own
+    private Duration defaultAge = Duration.ofDays(90);
+
+    // Per-type ages; zero keeps notifications of that type forever
+    private Map<NotificationType, Duration> ages = new EnumMap<>(NotificationType.class);
+
+    // Notifications archived and deleted per transaction
+    private int batchSize = 500;
+
+    // Pause between batches, so other writers get the table in between
+    private Duration batchPause = Duration.ofMillis(50);
+
+    public Duration ageOf(NotificationType type) {
+        return ages.getOrDefault(type, defaultAge);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.famMedical.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Turns the notification type columns into VARCHAR(50) when the application starts on a database that still
+ * has them as native MySQL ENUMs. Hibernate created them as ENUM of the types that existed at the time, and
+ * ddl-auto never changes an existing column, so writing a newer type such as DIGEST would fail.
+ * Tables already holding a VARCHAR are left alone, so nodes starting next to each other are safe.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class NotificationTypeColumnMigration implements CommandLineRunner {
+
+    static final List<String> TABLES = List.of("notifications", "notification_archive", "held_notification_drafts");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(String... args) {
+        for (String table : TABLES) {
+            if (isEnum(table)) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY COLUMN type VARCHAR(50) NOT NULL");
+                log.info("Changed {}.type from ENUM to VARCHAR(50)", table);
+            }
+        }
+    }
+
+    private boolean isEnum(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA() " +
+                "AND LOWER(TABLE_NAME) = ? AND LOWER(COLUMN_NAME) = 'type' AND LOWER(DATA_TYPE) = 'enum'",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.service.RateLimitService;
+import graphql.ErrorClassification;
+import graphql.ExecutionResult;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.Instrumentation;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.FragmentSpread;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rate Limit Interceptor
+ * Applies RateLimitService to the root fields of GraphQL mutations before they execute.
+ * Authenticated callers are limited per user, anonymous ones (login, forgotPassword) per address.
+ * The interceptor only puts the caller's bucket key into the GraphQL context of requests whose document
+ * mentions a rate limited operation; the fields are then read from the document the engine has already
+ * parsed and validated, when it starts executing the operation, and a rejected request runs none of them.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements WebGraphQlInterceptor, Instrumentation {
+
+    private static final ErrorClassification TOO_MANY_REQUESTS = ErrorClassification.errorClassification("TOO_MANY_REQUESTS");
+    private static final String CLIENT_KEY = RateLimitInterceptor.class.getName() + ".clientKey";
+
+    private final RateLimitService rateLimitService;
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        if (mentionsLimitedOperation(request.getDocument())) {
+            Object clientKey = clientKey(request);
+            request.configureExecutionInput((input, builder) ->
+                    builder.graphQLContext(context -> context.put(CLIENT_KEY, clientKey)).build());
+        }
+        return chain.next(request);
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        ExecutionContext context = parameters.getExecutionContext();
+        Object clientKey = context.getGraphQLContext().get(CLIENT_KEY);
+        OperationDefinition definition = context.getOperationDefinition();
+        if (clientKey != null && definition.getOperation() == OperationDefinition.Operation.MUTATION) {
+            List<String> operations = new ArrayList<>();
+            collect(definition.getSelectionSet(), context.getFragmentsByName(), operations, new HashSet<>());
+            String rejected = rateLimitService.tryAcquireAll(operations, clientKey);
+            if (rejected != null) {
+                throw new AbortExecutionException(List.of(GraphqlErrorBuilder.newError()
+                        .errorType(TOO_MANY_REQUESTS)
+                        .message("Too many " + rejected + " requests. Please wait a moment and try again.")
+                        .build()));
+            }
+        }
+        return SimpleInstrumentationContext.noOp();
+    }
+
+    private boolean mentionsLimitedOperation(String document) {
+        for (String operation : rateLimitService.getOperations()) {
+            if (document.contains(operation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collect(SelectionSet selectionSet, Map<String, FragmentDefinition> fragments,
+                         List<String> operations, Set<String> spreading) {
+        if (selectionSet == null) {
+            return;
+        }
+        for (Selection<?> selection : selectionSet.getSelections()) {
+            if (selection instanceof Field field) {
+                if (rateLimitService.isLimited(field.getName())) {
+                    operations.add(field.getName());
+                }
+            } else if (selection instanceof InlineFragment inlineFragment) {
+                collect(inlineFragment.getSelectionSet(), fragments, operations, spreading);
+            } else if (selection instanceof FragmentSpread spread && fragments.containsKey(spread.getName())
+                    // A fragment spreading itself is invalid and rejected by the engine; only avoid looping on it
+                    && spreading.add(spread.getName())) {
+                collect(fragments.get(spread.getName()).getSelectionSet(), fragments, operations, spreading);
+                spreading.remove(spread.getName());
+            }
+        }
+    }
+
+    private static Object clientKey(WebGraphQlRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof User user) {
+            return RateLimitService.userKey(user.getUserID());
+        }
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress != null && remoteAddress.getAddress() != null) {
+            return RateLimitService.addressKey(remoteAddress.getAddress().getHostAddress());
+        }
+        return RateLimitService.addressKey("unknown");
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.famMedical.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rate Limit Properties
+ * Token bucket settings per operation, bound from the rate-limit section of application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    // Buckets untouched for this long are full again and get dropped
+    private Duration idleTimeout = Duration.ofMinutes(10);
+
+    // Limits keyed by GraphQL mutation name, or by the name a controller checks (upload)
+    private Map<String, Limit> operations = new LinkedHashMap<>();
+
+    @Data
+    public static class Limit {
+        // Number of calls allowed in a burst
+        private int capacity;
+        // Time to earn back one call
+        private Duration refillInterval;
+    }
+}
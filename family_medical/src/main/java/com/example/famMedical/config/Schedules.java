@@ -0,0 +1,28 @@
+package com.example.famMedical.config;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+
+/**
+ * Turns the intervals in application.yml into @Scheduled delays, e.g.
+ * fixedDelayString = "#{T(com.example.famMedical.config.Schedules).millis('${some.interval:1m}')}".
+ * Spring 6.1 reads only milliseconds or ISO-8601 there, not 1m or 1d, and a fixed delay has no off switch,
+ * so a zero or negative interval becomes a delay that never comes round.
+ */
+public final class Schedules {
+
+    // A century: never reached, yet small enough for the scheduler's nanosecond arithmetic
+    static final long NEVER = Duration.ofDays(36_500).toMillis();
+
+    private Schedules() {
+    }
+
+    public static long millis(String interval) {
+        return millis(DurationStyle.detectAndParse(interval));
+    }
+
+    public static long millis(Duration interval) {
+        return interval.isNegative() || interval.isZero() ? NEVER : interval.toMillis();
+    }
+}
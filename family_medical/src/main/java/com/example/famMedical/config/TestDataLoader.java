@@ -1058,16 +1058,10 @@ public class TestDataLoader implements CommandLineRunner {
             .conversation(conversation)
             .sender(sender)
             .content(content)
-            .isRead(false)
             .createdAt(createdAt)
             .build();
         
-        // Đánh dấu đã đọc nếu là tin nhắn cũ
-        if (createdAt.isBefore(LocalDateTime.now().minusHours(1))) {
-            message.setIsRead(true);
-            message.setReadAt(createdAt.plusMinutes(5));
-        }
-        
+        // Trạng thái đã đọc nằm ở watermark của conversation_participant_state
         return message;
     }
 }
@@ -2,33 +2,128 @@ package com.example.famMedical.controller;
 
 
 import com.example.famMedical.Entity.MedicalRecord;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.dto.ChunkedUploadInput;
+import com.example.famMedical.dto.ChunkedUploadStatus;
 import com.example.famMedical.repository.MedicalRecordRepository;
+import com.example.famMedical.service.BlobAccessService;
+import com.example.famMedical.service.BlobStore;
+import com.example.famMedical.service.ChunkedUploadService;
 import com.example.famMedical.service.MedicalRecordService;
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import com.example.famMedical.service.RateLimitService;
+import com.example.famMedical.utils.FileRangeWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
 import java.io.IOException;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/files")
 public class FileController {
 
     @Autowired
-    private Cloudinary cloudinary;
+    private BlobStore blobStore;
     @Autowired
     private MedicalRecordService medicalRecordService; 
+    @Autowired
+    private ChunkedUploadService chunkedUploadService;
+    @Autowired
+    private RateLimitService rateLimitService;
+    @Autowired
+    private BlobAccessService blobAccessService;
 
     @PostMapping("/upload")
-    public ResponseEntity<String> uploadPdf(@RequestParam("file") MultipartFile file) throws IOException {
-        Map uploadResult = cloudinary.uploader().upload(file.getBytes(),
-                ObjectUtils.asMap("resource_type", "auto"));
-        return ResponseEntity.ok((String) uploadResult.get("secure_url"));
+    public ResponseEntity<String> uploadPdf(@RequestParam("file") MultipartFile file,
+                                            HttpServletRequest request) throws IOException {
+        checkUploadRate(RateLimitService.addressKey(request.getRemoteAddr()));
+        return ResponseEntity.ok(blobStore.store(file, "medical-records").url());
+    }
+
+    // Upload file lớn theo từng phần: init -> PUT từng chunk (kèm SHA-256) -> complete
+    @PostMapping("/uploads")
+    public ResponseEntity<ChunkedUploadStatus> initUpload(@AuthenticationPrincipal User user,
+                                                          @RequestBody ChunkedUploadInput input) throws IOException {
+        checkUploadRate(RateLimitService.userKey(requireUser(user).getUserID()));
+        return ResponseEntity.status(HttpStatus.CREATED).body(chunkedUploadService.initUpload(requireUser(user), input));
+    }
+
+    // Trạng thái upload, dùng để tải tiếp từ nextChunk sau khi bị gián đoạn
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<ChunkedUploadStatus> getUploadStatus(@AuthenticationPrincipal User user,
+                                                               @PathVariable String uploadId) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.getStatus(requireUser(user), uploadId));
+    }
+
+    // Body là nội dung thô của chunk, được ghi thẳng xuống file tạm
+    @PutMapping(value = "/uploads/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ChunkedUploadStatus> uploadChunk(@AuthenticationPrincipal User user,
+                                                           @PathVariable String uploadId,
+                                                           @PathVariable int index,
+                                                           @RequestHeader("X-Chunk-Checksum") String checksum,
+                                                           HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.uploadChunk(
+                requireUser(user), uploadId, index, checksum, request.getInputStream()));
+    }
+
+    // Hồ sơ bệnh án chỉ được tạo khi đã nhận đủ các chunk
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<MedicalRecord> completeUpload(@AuthenticationPrincipal User user,
+                                                        @PathVariable String uploadId) throws IOException {
+        return ResponseEntity.ok(chunkedUploadService.completeUpload(requireUser(user), uploadId));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> abortUpload(@AuthenticationPrincipal User user,
+                                            @PathVariable String uploadId) throws IOException {
+        chunkedUploadService.abortUpload(requireUser(user), uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Nội dung lưu trong blob store cục bộ (storage.type=local), chỉ cho người được xem hồ sơ hoặc tin nhắn dùng blob đó
+    @GetMapping("/blobs/{key}")
+    public void getBlob(@AuthenticationPrincipal User user,
+                        @PathVariable String key,
+                        HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+        Resource content = blobAccessService.loadPermitted(requireUser(user), key);
+        // The key is the SHA-256 of the content
+        FileRangeWriter.write(request, response, content.getFile().toPath(), "\"" + key + "\"", key);
+    }
+
+    // Tải file của hồ sơ bệnh án: hỗ trợ Range (tua/tải tiếp) và ETag, không đọc cả file vào bộ nhớ
+    @GetMapping("/records/{recordId}/content")
+    public void downloadRecord(@AuthenticationPrincipal User user,
+                               @PathVariable Integer recordId,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        Resource content = medicalRecordService.getRecordContent(requireUser(user), recordId);
+        // Blobs are named after the SHA-256 of their content, which makes a strong ETag
+        String etag = "\"" + content.getFilename() + "\"";
+        FileRangeWriter.write(request, response, content.getFile().toPath(), etag, "record-" + recordId);
+    }
+
+    // Giới hạn số lần bắt đầu upload; các chunk của một upload không bị tính
+    private void checkUploadRate(Object clientKey) {
+        if (!rateLimitService.tryAcquire("upload", clientKey)) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many uploads. Please wait a moment and try again.");
+        }
+    }
+
+    private static User requireUser(User user) {
+        if (user == null) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
+        }
+        return user;
     }
 
     @GetMapping("/pdfs/{memberId}")
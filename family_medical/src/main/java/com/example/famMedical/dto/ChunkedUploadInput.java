@@ -0,0 +1,19 @@
+package com.example.famMedical.dto;
+
+import java.time.LocalDate;
+import lombok.Data;
+
+/**
+ * Starts a chunked upload of a medical record file
+ * The record fields are kept with the upload and the record is only created once every chunk arrived
+ */
+@Data
+public class ChunkedUploadInput {
+    private Integer memberID;
+    private String fileType;
+    private String description;
+    private LocalDate recordDate;
+    private String filename;
+    private Long totalSize;
+    private Long chunkSize;
+}
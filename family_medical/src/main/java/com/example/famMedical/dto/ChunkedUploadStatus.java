@@ -0,0 +1,20 @@
+package com.example.famMedical.dto;
+
+/**
+ * Progress of a chunked upload
+ * A client resuming an interrupted upload continues with nextChunk
+ * @param uploadId ID to send the chunks to
+ * @param totalSize Size of the whole file in bytes
+ * @param chunkSize Size of every chunk except the last one
+ * @param totalChunks Number of chunks the file is split into
+ * @param nextChunk Index of the first chunk not received yet
+ * @param receivedBytes Bytes received and verified so far
+ */
+public record ChunkedUploadStatus(
+    String uploadId,
+    long totalSize,
+    long chunkSize,
+    int totalChunks,
+    int nextChunk,
+    long receivedBytes
+) {}
@@ -0,0 +1,76 @@
+package com.example.famMedical.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Event sent between nodes through the EventBus
+ * Carries the topic, the node that published it and a small JSON payload (IDs and routing, never entities)
+ * Encoded as: version byte, topic, origin, payload length, payload
+ */
+public record EventEnvelope(String topic, String origin, byte[] payload) {
+
+    private static final int VERSION = 1;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Wrap an event payload
+     */
+    public static EventEnvelope of(String topic, String origin, Object event) {
+        try {
+            return new EventEnvelope(topic, origin, MAPPER.writeValueAsBytes(event));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot serialize event for " + topic, e);
+        }
+    }
+
+    /**
+     * Read the payload as an event of the given type
+     */
+    public <E> E payloadAs(Class<E> eventType) {
+        try {
+            return MAPPER.readValue(payload, eventType);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot deserialize event of " + topic, e);
+        }
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + topic.length() + origin.length() + 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(topic);
+            out.writeUTF(origin);
+            out.writeInt(payload.length);
+            out.write(payload);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not an envelope of a known version
+     */
+    public static EventEnvelope decode(byte[] encoded) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported event envelope version " + version);
+            }
+            String topic = in.readUTF();
+            String origin = in.readUTF();
+            byte[] payload = new byte[in.readInt()];
+            in.readFully(payload);
+            return new EventEnvelope(topic, origin, payload);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed event envelope", e);
+        }
+    }
+}
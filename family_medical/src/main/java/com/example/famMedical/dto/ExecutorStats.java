@@ -0,0 +1,20 @@
+package com.example.famMedical.dto;
+
+/**
+ * Load and latency counters of one event executor
+ * @param name Bean name of the executor
+ * @param threads Pool size
+ * @param activeThreads Threads running a task right now
+ * @param queued Tasks waiting in the bounded queue
+ * @param queueCapacity Size of the bounded queue
+ * @param overflowQueued Tasks waiting in the overflow queue because the bounded one was full
+ * @param completed Tasks finished since startup
+ * @param spilled Tasks that went to the overflow queue since startup
+ * @param rejected Tasks refused since startup because the overflow queue was full
+ * @param averageWaitMillis Mean time from submission to start
+ * @param maxWaitMillis Longest time from submission to start
+ * @param averageRunMillis Mean time a task ran
+ */
+public record ExecutorStats(String name, int threads, int activeThreads, int queued, int queueCapacity,
+                            int overflowQueued, long completed, long spilled, long rejected, double averageWaitMillis,
+                            double maxWaitMillis, double averageRunMillis) {}
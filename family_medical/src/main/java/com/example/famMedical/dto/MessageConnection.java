@@ -12,6 +12,17 @@ import java.util.List;
 @AllArgsConstructor
 public class MessageConnection {
     private List<Message> messages;
-    private long totalCount;
+    // Null when the page was loaded by cursor; resolved lazily only if the client selects it
+    private Long totalCount;
     private boolean hasMore;
+    private String startCursor;
+    private String endCursor;
+    // Conversation the page belongs to, used to resolve totalCount lazily
+    private Integer conversationID;
+
+    public MessageConnection(List<Message> messages, long totalCount, boolean hasMore) {
+        this.messages = messages;
+        this.totalCount = totalCount;
+        this.hasMore = hasMore;
+    }
 }
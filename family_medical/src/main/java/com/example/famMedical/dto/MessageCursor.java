@@ -0,0 +1,45 @@
+package com.example.famMedical.dto;
+
+import com.example.famMedical.Entity.Message;
+import com.example.famMedical.exception.ValidationException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset cursor over messages of a conversation
+ * Points at one message by its (createdAt, messageID) position and is exchanged
+ * with clients as an opaque base64 string
+ */
+@Data
+@AllArgsConstructor
+public class MessageCursor {
+    private LocalDateTime createdAt;
+    private Integer messageID;
+
+    public static MessageCursor of(Message message) {
+        return new MessageCursor(message.getCreatedAt(), message.getMessageID());
+    }
+
+    public String encode() {
+        String raw = createdAt + "," + messageID;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MessageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(',');
+            return new MessageCursor(
+                LocalDateTime.parse(raw.substring(0, separator)),
+                Integer.valueOf(raw.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new ValidationException("Invalid message cursor");
+        }
+    }
+}
@@ -12,6 +12,17 @@ import java.util.List;
 @AllArgsConstructor
 public class NotificationConnection {
     private List<Notification> notifications;
-    private long totalCount;
+    // Null when the page was loaded by cursor; resolved lazily only if the client selects it
+    private Long totalCount;
     private boolean hasMore;
+    // Cursor of the oldest notification in the page, to pass as after for the next page
+    private String endCursor;
+    // Owner of the page, used to resolve totalCount lazily
+    private Integer userID;
+
+    public NotificationConnection(List<Notification> notifications, long totalCount, boolean hasMore) {
+        this.notifications = notifications;
+        this.totalCount = totalCount;
+        this.hasMore = hasMore;
+    }
 }
@@ -0,0 +1,44 @@
+package com.example.famMedical.dto;
+
+import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.exception.ValidationException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset cursor over the notifications of a user
+ * Points at one notification by its (createdAt, notificationID) position, encoded like MessageCursor
+ */
+@Data
+@AllArgsConstructor
+public class NotificationCursor {
+    private LocalDateTime createdAt;
+    private Long notificationID;
+
+    public static NotificationCursor of(Notification notification) {
+        return new NotificationCursor(notification.getCreatedAt(), notification.getNotificationID());
+    }
+
+    public String encode() {
+        String raw = createdAt + "," + notificationID;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static NotificationCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(',');
+            return new NotificationCursor(
+                LocalDateTime.parse(raw.substring(0, separator)),
+                Long.valueOf(raw.substring(separator + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new ValidationException("Invalid notification cursor");
+        }
+    }
+}
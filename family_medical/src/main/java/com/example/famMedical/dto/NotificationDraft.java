@@ -0,0 +1,34 @@
+package com.example.famMedical.dto;
+
+import com.example.famMedical.Entity.NotificationType;
+
+/**
+ * A notification waiting to be written by NotificationWriter
+ * @param userID Recipient
+ * @param relatedEntityType Kind of entity the notification is about (Appointment, Message, ...)
+ * @param relatedEntityID ID of that entity
+ * @param occurrences Number of changes this draft stands for once coalesced
+ */
+public record NotificationDraft(
+    Integer userID,
+    NotificationType type,
+    String title,
+    String message,
+    String relatedEntityType,
+    Integer relatedEntityID,
+    int occurrences
+) {
+
+    public NotificationDraft(Integer userID, NotificationType type, String title, String message,
+                             String relatedEntityType, Integer relatedEntityID) {
+        this(userID, type, title, message, relatedEntityType, relatedEntityID, 1);
+    }
+
+    /**
+     * The newer draft's content, counting the changes of both
+     */
+    public NotificationDraft merge(NotificationDraft newer) {
+        return new NotificationDraft(newer.userID, newer.type, newer.title, newer.message,
+                newer.relatedEntityType, newer.relatedEntityID, occurrences + newer.occurrences);
+    }
+}
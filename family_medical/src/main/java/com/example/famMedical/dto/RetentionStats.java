@@ -0,0 +1,18 @@
+package com.example.famMedical.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the notification retention job
+ * lastRun* describe the latest finished run; archived and batches count since startup
+ */
+public record RetentionStats(
+        long runs,
+        long archived,
+        long batches,
+        long failures,
+        LocalDateTime lastRunAt,
+        long lastRunArchived,
+        long lastRunMillis,
+        boolean running) {
+}
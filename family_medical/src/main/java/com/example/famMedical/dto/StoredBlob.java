@@ -0,0 +1,26 @@
+package com.example.famMedical.dto;
+
+/**
+ * Reference to content kept in a BlobStore
+ * @param key Store specific key (Cloudinary public ID, or SHA-256 for the local store)
+ * @param url URL the content is served from
+ * @param size Content length in bytes
+ * @param sha256 Hex SHA-256 of the content, when the store computes it
+ * @param created false when the content was already stored and the upload was deduplicated
+ */
+public record StoredBlob(
+    String key,
+    String url,
+    long size,
+    String sha256,
+    boolean created
+) {
+
+    /**
+     * Whether the content is addressed by its hash, and may therefore be shared with other uploads
+     * (saved or still in flight); such content is only removed by the orphan sweep, never by an upload's error path
+     */
+    public boolean contentAddressed() {
+        return sha256 != null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.famMedical.dto;
+
+/**
+ * Subscribers and delivery counters of one subscription stream
+ * @param stream Name of the stream
+ * @param overflowPolicy What happens when a subscriber's buffer is full
+ * @param bufferSize Maximum number of undelivered items per subscriber
+ * @param keys Number of keys with at least one subscriber
+ * @param subscribers Number of open subscriptions
+ * @param delivered Items handed to subscriber buffers since startup
+ * @param dropped Items lost to full buffers since startup
+ * @param disconnected Subscribers ended for falling behind since startup
+ * @param replayed Items replayed to reconnecting subscribers since startup
+ * @param replayMisses Reconnects whose gap could not be replayed since startup
+ */
+public record SubscriptionStats(String stream, String overflowPolicy, int bufferSize, int keys, int subscribers,
+                                long delivered, long dropped, long disconnected, long replayed, long replayMisses) {}
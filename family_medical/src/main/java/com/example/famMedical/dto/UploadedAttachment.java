@@ -0,0 +1,16 @@
+package com.example.famMedical.dto;
+
+/**
+ * A file already stored in the blob store, waiting to be referenced by a message attachment row
+ */
+public record UploadedAttachment(
+    String filename,
+    String fileType,
+    long fileSize,
+    StoredBlob blob
+) {
+
+    public String fileUrl() {
+        return blob.url();
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.famMedical.dto.events;
+
+import com.example.famMedical.Entity.Appointment;
+import com.example.famMedical.Entity.Family;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable view of an appointment, taken when its event is published
+ * Holds what the listeners need, so they never touch the entity or its lazy associations
+ */
+public record AppointmentSnapshot(Integer appointmentID, Integer doctorID, String doctorName,
+                                  String familyName, Integer familyHeadID, LocalDateTime appointmentDateTime) {
+
+    public static AppointmentSnapshot of(Appointment appointment) {
+        Family family = appointment.getFamily();
+        return new AppointmentSnapshot(
+                appointment.getAppointmentID(),
+                appointment.getDoctor() != null ? appointment.getDoctor().getUserID() : null,
+                appointment.getDoctor() != null ? appointment.getDoctor().getFullName() : null,
+                family != null ? family.getFamilyName() : null,
+                family != null && family.getHeadOfFamily() != null ? family.getHeadOfFamily().getUserID() : null,
+                appointment.getAppointmentDateTime());
+    }
+}
@@ -10,9 +10,14 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class AppointmentUpdatedEvent extends ApplicationEvent {
     
-    private final Appointment appointment;
+    private final AppointmentSnapshot appointment;
     
     public AppointmentUpdatedEvent(Object source, Appointment appointment) {
+        super(source);
+        this.appointment = AppointmentSnapshot.of(appointment);
+    }
+
+    public AppointmentUpdatedEvent(Object source, AppointmentSnapshot appointment) {
         super(source);
         this.appointment = appointment;
     }
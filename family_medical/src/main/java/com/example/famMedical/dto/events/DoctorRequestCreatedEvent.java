@@ -10,9 +10,14 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class DoctorRequestCreatedEvent extends ApplicationEvent {
     
-    private final DoctorRequest doctorRequest;
+    private final DoctorRequestSnapshot doctorRequest;
     
     public DoctorRequestCreatedEvent(Object source, DoctorRequest doctorRequest) {
+        super(source);
+        this.doctorRequest = DoctorRequestSnapshot.of(doctorRequest);
+    }
+
+    public DoctorRequestCreatedEvent(Object source, DoctorRequestSnapshot doctorRequest) {
         super(source);
         this.doctorRequest = doctorRequest;
     }
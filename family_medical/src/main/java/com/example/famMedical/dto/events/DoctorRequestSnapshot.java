@@ -0,0 +1,22 @@
+package com.example.famMedical.dto.events;
+
+import com.example.famMedical.Entity.DoctorRequest;
+import com.example.famMedical.Entity.Family;
+
+/**
+ * Immutable view of a doctor request, taken when its event is published
+ */
+public record DoctorRequestSnapshot(Integer requestID, DoctorRequest.RequestStatus status, Integer doctorID,
+                                    String doctorName, String familyName, Integer familyHeadID) {
+
+    public static DoctorRequestSnapshot of(DoctorRequest request) {
+        Family family = request.getFamily();
+        return new DoctorRequestSnapshot(
+                request.getRequestID(),
+                request.getStatus(),
+                request.getDoctor() != null ? request.getDoctor().getUserID() : null,
+                request.getDoctor() != null ? request.getDoctor().getFullName() : null,
+                family != null ? family.getFamilyName() : null,
+                family != null && family.getHeadOfFamily() != null ? family.getHeadOfFamily().getUserID() : null);
+    }
+}
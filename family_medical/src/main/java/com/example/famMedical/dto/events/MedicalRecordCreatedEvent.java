@@ -10,9 +10,14 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class MedicalRecordCreatedEvent extends ApplicationEvent {
     
-    private final MedicalRecord medicalRecord;
+    private final MedicalRecordSnapshot medicalRecord;
     
     public MedicalRecordCreatedEvent(Object source, MedicalRecord medicalRecord) {
+        super(source);
+        this.medicalRecord = MedicalRecordSnapshot.of(medicalRecord);
+    }
+
+    public MedicalRecordCreatedEvent(Object source, MedicalRecordSnapshot medicalRecord) {
         super(source);
         this.medicalRecord = medicalRecord;
     }
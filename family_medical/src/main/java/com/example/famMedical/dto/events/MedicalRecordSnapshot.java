@@ -0,0 +1,20 @@
+package com.example.famMedical.dto.events;
+
+import com.example.famMedical.Entity.Family;
+import com.example.famMedical.Entity.MedicalRecord;
+import com.example.famMedical.Entity.Member;
+
+/**
+ * Immutable view of a medical record, taken when its event is published
+ */
+public record MedicalRecordSnapshot(Integer recordID, String memberName, Integer familyHeadID) {
+
+    public static MedicalRecordSnapshot of(MedicalRecord record) {
+        Member member = record.getMember();
+        Family family = member != null ? member.getFamily() : null;
+        return new MedicalRecordSnapshot(
+                record.getRecordID(),
+                member != null ? member.getFullName() : null,
+                family != null && family.getHeadOfFamily() != null ? family.getHeadOfFamily().getUserID() : null);
+    }
+}
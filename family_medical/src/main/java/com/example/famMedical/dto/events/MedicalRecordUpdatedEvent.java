@@ -10,9 +10,14 @@ import org.springframework.context.ApplicationEvent;
 @Getter
 public class MedicalRecordUpdatedEvent extends ApplicationEvent {
     
-    private final MedicalRecord medicalRecord;
+    private final MedicalRecordSnapshot medicalRecord;
     
     public MedicalRecordUpdatedEvent(Object source, MedicalRecord medicalRecord) {
+        super(source);
+        this.medicalRecord = MedicalRecordSnapshot.of(medicalRecord);
+    }
+
+    public MedicalRecordUpdatedEvent(Object source, MedicalRecordSnapshot medicalRecord) {
         super(source);
         this.medicalRecord = medicalRecord;
     }
@@ -0,0 +1,154 @@
+package com.example.famMedical.dto.events;
+
+import com.example.famMedical.Entity.Conversation;
+import com.example.famMedical.Entity.Family;
+import com.example.famMedical.Entity.Message;
+import com.example.famMedical.Entity.MessageAttachment;
+import com.example.famMedical.Entity.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable view of a sent message, taken when its event is published
+ * Holds what the messageReceived and conversationUpdated subscriptions render, so their payloads are rebuilt
+ * from the snapshot instead of reloading the message. The participants are the doctor and the head of family
+ */
+public record MessageSnapshot(Integer messageID, String content, LocalDateTime createdAt, Person sender,
+                              List<Attachment> attachments, ConversationSnapshot conversation) {
+
+    public MessageSnapshot {
+        Objects.requireNonNull(sender, "sender");
+        Objects.requireNonNull(conversation, "conversation");
+        attachments = attachments != null ? List.copyOf(attachments) : List.of();
+    }
+
+    public static MessageSnapshot of(Message message) {
+        List<Attachment> attachments = message.getAttachments() != null
+                ? message.getAttachments().stream().map(Attachment::of).toList()
+                : List.of();
+        return new MessageSnapshot(
+                message.getMessageID(),
+                message.getContent(),
+                message.getCreatedAt(),
+                Person.of(message.getSender()),
+                attachments,
+                ConversationSnapshot.of(message.getConversation()));
+    }
+
+    public Integer conversationID() {
+        return conversation.conversationID();
+    }
+
+    public Integer senderID() {
+        return sender.userID();
+    }
+
+    public String senderName() {
+        return sender.fullName();
+    }
+
+    public List<Integer> participantIDs() {
+        List<Integer> participantIDs = new ArrayList<>(2);
+        if (conversation.doctor() != null) {
+            participantIDs.add(conversation.doctor().userID());
+        }
+        if (conversation.headOfFamily() != null) {
+            participantIDs.add(conversation.headOfFamily().userID());
+        }
+        return participantIDs;
+    }
+
+    /**
+     * Participants other than the sender
+     */
+    public List<Integer> recipientIDs() {
+        return participantIDs().stream().filter(id -> !id.equals(senderID())).toList();
+    }
+
+    /**
+     * messageReceived payload; isRead and readAt are resolved per subscriber
+     */
+    public Message toMessage() {
+        return Message.builder()
+                .messageID(messageID)
+                .conversation(Conversation.builder().conversationID(conversationID()).build())
+                .sender(sender.toUser())
+                .content(content)
+                .attachments(attachments.stream().map(Attachment::toAttachment).toList())
+                .createdAt(createdAt)
+                .build();
+    }
+
+    /**
+     * conversationUpdated payload; lastMessage and unreadCount are resolved per subscriber
+     */
+    public Conversation toConversation() {
+        Family family = new Family();
+        family.setFamilyID(conversation.familyID());
+        family.setFamilyName(conversation.familyName());
+        family.setHeadOfFamily(conversation.headOfFamily() != null ? conversation.headOfFamily().toUser() : null);
+        return Conversation.builder()
+                .conversationID(conversationID())
+                .doctor(conversation.doctor() != null ? conversation.doctor().toUser() : null)
+                .family(family)
+                .lastMessageAt(createdAt)
+                .createdAt(conversation.createdAt())
+                .build();
+    }
+
+    /**
+     * A user as shown next to a message, conversation or typing indicator
+     */
+    public record Person(Integer userID, String fullName, String avatarUrl) {
+
+        public static Person of(User user) {
+            return user != null ? new Person(user.getUserID(), user.getFullName(), user.getAvatarUrl()) : null;
+        }
+
+        public User toUser() {
+            User user = new User();
+            user.setUserID(userID);
+            user.setFullName(fullName);
+            user.setAvatarUrl(avatarUrl);
+            return user;
+        }
+    }
+
+    public record Attachment(Integer attachmentID, String filename, String fileType, Long fileSize, String fileUrl,
+                             LocalDateTime uploadedAt) {
+
+        static Attachment of(MessageAttachment attachment) {
+            return new Attachment(attachment.getAttachmentID(), attachment.getFilename(), attachment.getFileType(),
+                    attachment.getFileSize(), attachment.getFileUrl(), attachment.getUploadedAt());
+        }
+
+        MessageAttachment toAttachment() {
+            return MessageAttachment.builder()
+                    .attachmentID(attachmentID)
+                    .filename(filename)
+                    .fileType(fileType)
+                    .fileSize(fileSize)
+                    .fileUrl(fileUrl)
+                    .uploadedAt(uploadedAt)
+                    .build();
+        }
+    }
+
+    public record ConversationSnapshot(Integer conversationID, LocalDateTime createdAt, Person doctor,
+                                       Integer familyID, String familyName, Person headOfFamily) {
+
+        static ConversationSnapshot of(Conversation conversation) {
+            Family family = conversation.getFamily();
+            return new ConversationSnapshot(
+                    conversation.getConversationID(),
+                    conversation.getCreatedAt(),
+                    Person.of(conversation.getDoctor()),
+                    family != null ? family.getFamilyID() : null,
+                    family != null ? family.getFamilyName() : null,
+                    family != null ? Person.of(family.getHeadOfFamily()) : null);
+        }
+    }
+}
@@ -6,14 +6,19 @@ import org.springframework.context.ApplicationEvent;
 
 /**
  * Event published when a new message is sent
+ * Carries only the snapshot: listeners route, index and deliver the message from it
  */
 @Getter
 public class NewMessageEvent extends ApplicationEvent {
     
-    private final Message message;
+    private final MessageSnapshot snapshot;
     
     public NewMessageEvent(Object source, Message message) {
+        this(source, MessageSnapshot.of(message));
+    }
+
+    public NewMessageEvent(Object source, MessageSnapshot snapshot) {
         super(source);
-        this.message = message;
+        this.snapshot = snapshot;
     }
 }
@@ -0,0 +1,13 @@
+package com.example.famMedical.exception;
+
+/**
+ * Ends a subscription whose client fell too far behind
+ * The client should reload the data through the matching query and subscribe again
+ */
+public class SubscriptionOverflowException extends SubscriptionResyncException {
+
+    public SubscriptionOverflowException(String stream, int bufferSize) {
+        super(stream, "SUBSCRIPTION_OVERFLOW", "Subscription " + stream + " fell more than " + bufferSize
+                + " items behind. Reload the data and subscribe again.");
+    }
+}
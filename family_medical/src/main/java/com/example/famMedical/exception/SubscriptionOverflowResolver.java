@@ -0,0 +1,29 @@
+package com.example.famMedical.exception;
+
+import graphql.ErrorClassification;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import org.springframework.graphql.execution.SubscriptionExceptionResolverAdapter;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Turns SubscriptionResyncException (overflow, replay gap too old) into the final error of a subscription
+ * The extensions tell the client to reload the stream's data and subscribe again
+ */
+@Component
+public class SubscriptionOverflowResolver extends SubscriptionExceptionResolverAdapter {
+
+    @Override
+    protected GraphQLError resolveToSingleError(Throwable exception) {
+        if (exception instanceof SubscriptionResyncException resync) {
+            return GraphqlErrorBuilder.newError()
+                    .errorType(ErrorClassification.errorClassification(resync.getReason()))
+                    .message(resync.getMessage())
+                    .extensions(Map.of("stream", resync.getStream(), "resync", true))
+                    .build();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.famMedical.exception;
+
+/**
+ * Ends a subscription that can no longer be continued from where the client is
+ * The client should reload the data through the matching query and subscribe again
+ */
+public class SubscriptionResyncException extends RuntimeException {
+
+    private final String stream;
+    private final String reason;
+
+    public SubscriptionResyncException(String stream, String reason, String message) {
+        super(message);
+        this.stream = stream;
+        this.reason = reason;
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    /**
+     * Error classification reported to the client, e.g. SUBSCRIPTION_OVERFLOW
+     */
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.ArchivedNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface ArchivedNotificationRepository extends JpaRepository<ArchivedNotification, Long> {
+
+    /**
+     * Copy notifications into the archive in one INSERT ... SELECT, without loading them
+     * @return Number of archived notifications
+     */
+    @Modifying
+    @Query("INSERT INTO ArchivedNotification (notificationID, userID, type, title, message, relatedEntityType, " +
+           "relatedEntityID, updateCount, createdAt, readAt, archivedAt) " +
+           "SELECT n.notificationID, n.user.userID, n.type, n.title, n.message, n.relatedEntityType, " +
+           "n.relatedEntityID, n.updateCount, n.createdAt, n.readAt, :archivedAt " +
+           "FROM Notification n WHERE n.notificationID IN :ids")
+    int archive(@Param("ids") Collection<Long> ids, @Param("archivedAt") LocalDateTime archivedAt);
+}
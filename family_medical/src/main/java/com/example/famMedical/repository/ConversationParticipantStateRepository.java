@@ -0,0 +1,77 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.ConversationParticipantState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ConversationParticipantStateRepository extends JpaRepository<ConversationParticipantState, Integer> {
+
+    @Query("SELECT s FROM ConversationParticipantState s WHERE s.userID = :userId AND s.conversationID IN :conversationIds")
+    List<ConversationParticipantState> findByUserIDAndConversationIDs(@Param("userId") Integer userId,
+                                                                     @Param("conversationIds") Collection<Integer> conversationIds);
+
+    @Query("SELECT s FROM ConversationParticipantState s WHERE s.conversationID IN :conversationIds")
+    List<ConversationParticipantState> findByConversationIDs(@Param("conversationIds") Collection<Integer> conversationIds);
+
+    @Query("SELECT COALESCE(SUM(s.unreadCount), 0) FROM ConversationParticipantState s WHERE s.userID = :userId")
+    long sumUnreadByUser(@Param("userId") Integer userId);
+
+    @Query("SELECT s.userID FROM ConversationParticipantState s WHERE s.conversationID = :conversationId")
+    List<Integer> findUserIDsByConversationID(@Param("conversationId") Integer conversationId);
+
+    /**
+     * Record a new message for every participant: the sender has read it, everyone else gets one more unread
+     */
+    @Modifying
+    @Query("UPDATE ConversationParticipantState s SET s.lastMessageID = :messageId, s.lastMessageAt = :createdAt, " +
+           "s.unreadCount = CASE WHEN s.userID = :senderId THEN s.unreadCount ELSE s.unreadCount + 1 END, " +
+           "s.lastReadMessageID = CASE WHEN s.userID = :senderId THEN :messageId ELSE s.lastReadMessageID END, " +
+           "s.lastReadAt = CASE WHEN s.userID = :senderId THEN :createdAt ELSE s.lastReadAt END " +
+           "WHERE s.conversationID = :conversationId")
+    int recordMessage(@Param("conversationId") Integer conversationId,
+                      @Param("senderId") Integer senderId,
+                      @Param("messageId") Integer messageId,
+                      @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Move a participant's read watermark forward to a message; never moves it back
+     * The unread count is recounted in the same statement, which runs under the row lock that recordMessage
+     * also takes, so a message sent concurrently is either counted here or added by recordMessage afterwards
+     */
+    @Modifying
+    @Query("UPDATE ConversationParticipantState s SET s.lastReadMessageID = :messageId, s.lastReadAt = :readAt, " +
+           "s.unreadCount = (SELECT COUNT(m) FROM Message m WHERE m.conversation.conversationID = :conversationId " +
+           "AND m.sender.userID != :userId AND m.messageID > :messageId) " +
+           "WHERE s.conversationID = :conversationId AND s.userID = :userId " +
+           "AND (s.lastReadMessageID IS NULL OR s.lastReadMessageID < :messageId)")
+    int recordMessageRead(@Param("conversationId") Integer conversationId,
+                          @Param("userId") Integer userId,
+                          @Param("messageId") Integer messageId,
+                          @Param("readAt") LocalDateTime readAt);
+
+    /**
+     * Move a participant's read watermark to the last message of the conversation
+     */
+    @Modifying
+    @Query("UPDATE ConversationParticipantState s SET s.unreadCount = 0, s.lastReadMessageID = s.lastMessageID, " +
+           "s.lastReadAt = :readAt " +
+           "WHERE s.conversationID = :conversationId AND s.userID = :userId")
+    int recordConversationRead(@Param("conversationId") Integer conversationId,
+                               @Param("userId") Integer userId,
+                               @Param("readAt") LocalDateTime readAt);
+
+    /**
+     * Conversations that are missing the state row of at least one participant
+     */
+    @Query("SELECT c.conversationID FROM Conversation c " +
+           "WHERE (SELECT COUNT(s) FROM ConversationParticipantState s WHERE s.conversationID = c.conversationID) < 2")
+    List<Integer> findConversationIDsWithMissingStates();
+}
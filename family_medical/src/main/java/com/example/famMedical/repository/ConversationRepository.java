@@ -1,13 +1,17 @@
 package com.example.famMedical.repository;
 
 import com.example.famMedical.Entity.Conversation;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -19,6 +23,31 @@ public interface ConversationRepository extends JpaRepository<Conversation, Inte
     @Query("SELECT c FROM Conversation c WHERE c.doctor.userID = :userId OR c.family.headOfFamily.userID = :userId ORDER BY c.lastMessageAt DESC")
     Page<Conversation> findByUserID(@Param("userId") Integer userId, Pageable pageable);
 
+    /**
+     * Participant user IDs of a conversation without loading any entity
+     * At most one row: [doctorUserId (Integer), headOfFamilyUserId (Integer, nullable)]
+     */
+    @Query("SELECT c.doctor.userID, h.userID FROM Conversation c JOIN c.family f LEFT JOIN f.headOfFamily h " +
+           "WHERE c.conversationID = :conversationId")
+    List<Object[]> findParticipantIDs(@Param("conversationId") Integer conversationId);
+
+    @Query("SELECT c.conversationID FROM Conversation c WHERE c.doctor.userID = :userId OR c.family.headOfFamily.userID = :userId")
+    List<Integer> findConversationIDsByUserID(@Param("userId") Integer userId);
+
+    /**
+     * Conversation IDs of a family; runs without flushing, so entity listeners can call it while a flush is under way
+     */
+    @Query("SELECT c.conversationID FROM Conversation c WHERE c.family.familyID = :familyId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<Integer> findConversationIDsByFamilyID(@Param("familyId") Integer familyId);
+
     @Query("SELECT COUNT(c) FROM Conversation c WHERE c.doctor.userID = :userId OR c.family.headOfFamily.userID = :userId")
     long countByUserID(@Param("userId") Integer userId);
+
+    /**
+     * A conversation with its participants, for delivery on a node that did not update it
+     */
+    @Query("SELECT c FROM Conversation c JOIN FETCH c.doctor JOIN FETCH c.family f LEFT JOIN FETCH f.headOfFamily " +
+           "WHERE c.conversationID = :conversationId")
+    Optional<Conversation> findForDelivery(@Param("conversationId") Integer conversationId);
 }
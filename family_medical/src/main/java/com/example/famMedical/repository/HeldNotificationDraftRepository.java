@@ -0,0 +1,28 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.HeldNotificationDraft;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface HeldNotificationDraftRepository extends JpaRepository<HeldNotificationDraft, Long> {
+
+    /**
+     * Held drafts of the window (digest = false) or of the digest, per user in the order they were held, locked with
+     * SKIP LOCKED so that coalescers on other nodes flushing at the same time take different drafts
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT d FROM HeldNotificationDraft d WHERE d.digest = :digest ORDER BY d.userID, d.heldAt, d.draftID")
+    List<HeldNotificationDraft> findClaimable(@Param("digest") boolean digest, Pageable pageable);
+}
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,6 +19,11 @@ public interface MedicalRecordRepository extends JpaRepository<MedicalRecord, In
     List<MedicalRecord> findByMember_MemberID(Integer memberID);
     List<MedicalRecord> findByDoctor_UserID(Integer memberID);
 
+    List<MedicalRecord> findByFileLink(String fileLink);
+
+    @Query("SELECT DISTINCT m.fileLink FROM MedicalRecord m WHERE m.fileLink IN :fileLinks")
+    List<String> findFileLinksIn(@Param("fileLinks") Collection<String> fileLinks);
+
 
     @Query("SELECT m.fileLink FROM MedicalRecord m WHERE m.member.memberID = :memberId")
     List<String> findFileLinksByMember_MemberID(@Param("memberId") Integer memberId);
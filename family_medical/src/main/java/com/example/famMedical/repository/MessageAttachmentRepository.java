@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -13,4 +14,13 @@ public interface MessageAttachmentRepository extends JpaRepository<MessageAttach
 
     @Query("SELECT ma FROM MessageAttachment ma WHERE ma.message.messageID = :messageId")
     List<MessageAttachment> findByMessageID(@Param("messageId") Integer messageId);
+
+    @Query("SELECT DISTINCT ma.fileUrl FROM MessageAttachment ma WHERE ma.fileUrl IN :fileUrls")
+    List<String> findFileUrlsIn(@Param("fileUrls") Collection<String> fileUrls);
+
+    /**
+     * Conversations with a message carrying the file, to authorize reading it
+     */
+    @Query("SELECT DISTINCT ma.message.conversation.conversationID FROM MessageAttachment ma WHERE ma.fileUrl = :fileUrl")
+    List<Integer> findConversationIDsByFileUrl(@Param("fileUrl") String fileUrl);
 }
@@ -4,12 +4,14 @@ import com.example.famMedical.Entity.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Integer> {
@@ -17,49 +19,88 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
     @Query("SELECT m FROM Message m WHERE m.conversation.conversationID = :conversationId ORDER BY m.createdAt DESC")
     Page<Message> findByConversationID(@Param("conversationId") Integer conversationId, Pageable pageable);
 
-    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.conversationID = :conversationId AND m.isRead = false AND m.sender.userID != :userId")
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.conversationID = :conversationId")
+    long countByConversationID(@Param("conversationId") Integer conversationId);
+
+    /**
+     * Keyset pagination over idx_conversation_created_id (conversation_id, created_at, message_id)
+     * Only the page size passed in the Pageable is read and no COUNT query is issued
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversation.conversationID = :conversationId ORDER BY m.createdAt DESC, m.messageID DESC")
+    List<Message> findLatestByConversationID(@Param("conversationId") Integer conversationId, Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.conversationID = :conversationId " +
+           "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.messageID < :messageId)) " +
+           "ORDER BY m.createdAt DESC, m.messageID DESC")
+    List<Message> findBeforeCursor(@Param("conversationId") Integer conversationId,
+                                   @Param("createdAt") LocalDateTime createdAt,
+                                   @Param("messageId") Integer messageId,
+                                   Pageable pageable);
+
+    @Query("SELECT m FROM Message m WHERE m.conversation.conversationID = :conversationId " +
+           "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.messageID > :messageId)) " +
+           "ORDER BY m.createdAt ASC, m.messageID ASC")
+    List<Message> findAfterCursor(@Param("conversationId") Integer conversationId,
+                                  @Param("createdAt") LocalDateTime createdAt,
+                                  @Param("messageId") Integer messageId,
+                                  Pageable pageable);
+
+    /**
+     * Messages from the other participant after the user's read watermark
+     */
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.conversation.conversationID = :conversationId AND m.sender.userID != :userId " +
+           "AND m.messageID > COALESCE((SELECT s.lastReadMessageID FROM ConversationParticipantState s " +
+           "WHERE s.conversationID = :conversationId AND s.userID = :userId), 0)")
     int countUnreadByConversationAndUser(@Param("conversationId") Integer conversationId, @Param("userId") Integer userId);
 
-    @Query("SELECT COUNT(m) FROM Message m JOIN m.conversation c WHERE (c.doctor.userID = :userId OR c.family.headOfFamily.userID = :userId) AND m.isRead = false AND m.sender.userID != :userId")
+    @Query("SELECT MAX(m.messageID) FROM Message m WHERE m.conversation.conversationID = :conversationId " +
+           "AND m.messageID <= :messageId")
+    Integer findLatestMessageIDUpTo(@Param("conversationId") Integer conversationId, @Param("messageId") Integer messageId);
+
+    @Query("SELECT COUNT(m) FROM Message m, ConversationParticipantState s WHERE s.userID = :userId " +
+           "AND m.conversation.conversationID = s.conversationID AND m.sender.userID != :userId " +
+           "AND m.messageID > COALESCE(s.lastReadMessageID, 0)")
     int countUnreadByUser(@Param("userId") Integer userId);
 
     @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.conversation.conversationID = :conversationId ORDER BY m.createdAt DESC")
     Page<Message> findLastMessageByConversationIDWithSender(@Param("conversationId") Integer conversationId, Pageable pageable);
 
-    @Modifying
-    @Query("UPDATE Message m SET m.isRead = true, m.readAt = :readAt WHERE m.conversation.conversationID = :conversationId AND m.sender.userID != :userId AND m.isRead = false")
-    int markConversationAsRead(@Param("conversationId") Integer conversationId, @Param("userId") Integer userId, @Param("readAt") LocalDateTime readAt);
+    /**
+     * Latest message (by created_at, message_id) of each conversation in one query, with sender fetched
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.conversation.conversationID IN :conversationIds " +
+           "AND NOT EXISTS (SELECT 1 FROM Message newer WHERE newer.conversation = m.conversation " +
+           "AND (newer.createdAt > m.createdAt OR (newer.createdAt = m.createdAt AND newer.messageID > m.messageID)))")
+    List<Message> findLastMessagesByConversationIDs(@Param("conversationIds") Collection<Integer> conversationIds);
+
+    /**
+     * Latest message of each conversation as recorded in the inbox read model, with sender fetched
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.messageID IN " +
+           "(SELECT s.lastMessageID FROM ConversationParticipantState s WHERE s.conversationID IN :conversationIds)")
+    List<Message> findLastMessagesFromParticipantState(@Param("conversationIds") Collection<Integer> conversationIds);
+
+    /**
+     * Search index rows of whole conversations: [messageID, conversationID, createdAt, content]
+     */
+    @Query("SELECT m.messageID, m.conversation.conversationID, m.createdAt, m.content FROM Message m " +
+           "WHERE m.conversation.conversationID IN :conversationIds")
+    List<Object[]> findIndexRowsByConversationIDs(@Param("conversationIds") Collection<Integer> conversationIds);
+
+    /**
+     * Search index rows of the messages created since a time, in the same shape
+     */
+    @Query("SELECT m.messageID, m.conversation.conversationID, m.createdAt, m.content FROM Message m " +
+           "WHERE m.createdAt >= :since")
+    List<Object[]> findIndexRowsCreatedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender WHERE m.messageID IN :messageIds")
+    List<Message> findAllWithSenderByIDs(@Param("messageIds") Collection<Integer> messageIds);
 
     /**
-     * Search messages using MySQL full-text search with multiple filters
-     * 11.1, 11.2, 11.3, 11.4, 11.5
-     * 
-     * Uses MATCH...AGAINST for efficient full-text search when keyword is provided.
-     * Falls back to returning all messages when keyword is null.
-     * Supports filtering by conversation, date range, and pagination.
-     * 
-     * Note: The FULLTEXT index on content column must be created via migration:
-     * ALTER TABLE messages ADD FULLTEXT INDEX idx_content_fulltext (content);
+     * A message with everything its subscription payload reads, for delivery on a node that did not send it
      */
-    @Query(value = """
-       SELECT m.* FROM messages m 
-       WHERE (:keyword IS NULL OR :keyword = '' OR MATCH(m.content) AGAINST (:keyword IN NATURAL LANGUAGE MODE))
-       AND (:conversationId IS NULL OR m.conversation_id = :conversationId)
-       AND (:startDate IS NULL OR m.created_at >= :startDate)
-       AND (:endDate IS NULL OR m.created_at <= :endDate)
-       ORDER BY m.created_at DESC
-       """,
-       countQuery = """
-       SELECT COUNT(*) FROM messages m 
-       WHERE (:keyword IS NULL OR :keyword = '' OR MATCH(m.content) AGAINST (:keyword IN NATURAL LANGUAGE MODE))
-       AND (:conversationId IS NULL OR m.conversation_id = :conversationId)
-       AND (:startDate IS NULL OR m.created_at >= :startDate)
-       AND (:endDate IS NULL OR m.created_at <= :endDate)
-       """,
-       nativeQuery = true)
-    Page<Message> searchMessages(@Param("keyword") String keyword,
-                             @Param("conversationId") Integer conversationId,
-                             @Param("startDate") LocalDateTime startDate,
-                             @Param("endDate") LocalDateTime endDate,
-                             Pageable pageable);
+    @Query("SELECT DISTINCT m FROM Message m JOIN FETCH m.sender JOIN FETCH m.conversation c JOIN FETCH c.doctor " +
+           "JOIN FETCH c.family f LEFT JOIN FETCH f.headOfFamily LEFT JOIN FETCH m.attachments WHERE m.messageID = :messageId")
+    Optional<Message> findForDelivery(@Param("messageId") Integer messageId);
 }
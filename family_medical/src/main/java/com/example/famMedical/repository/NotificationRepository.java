@@ -1,15 +1,24 @@
 package com.example.famMedical.repository;
 
 import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.Entity.NotificationType;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
@@ -17,10 +26,64 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Query("SELECT n FROM Notification n WHERE n.user.userID = :userId ORDER BY n.createdAt DESC")
     Page<Notification> findByUserID(@Param("userId") Integer userId, Pageable pageable);
 
+    /**
+     * Keyset pagination over idx_user_created_id (user_id, created_at, notification_id)
+     * Only the page size passed in the Pageable is read and no COUNT query is issued
+     */
+    @Query("SELECT n FROM Notification n WHERE n.user.userID = :userId ORDER BY n.createdAt DESC, n.notificationID DESC")
+    List<Notification> findLatestByUserID(@Param("userId") Integer userId, Pageable pageable);
+
+    @Query("SELECT n FROM Notification n WHERE n.user.userID = :userId " +
+           "AND (n.createdAt < :createdAt OR (n.createdAt = :createdAt AND n.notificationID < :notificationId)) " +
+           "ORDER BY n.createdAt DESC, n.notificationID DESC")
+    List<Notification> findBeforeCursor(@Param("userId") Integer userId,
+                                        @Param("createdAt") LocalDateTime createdAt,
+                                        @Param("notificationId") Long notificationId,
+                                        Pageable pageable);
+
+    @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.userID = :userId")
+    long countByUserID(@Param("userId") Integer userId);
+
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.user.userID = :userId AND n.isRead = false")
     int countUnreadByUser(@Param("userId") Integer userId);
 
+    /**
+     * Unread counts of several users as [userID, count] rows; users without unread notifications are left out
+     */
+    @Query("SELECT n.user.userID, COUNT(n) FROM Notification n WHERE n.user.userID IN :userIds AND n.isRead = false " +
+           "GROUP BY n.user.userID")
+    List<Object[]> countUnreadByUsers(@Param("userIds") Collection<Integer> userIds);
+
     @Modifying
     @Query("UPDATE Notification n SET n.isRead = true, n.readAt = :readAt WHERE n.user.userID = :userId AND n.isRead = false")
     int markAllAsReadByUser(@Param("userId") Integer userId, @Param("readAt") LocalDateTime readAt);
+
+    /**
+     * Unread notifications of the given users about the given entities, newest first, for merging further changes into
+     * Matches every combination of the values, so callers keep only the (user, type, entity) keys they asked for
+     */
+    @Query("SELECT n FROM Notification n JOIN FETCH n.user WHERE n.user.userID IN :userIds AND n.type IN :types "
+            + "AND n.relatedEntityID IN :entityIds AND n.isRead = false ORDER BY n.createdAt DESC")
+    List<Notification> findUnreadForEntities(@Param("userIds") Collection<Integer> userIds,
+                                             @Param("types") Collection<NotificationType> types,
+                                             @Param("entityIds") Collection<Integer> entityIds);
+
+    /**
+     * Read notifications of one type created before the cutoff, in ID order after afterId
+     * Only the page size passed in the Pageable is read, so each retention batch is bounded by primary key.
+     * Rows are locked with SKIP LOCKED, so retention runs on other nodes archive different rows instead of
+     * copying the same ones into the archive twice
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT n FROM Notification n WHERE n.type = :type AND n.isRead = true " +
+           "AND n.createdAt < :cutoff AND n.notificationID > :afterId ORDER BY n.notificationID")
+    List<Notification> claimExpired(@Param("type") NotificationType type, @Param("cutoff") LocalDateTime cutoff,
+                                    @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * A notification with its user, for delivery on a node that did not create it
+     */
+    @Query("SELECT n FROM Notification n JOIN FETCH n.user WHERE n.notificationID = :notificationId")
+    Optional<Notification> findForDelivery(@Param("notificationId") Long notificationId);
 }
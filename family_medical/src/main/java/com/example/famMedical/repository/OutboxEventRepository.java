@@ -0,0 +1,39 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.OutboxEvent;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Oldest events due at the given time, locked with SKIP LOCKED so that relays on other nodes
+     * claiming at the same time get different events instead of waiting
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = AvailableSettings.JAKARTA_LOCK_TIMEOUT, value = "-2"))
+    @Query("SELECT e FROM OutboxEvent e WHERE e.availableAt <= :now ORDER BY e.eventID")
+    List<OutboxEvent> findClaimable(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Make claimed events due again without counting the claim as an attempt
+     */
+    @Modifying
+    @Query("UPDATE OutboxEvent e SET e.availableAt = :availableAt, e.attempts = e.attempts - 1 " +
+           "WHERE e.eventID IN :eventIds")
+    int release(@Param("eventIds") Collection<Long> eventIds, @Param("availableAt") LocalDateTime availableAt);
+}
@@ -1,6 +1,7 @@
 package com.example.famMedical.resolver;
 
 import com.example.famMedical.Entity.Conversation;
+import com.example.famMedical.Entity.ConversationParticipantState;
 import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.User;
 import com.example.famMedical.dto.MarkMessageAsReadInput;
@@ -10,32 +11,43 @@ import com.example.famMedical.dto.SendMessageInput;
 import com.example.famMedical.exception.UnAuthorizedException;
 import com.example.famMedical.repository.ConversationRepository;
 import com.example.famMedical.repository.MessageRepository;
+import com.example.famMedical.service.ConversationAccessCache;
+import com.example.famMedical.service.ConversationStateService;
+import com.example.famMedical.service.ConversationStateService.ReadState;
 import com.example.famMedical.service.MessagePublisher;
 import com.example.famMedical.service.MessageService;
 import com.example.famMedical.service.TypingIndicatorService;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.dataloader.DataLoader;
 import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
 import org.springframework.graphql.data.method.annotation.SchemaMapping;
 import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.stereotype.Controller;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * GraphQL Resolver for Message operations
  * Handles queries, mutations, and subscriptions for messaging functionality
  */
 @Controller
-@AllArgsConstructor
 @Slf4j
 public class MessageResolver {
 
@@ -44,6 +56,30 @@ public class MessageResolver {
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final TypingIndicatorService typingIndicatorService;
+    private final ConversationStateService conversationStateService;
+    private final ConversationAccessCache conversationAccessCache;
+
+    public MessageResolver(MessageService messageService, MessagePublisher messagePublisher,
+                           ConversationRepository conversationRepository, MessageRepository messageRepository,
+                           TypingIndicatorService typingIndicatorService,
+                           ConversationStateService conversationStateService,
+                           ConversationAccessCache conversationAccessCache,
+                           BatchLoaderRegistry batchLoaderRegistry) {
+        this.messageService = messageService;
+        this.messagePublisher = messagePublisher;
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.typingIndicatorService = typingIndicatorService;
+        this.conversationStateService = conversationStateService;
+        this.conversationAccessCache = conversationAccessCache;
+        // isRead and readAt share one read state lookup per batch of messages, keyed by message ID
+        // with the message itself as key context
+        batchLoaderRegistry.forTypePair(Integer.class, ReadState.class)
+                .registerMappedBatchLoader((messageIDs, environment) -> Mono.fromCallable(() ->
+                        conversationStateService.getReadStates(environment.getKeyContexts().values().stream()
+                                .map(Message.class::cast)
+                                .toList())));
+    }
 
     // =======================================================
     // MUTATIONS
@@ -107,12 +143,7 @@ public class MessageResolver {
                 currentUser.getUserID(), conversationID);
         
         // Verify user is a participant in the conversation
-        Conversation conversation = conversationRepository.findById(conversationID)
-                .orElseThrow(() -> new UnAuthorizedException("Conversation not found"));
-        
-        if (!isUserParticipant(conversation, currentUser)) {
-            throw new UnAuthorizedException("You do not have permission to access this conversation");
-        }
+        verifyParticipant(conversationID, currentUser);
         
         messageService.markConversationAsRead(conversationID, currentUser.getUserID());
         
@@ -120,6 +151,21 @@ public class MessageResolver {
         return true;
     }
 
+    /**
+     * Mark the messages of a conversation as read up to a message, or up to the newest of the given messages
+     * Bursts of receipts are coalesced into one write
+     */
+    @MutationMapping
+    @PreAuthorize("isAuthenticated()")
+    public Boolean markMessagesAsRead(
+            @AuthenticationPrincipal User currentUser,
+            @Argument Integer conversationID,
+            @Argument Integer upToMessageID,
+            @Argument List<Integer> messageIDs) {
+        messageService.markMessagesAsRead(conversationID, currentUser.getUserID(), upToMessageID, messageIDs);
+        return true;
+    }
+
     /**
      * Send typing indicator for a conversation
      * 10.1, 10.2
@@ -181,15 +227,11 @@ public class MessageResolver {
         log.info("User {} fetching conversation detail {}", 
                 currentUser.getUserID(), conversationID);
         
-        Conversation conversation = conversationRepository.findById(conversationID)
-                .orElseThrow(() -> new UnAuthorizedException("Conversation not found"));
+        // Verify user is a participant before loading the conversation
+        verifyParticipant(conversationID, currentUser);
         
-        // Verify user is a participant
-        if (!isUserParticipant(conversation, currentUser)) {
-            throw new UnAuthorizedException("You do not have permission to access this conversation");
-        }
-        
-        return conversation;
+        return conversationRepository.findById(conversationID)
+                .orElseThrow(() -> new UnAuthorizedException("Conversation not found"));
     }
 
     /**
@@ -215,6 +257,7 @@ public class MessageResolver {
 
     /**
      * Get messages in a conversation with pagination
+     * Uses keyset pagination unless an explicit page number is requested
      * 1.5, 2.5
      */
     @QueryMapping
@@ -223,23 +266,18 @@ public class MessageResolver {
             @AuthenticationPrincipal User currentUser,
             @Argument Integer conversationID,
             @Argument Integer page,
-            @Argument Integer size) {
-        int pageNum = page != null ? page : 0;
+            @Argument Integer size,
+            @Argument String before,
+            @Argument String after) {
         int pageSize = size != null ? size : 50;
         
-        log.info("User {} fetching messages for conversation {} (page: {}, size: {})", 
-                currentUser.getUserID(), conversationID, pageNum, pageSize);
+        log.info("User {} fetching messages for conversation {} (page: {}, before: {}, after: {}, size: {})", 
+                currentUser.getUserID(), conversationID, page, before, after, pageSize);
         
         // Verify user is a participant
-        Conversation conversation = conversationRepository.findById(conversationID)
-                .orElseThrow(() -> new UnAuthorizedException("Conversation not found"));
-        
-        if (!isUserParticipant(conversation, currentUser)) {
-            throw new UnAuthorizedException("You do not have permission to access this conversation");
-        }
+        verifyParticipant(conversationID, currentUser);
         
-        MessageConnection messages = messageService.getConversationMessages(
-                conversationID, pageNum, pageSize);
+        MessageConnection messages = loadMessages(conversationID, page, pageSize, before, after);
         
         log.info("Found {} messages for conversation {}", 
                 messages.getMessages().size(), conversationID);
@@ -300,10 +338,11 @@ public class MessageResolver {
      */
     @SubscriptionMapping
     @PreAuthorize("isAuthenticated()")
-    public Flux<Message> messageReceived(@AuthenticationPrincipal User currentUser) {
-        log.info("User {} subscribing to message stream", currentUser.getUserID());
+    public Flux<Message> messageReceived(@AuthenticationPrincipal User currentUser,
+                                         @Argument Long sinceSequence) {
+        log.info("User {} subscribing to message stream since {}", currentUser.getUserID(), sinceSequence);
         
-        return messagePublisher.getMessageStream(currentUser)
+        return messagePublisher.getMessageStream(currentUser, sinceSequence)
                 .doOnNext(message -> log.debug("Delivering message {} to user {}", 
                         message.getMessageID(), currentUser.getUserID()))
                 .doOnCancel(() -> log.info("User {} unsubscribed from message stream", 
@@ -339,12 +378,7 @@ public class MessageResolver {
                 currentUser.getUserID(), conversationID);
         
         // Verify user is a participant in the conversation
-        Conversation conversation = conversationRepository.findById(conversationID)
-                .orElseThrow(() -> new UnAuthorizedException("Conversation not found"));
-        
-        if (!isUserParticipant(conversation, currentUser)) {
-            throw new UnAuthorizedException("You do not have permission to access this conversation");
-        }
+        verifyParticipant(conversationID, currentUser);
         
         return typingIndicatorService.getTypingStream(conversationID)
                 .filter(indicator -> !indicator.getUser().getUserID().equals(currentUser.getUserID()))
@@ -359,42 +393,63 @@ public class MessageResolver {
     // =======================================================
 
     /**
-     * Resolve unreadCount field for Conversation type
+     * Resolve unreadCount field for a batch of Conversations
+     * Reads one inbox state row per conversation instead of counting messages
      * 2.4
      */
-    @SchemaMapping(typeName = "Conversation", field = "unreadCount")
-    public Integer unreadCount(
-            Conversation conversation,
-            @AuthenticationPrincipal User currentUser) {
+    @BatchMapping(typeName = "Conversation", field = "unreadCount")
+    public List<Integer> unreadCount(List<Conversation> conversations, Principal principal) {
+        User currentUser = getUser(principal);
         if (currentUser == null) {
-            return 0;
+            return conversations.stream().map(conversation -> 0).toList();
         }
         
-        int count = messageRepository.countUnreadByConversationAndUser(
-                conversation.getConversationID(), 
-                currentUser.getUserID()
-        );
+        Map<Integer, ConversationParticipantState> states = conversationStateService.getStates(
+                currentUser.getUserID(), getConversationIDs(conversations));
         
-        return count;
+        return conversations.stream()
+                .map(conversation -> {
+                    ConversationParticipantState state = states.get(conversation.getConversationID());
+                    return state != null ? state.getUnreadCount() : 0;
+                })
+                .toList();
     }
 
     /**
-     * Resolve lastMessage field for Conversation type
-     * Returns the most recent message in the conversation with sender information
+     * Resolve lastMessage field for a batch of Conversations
+     * Returns the most recent message recorded in the inbox state of each conversation, with sender, in a single query
      */
-    @SchemaMapping(typeName = "Conversation", field = "lastMessage")
-    public Message lastMessage(Conversation conversation) {
-        log.debug("Resolving lastMessage for conversation {}", conversation.getConversationID());
-        
-        Pageable pageable = PageRequest.of(0, 1, Sort.by("createdAt").descending());
-        var messagePage = messageRepository.findLastMessageByConversationIDWithSender(
-                conversation.getConversationID(), pageable);
+    @BatchMapping(typeName = "Conversation", field = "lastMessage")
+    public List<Message> lastMessage(List<Conversation> conversations) {
+        log.debug("Resolving lastMessage for {} conversations", conversations.size());
         
-        if (messagePage.hasContent()) {
-            return messagePage.getContent().get(0);
+        Map<Integer, Message> lastMessages = new HashMap<>();
+        for (Message message : messageRepository.findLastMessagesFromParticipantState(getConversationIDs(conversations))) {
+            lastMessages.put(message.getConversation().getConversationID(), message);
         }
         
-        return null;
+        // Keep one entry per conversation, in the same order, with null when it has no messages
+        List<Message> result = new ArrayList<>(conversations.size());
+        for (Conversation conversation : conversations) {
+            result.add(lastMessages.get(conversation.getConversationID()));
+        }
+        return result;
+    }
+
+    /**
+     * Resolve isRead field of a Message from the read watermark of its conversation, batched with readAt
+     */
+    @SchemaMapping(typeName = "Message", field = "isRead")
+    public CompletableFuture<Boolean> isRead(Message message, DataLoader<Integer, ReadState> readStates) {
+        return readStates.load(message.getMessageID(), message).thenApply(ReadState::read);
+    }
+
+    /**
+     * Resolve readAt field of a Message: the time the recipient's watermark passed it
+     */
+    @SchemaMapping(typeName = "Message", field = "readAt")
+    public CompletableFuture<LocalDateTime> readAt(Message message, DataLoader<Integer, ReadState> readStates) {
+        return readStates.load(message.getMessageID(), message).thenApply(ReadState::readAt);
     }
 
     /**
@@ -405,15 +460,25 @@ public class MessageResolver {
     public MessageConnection messages(
             Conversation conversation,
             @Argument Integer page,
-            @Argument Integer size) {
-        int pageNum = page != null ? page : 0;
+            @Argument Integer size,
+            @Argument String before,
+            @Argument String after) {
         int pageSize = size != null ? size : 50;
         
-        return messageService.getConversationMessages(
-                conversation.getConversationID(), 
-                pageNum, 
-                pageSize
-        );
+        return loadMessages(conversation.getConversationID(), page, pageSize, before, after);
+    }
+
+    /**
+     * Resolve totalCount field for MessageConnection type
+     * Cursor pages do not count the conversation, so the COUNT query only runs when the field is selected
+     */
+    @SchemaMapping(typeName = "MessageConnection", field = "totalCount")
+    public Long totalCount(MessageConnection connection) {
+        if (connection.getTotalCount() != null || connection.getConversationID() == null) {
+            return connection.getTotalCount();
+        }
+        
+        return messageRepository.countByConversationID(connection.getConversationID());
     }
 
     // =======================================================
@@ -421,26 +486,49 @@ public class MessageResolver {
     // =======================================================
 
     /**
-     * Check if a user is a participant in a conversation
+     * Load a page of messages, by page number when one is given and by cursor otherwise
      */
-    private boolean isUserParticipant(Conversation conversation, User user) {
-        if (conversation == null || user == null) {
-            return false;
+    private MessageConnection loadMessages(Integer conversationID, Integer page, int size,
+                                           String before, String after) {
+        if (page != null && before == null && after == null) {
+            return messageService.getConversationMessages(conversationID, page, size);
         }
         
-        // Check if user is the doctor
-        if (conversation.getDoctor() != null && 
-            conversation.getDoctor().getUserID().equals(user.getUserID())) {
-            return true;
+        return messageService.getConversationMessagesByCursor(conversationID, before, after, size);
+    }
+
+    /**
+     * Collect the distinct IDs of a batch of conversations
+     */
+    private Set<Integer> getConversationIDs(List<Conversation> conversations) {
+        Set<Integer> conversationIDs = new HashSet<>();
+        for (Conversation conversation : conversations) {
+            conversationIDs.add(conversation.getConversationID());
         }
-        
-        // Check if user is the head of family
-        if (conversation.getFamily() != null && 
-            conversation.getFamily().getHeadOfFamily() != null &&
-            conversation.getFamily().getHeadOfFamily().getUserID().equals(user.getUserID())) {
-            return true;
+        return conversationIDs;
+    }
+
+    /**
+     * Extract the authenticated user from a batch loader principal
+     */
+    private User getUser(Principal principal) {
+        if (principal instanceof Authentication authentication &&
+            authentication.getPrincipal() instanceof User user) {
+            return user;
+        }
+        return null;
+    }
+
+    /**
+     * Verify that a user is a participant in a conversation using the conversation access cache
+     */
+    private void verifyParticipant(Integer conversationID, User user) {
+        if (!conversationAccessCache.exists(conversationID)) {
+            throw new UnAuthorizedException("Conversation not found");
         }
         
-        return false;
+        if (user == null || !conversationAccessCache.isParticipant(conversationID, user.getUserID())) {
+            throw new UnAuthorizedException("You do not have permission to access this conversation");
+        }
     }
 }
@@ -4,6 +4,7 @@ import com.example.famMedical.Entity.Notification;
 import com.example.famMedical.Entity.User;
 import com.example.famMedical.dto.MarkNotificationAsReadInput;
 import com.example.famMedical.dto.NotificationConnection;
+import com.example.famMedical.repository.NotificationRepository;
 import com.example.famMedical.service.NotificationPublisher;
 import com.example.famMedical.service.NotificationService;
 import lombok.AllArgsConstructor;
@@ -11,6 +12,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
 import org.springframework.graphql.data.method.annotation.SubscriptionMapping;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -29,13 +31,15 @@ public class NotificationResolver {
 
     private final NotificationService notificationService;
     private final NotificationPublisher notificationPublisher;
+    private final NotificationRepository notificationRepository;
 
     // =======================================================
     // QUERIES
     // =======================================================
 
     /**
-     * Get all notifications for the current user with pagination
+     * Get all notifications for the current user, newest first
+     * Pages by number when page is given and by the after cursor otherwise
      * 6.3, 7.1, 7.4
      */
     @QueryMapping
@@ -43,21 +47,35 @@ public class NotificationResolver {
     public NotificationConnection myNotifications(
             @AuthenticationPrincipal User currentUser,
             @Argument Integer page,
-            @Argument Integer size) {
-        int pageNum = page != null ? page : 0;
+            @Argument Integer size,
+            @Argument String after) {
         int pageSize = size != null ? size : 20;
         
-        log.info("User {} fetching notifications (page: {}, size: {})", 
-                currentUser.getUserID(), pageNum, pageSize);
+        log.info("User {} fetching notifications (page: {}, after: {}, size: {})", 
+                currentUser.getUserID(), page, after, pageSize);
         
-        NotificationConnection notifications = notificationService.getUserNotifications(
-                currentUser.getUserID(), pageNum, pageSize);
+        NotificationConnection notifications = page != null && after == null
+                ? notificationService.getUserNotifications(currentUser.getUserID(), page, pageSize)
+                : notificationService.getUserNotificationsByCursor(currentUser.getUserID(), after, pageSize);
         
         log.info("Found {} notifications for user {}", 
                 notifications.getNotifications().size(), currentUser.getUserID());
         return notifications;
     }
 
+    /**
+     * Resolve totalCount field for NotificationConnection type
+     * Cursor pages do not count the user's notifications, so the COUNT query only runs when the field is selected
+     */
+    @SchemaMapping(typeName = "NotificationConnection", field = "totalCount")
+    public Long totalCount(NotificationConnection connection) {
+        if (connection.getTotalCount() != null || connection.getUserID() == null) {
+            return connection.getTotalCount();
+        }
+        
+        return notificationRepository.countByUserID(connection.getUserID());
+    }
+
     /**
      * Get count of unread notifications for current user
      * 6.5, 7.1, 7.4
@@ -119,14 +137,16 @@ public class NotificationResolver {
 
     /**
      * Subscribe to new notifications for the current user
+     * After a reconnect, sinceSequence replays the notifications missed in between
      * 6.1, 6.2, 7.1, 7.4
      */
     @SubscriptionMapping
     @PreAuthorize("isAuthenticated()")
-    public Flux<Notification> notificationReceived(@AuthenticationPrincipal User currentUser) {
-        log.info("User {} subscribing to notification stream", currentUser.getUserID());
+    public Flux<Notification> notificationReceived(@AuthenticationPrincipal User currentUser,
+                                                   @Argument Long sinceSequence) {
+        log.info("User {} subscribing to notification stream since {}", currentUser.getUserID(), sinceSequence);
         
-        return notificationPublisher.getNotificationStream(currentUser)
+        return notificationPublisher.getNotificationStream(currentUser, sinceSequence)
                 .doOnNext(notification -> log.debug("Delivering notification {} to user {}", 
                         notification.getNotificationID(), currentUser.getUserID()))
                 .doOnCancel(() -> log.info("User {} unsubscribed from notification stream", 
@@ -0,0 +1,54 @@
+package com.example.famMedical.resolver;
+
+import com.example.famMedical.config.EventExecutor;
+import com.example.famMedical.dto.ExecutorStats;
+import com.example.famMedical.dto.RetentionStats;
+import com.example.famMedical.dto.SubscriptionStats;
+import com.example.famMedical.service.MessagePublisher;
+import com.example.famMedical.service.NotificationPublisher;
+import com.example.famMedical.service.NotificationRetentionJob;
+import com.example.famMedical.service.TypingIndicatorService;
+import lombok.AllArgsConstructor;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Controller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * GraphQL Resolver for subscription stream, event executor and retention statistics
+ * Lets administrators watch subscriber counts, dropped items and overflow disconnects,
+ * how far behind each domain event executor is, and how much the notification retention job archives
+ */
+@Controller
+@AllArgsConstructor
+public class SubscriptionStatsResolver {
+
+    private final MessagePublisher messagePublisher;
+    private final NotificationPublisher notificationPublisher;
+    private final TypingIndicatorService typingIndicatorService;
+    private final List<EventExecutor> eventExecutors;
+    private final NotificationRetentionJob notificationRetentionJob;
+
+    @QueryMapping
+    @PreAuthorize("hasAuthority('Admin')")
+    public List<SubscriptionStats> subscriptionStats() {
+        List<SubscriptionStats> stats = new ArrayList<>(messagePublisher.getStats());
+        stats.add(notificationPublisher.getStats());
+        stats.add(typingIndicatorService.getStats());
+        return stats;
+    }
+
+    @QueryMapping
+    @PreAuthorize("hasAuthority('Admin')")
+    public List<ExecutorStats> executorStats() {
+        return eventExecutors.stream().map(EventExecutor::stats).toList();
+    }
+
+    @QueryMapping
+    @PreAuthorize("hasAuthority('Admin')")
+    public RetentionStats notificationRetentionStats() {
+        return notificationRetentionJob.stats();
+    }
+}
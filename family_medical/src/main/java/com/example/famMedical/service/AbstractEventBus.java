@@ -0,0 +1,67 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.dto.EventEnvelope;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Base of the EventBus implementations
+ * Names the node and dispatches received envelopes to the handlers of their topic, skipping the
+ * envelopes this node published itself
+ */
+@Slf4j
+abstract class AbstractEventBus implements EventBus {
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<EventEnvelope>>> handlers = new ConcurrentHashMap<>();
+
+    /**
+     * ID of this node, stamped on every envelope it publishes
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public <E> void subscribe(String topic, Class<E> eventType, Consumer<E> handler) {
+        handlers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>())
+                .add(envelope -> handler.accept(envelope.payloadAs(eventType)));
+    }
+
+    protected EventEnvelope envelope(String topic, Object event) {
+        return EventEnvelope.of(topic, nodeId, event);
+    }
+
+    /**
+     * Hand an envelope received from the network to the handlers of its topic
+     */
+    protected void dispatch(byte[] encoded) {
+        EventEnvelope envelope;
+        try {
+            envelope = EventEnvelope.decode(encoded);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed event: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(envelope.origin())) {
+            return;
+        }
+        List<Consumer<EventEnvelope>> topicHandlers = handlers.get(envelope.topic());
+        if (topicHandlers == null) {
+            return;
+        }
+        for (Consumer<EventEnvelope> handler : topicHandlers) {
+            try {
+                handler.accept(envelope);
+            } catch (RuntimeException e) {
+                log.error("Error handling {} event from node {}", envelope.topic(), envelope.origin(), e);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -82,6 +83,8 @@ public class AppointmentService {
         return appointmentRepository.findByDoctorAndAppointmentDateTimeAfter(doctor, now);
     }
     
+    // The event goes to the outbox in this transaction
+    @Transactional
     public Appointment createAppointment(CreateAppointmentInput input, Integer doctorId) {
         User doctor = validateDoctor(doctorId);
         Family family = familyRepository.findById(input.getFamilyID())
@@ -127,6 +130,7 @@ public class AppointmentService {
         return savedAppointment;
     }
     
+    @Transactional
     public Appointment updateAppointment(UpdateAppointmentInput input, Integer doctorId) {
         Appointment appointment = getAppointmentDetail(input.getAppointmentID(), doctorId);
         
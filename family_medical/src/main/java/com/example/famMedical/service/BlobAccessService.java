@@ -0,0 +1,62 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.MedicalRecord;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.repository.MedicalRecordRepository;
+import com.example.famMedical.repository.MessageAttachmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Blob Access Service
+ * Decides who may read a blob of the local store. Blobs are content addressed and shared between uploads,
+ * so a blob is readable by whoever may read one of the medical records or message attachments pointing at it:
+ * the same rule as the record download, or being a participant of the attachment's conversation.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BlobAccessService {
+
+    private final MedicalRecordRepository medicalRecordRepository;
+    private final MessageAttachmentRepository messageAttachmentRepository;
+    private final MedicalRecordService medicalRecordService;
+    private final ConversationAccessCache conversationAccessCache;
+    private final BlobStore blobStore;
+
+    /**
+     * Open a blob if the user may read something that references it
+     * @throws ResponseStatusException 404 when nothing references the blob or it is gone, 403 when not permitted
+     */
+    @Transactional(readOnly = true)
+    public Resource loadPermitted(User user, String key) {
+        String url = FileSystemBlobStore.URL_PREFIX + key;
+        List<MedicalRecord> records = medicalRecordRepository.findByFileLink(url);
+        List<Integer> conversationIDs = messageAttachmentRepository.findConversationIDsByFileUrl(url);
+        if (records.isEmpty() && conversationIDs.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found");
+        }
+
+        boolean allowed = records.stream().anyMatch(record -> canRead(user, record))
+                || conversationIDs.stream().anyMatch(id -> conversationAccessCache.isParticipant(id, user.getUserID()));
+        if (!allowed) {
+            log.warn("User {} attempted to read blob {} but was forbidden", user.getUserID(), key);
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Không có quyền tải file này");
+        }
+
+        return blobStore.load(key)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not available"));
+    }
+
+    private boolean canRead(User user, MedicalRecord record) {
+        return record.getMember() != null && record.getMember().getFamily() != null
+                && medicalRecordService.canUserDownloadRecord(user, record);
+    }
+}
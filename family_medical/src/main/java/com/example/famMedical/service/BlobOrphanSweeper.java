@@ -0,0 +1,85 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.MedicalRecordRepository;
+import com.example.famMedical.repository.MessageAttachmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Blob Orphan Sweeper
+ * Deletes local blobs that no medical record or message attachment points at. Blobs are shared by content,
+ * so upload error paths never delete them; this sweep does, once a blob has not been written or reused for the
+ * grace period, which covers uploads whose record or message is still being saved.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@Slf4j
+public class BlobOrphanSweeper {
+
+    private static final int CHUNK = 500;
+    private static final String INTERVAL =
+            "#{T(com.example.famMedical.config.Schedules).millis('${storage.local.orphan-sweep.interval:1d}')}";
+
+    private final FileSystemBlobStore blobStore;
+    private final MedicalRecordRepository medicalRecordRepository;
+    private final MessageAttachmentRepository messageAttachmentRepository;
+    private final Duration grace;
+
+    public BlobOrphanSweeper(FileSystemBlobStore blobStore,
+                             MedicalRecordRepository medicalRecordRepository,
+                             MessageAttachmentRepository messageAttachmentRepository,
+                             @Value("${storage.local.orphan-sweep.grace:1d}") Duration grace) {
+        this.blobStore = blobStore;
+        this.medicalRecordRepository = medicalRecordRepository;
+        this.messageAttachmentRepository = messageAttachmentRepository;
+        this.grace = grace;
+    }
+
+    /**
+     * Delete the unreferenced blobs older than the grace period
+     * @return Number of blobs deleted
+     */
+    public int sweep() throws IOException {
+        Instant cutoff = Instant.now().minus(grace);
+        List<String> keys = blobStore.keysModifiedBefore(cutoff);
+        int deleted = 0;
+        for (int from = 0; from < keys.size(); from += CHUNK) {
+            List<String> urls = keys.subList(from, Math.min(from + CHUNK, keys.size())).stream()
+                    .map(key -> FileSystemBlobStore.URL_PREFIX + key)
+                    .toList();
+            Set<String> referenced = new HashSet<>(medicalRecordRepository.findFileLinksIn(urls));
+            referenced.addAll(messageAttachmentRepository.findFileUrlsIn(urls));
+            for (String url : urls) {
+                String key = url.substring(FileSystemBlobStore.URL_PREFIX.length());
+                // Checked again: an upload may have reused the blob since it was listed
+                if (!referenced.contains(url) && blobStore.isModifiedBefore(key, cutoff)) {
+                    blobStore.delete(key);
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted {} orphaned blobs of {} older than {}", deleted, keys.size(), grace);
+        }
+        return deleted;
+    }
+
+    @Scheduled(initialDelayString = INTERVAL, fixedDelayString = INTERVAL)
+    void sweepSafely() {
+        try {
+            sweep();
+        } catch (IOException | RuntimeException e) {
+            log.error("Blob orphan sweep failed", e);
+        }
+    }
+}
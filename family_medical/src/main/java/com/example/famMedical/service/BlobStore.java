@@ -0,0 +1,51 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.dto.StoredBlob;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Blob Store
+ * Stores the content of uploaded attachments and medical record files
+ * The implementation is selected with storage.type: cloudinary (default) or local
+ */
+public interface BlobStore {
+
+    /**
+     * Store the content of an uploaded file
+     * @param file The uploaded file
+     * @param folder Logical folder, used by stores that organise content by folder
+     * @return Reference to the stored content
+     * @throws IOException if the content cannot be stored
+     */
+    StoredBlob store(MultipartFile file, String folder) throws IOException;
+
+    /**
+     * Store the content of a file already assembled on local disk
+     * On success the store owns the file and may have moved it into place; on failure it is left untouched
+     * @param file The file to store
+     * @param filename Original file name, for logging
+     * @param folder Logical folder, used by stores that organise content by folder
+     * @return Reference to the stored content
+     * @throws IOException if the content cannot be stored
+     */
+    StoredBlob store(Path file, String filename, String folder) throws IOException;
+
+    /**
+     * Delete stored content
+     * @param key The key returned by store
+     * @throws IOException if the content cannot be deleted
+     */
+    void delete(String key) throws IOException;
+
+    /**
+     * Open stored content served by this application
+     * @param key The key returned by store
+     * @return The content, or empty if it does not exist or is served by a remote store
+     */
+    Optional<Resource> load(String key);
+}
@@ -0,0 +1,450 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.MedicalRecord;
+import com.example.famMedical.Entity.Member;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.dto.ChunkedUploadInput;
+import com.example.famMedical.dto.ChunkedUploadStatus;
+import com.example.famMedical.dto.StoredBlob;
+import com.example.famMedical.repository.MemberRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Chunked Upload Service
+ * Receives large medical record files (imaging, scanned PDFs) as a sequence of checksummed chunks.
+ * Every chunk is streamed from the request into its offset of a temp file, so neither a chunk nor the
+ * assembled file is ever held in memory. A chunk that fails its checksum is cut off again and the
+ * upload resumes from the last good chunk. The MedicalRecord is only created on completion.
+ * The state of an upload is kept in a JSON sidecar next to its temp file and read back on every call, so an
+ * upload survives a restart and can continue on any node that shares storage.upload.root. Uploads idle for
+ * longer than a day are deleted at startup and whenever a new upload starts.
+ */
+@Service
+@Slf4j
+public class ChunkedUploadService {
+
+    static final long MIN_CHUNK_SIZE = 64 * 1024;
+    static final long MAX_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Duration SESSION_TTL = Duration.ofHours(24);
+    private static final String FOLDER = "medical-records";
+    private static final String PART_SUFFIX = ".part";
+    private static final String SESSION_SUFFIX = ".json";
+    private static final Pattern UPLOAD_ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final BlobStore blobStore;
+    private final MedicalRecordService medicalRecordService;
+    private final MemberRepository memberRepository;
+    private final ObjectMapper objectMapper;
+    private final Path uploadDirectory;
+    private final long maxFileSize;
+
+    // Serializes the calls of one upload on this node; clients send the chunks of an upload one at a time
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    public ChunkedUploadService(BlobStore blobStore,
+                                MedicalRecordService medicalRecordService,
+                                MemberRepository memberRepository,
+                                ObjectMapper objectMapper,
+                                @Value("${storage.upload.root:data/uploads}") String uploadRoot,
+                                @Value("${storage.upload.max-size:2GB}") DataSize maxFileSize) {
+        this.blobStore = blobStore;
+        this.medicalRecordService = medicalRecordService;
+        this.memberRepository = memberRepository;
+        this.objectMapper = objectMapper;
+        this.uploadDirectory = Paths.get(uploadRoot).toAbsolutePath().normalize();
+        this.maxFileSize = maxFileSize.toBytes();
+        try {
+            Files.createDirectories(uploadDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create upload directory " + uploadDirectory, e);
+        }
+    }
+
+    /**
+     * Start a chunked upload
+     * @param user The uploading user
+     * @param input Record fields, file name, total size and chunk size
+     * @return Status of the new upload, expecting chunk 0
+     */
+    public ChunkedUploadStatus initUpload(User user, ChunkedUploadInput input) throws IOException {
+        purgeExpired();
+
+        if (input.getMemberID() == null || !memberRepository.existsById(input.getMemberID())) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Member not found: " + input.getMemberID());
+        }
+        MedicalRecord.FileType fileType = parseFileType(input.getFileType());
+        if (input.getTotalSize() == null || input.getTotalSize() <= 0 || input.getTotalSize() > maxFileSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "File size must be between 1 byte and " + maxFileSize + " bytes");
+        }
+        if (input.getChunkSize() == null || input.getChunkSize() < MIN_CHUNK_SIZE || input.getChunkSize() > MAX_CHUNK_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Chunk size must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE + " bytes");
+        }
+
+        String uploadId = UUID.randomUUID().toString();
+        UploadSession session = new UploadSession(uploadId, user.getUserID(), input, fileType,
+            uploadDirectory.resolve(uploadId + PART_SUFFIX), 0, new ArrayList<>());
+        Files.createFile(session.tempFile);
+        save(session);
+        log.info("User {} started upload {} of {} ({} bytes in {} chunks)",
+            user.getUserID(), uploadId, input.getFilename(), session.totalSize, session.totalChunks);
+        return session.status();
+    }
+
+    /**
+     * Append one chunk to an upload
+     * Chunks must arrive in order; a chunk that was already received is acknowledged again without
+     * being written if its checksum matches, so a client that lost the response can simply retry it
+     * @param user The uploading user
+     * @param uploadId The upload
+     * @param index Zero based chunk index
+     * @param checksum Hex SHA-256 of the chunk
+     * @param body The chunk content
+     * @return Status of the upload after this chunk
+     */
+    public ChunkedUploadStatus uploadChunk(User user, String uploadId, int index, String checksum,
+                                           InputStream body) throws IOException {
+        synchronized (lock(uploadId)) {
+            UploadSession session = getSession(user, uploadId);
+            if (index < session.nextChunk) {
+                if (!session.checksums.get(index).equalsIgnoreCase(checksum)) {
+                    throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "Chunk " + index + " was already received with a different checksum");
+                }
+                touch(session);
+                return session.status();
+            }
+            if (index != session.nextChunk) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Expected chunk " + session.nextChunk + " but received chunk " + index);
+            }
+
+            long offset = (long) index * session.chunkSize;
+            long expected = Math.min(session.chunkSize, session.totalSize - offset);
+            MessageDigest digest = sha256();
+            long received = 0;
+            try (ReadableByteChannel source = Channels.newChannel(body);
+                 FileChannel target = FileChannel.open(session.tempFile, StandardOpenOption.WRITE)) {
+                target.position(offset);
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (received <= expected && source.read(buffer) != -1) {
+                    buffer.flip();
+                    received += buffer.remaining();
+                    if (received > expected) {
+                        break;
+                    }
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+
+                String actual = HexFormat.of().formatHex(digest.digest());
+                if (received != expected || !actual.equalsIgnoreCase(checksum)) {
+                    // Drop the partial chunk so the upload resumes from the last good one
+                    target.truncate(offset);
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, received != expected
+                        ? "Chunk " + index + " must be " + expected + " bytes"
+                        : "Checksum mismatch for chunk " + index);
+                }
+                target.force(false);
+                session.checksums.add(actual.toLowerCase());
+            }
+
+            session.nextChunk++;
+            save(session);
+            return session.status();
+        }
+    }
+
+    /**
+     * Get the status of an upload, used to resume it
+     */
+    public ChunkedUploadStatus getStatus(User user, String uploadId) throws IOException {
+        return getSession(user, uploadId).status();
+    }
+
+    /**
+     * Store the assembled file and create its medical record
+     * @param user The uploading user
+     * @param uploadId The upload
+     * @return The created medical record
+     */
+    public MedicalRecord completeUpload(User user, String uploadId) throws IOException {
+        synchronized (lock(uploadId)) {
+            UploadSession session = getSession(user, uploadId);
+            if (session.nextChunk < session.totalChunks) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "Upload incomplete: " + session.nextChunk + " of " + session.totalChunks + " chunks received");
+            }
+
+            Member member = memberRepository.findById(session.input.getMemberID())
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                    "Member not found: " + session.input.getMemberID()));
+
+            // The store takes the assembled file; the session remembers the result, so that completing again
+            // after the record failed reuses it
+            if (session.blob == null) {
+                session.blob = blobStore.store(session.tempFile, session.input.getFilename(), FOLDER);
+                save(session);
+            }
+
+            MedicalRecord record = new MedicalRecord();
+            record.setMember(member);
+            record.setFileType(session.fileType);
+            record.setDescription(session.input.getDescription());
+            record.setRecordDate(session.input.getRecordDate());
+            record.setFileLink(session.blob.url());
+            MedicalRecord savedRecord = medicalRecordService.createMedicalRecord(record);
+            discard(session);
+            log.info("Upload {} completed as medical record {}", uploadId, savedRecord.getRecordID());
+            return savedRecord;
+        }
+    }
+
+    /**
+     * Abandon an upload and delete what was received
+     */
+    public void abortUpload(User user, String uploadId) throws IOException {
+        synchronized (lock(uploadId)) {
+            UploadSession session = getSession(user, uploadId);
+            deleteStoredBlob(session);
+            discard(session);
+        }
+        log.info("Upload {} aborted", uploadId);
+    }
+
+    /**
+     * Delete the uploads nobody touched for longer than the session TTL, including temp files left without a
+     * sidecar by a crash, and report the ones a client can still resume
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverUploads() {
+        int resumable = purgeExpired();
+        if (resumable > 0) {
+            log.info("{} chunked uploads can be resumed", resumable);
+        }
+    }
+
+    private UploadSession getSession(User user, String uploadId) throws IOException {
+        UploadSession session = load(uploadId);
+        if (session == null) {
+            // Nothing to serialize for an unknown upload
+            locks.remove(uploadId);
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Upload not found");
+        }
+        if (!session.ownerID.equals(user.getUserID())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "You do not have permission to access this upload");
+        }
+        return session;
+    }
+
+    private Object lock(String uploadId) {
+        return locks.computeIfAbsent(uploadId, id -> new Object());
+    }
+
+    private UploadSession load(String uploadId) throws IOException {
+        // The ID becomes a file name, so only accept the ones initUpload hands out
+        if (uploadId == null || !UPLOAD_ID.matcher(uploadId).matches()) {
+            return null;
+        }
+        SessionFile file;
+        try {
+            file = objectMapper.readValue(uploadDirectory.resolve(uploadId + SESSION_SUFFIX).toFile(), SessionFile.class);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        UploadSession session = new UploadSession(uploadId, file.ownerID(), file.input(),
+            parseFileType(file.input().getFileType()), uploadDirectory.resolve(uploadId + PART_SUFFIX), file.nextChunk(),
+            new ArrayList<>(file.checksums()));
+        session.blob = file.blob();
+        return session;
+    }
+
+    private void save(UploadSession session) throws IOException {
+        // Written aside and moved over the old sidecar, so a crash never leaves it half written
+        Path sidecar = uploadDirectory.resolve(session.uploadId + SESSION_SUFFIX);
+        Path temp = uploadDirectory.resolve(session.uploadId + SESSION_SUFFIX + ".tmp");
+        objectMapper.writeValue(temp.toFile(),
+            new SessionFile(session.ownerID, session.input, session.nextChunk, session.checksums, session.blob));
+        Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void touch(UploadSession session) throws IOException {
+        Files.setLastModifiedTime(uploadDirectory.resolve(session.uploadId + SESSION_SUFFIX), FileTime.from(Instant.now()));
+    }
+
+    private void discard(UploadSession session) throws IOException {
+        Files.deleteIfExists(uploadDirectory.resolve(session.uploadId + SESSION_SUFFIX));
+        Files.deleteIfExists(session.tempFile);
+        locks.remove(session.uploadId);
+    }
+
+    /**
+     * @return Number of uploads kept
+     */
+    private int purgeExpired() {
+        // Files of one upload share its ID as their name; the upload is as old as the newest of them
+        Map<String, List<Path>> filesByUpload = new HashMap<>();
+        Map<String, Instant> lastActivity = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadDirectory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                String uploadId = dot < 0 ? name : name.substring(0, dot);
+                Instant modified = Files.getLastModifiedTime(file).toInstant();
+                filesByUpload.computeIfAbsent(uploadId, id -> new ArrayList<>(2)).add(file);
+                lastActivity.merge(uploadId, modified, (a, b) -> a.isAfter(b) ? a : b);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list uploads in {}: {}", uploadDirectory, e.getMessage());
+            return 0;
+        }
+
+        Instant cutoff = Instant.now().minus(SESSION_TTL);
+        int kept = 0;
+        for (Map.Entry<String, List<Path>> upload : filesByUpload.entrySet()) {
+            String uploadId = upload.getKey();
+            if (!lastActivity.get(uploadId).isBefore(cutoff)) {
+                kept++;
+                continue;
+            }
+            synchronized (lock(uploadId)) {
+                try {
+                    UploadSession session = load(uploadId);
+                    if (session != null) {
+                        deleteStoredBlob(session);
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to read expired upload {}: {}", uploadId, e.getMessage());
+                }
+                try {
+                    for (Path file : upload.getValue()) {
+                        Files.deleteIfExists(file);
+                    }
+                    log.info("Expired upload {}", uploadId);
+                } catch (IOException e) {
+                    log.warn("Failed to delete expired upload {}: {}", uploadId, e.getMessage());
+                }
+            }
+            locks.remove(uploadId);
+        }
+        return kept;
+    }
+
+    /**
+     * Delete what an upload whose record was never created left in the store
+     * Shared content-addressed blobs are left to BlobOrphanSweeper
+     */
+    private void deleteStoredBlob(UploadSession session) {
+        StoredBlob blob = session.blob;
+        if (blob == null || !blob.created() || blob.contentAddressed()) {
+            return;
+        }
+        try {
+            blobStore.delete(blob.key());
+        } catch (IOException e) {
+            log.warn("Failed to delete orphaned blob {}: {}", blob.key(), e.getMessage());
+        }
+    }
+
+    private static MedicalRecord.FileType parseFileType(String fileType) {
+        if (fileType == null || fileType.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return MedicalRecord.FileType.valueOf(fileType);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid file type: " + fileType);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Content of the sidecar of an upload
+     * @param checksums SHA-256 of every chunk received, by index
+     * @param blob The stored file, once completing stored it but could not create the record
+     */
+    record SessionFile(Integer ownerID, ChunkedUploadInput input, int nextChunk, List<String> checksums,
+                       StoredBlob blob) {}
+
+    private static final class UploadSession {
+        final String uploadId;
+        final Integer ownerID;
+        final ChunkedUploadInput input;
+        final MedicalRecord.FileType fileType;
+        final Path tempFile;
+        final long totalSize;
+        final long chunkSize;
+        final int totalChunks;
+        final List<String> checksums;
+        int nextChunk;
+        StoredBlob blob;
+
+        UploadSession(String uploadId, Integer ownerID, ChunkedUploadInput input, MedicalRecord.FileType fileType,
+                      Path tempFile, int nextChunk, List<String> checksums) {
+            this.uploadId = uploadId;
+            this.ownerID = ownerID;
+            this.input = input;
+            this.fileType = fileType;
+            this.tempFile = tempFile;
+            this.totalSize = input.getTotalSize();
+            this.chunkSize = input.getChunkSize();
+            this.totalChunks = (int) ((totalSize + chunkSize - 1) / chunkSize);
+            this.nextChunk = nextChunk;
+            this.checksums = checksums;
+        }
+
+        ChunkedUploadStatus status() {
+            return new ChunkedUploadStatus(uploadId, totalSize, chunkSize, totalChunks, nextChunk,
+                Math.min((long) nextChunk * chunkSize, totalSize));
+        }
+    }
+}
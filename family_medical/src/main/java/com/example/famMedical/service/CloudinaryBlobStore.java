@@ -0,0 +1,94 @@
+package com.example.famMedical.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import com.example.famMedical.dto.StoredBlob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cloudinary Blob Store
+ * Streams uploads to Cloudinary from disk instead of buffering them in memory
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "cloudinary", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class CloudinaryBlobStore implements BlobStore {
+
+    private final Cloudinary cloudinary;
+
+    @Override
+    public StoredBlob store(MultipartFile file, String folder) throws IOException {
+        log.info("Uploading file {} to Cloudinary folder: {}", file.getOriginalFilename(), folder);
+        
+        File tempFile = Files.createTempFile("attachment-", ".upload").toFile();
+        try {
+            // Moves the multipart temp file when the container already spooled it to disk
+            file.transferTo(tempFile);
+            
+            Map<String, Object> uploadParams = ObjectUtils.asMap(
+                "folder", folder,
+                "resource_type", "auto" // Auto-detect resource type (image, raw, video)
+            );
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> uploadResult = cloudinary.uploader().upload(tempFile, uploadParams);
+            
+            String fileUrl = (String) uploadResult.get("secure_url");
+            log.info("File uploaded successfully to: {}", fileUrl);
+            
+            return new StoredBlob((String) uploadResult.get("public_id"), fileUrl, file.getSize(), null, true);
+        } catch (IOException e) {
+            log.error("Failed to upload file to Cloudinary: {}", e.getMessage());
+            throw new IOException("Failed to upload file to cloud storage", e);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    @Override
+    public StoredBlob store(Path file, String filename, String folder) throws IOException {
+        log.info("Uploading large file {} to Cloudinary folder: {}", filename, folder);
+        long size = Files.size(file);
+        try {
+            // Sent to Cloudinary in 20MB parts read straight from the file
+            @SuppressWarnings("unchecked")
+            Map<String, Object> uploadResult = cloudinary.uploader().uploadLarge(file.toFile(), ObjectUtils.asMap(
+                "folder", folder,
+                "resource_type", "auto"
+            ));
+
+            String fileUrl = (String) uploadResult.get("secure_url");
+            log.info("File uploaded successfully to: {}", fileUrl);
+            Files.deleteIfExists(file);
+
+            return new StoredBlob((String) uploadResult.get("public_id"), fileUrl, size, null, true);
+        } catch (IOException e) {
+            log.error("Failed to upload file to Cloudinary: {}", e.getMessage());
+            throw new IOException("Failed to upload file to cloud storage", e);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        cloudinary.uploader().destroy(key, ObjectUtils.emptyMap());
+    }
+
+    @Override
+    public Optional<Resource> load(String key) {
+        // Served by Cloudinary
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Conversation Access Cache
+ * Keeps the participants of each conversation (doctor user ID, head of family user ID) in a primitive
+ * int -> long open-addressing map, so messaging authorization checks are a memory lookup instead of
+ * loading Conversation, doctor, family and head of family.
+ * Entries are loaded on first use and evicted by the Conversation and Family entity listeners. A load that an
+ * eviction overtook is not cached, so a participant removed meanwhile does not come back.
+ * Past half the capacity one entry is dropped per insert, chosen by a clock hand that spares entries read since it
+ * last passed them, so a full cache keeps the conversations in use.
+ */
+@Component
+@Slf4j
+public class ConversationAccessCache {
+
+    static final int DEFAULT_CAPACITY = 1 << 15;
+
+    private static final int EMPTY = 0;
+    private static final int[] NO_PARTICIPANTS = new int[0];
+
+    private final ConversationRepository conversationRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int maxEntries;
+
+    // Conversation IDs (0 = free slot); IDs are generated from 1
+    private final int[] keys;
+    // Doctor user ID in the high 32 bits, head of family user ID (0 if none) in the low 32 bits
+    private final long[] values;
+    // Set on every read of the slot, cleared as the clock hand passes; written under the read lock, which is
+    // harmless since every reader writes true
+    private final boolean[] referenced;
+    private int size;
+    private int hand;
+    // Bumped by every eviction, so a load that started before one is not cached
+    private long generation;
+
+    @Autowired
+    public ConversationAccessCache(ConversationRepository conversationRepository) {
+        this(conversationRepository, DEFAULT_CAPACITY);
+    }
+
+    ConversationAccessCache(ConversationRepository conversationRepository, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.conversationRepository = conversationRepository;
+        this.keys = new int[capacity];
+        this.values = new long[capacity];
+        this.referenced = new boolean[capacity];
+        // Keep the table at most half full so probe sequences stay short
+        this.maxEntries = capacity / 2;
+    }
+
+    /**
+     * Check whether a user takes part in a conversation
+     * @param conversationID ID of the conversation
+     * @param userID ID of the user
+     * @return true if the user is the doctor or the head of family; false if the conversation does not exist
+     */
+    public boolean isParticipant(Integer conversationID, Integer userID) {
+        if (conversationID == null || userID == null) {
+            return false;
+        }
+        long participants = getPacked(conversationID);
+        return participants != 0 && (doctorOf(participants) == userID || headOf(participants) == userID);
+    }
+
+    /**
+     * Check whether a conversation exists
+     */
+    public boolean exists(Integer conversationID) {
+        return conversationID != null && getPacked(conversationID) != 0;
+    }
+
+    /**
+     * Get the participant user IDs of a conversation
+     * @param conversationID ID of the conversation
+     * @return Doctor and head of family user IDs, or an empty array if the conversation does not exist
+     */
+    public int[] getParticipantIDs(Integer conversationID) {
+        if (conversationID == null) {
+            return NO_PARTICIPANTS;
+        }
+        long participants = getPacked(conversationID);
+        if (participants == 0) {
+            return NO_PARTICIPANTS;
+        }
+        int head = headOf(participants);
+        return head != EMPTY ? new int[] {doctorOf(participants), head} : new int[] {doctorOf(participants)};
+    }
+
+    public void evict(Integer conversationID) {
+        if (conversationID == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            generation++;
+            int slot = find(conversationID);
+            if (slot >= 0) {
+                removeAt(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            Arrays.fill(keys, EMPTY);
+            Arrays.fill(values, 0L);
+            Arrays.fill(referenced, false);
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long getPacked(int conversationID) {
+        long loadGeneration;
+        lock.readLock().lock();
+        try {
+            int slot = find(conversationID);
+            if (slot >= 0) {
+                referenced[slot] = true;
+                return values[slot];
+            }
+            loadGeneration = generation;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long participants = load(conversationID);
+        if (participants != 0) {
+            put(conversationID, participants, loadGeneration);
+        }
+        return participants;
+    }
+
+    private long load(int conversationID) {
+        List<Object[]> rows = conversationRepository.findParticipantIDs(conversationID);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        Object[] row = rows.get(0);
+        int doctor = (Integer) row[0];
+        int head = row[1] != null ? (Integer) row[1] : EMPTY;
+        return ((long) doctor << 32) | (head & 0xFFFFFFFFL);
+    }
+
+    private void put(int conversationID, long participants, long loadGeneration) {
+        lock.writeLock().lock();
+        try {
+            if (generation != loadGeneration) {
+                // Evicted while loading: what was read may be the participants before the change
+                log.debug("Not caching conversation {}, evicted while loading", conversationID);
+                return;
+            }
+            int slot = find(conversationID);
+            if (slot >= 0) {
+                values[slot] = participants;
+                return;
+            }
+            if (size >= maxEntries) {
+                evictOne();
+            }
+            int mask = keys.length - 1;
+            int i = hash(conversationID) & mask;
+            while (keys[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = conversationID;
+            values[i] = participants;
+            referenced[i] = false;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the first entry the clock hand finds unread since its last pass; ends within two turns of the table
+     */
+    private void evictOne() {
+        int mask = keys.length - 1;
+        while (true) {
+            int i = hand;
+            hand = (hand + 1) & mask;
+            if (keys[i] == EMPTY) {
+                continue;
+            }
+            if (referenced[i]) {
+                referenced[i] = false;
+                continue;
+            }
+            removeAt(i);
+            return;
+        }
+    }
+
+    private int find(int conversationID) {
+        int mask = keys.length - 1;
+        int i = hash(conversationID) & mask;
+        while (keys[i] != EMPTY) {
+            if (keys[i] == conversationID) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeAt(int slot) {
+        // Backward-shift deletion keeps linear probe chains intact without tombstones
+        int mask = keys.length - 1;
+        int gap = slot;
+        int i = (slot + 1) & mask;
+        while (keys[i] != EMPTY) {
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                referenced[gap] = referenced[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0L;
+        referenced[gap] = false;
+        size--;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int doctorOf(long participants) {
+        return (int) (participants >>> 32);
+    }
+
+    private static int headOf(long participants) {
+        return (int) participants;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Conversation;
+import com.example.famMedical.Entity.ConversationParticipantState;
+import com.example.famMedical.Entity.Message;
+import com.example.famMedical.repository.ConversationParticipantStateRepository;
+import com.example.famMedical.repository.ConversationRepository;
+import com.example.famMedical.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains the per-participant inbox read model (conversation_participant_state)
+ * Every update joins the caller's transaction so the read model commits together with the messages
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationStateService {
+
+    private final ConversationParticipantStateRepository stateRepository;
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final ConversationAccessCache conversationAccessCache;
+
+    /**
+     * Create the missing participant rows of a conversation, computed from its message history
+     * @param conversation The conversation to initialize
+     */
+    @Transactional
+    public void initialize(Conversation conversation) {
+        Integer conversationID = conversation.getConversationID();
+        Set<Integer> missingUserIDs = getParticipantIDs(conversationID);
+        missingUserIDs.removeAll(stateRepository.findUserIDsByConversationID(conversationID));
+        if (missingUserIDs.isEmpty()) {
+            return;
+        }
+
+        List<Message> lastMessages = messageRepository.findLastMessagesByConversationIDs(Set.of(conversationID));
+        Message lastMessage = lastMessages.isEmpty() ? null : lastMessages.get(0);
+
+        for (Integer userID : missingUserIDs) {
+            stateRepository.save(ConversationParticipantState.builder()
+                    .conversationID(conversationID)
+                    .userID(userID)
+                    .lastMessageID(lastMessage != null ? lastMessage.getMessageID() : null)
+                    .lastMessageAt(lastMessage != null ? lastMessage.getCreatedAt() : null)
+                    .unreadCount(messageRepository.countUnreadByConversationAndUser(conversationID, userID))
+                    .build());
+        }
+        log.debug("Initialized inbox state of conversation {} for users {}", conversationID, missingUserIDs);
+    }
+
+    /**
+     * Record a newly sent message for all participants of its conversation
+     * @param message The saved message
+     */
+    @Transactional
+    public void recordMessage(Message message) {
+        Conversation conversation = message.getConversation();
+        int updated = stateRepository.recordMessage(
+                conversation.getConversationID(),
+                message.getSender().getUserID(),
+                message.getMessageID(),
+                message.getCreatedAt());
+
+        if (updated < getParticipantIDs(conversation.getConversationID()).size()) {
+            // Rows created from history already account for this message
+            initialize(conversation);
+        }
+    }
+
+    /**
+     * Record that a participant read a message, which moves their read watermark up to it
+     * Every earlier message of the conversation is read along with it
+     * @param message The message that was read
+     * @param userID ID of the reader
+     */
+    @Transactional
+    public void recordMessageRead(Message message, Integer userID) {
+        moveReadWatermark(message.getConversation().getConversationID(), userID, message.getMessageID());
+    }
+
+    /**
+     * Record that a participant read a conversation up to a message ID sent by the client
+     * The watermark is clamped to the last message of the conversation at or below that ID, so a client
+     * cannot mark messages that do not exist yet as read
+     * @param conversationID ID of the conversation
+     * @param userID ID of the reader
+     * @param upToMessageID Highest message ID the client read
+     */
+    @Transactional
+    public void recordMessageRead(Integer conversationID, Integer userID, Integer upToMessageID) {
+        Integer messageID = messageRepository.findLatestMessageIDUpTo(conversationID, upToMessageID);
+        if (messageID != null) {
+            moveReadWatermark(conversationID, userID, messageID);
+        }
+    }
+
+    /**
+     * Record that a participant read a whole conversation: a single row update of their watermark
+     * @param conversationID ID of the conversation
+     * @param userID ID of the reader
+     * @return true if the participant has a state row
+     */
+    @Transactional
+    public boolean recordConversationRead(Integer conversationID, Integer userID) {
+        return stateRepository.recordConversationRead(conversationID, userID, LocalDateTime.now()) > 0;
+    }
+
+    /**
+     * Compute isRead and readAt of messages from the read watermark of their recipients
+     * @param messages Messages of any conversations
+     * @return Read state by message ID
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, ReadState> getReadStates(Collection<Message> messages) {
+        Set<Integer> conversationIDs = new HashSet<>();
+        for (Message message : messages) {
+            conversationIDs.add(message.getConversation().getConversationID());
+        }
+        if (conversationIDs.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Integer, List<ConversationParticipantState>> statesByConversation = new HashMap<>();
+        for (ConversationParticipantState state : stateRepository.findByConversationIDs(conversationIDs)) {
+            statesByConversation.computeIfAbsent(state.getConversationID(), id -> new ArrayList<>(2)).add(state);
+        }
+
+        Map<Integer, ReadState> readStates = new HashMap<>();
+        for (Message message : messages) {
+            Integer senderID = message.getSender().getUserID();
+            ReadState readState = ReadState.UNREAD;
+            for (ConversationParticipantState state : statesByConversation.getOrDefault(
+                    message.getConversation().getConversationID(), List.of())) {
+                if (!state.getUserID().equals(senderID) && state.hasRead(message.getMessageID())) {
+                    readState = new ReadState(true, state.getLastReadAt());
+                }
+            }
+            readStates.put(message.getMessageID(), readState);
+        }
+        return readStates;
+    }
+
+    /**
+     * Get the total number of unread messages of a user across all conversations
+     * @param userID ID of the user
+     * @return Unread message count
+     */
+    @Transactional(readOnly = true)
+    public int getUnreadCount(Integer userID) {
+        return (int) stateRepository.sumUnreadByUser(userID);
+    }
+
+    /**
+     * Get the inbox state of a user for a batch of conversations
+     * @param userID ID of the user
+     * @param conversationIDs IDs of the conversations
+     * @return States keyed by conversation ID
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, ConversationParticipantState> getStates(Integer userID, Collection<Integer> conversationIDs) {
+        Map<Integer, ConversationParticipantState> states = new HashMap<>();
+        for (ConversationParticipantState state : stateRepository.findByUserIDAndConversationIDs(userID, conversationIDs)) {
+            states.put(state.getConversationID(), state);
+        }
+        return states;
+    }
+
+    /**
+     * Build the read model of conversations created before it existed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillMissingStates() {
+        List<Integer> conversationIDs = stateRepository.findConversationIDsWithMissingStates();
+        if (conversationIDs.isEmpty()) {
+            return;
+        }
+
+        log.info("Backfilling inbox state for {} conversations", conversationIDs.size());
+        conversationRepository.findAllById(conversationIDs).forEach(this::initialize);
+    }
+
+    private void moveReadWatermark(Integer conversationID, Integer userID, Integer messageID) {
+        if (stateRepository.recordMessageRead(conversationID, userID, messageID, LocalDateTime.now()) > 0
+                || stateRepository.findUserIDsByConversationID(conversationID).contains(userID)) {
+            // Moved, or the watermark was already at or past this message
+            return;
+        }
+        // No state row yet: create it from history, then move its watermark
+        conversationRepository.findById(conversationID).ifPresent(conversation -> {
+            initialize(conversation);
+            stateRepository.recordMessageRead(conversationID, userID, messageID, LocalDateTime.now());
+        });
+    }
+
+    private Set<Integer> getParticipantIDs(Integer conversationID) {
+        Set<Integer> participantIDs = new LinkedHashSet<>(2);
+        for (int participantID : conversationAccessCache.getParticipantIDs(conversationID)) {
+            participantIDs.add(participantID);
+        }
+        return participantIDs;
+    }
+
+    /**
+     * Whether the recipient of a message has read it, and when they last moved their read watermark past it
+     */
+    public record ReadState(boolean read, LocalDateTime readAt) {
+
+        static final ReadState UNREAD = new ReadState(false, null);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.famMedical.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Event Bus
+ * Carries real-time events (new messages, notifications, typing indicators) to the other nodes of the
+ * application, so a subscriber receives them whichever node its WebSocket is connected to.
+ * Events are small serializable records; every node delivers what it publishes to its own subscribers
+ * directly, and only receives from the bus what the other nodes published.
+ * The implementation is selected with event-bus.type: memory (default, single node) or redis
+ */
+public interface EventBus {
+
+    /**
+     * Send an event to the subscribers of a topic on the other nodes
+     * Does not block on the network and does not throw: an event that cannot be sent is logged and dropped
+     * @param topic The topic
+     * @param event The event, serialized to JSON
+     */
+    void publish(String topic, Object event);
+
+    /**
+     * Receive the events the other nodes publish on a topic
+     * Handlers run on the bus's delivery thread, one event at a time
+     * @param topic The topic
+     * @param eventType Type the events are read as
+     * @param handler Called for every event
+     */
+    <E> void subscribe(String topic, Class<E> eventType, Consumer<E> handler);
+}
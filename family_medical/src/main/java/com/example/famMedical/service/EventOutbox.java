@@ -0,0 +1,196 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.OutboxEvent;
+import com.example.famMedical.dto.events.AppointmentCreatedEvent;
+import com.example.famMedical.dto.events.AppointmentSnapshot;
+import com.example.famMedical.dto.events.AppointmentUpdatedEvent;
+import com.example.famMedical.dto.events.DoctorRequestCreatedEvent;
+import com.example.famMedical.dto.events.DoctorRequestSnapshot;
+import com.example.famMedical.dto.events.DoctorRequestStatusChangedEvent;
+import com.example.famMedical.dto.events.MedicalRecordCreatedEvent;
+import com.example.famMedical.dto.events.MedicalRecordSnapshot;
+import com.example.famMedical.dto.events.MedicalRecordUpdatedEvent;
+import com.example.famMedical.dto.events.MessageSnapshot;
+import com.example.famMedical.dto.events.NewMessageEvent;
+import com.example.famMedical.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Event Outbox
+ * Writes each domain event to the event_outbox table inside the transaction that publishes it, so the event is
+ * committed together with the change it describes and survives the node going down before its listeners run.
+ * OutboxRelay claims the rows back in batches, turns them into events again and deletes them once handled.
+ * Events are stored as their snapshot and read back from it alone.
+ */
+@Service
+@Slf4j
+public class EventOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    // Turns a stored payload back into its event, keyed by event type
+    private final Map<String, Function<String, ApplicationEvent>> decoders;
+
+    // Run after a transaction that wrote events commits; OutboxRelay uses it to relay them right away
+    private volatile Runnable commitHook = () -> {};
+
+    public EventOutbox(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.decoders = Map.of(
+                type(AppointmentCreatedEvent.class),
+                payload -> new AppointmentCreatedEvent(this, read(payload, AppointmentSnapshot.class)),
+                type(AppointmentUpdatedEvent.class),
+                payload -> new AppointmentUpdatedEvent(this, read(payload, AppointmentSnapshot.class)),
+                type(DoctorRequestCreatedEvent.class),
+                payload -> new DoctorRequestCreatedEvent(this, read(payload, DoctorRequestSnapshot.class)),
+                type(DoctorRequestStatusChangedEvent.class),
+                payload -> new DoctorRequestStatusChangedEvent(this, read(payload, DoctorRequestSnapshot.class)),
+                type(MedicalRecordCreatedEvent.class),
+                payload -> new MedicalRecordCreatedEvent(this, read(payload, MedicalRecordSnapshot.class)),
+                type(MedicalRecordUpdatedEvent.class),
+                payload -> new MedicalRecordUpdatedEvent(this, read(payload, MedicalRecordSnapshot.class)),
+                type(NewMessageEvent.class),
+                payload -> new NewMessageEvent(this, read(payload, MessageSnapshot.class)));
+    }
+
+    /**
+     * Store a domain event in the publisher's transaction
+     */
+    @EventListener({AppointmentCreatedEvent.class, AppointmentUpdatedEvent.class, DoctorRequestCreatedEvent.class,
+            DoctorRequestStatusChangedEvent.class, MedicalRecordCreatedEvent.class, MedicalRecordUpdatedEvent.class,
+            NewMessageEvent.class})
+    public void record(ApplicationEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(type(event.getClass()))
+                .payload(write(snapshotOf(event)))
+                .createdAt(now)
+                .availableAt(now)
+                .build());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    commitHook.run();
+                }
+            });
+        } else {
+            commitHook.run();
+        }
+    }
+
+    /**
+     * Claim the oldest due events: each is hidden from other relays for the lease, after which it is
+     * handed out again unless it was completed
+     */
+    @Transactional
+    public List<OutboxEvent> claim(int batchSize, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxEvent> events = outboxEventRepository.findClaimable(now, PageRequest.of(0, batchSize));
+        for (OutboxEvent event : events) {
+            event.setAvailableAt(now.plus(lease));
+            event.setAttempts(event.getAttempts() + 1);
+        }
+        return events;
+    }
+
+    /**
+     * Remove events whose listeners have run
+     */
+    @Transactional
+    public void complete(Collection<Long> eventIDs) {
+        if (!eventIDs.isEmpty()) {
+            outboxEventRepository.deleteAllByIdInBatch(eventIDs);
+        }
+    }
+
+    /**
+     * Hand claimed events back before their lease runs out, for events no listener could take yet
+     */
+    @Transactional
+    public void release(Collection<Long> eventIDs) {
+        if (!eventIDs.isEmpty()) {
+            outboxEventRepository.release(eventIDs, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * The event a row was written from
+     * @throws IllegalArgumentException if the row cannot be read
+     */
+    public ApplicationEvent decode(OutboxEvent row) {
+        Function<String, ApplicationEvent> decoder = decoders.get(row.getEventType());
+        if (decoder == null) {
+            throw new IllegalArgumentException("Unknown outbox event type " + row.getEventType());
+        }
+        return decoder.apply(row.getPayload());
+    }
+
+    void onCommit(Runnable hook) {
+        this.commitHook = hook;
+    }
+
+    private static Object snapshotOf(ApplicationEvent event) {
+        if (event instanceof AppointmentCreatedEvent created) {
+            return created.getAppointment();
+        }
+        if (event instanceof AppointmentUpdatedEvent updated) {
+            return updated.getAppointment();
+        }
+        if (event instanceof DoctorRequestCreatedEvent created) {
+            return created.getDoctorRequest();
+        }
+        if (event instanceof DoctorRequestStatusChangedEvent changed) {
+            return changed.getDoctorRequest();
+        }
+        if (event instanceof MedicalRecordCreatedEvent created) {
+            return created.getMedicalRecord();
+        }
+        if (event instanceof MedicalRecordUpdatedEvent updated) {
+            return updated.getMedicalRecord();
+        }
+        if (event instanceof NewMessageEvent message) {
+            return message.getSnapshot();
+        }
+        throw new IllegalArgumentException("Not an outbox event: " + event.getClass().getName());
+    }
+
+    private String write(Object snapshot) {
+        try {
+            return objectMapper.writeValueAsString(snapshot);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize " + snapshot.getClass().getSimpleName(), e);
+        }
+    }
+
+    private <T> T read(String payload, Class<T> type) {
+        try {
+            return objectMapper.readValue(payload, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot read " + type.getSimpleName() + " payload", e);
+        }
+    }
+
+    private static String type(Class<?> eventClass) {
+        return eventClass.getSimpleName();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.ConversationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Family Cache Invalidator
+ * Drops what {@link FamilyHeadCache} and {@link ConversationAccessCache} know about a family once the write that
+ * changed it commits, on this node and, through the EventBus, on the others. Evicting before the commit would let
+ * a concurrent reader cache the old row again until the next change.
+ * Only the family's own conversations are evicted from the access cache; a family with conversations cannot be
+ * deleted, and a deleted conversation is evicted by its own entity listener.
+ */
+@Component
+@Slf4j
+public class FamilyCacheInvalidator {
+
+    static final String FAMILY_CHANGED_TOPIC = "familyChanged";
+
+    private final FamilyHeadCache familyHeadCache;
+    private final ConversationAccessCache conversationAccessCache;
+    private final ConversationRepository conversationRepository;
+    private final EventBus eventBus;
+
+    public FamilyCacheInvalidator(FamilyHeadCache familyHeadCache, ConversationAccessCache conversationAccessCache,
+                                  ConversationRepository conversationRepository, EventBus eventBus) {
+        this.familyHeadCache = familyHeadCache;
+        this.conversationAccessCache = conversationAccessCache;
+        this.conversationRepository = conversationRepository;
+        this.eventBus = eventBus;
+        eventBus.subscribe(FAMILY_CHANGED_TOPIC, FamilyChanged.class, this::evict);
+    }
+
+    /**
+     * Evict a written family once the transaction commits
+     * Called from the flush of the write, inside its transaction, which is where the family's conversations are
+     * looked up; Spring's beforeCommit callbacks have already run by the time a commit flushes an update.
+     * The IDs travel with the event, so other nodes do not query for them
+     * @param familyID ID of the family
+     * @param headUserID User ID of its head of family, if any
+     * @param participantsChanged Whether conversation participants may have changed (head replaced, family deleted)
+     */
+    public void familyChanged(Integer familyID, Integer headUserID, boolean participantsChanged) {
+        List<Integer> conversationIDs = participantsChanged
+                ? conversationRepository.findConversationIDsByFamilyID(familyID)
+                : List.of();
+        FamilyChanged event = new FamilyChanged(familyID, headUserID, conversationIDs);
+        afterCommit(() -> {
+            evict(event);
+            eventBus.publish(FAMILY_CHANGED_TOPIC, event);
+        });
+    }
+
+    private void evict(FamilyChanged event) {
+        familyHeadCache.evict(event.familyID(), event.headUserID());
+        if (event.conversationIDs() != null) {
+            event.conversationIDs().forEach(conversationAccessCache::evict);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * A family written on some node, with the conversations whose participants may have changed
+     */
+    record FamilyChanged(Integer familyID, Integer headUserID, List<Integer> conversationIDs) {}
+}
@@ -0,0 +1,71 @@
+package com.example.famMedical.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Cache of head of family user ID -> family ID
+ * Lets messaging resolve the family of a head of family without querying Family on every message.
+ * Entries are evicted by {@link FamilyCacheInvalidator}, on every node, once a write creating, updating or
+ * deleting a family commits.
+ * Heads of family who are messaging are a small set that keeps coming back, so past MAX_ENTRIES the least
+ * recently used head is dropped. The lookup takes a lock to keep the access order, which is still far cheaper
+ * than the query it saves.
+ */
+@Component
+@Slf4j
+public class FamilyHeadCache {
+
+    static final int MAX_ENTRIES = 10_000;
+
+    // Access ordered, guarded by itself
+    private final Map<Integer, Integer> familyIDsByHead = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * @param headUserID User ID of the head of family
+     * @return Cached family ID, if any
+     */
+    public Optional<Integer> getFamilyID(Integer headUserID) {
+        synchronized (familyIDsByHead) {
+            return Optional.ofNullable(familyIDsByHead.get(headUserID));
+        }
+    }
+
+    public void put(Integer headUserID, Integer familyID) {
+        synchronized (familyIDsByHead) {
+            familyIDsByHead.put(headUserID, familyID);
+        }
+    }
+
+    /**
+     * Drop every entry pointing at a family or owned by a head of family
+     * @param familyID ID of the changed family (optional)
+     * @param headUserID User ID of its head of family (optional)
+     */
+    public void evict(Integer familyID, Integer headUserID) {
+        synchronized (familyIDsByHead) {
+            if (headUserID != null) {
+                familyIDsByHead.remove(headUserID);
+            }
+            if (familyID != null) {
+                familyIDsByHead.values().removeIf(familyID::equals);
+            }
+        }
+        log.debug("Evicted family {} / head {} from family head cache", familyID, headUserID);
+    }
+
+    public int size() {
+        synchronized (familyIDsByHead) {
+            return familyIDsByHead.size();
+        }
+    }
+}
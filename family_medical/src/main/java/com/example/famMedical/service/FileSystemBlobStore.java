@@ -0,0 +1,220 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.dto.StoredBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * File System Blob Store
+ * Content addressed store on local disk: every blob is named after the SHA-256 of its content and kept in
+ * two levels of sharded directories (ab/cd/abcd...), so uploading content that is already stored only costs
+ * hashing it. Blobs are served by FileController under URL_PREFIX.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+
+    public static final String URL_PREFIX = "/api/files/blobs/";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final Path tempDirectory;
+
+    public FileSystemBlobStore(@Value("${storage.local.root:data/blobs}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.tempDirectory = this.root.resolve("tmp");
+        try {
+            Files.createDirectories(tempDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create blob store directory " + this.root, e);
+        }
+        log.info("Using local blob store at {}", this.root);
+    }
+
+    @Override
+    public StoredBlob store(MultipartFile file, String folder) throws IOException {
+        // Write to a temp file in the store so the final move stays on the same file system
+        Path tempFile = Files.createTempFile(tempDirectory, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size = 0;
+            try (InputStream input = file.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(input);
+                 FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                while (source.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        size += target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                target.force(true);
+            }
+
+            return moveIntoPlace(tempFile, HexFormat.of().formatHex(digest.digest()), size, file.getOriginalFilename());
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public StoredBlob store(Path file, String filename, String folder) throws IOException {
+        MessageDigest digest = sha256();
+        long size = 0;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            int read;
+            while ((read = source.read(buffer)) != -1) {
+                digest.update(buffer.array(), 0, read);
+                size += read;
+                buffer.clear();
+            }
+        }
+
+        // Bring the file onto the store's file system first so the final move is atomic
+        Path tempFile = Files.createTempFile(tempDirectory, "upload-", ".part");
+        try {
+            Files.move(file, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            try {
+                return moveIntoPlace(tempFile, HexFormat.of().formatHex(digest.digest()), size, filename);
+            } catch (IOException | RuntimeException e) {
+                // Hand the file back, so the caller can retry with it
+                restore(tempFile, file, e);
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        if (isValidKey(key)) {
+            Files.deleteIfExists(pathOf(key));
+        }
+    }
+
+    @Override
+    public Optional<Resource> load(String key) {
+        if (!isValidKey(key)) {
+            return Optional.empty();
+        }
+        Path blobPath = pathOf(key);
+        return Files.isRegularFile(blobPath) ? Optional.of(new FileSystemResource(blobPath)) : Optional.empty();
+    }
+
+    private StoredBlob moveIntoPlace(Path tempFile, String hash, long size, String filename) throws IOException {
+        Path blobPath = pathOf(hash);
+        if (Files.exists(blobPath)) {
+            log.debug("Blob {} already stored, skipping write of {}", hash, filename);
+            // Reused content counts as new for the orphan sweep's grace period while its record is being saved
+            touch(blobPath);
+            return new StoredBlob(hash, URL_PREFIX + hash, size, hash, false);
+        }
+
+        Files.createDirectories(blobPath.getParent());
+        try {
+            Files.move(tempFile, blobPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Same content stored concurrently
+            touch(blobPath);
+            return new StoredBlob(hash, URL_PREFIX + hash, size, hash, false);
+        }
+        log.info("Stored blob {} ({} bytes) for {}", hash, size, filename);
+        return new StoredBlob(hash, URL_PREFIX + hash, size, hash, true);
+    }
+
+    private static void restore(Path tempFile, Path file, Exception failure) {
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Keys of the blobs last written or reused before a point in time
+     */
+    public List<String> keysModifiedBefore(Instant cutoff) throws IOException {
+        try (Stream<Path> paths = Files.walk(root, 3)) {
+            return paths
+                    .filter(path -> !path.startsWith(tempDirectory))
+                    .filter(path -> isValidKey(path.getFileName().toString()))
+                    .filter(path -> modifiedBefore(path, cutoff))
+                    .map(path -> path.getFileName().toString())
+                    .toList();
+        }
+    }
+
+    /**
+     * Whether a blob was last written or reused before a point in time; false when it is gone
+     */
+    public boolean isModifiedBefore(String key, Instant cutoff) {
+        return isValidKey(key) && modifiedBefore(pathOf(key), cutoff);
+    }
+
+    private static boolean modifiedBefore(Path path, Instant cutoff) {
+        try {
+            return Files.isRegularFile(path) && Files.getLastModifiedTime(path).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.warn("Cannot refresh modification time of {}: {}", path, e.getMessage());
+        }
+    }
+
+    private Path pathOf(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    private static boolean isValidKey(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
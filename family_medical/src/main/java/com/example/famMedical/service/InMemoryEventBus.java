@@ -0,0 +1,54 @@
+package com.example.famMedical.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * In-Memory Event Bus
+ * Event bus of a single node: there is nobody else to tell, so publishing costs nothing.
+ * Several buses can join one in-process cluster (join()), which runs multiple nodes in one JVM for tests;
+ * events then go through the same serialization as on the network and are delivered synchronously.
+ */
+@Service
+@ConditionalOnProperty(name = "event-bus.type", havingValue = "memory", matchIfMissing = true)
+@Slf4j
+public class InMemoryEventBus extends AbstractEventBus {
+
+    // Buses of the nodes sharing this JVM, including this one
+    private final Set<InMemoryEventBus> cluster;
+
+    public InMemoryEventBus() {
+        this.cluster = new CopyOnWriteArraySet<>();
+        cluster.add(this);
+        log.info("Using in-memory event bus, node {}", getNodeId());
+    }
+
+    private InMemoryEventBus(Set<InMemoryEventBus> cluster) {
+        this.cluster = cluster;
+        cluster.add(this);
+    }
+
+    /**
+     * Start another node on the same in-process cluster
+     */
+    public InMemoryEventBus join() {
+        return new InMemoryEventBus(cluster);
+    }
+
+    @Override
+    public void publish(String topic, Object event) {
+        if (cluster.size() == 1) {
+            return;
+        }
+        byte[] encoded = envelope(topic, event).encode();
+        for (InMemoryEventBus node : cluster) {
+            if (node != this) {
+                node.dispatch(encoded);
+            }
+        }
+    }
+}
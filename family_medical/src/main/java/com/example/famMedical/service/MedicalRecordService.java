@@ -11,7 +11,9 @@ import com.example.famMedical.repository.DoctorAssignmentRepository;
 
 import lombok.AllArgsConstructor;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 import lombok.extern.slf4j.Slf4j;
@@ -26,6 +28,7 @@ public class MedicalRecordService {
     private final MedicalRecordRepository medicalRecordRepository;
     private final DoctorAssignmentRepository doctorAssignmentRepository;
     private final CloudinaryService cloudinaryService;
+    private final BlobStore blobStore;
     private final ApplicationEventPublisher eventPublisher;
 
     public List<MedicalRecord> getAllRecords() {
@@ -45,6 +48,8 @@ public class MedicalRecordService {
         return medicalRecordRepository.findFileLinksByMember_MemberID(memberId);
     }
 
+    // The event goes to the outbox in this transaction
+    @Transactional
     public MedicalRecord createMedicalRecord(MedicalRecord record) {
         MedicalRecord savedRecord = medicalRecordRepository.save(record);
         
@@ -54,6 +59,7 @@ public class MedicalRecordService {
         return savedRecord;
     }
 
+    @Transactional
     public MedicalRecord updateRecord(MedicalRecord record) {
         // Check if record exists (for update vs create distinction)
         boolean isUpdate = record.getRecordID() != null && 
@@ -85,6 +91,40 @@ public class MedicalRecordService {
     public String getDownloadUrl(User user, Integer recordId) {
         log.info("Getting download URL for user: {}, recordId: {}", user.getUserID(), recordId);
 
+        String fileRef = getPermittedFileRef(user, recordId);
+
+        // Files in the local blob store are streamed by FileController after the same permission check
+        if (fileRef.startsWith(FileSystemBlobStore.URL_PREFIX)) {
+            return "/api/files/records/" + recordId + "/content";
+        }
+
+        // Return URL (direct or via Cloudinary)
+        if (fileRef.startsWith("http://") || fileRef.startsWith("https://")) {
+            return fileRef;
+        }
+
+        return cloudinaryService.getSignedDownloadUrl(fileRef);
+    }
+
+    /**
+     * Open the content of a medical record kept in the local blob store if the user has permission.
+     *
+     * @param user The authenticated user
+     * @param recordId The medical record ID
+     * @return The stored file
+     * @throws ResponseStatusException with 404, 403, or 500 status codes
+     */
+    public Resource getRecordContent(User user, Integer recordId) {
+        String fileRef = getPermittedFileRef(user, recordId);
+        if (!fileRef.startsWith(FileSystemBlobStore.URL_PREFIX)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File is not stored locally");
+        }
+
+        return blobStore.load(fileRef.substring(FileSystemBlobStore.URL_PREFIX.length()))
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not available"));
+    }
+
+    private String getPermittedFileRef(User user, Integer recordId) {
         // Fetch the record
         MedicalRecord record = medicalRecordRepository.findById(recordId)
             .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Record not found"));
@@ -106,13 +146,7 @@ public class MedicalRecordService {
         if (fileRef == null || fileRef.isBlank()) {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "File not available");
         }
-
-        // Return URL (direct or via Cloudinary)
-        if (fileRef.startsWith("http://") || fileRef.startsWith("https://")) {
-            return fileRef;
-        }
-
-        return cloudinaryService.getSignedDownloadUrl(fileRef);
+        return fileRef;
     }
 
     /**
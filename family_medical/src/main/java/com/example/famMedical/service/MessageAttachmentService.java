@@ -1,13 +1,14 @@
 package com.example.famMedical.service;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.MessageAttachment;
+import com.example.famMedical.config.AsyncConfig;
+import com.example.famMedical.dto.StoredBlob;
+import com.example.famMedical.dto.UploadedAttachment;
 import com.example.famMedical.exception.ValidationException;
 import com.example.famMedical.repository.MessageAttachmentRepository;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -15,14 +16,18 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MessageAttachmentService {
 
     private final MessageAttachmentRepository messageAttachmentRepository;
-    private final Cloudinary cloudinary;
+    private final BlobStore blobStore;
+    // Bounded pool shared by all messages, see AsyncConfig
+    private final Executor uploadExecutor;
 
     // Maximum file size: 10MB
     private static final long MAX_FILE_SIZE = 10 * 1024 * 1024; // 10MB in bytes
@@ -45,6 +50,13 @@ public class MessageAttachmentService {
         ALL_SUPPORTED_TYPES.addAll(SUPPORTED_DOCUMENT_TYPES);
     }
 
+    public MessageAttachmentService(MessageAttachmentRepository messageAttachmentRepository, BlobStore blobStore,
+                                    @Qualifier(AsyncConfig.ATTACHMENT_UPLOADS) Executor uploadExecutor) {
+        this.messageAttachmentRepository = messageAttachmentRepository;
+        this.blobStore = blobStore;
+        this.uploadExecutor = uploadExecutor;
+    }
+
     /**
      * Validate file size
      * @param file The file to validate
@@ -90,36 +102,94 @@ public class MessageAttachmentService {
     }
 
     /**
-     * Upload file to Cloudinary
+     * Upload file to the blob store
      * @param file The file to upload
      * @param folder The folder path in Cloudinary
      * @return The URL of the uploaded file
      * @throws IOException if upload fails
      */
     public String uploadFile(MultipartFile file, String folder) throws IOException {
-        log.info("Uploading file {} to Cloudinary folder: {}", file.getOriginalFilename(), folder);
-        
         // Validate file before upload
         validateFile(file);
         
-        try {
-            // Upload to Cloudinary
-            Map<String, Object> uploadParams = ObjectUtils.asMap(
-                "folder", folder,
-                "resource_type", "auto" // Auto-detect resource type (image, raw, video)
-            );
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> uploadResult = cloudinary.uploader().upload(file.getBytes(), uploadParams);
-            
-            String fileUrl = (String) uploadResult.get("secure_url");
-            log.info("File uploaded successfully to: {}", fileUrl);
-            
-            return fileUrl;
-        } catch (IOException e) {
-            log.error("Failed to upload file to Cloudinary: {}", e.getMessage());
-            throw new IOException("Failed to upload file to cloud storage", e);
+        return upload(file, folder).fileUrl();
+    }
+
+    /**
+     * Validate and upload files concurrently, before any message row exists
+     * If one upload fails, the files already uploaded are deleted again
+     * @param files The files to upload
+     * @return The uploaded files, in the same order
+     * @throws IOException if any upload fails
+     */
+    public List<UploadedAttachment> uploadAttachments(List<MultipartFile> files) throws IOException {
+        if (files == null || files.isEmpty()) {
+            return Collections.emptyList();
         }
+        
+        List<MultipartFile> nonEmptyFiles = files.stream()
+            .filter(file -> file != null && !file.isEmpty())
+            .toList();
+        
+        // Reject the whole batch before uploading anything
+        nonEmptyFiles.forEach(this::validateFile);
+        
+        String folder = "messages/" + UUID.randomUUID();
+        List<CompletableFuture<UploadedAttachment>> futures = nonEmptyFiles.stream()
+            .map(file -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return upload(file, folder);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, uploadExecutor))
+            .toList();
+        
+        List<UploadedAttachment> uploaded = new ArrayList<>(futures.size());
+        IOException failure = null;
+        for (CompletableFuture<UploadedAttachment> future : futures) {
+            try {
+                uploaded.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                }
+            }
+        }
+        
+        if (failure != null) {
+            deleteUploads(uploaded);
+            throw failure;
+        }
+        
+        log.info("Uploaded {} attachments to folder {}", uploaded.size(), folder);
+        return uploaded;
+    }
+
+    /**
+     * Delete uploaded files whose message was never saved
+     * Content-addressed content is kept: another record, attachment or concurrent upload may use the same blob,
+     * so it is left to BlobOrphanSweeper.
+     * Best effort: failures are logged and left for cleanup in storage
+     * @param uploads The uploaded files to delete
+     */
+    public void deleteUploads(List<UploadedAttachment> uploads) {
+        for (UploadedAttachment upload : uploads) {
+            StoredBlob blob = upload.blob();
+            if (blob.key() == null || !blob.created() || blob.contentAddressed()) {
+                continue;
+            }
+            try {
+                blobStore.delete(blob.key());
+            } catch (Exception e) {
+                log.warn("Failed to delete orphaned upload {}: {}", blob.key(), e.getMessage());
+            }
+        }
+    }
+
+    private UploadedAttachment upload(MultipartFile file, String folder) throws IOException {
+        StoredBlob blob = blobStore.store(file, folder);
+        return new UploadedAttachment(file.getOriginalFilename(), file.getContentType(), file.getSize(), blob);
     }
 
     /**
@@ -148,6 +218,34 @@ public class MessageAttachmentService {
         return saved;
     }
 
+    /**
+     * Save attachment rows referencing files that were already uploaded
+     * @param message The message to attach the files to
+     * @param uploads The uploaded files
+     * @return List of created MessageAttachment entities
+     */
+    @Transactional
+    public List<MessageAttachment> saveAttachments(Message message, List<UploadedAttachment> uploads) {
+        if (uploads == null || uploads.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        List<MessageAttachment> attachments = uploads.stream()
+            .map(upload -> MessageAttachment.builder()
+                .message(message)
+                .filename(upload.filename())
+                .fileType(upload.fileType())
+                .fileSize(upload.fileSize())
+                .fileUrl(upload.fileUrl())
+                .uploadedAt(LocalDateTime.now())
+                .build())
+            .toList();
+        
+        List<MessageAttachment> saved = messageAttachmentRepository.saveAll(attachments);
+        log.info("Saved {} attachments for message {}", saved.size(), message.getMessageID());
+        return saved;
+    }
+
     /**
      * Process and upload multiple attachments for a message
      * @param message The message to attach files to
@@ -163,22 +261,7 @@ public class MessageAttachmentService {
         
         log.info("Processing {} attachments for message {}", files.size(), message.getMessageID());
         
-        List<MessageAttachment> attachments = new ArrayList<>();
-        String folder = "messages/" + message.getMessageID();
-        
-        for (MultipartFile file : files) {
-            if (file != null && !file.isEmpty()) {
-                // Upload file to Cloudinary
-                String fileUrl = uploadFile(file, folder);
-                
-                // Create attachment record
-                MessageAttachment attachment = createAttachment(message, file, fileUrl);
-                attachments.add(attachment);
-            }
-        }
-        
-        log.info("Successfully processed {} attachments", attachments.size());
-        return attachments;
+        return saveAttachments(message, uploadAttachments(files));
     }
 
     /**
@@ -3,136 +3,195 @@ package com.example.famMedical.service;
 import com.example.famMedical.Entity.Conversation;
 import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.User;
+import com.example.famMedical.config.AsyncConfig;
+import com.example.famMedical.dto.SubscriptionStats;
+import com.example.famMedical.repository.ConversationRepository;
+import com.example.famMedical.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Message Publisher Service
- * Manages real-time message streaming using Reactor Sinks
- * Publishes messages and conversation updates to subscribed clients
+ * Manages real-time message streaming using per-user subscription hubs
+ * Publishes messages and conversation updates only to the conversation participants
+ * Subscribers connected to other nodes are reached through the EventBus: the event only names the message
+ * and its recipients, and the receiving node loads the message before delivering it to its own subscribers.
+ * A node loads it only if one of the recipients is watched there, and does so on the remote delivery executor
+ * so the EventBus subscriber thread is never held up by a query
  */
 @Service
+@Slf4j
 public class MessagePublisher {
 
-    // Sink for broadcasting new messages to all subscribers
-    private final Sinks.Many<Message> messageSink = 
-        Sinks.many().multicast().onBackpressureBuffer();
-    
-    // Sink for broadcasting conversation updates to all subscribers
-    private final Sinks.Many<Conversation> conversationSink = 
-        Sinks.many().multicast().onBackpressureBuffer();
+    static final String MESSAGE_TOPIC = "messageReceived";
+    static final String CONVERSATION_TOPIC = "conversationUpdated";
+
+    private final ConversationAccessCache conversationAccessCache;
+    private final EventBus eventBus;
+    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+    private final Executor remoteDelivery;
+
+    // Maximum number of undelivered items buffered for one subscriber
+    static final int SUBSCRIBER_BUFFER_SIZE = 256;
+
+    // Messages kept per user for catch-up after a reconnect
+    static final int REPLAY_SIZE = 200;
+    private static final Duration REPLAY_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    // Message subscribers keyed by user ID; a client that falls behind is told to reload and resubscribe
+    private final SubscriptionHub<Integer, Message> messageHub =
+        new SubscriptionHub<>("messageReceived", SUBSCRIBER_BUFFER_SIZE, SubscriptionHub.OverflowPolicy.DISCONNECT,
+            new SubscriptionHub.Replay<>(REPLAY_SIZE, REPLAY_IDLE_TIMEOUT, Message::setSequence));
+
+    // Conversation update subscribers keyed by user ID
+    private final SubscriptionHub<Integer, Conversation> conversationHub =
+        new SubscriptionHub<>("conversationUpdated", SUBSCRIBER_BUFFER_SIZE, SubscriptionHub.OverflowPolicy.DISCONNECT);
+
+    public MessagePublisher(ConversationAccessCache conversationAccessCache, EventBus eventBus,
+                            MessageRepository messageRepository, ConversationRepository conversationRepository,
+                            @Qualifier(AsyncConfig.REMOTE_DELIVERY) Executor remoteDelivery) {
+        this.conversationAccessCache = conversationAccessCache;
+        this.eventBus = eventBus;
+        this.messageRepository = messageRepository;
+        this.conversationRepository = conversationRepository;
+        this.remoteDelivery = remoteDelivery;
+        eventBus.subscribe(MESSAGE_TOPIC, MessageEvent.class, this::deliverRemoteMessage);
+        eventBus.subscribe(CONVERSATION_TOPIC, ConversationEvent.class, this::deliverRemoteConversationUpdate);
+    }
 
     /**
-     * Publish a new message to all subscribers
+     * Publish a new message to the participants of its conversation, except the sender
      * @param message The message to publish
      */
     public void publishMessage(Message message) {
-        System.out.println("📤 Publishing message " + message.getMessageID() + 
-                " from sender " + message.getSender().getUserID() + 
-                " in conversation " + message.getConversation().getConversationID());
-        
-        Sinks.EmitResult result = messageSink.tryEmitNext(message);
-        if (result.isFailure()) {
-            System.err.println("❌ Failed to publish message: " + result);
-        } else {
-            System.out.println("✅ Message published successfully");
+        if (message == null || message.getConversation() == null) {
+            log.warn("Cannot publish message without conversation");
+            return;
+        }
+
+        Integer senderID = message.getSender() != null ? message.getSender().getUserID() : null;
+        List<Integer> recipientIDs = new ArrayList<>(2);
+        for (int participantID : conversationAccessCache.getParticipantIDs(
+                message.getConversation().getConversationID())) {
+            if (senderID == null || participantID != senderID) {
+                recipientIDs.add(participantID);
+            }
         }
+        publishMessage(message, recipientIDs);
     }
 
     /**
-     * Publish a conversation update to all subscribers
+     * Publish a new message to recipients the caller already knows
+     * @param message The message to publish
+     * @param recipientIDs Users to deliver it to
+     */
+    public void publishMessage(Message message, List<Integer> recipientIDs) {
+        int delivered = messageHub.publishAll(recipientIDs, message);
+        eventBus.publish(MESSAGE_TOPIC, new MessageEvent(message.getMessageID(), recipientIDs));
+
+        log.debug("Message {} delivered to {} subscribers", message.getMessageID(), delivered);
+    }
+
+    /**
+     * Publish a conversation update to the participants of the conversation
      * @param conversation The conversation to publish
      */
     public void publishConversationUpdate(Conversation conversation) {
-        System.out.println("📤 Publishing conversation " + conversation.getConversationID() + " update");
-        
-        Sinks.EmitResult result = conversationSink.tryEmitNext(conversation);
-        if (result.isFailure()) {
-            System.err.println("❌ Failed to publish conversation update: " + result);
-        } else {
-            System.out.println("✅ Conversation update published successfully");
+        if (conversation == null) {
+            return;
+        }
+
+        List<Integer> participantIDs = new ArrayList<>(2);
+        for (int participantID : conversationAccessCache.getParticipantIDs(conversation.getConversationID())) {
+            participantIDs.add(participantID);
         }
+        publishConversationUpdate(conversation, participantIDs);
+    }
+
+    /**
+     * Publish a conversation update to participants the caller already knows
+     * @param conversation The conversation to publish
+     * @param participantIDs Users to deliver it to
+     */
+    public void publishConversationUpdate(Conversation conversation, List<Integer> participantIDs) {
+        int delivered = conversationHub.publishAll(participantIDs, conversation);
+        eventBus.publish(CONVERSATION_TOPIC, new ConversationEvent(conversation.getConversationID(), participantIDs));
+
+        log.debug("Conversation {} update delivered to {} subscribers",
+                conversation.getConversationID(), delivered);
     }
 
     /**
-     * Get message stream filtered for a specific user
-     * Only returns messages where the user is the recipient
-     * @param user The user to filter messages for
+     * Get message stream for a specific user
+     * Only receives messages where the user is the recipient
+     * @param user The user to stream messages for
      * @return Flux of messages for the user
      */
     public Flux<Message> getMessageStream(User user) {
-        return messageSink.asFlux()
-            .filter(message -> isMessageForUser(message, user));
+        return getMessageStream(user, null);
     }
 
     /**
-     * Get conversation update stream filtered for a specific user
-     * Only returns conversations where the user is a participant
-     * @param user The user to filter conversations for
-     * @return Flux of conversations for the user
+     * Get message stream for a specific user, starting with the messages missed since a sequence number
+     * @param user The user to stream messages for
+     * @param sinceSequence Sequence of the last message the client received, or null for new messages only
+     * @return Flux of the missed messages followed by new messages for the user
      */
-    public Flux<Conversation> getConversationStream(User user) {
-        return conversationSink.asFlux()
-            .filter(conversation -> isConversationForUser(conversation, user));
+    public Flux<Message> getMessageStream(User user, Long sinceSequence) {
+        return messageHub.subscribe(user.getUserID(), sinceSequence);
     }
 
     /**
-     * Check if a message is intended for a specific user
-     * A message is for a user if they are the recipient (not the sender)
-     * @param message The message to check
-     * @param user The user to check against
-     * @return true if the message is for the user
+     * Get conversation update stream for a specific user
+     * Only receives conversations where the user is a participant
+     * @param user The user to stream conversations for
+     * @return Flux of conversations for the user
      */
-    private boolean isMessageForUser(Message message, User user) {
-        if (message == null || user == null || message.getConversation() == null) {
-            System.out.println("❌ Null check failed for message filter");
-            return false;
-        }
-        
-        Conversation conversation = message.getConversation();
-        
-        // Message is for the user if they are a participant but not the sender
-        boolean isParticipant = isConversationForUser(conversation, user);
-        boolean isSender = message.getSender() != null && 
-                          message.getSender().getUserID().equals(user.getUserID());
-        
-        boolean shouldDeliver = isParticipant && !isSender;
-        
-        System.out.println("🔍 Filtering message " + message.getMessageID() + 
-                " for user " + user.getUserID() + 
-                ": isParticipant=" + isParticipant + 
-                ", isSender=" + isSender + 
-                ", shouldDeliver=" + shouldDeliver);
-        
-        return shouldDeliver;
+    public Flux<Conversation> getConversationStream(User user) {
+        return conversationHub.subscribe(user.getUserID());
     }
 
     /**
-     * Check if a conversation involves a specific user
-     * A conversation involves a user if they are the doctor or part of the family
-     * @param conversation The conversation to check
-     * @param user The user to check against
-     * @return true if the user is a participant in the conversation
+     * Subscribers and delivery counters of the message and conversation streams
      */
-    private boolean isConversationForUser(Conversation conversation, User user) {
-        if (conversation == null || user == null) {
-            return false;
-        }
-        
-        // Check if user is the doctor
-        if (conversation.getDoctor() != null && 
-            conversation.getDoctor().getUserID().equals(user.getUserID())) {
-            return true;
+    public List<SubscriptionStats> getStats() {
+        return List.of(messageHub.stats(), conversationHub.stats());
+    }
+
+    private void deliverRemoteMessage(MessageEvent event) {
+        List<Integer> recipientIDs = messageHub.watchedKeys(event.recipientIDs());
+        if (recipientIDs.isEmpty()) {
+            return;
         }
-        
-        // Check if user belongs to the family (is the head of family)
-        if (conversation.getFamily() != null && 
-            conversation.getFamily().getHeadOfFamily() != null &&
-            conversation.getFamily().getHeadOfFamily().getUserID().equals(user.getUserID())) {
-            return true;
+        remoteDelivery.execute(() -> messageRepository.findForDelivery(event.messageID()).ifPresentOrElse(
+                message -> messageHub.publishAll(recipientIDs, message),
+                () -> log.warn("Message {} published by another node was not found", event.messageID())));
+    }
+
+    private void deliverRemoteConversationUpdate(ConversationEvent event) {
+        List<Integer> recipientIDs = conversationHub.watchedKeys(event.recipientIDs());
+        if (recipientIDs.isEmpty()) {
+            return;
         }
-        
-        return false;
+        remoteDelivery.execute(() -> conversationRepository.findForDelivery(event.conversationID()).ifPresent(
+                conversation -> conversationHub.publishAll(recipientIDs, conversation)));
     }
+
+    /**
+     * A message sent on another node, with the users to deliver it to
+     */
+    record MessageEvent(Integer messageID, List<Integer> recipientIDs) {}
+
+    /**
+     * A conversation updated on another node, with its participants
+     */
+    record ConversationEvent(Integer conversationID, List<Integer> recipientIDs) {}
 }
@@ -0,0 +1,394 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Message;
+import com.example.famMedical.dto.events.MessageSnapshot;
+import com.example.famMedical.dto.events.NewMessageEvent;
+import com.example.famMedical.repository.MessageRepository;
+import com.example.famMedical.utils.PostingList;
+import com.example.famMedical.utils.SearchTokenizer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Message Search Index
+ * In-process inverted index over message content, partitioned by conversation: each conversation keeps its
+ * own term -> posting list map, so a query only ever touches the conversations the caller takes part in and
+ * counts and pages are exact. Terms are folded with SearchTokenizer, so searches ignore Vietnamese diacritics.
+ * A conversation is loaded from the database the first time it is searched, so nothing is read at startup and
+ * only searched conversations are held. Rebuilding a conversation means reading all of its messages again, so
+ * past MAX_CONVERSATIONS only the least recently searched tenth is dropped, and the scan choosing it is paid
+ * once per EVICTION_BATCH new conversations.
+ * New messages reach the index on every node: the node that commits one indexes it and publishes it on the
+ * EventBus, and every catch-up interval each node re-reads the messages created since the previous pass, so an
+ * event lost on the way does not leave a node behind for good.
+ */
+@Component
+@Slf4j
+public class MessageSearchIndex {
+
+    static final String MESSAGE_TOPIC = "messageIndexed";
+    static final String EVICT_TOPIC = "messageIndexEvicted";
+    static final int MAX_CONVERSATIONS = 10_000;
+    static final int EVICTION_BATCH = MAX_CONVERSATIONS / 10;
+    private static final String CATCH_UP_INTERVAL =
+            "#{T(com.example.famMedical.config.Schedules).millis('${message-search.catch-up-interval:1m}')}";
+
+    private final MessageRepository messageRepository;
+    private final EventBus eventBus;
+    private final Duration catchUpInterval;
+    private final Map<Integer, ConversationIndex> conversations = new ConcurrentHashMap<>();
+    private volatile LocalDateTime caughtUpTo = LocalDateTime.now();
+
+    @Autowired
+    public MessageSearchIndex(MessageRepository messageRepository, EventBus eventBus,
+                              @Value("${message-search.catch-up-interval:1m}") Duration catchUpInterval) {
+        this.messageRepository = messageRepository;
+        this.eventBus = eventBus;
+        this.catchUpInterval = catchUpInterval;
+        eventBus.subscribe(MESSAGE_TOPIC, IndexedMessage.class, this::add);
+        eventBus.subscribe(EVICT_TOPIC, Integer.class, conversations::remove);
+    }
+
+    /**
+     * Matching message IDs of one page, newest first, and the number of matches over all pages
+     */
+    public record SearchResult(List<Integer> messageIDs, long totalCount) {}
+
+    /**
+     * Search messages of a set of conversations
+     * Every term of the keyword must occur in a message; a blank keyword matches every message
+     * @param conversationIDs Conversations the caller may read
+     * @param keyword Search text
+     * @param startDate Optional lower bound of the creation time, inclusive
+     * @param endDate Optional upper bound of the creation time, inclusive
+     * @param offset Number of matches to skip
+     * @param limit Maximum number of IDs to return
+     * @return The requested page of matches
+     */
+    public SearchResult search(Collection<Integer> conversationIDs, String keyword,
+                               LocalDateTime startDate, LocalDateTime endDate, int offset, int limit) {
+        List<String> terms = SearchTokenizer.tokenize(keyword);
+        long from = startDate != null ? toMillis(startDate) : Long.MIN_VALUE;
+        long to = endDate != null ? toMillis(endDate) : Long.MAX_VALUE;
+
+        List<Hit> hits = new ArrayList<>();
+        for (ConversationIndex index : indexes(conversationIDs)) {
+            index.collect(terms, from, to, hits);
+        }
+
+        hits.sort(Comparator.<Hit>comparingLong(Hit::createdAt).thenComparingInt(Hit::messageID).reversed());
+        int start = Math.min(offset, hits.size());
+        int end = Math.min(start + limit, hits.size());
+        List<Integer> page = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            page.add(hits.get(i).messageID());
+        }
+        return new SearchResult(page, hits.size());
+    }
+
+    /**
+     * Index a message of a conversation held by this node; indexing the same message twice has no effect
+     */
+    public void add(Message message) {
+        IndexedMessage indexed = IndexedMessage.of(message);
+        if (indexed != null) {
+            add(indexed);
+        }
+    }
+
+    /**
+     * Drop every message of a conversation, here and on the other nodes
+     */
+    public void evict(Integer conversationID) {
+        conversations.remove(conversationID);
+        eventBus.publish(EVICT_TOPIC, conversationID);
+    }
+
+    /**
+     * Number of indexed messages
+     */
+    public int size() {
+        int size = 0;
+        for (ConversationIndex index : conversations.values()) {
+            size += index.size();
+        }
+        return size;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onNewMessage(NewMessageEvent event) {
+        IndexedMessage indexed = IndexedMessage.of(event.getSnapshot());
+        if (indexed != null) {
+            add(indexed);
+            eventBus.publish(MESSAGE_TOPIC, indexed);
+        }
+    }
+
+    /**
+     * Index the messages created since the previous pass, and a pass before that for transactions that were
+     * still open then
+     */
+    void catchUp() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = caughtUpTo.minus(catchUpInterval);
+        int indexed = 0;
+        for (Object[] row : messageRepository.findIndexRowsCreatedSince(since)) {
+            indexed += add(IndexedMessage.of(row)) ? 1 : 0;
+        }
+        caughtUpTo = now;
+        if (indexed > 0) {
+            log.info("Search index caught up on {} messages missed since {}", indexed, since);
+        }
+    }
+
+    private boolean add(IndexedMessage message) {
+        // Conversations nobody searched here are loaded whole when they are
+        ConversationIndex index = conversations.get(message.conversationID());
+        return index != null
+            && index.add(message.messageID(), message.createdAt(), SearchTokenizer.tokenize(message.content()));
+    }
+
+    /**
+     * Indexes of the given conversations, loading the missing ones in one query
+     */
+    private List<ConversationIndex> indexes(Collection<Integer> conversationIDs) {
+        List<ConversationIndex> indexes = new ArrayList<>(conversationIDs.size());
+        Map<Integer, ConversationIndex> missing = new HashMap<>();
+        for (Integer conversationID : conversationIDs) {
+            ConversationIndex index = conversations.get(conversationID);
+            if (index == null) {
+                if (conversations.size() >= MAX_CONVERSATIONS) {
+                    evictLeastRecentlySearched();
+                }
+                ConversationIndex created = new ConversationIndex();
+                index = conversations.putIfAbsent(conversationID, created);
+                if (index == null) {
+                    index = created;
+                    missing.put(conversationID, created);
+                }
+            }
+            index.searched();
+            indexes.add(index);
+        }
+        if (!missing.isEmpty()) {
+            load(missing);
+        }
+        for (ConversationIndex index : indexes) {
+            index.awaitLoaded();
+        }
+        return indexes;
+    }
+
+    private synchronized void evictLeastRecentlySearched() {
+        if (conversations.size() < MAX_CONVERSATIONS) {
+            // Another search made room meanwhile
+            return;
+        }
+        // Times are copied first: searches keep updating them while the candidates are sorted
+        List<Searched> candidates = new ArrayList<>(conversations.size());
+        conversations.forEach((conversationID, index) -> candidates.add(new Searched(conversationID, index, index.lastSearched)));
+        candidates.sort(Comparator.comparingLong(Searched::at));
+        for (Searched candidate : candidates.subList(0, Math.min(EVICTION_BATCH, candidates.size()))) {
+            conversations.remove(candidate.conversationID(), candidate.index());
+        }
+        log.debug("Message search index full, dropped the {} least recently searched conversations", EVICTION_BATCH);
+    }
+
+    /**
+     * Fill newly registered indexes; messages committed meanwhile arrive through add, which ignores duplicates
+     */
+    private void load(Map<Integer, ConversationIndex> missing) {
+        long startedAt = System.currentTimeMillis();
+        try {
+            int loaded = 0;
+            for (Object[] row : messageRepository.findIndexRowsByConversationIDs(missing.keySet())) {
+                IndexedMessage message = IndexedMessage.of(row);
+                missing.get(message.conversationID())
+                    .add(message.messageID(), message.createdAt(), SearchTokenizer.tokenize(message.content()));
+                loaded++;
+            }
+            missing.values().forEach(ConversationIndex::loaded);
+            log.debug("Indexed {} messages of {} conversations for search in {} ms",
+                loaded, missing.size(), System.currentTimeMillis() - startedAt);
+        } catch (RuntimeException e) {
+            missing.forEach((conversationID, index) -> {
+                conversations.remove(conversationID, index);
+                index.failed(e);
+            });
+            throw e;
+        }
+    }
+
+    @Scheduled(initialDelayString = CATCH_UP_INTERVAL, fixedDelayString = CATCH_UP_INTERVAL)
+    void catchUpSafely() {
+        try {
+            catchUp();
+        } catch (RuntimeException e) {
+            log.error("Failed to catch up the message search index", e);
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time != null ? time.toInstant(ZoneOffset.UTC).toEpochMilli() : 0;
+    }
+
+    private record Hit(long createdAt, int messageID) {}
+
+    private record Searched(Integer conversationID, ConversationIndex index, long at) {}
+
+    /**
+     * A message as the index stores it, also what the EventBus carries to the other nodes
+     * @param createdAt Creation time in epoch milliseconds
+     */
+    record IndexedMessage(Integer conversationID, Integer messageID, long createdAt, String content) {
+
+        static IndexedMessage of(Message message) {
+            if (message.getMessageID() == null || message.getConversation() == null) {
+                return null;
+            }
+            return new IndexedMessage(message.getConversation().getConversationID(), message.getMessageID(),
+                toMillis(message.getCreatedAt()), message.getContent());
+        }
+
+        static IndexedMessage of(MessageSnapshot message) {
+            if (message.messageID() == null) {
+                return null;
+            }
+            return new IndexedMessage(message.conversationID(), message.messageID(), toMillis(message.createdAt()),
+                message.content());
+        }
+
+        // [messageID, conversationID, createdAt, content]
+        static IndexedMessage of(Object[] row) {
+            return new IndexedMessage((Integer) row[1], (Integer) row[0], toMillis((LocalDateTime) row[2]), (String) row[3]);
+        }
+    }
+
+    /**
+     * Postings of one conversation
+     */
+    private static final class ConversationIndex {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        // Completed once the stored messages are in, so a search never sees half a conversation
+        private final CompletableFuture<Void> ready = new CompletableFuture<>();
+        private final Map<String, PostingList> postings = new HashMap<>();
+        // Message IDs in ascending order with their creation time in epoch milliseconds
+        private int[] messageIDs = new int[8];
+        private long[] createdAt = new long[8];
+        private int size;
+        private volatile long lastSearched;
+
+        void searched() {
+            lastSearched = System.nanoTime();
+        }
+
+        boolean add(int messageID, long time, List<String> terms) {
+            lock.writeLock().lock();
+            try {
+                int position = Arrays.binarySearch(messageIDs, 0, size, messageID);
+                if (position >= 0) {
+                    return false;
+                }
+                insert(-position - 1, messageID, time);
+                for (String term : terms) {
+                    postings.computeIfAbsent(term, t -> new PostingList()).add(messageID);
+                }
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void loaded() {
+            ready.complete(null);
+        }
+
+        void failed(RuntimeException e) {
+            ready.completeExceptionally(e);
+        }
+
+        void awaitLoaded() {
+            try {
+                ready.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        void collect(List<String> terms, long from, long to, List<Hit> hits) {
+            lock.readLock().lock();
+            try {
+                int[] candidates = terms.isEmpty() ? Arrays.copyOf(messageIDs, size) : match(terms);
+                for (int messageID : candidates) {
+                    long time = createdAt[Arrays.binarySearch(messageIDs, 0, size, messageID)];
+                    if (time >= from && time <= to) {
+                        hits.add(new Hit(time, messageID));
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return size;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int[] match(List<String> terms) {
+            // Intersect starting from the rarest term so the working set only shrinks
+            List<PostingList> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                PostingList list = postings.get(term);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+
+            int[] result = lists.get(0).toArray();
+            for (int i = 1; i < lists.size() && result.length > 0; i++) {
+                result = PostingList.intersect(result, lists.get(i).toArray());
+            }
+            return result;
+        }
+
+        private void insert(int position, int messageID, long time) {
+            if (size == messageIDs.length) {
+                messageIDs = Arrays.copyOf(messageIDs, size * 2);
+                createdAt = Arrays.copyOf(createdAt, size * 2);
+            }
+            System.arraycopy(messageIDs, position, messageIDs, position + 1, size - position);
+            System.arraycopy(createdAt, position, createdAt, position + 1, size - position);
+            messageIDs[position] = messageID;
+            createdAt[position] = time;
+            size++;
+        }
+    }
+}
@@ -37,6 +37,16 @@ public interface MessageService {
      */
     void markConversationAsRead(Integer conversationID, Integer userID);
     
+    /**
+     * Mark the messages of a conversation as read up to a message, or up to the newest of a set of messages
+     * The update is coalesced with other receipts of the user and written shortly afterwards
+     * @param conversationID ID of the conversation
+     * @param userID ID of the user marking messages as read
+     * @param upToMessageID Optional highest message ID read
+     * @param messageIDs Optional IDs of the messages read
+     */
+    void markMessagesAsRead(Integer conversationID, Integer userID, Integer upToMessageID, List<Integer> messageIDs);
+    
     /**
      * Get all conversations for a user with pagination
      * @param userID ID of the user
@@ -63,6 +73,18 @@ public interface MessageService {
      */
     MessageConnection getConversationMessages(Integer conversationID, int page, int size);
     
+    /**
+     * Get messages in a conversation using keyset (cursor) pagination
+     * Messages are returned newest first; totalCount is left null and resolved lazily
+     * @param conversationID ID of the conversation
+     * @param before Cursor to load messages older than (optional)
+     * @param after Cursor to load messages newer than (optional)
+     * @param size Page size
+     * @return MessageConnection with messages and cursors
+     */
+    MessageConnection getConversationMessagesByCursor(Integer conversationID, String before,
+                                                      String after, int size);
+    
     /**
      * Search messages with filters
      * @param userID ID of the user searching
@@ -2,6 +2,8 @@ package com.example.famMedical.service;
 
 import com.example.famMedical.Entity.*;
 import com.example.famMedical.dto.MessageConnection;
+import com.example.famMedical.dto.MessageCursor;
+import com.example.famMedical.dto.UploadedAttachment;
 import com.example.famMedical.dto.events.NewMessageEvent;
 import com.example.famMedical.exception.NotFoundException;
 import com.example.famMedical.exception.UnAuthorizedException;
@@ -9,6 +11,7 @@ import com.example.famMedical.exception.ValidationException;
 import com.example.famMedical.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -16,16 +19,24 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MessageServiceImpl implements MessageService {
 
+    static final int MAX_PAGE_SIZE = 100;
+
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
     private final UserRepository userRepository;
@@ -34,25 +45,76 @@ public class MessageServiceImpl implements MessageService {
     private final MessageAttachmentService messageAttachmentService;
     private final ApplicationEventPublisher eventPublisher;
     private final TypingIndicatorService typingIndicatorService;
-    private final RateLimitService rateLimitService;
+    private final ConversationStateService conversationStateService;
+    private final FamilyHeadCache familyHeadCache;
+    private final ConversationAccessCache conversationAccessCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ReadReceiptService readReceiptService;
+    private final MessageSearchIndex messageSearchIndex;
 
+    /**
+     * Send a message
+     * Attachments are uploaded before the transaction opens, so it only inserts their references;
+     * the sender is authorized first so that a rejected message uploads nothing
+     */
     @Override
-    @Transactional
     public Message sendMessage(Integer senderID, Integer recipientID, String content,
                               Integer conversationID, List<MultipartFile> attachments) {
         log.info("Sending message from user {} to user {}", senderID, recipientID);
         
-        // Check rate limiting (Optional security feature)
-        if (!rateLimitService.canSendMessage(senderID)) {
-            log.warn("Rate limit exceeded for user {}", senderID);
-            throw new ValidationException("You are sending messages too quickly. Please wait a moment.");
-        }
+        // Rate limiting is applied to the sendMessage mutation by RateLimitInterceptor
         
         // Validate message content
         if (content == null || content.trim().isEmpty()) {
             throw new ValidationException("Message content cannot be empty");
         }
         
+        List<UploadedAttachment> uploads = uploadAttachments(senderID, recipientID, conversationID, attachments);
+        try {
+            return transactionTemplate.execute(status ->
+                saveMessage(senderID, recipientID, content, conversationID, uploads));
+        } catch (RuntimeException e) {
+            // The message was rolled back, so nothing references the uploaded files
+            messageAttachmentService.deleteUploads(uploads);
+            throw e;
+        }
+    }
+
+    private List<UploadedAttachment> uploadAttachments(Integer senderID, Integer recipientID, Integer conversationID,
+                                                       List<MultipartFile> attachments) {
+        if (attachments == null || attachments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        // Do not spend an upload on a message saveMessage would reject; it checks again in its transaction
+        if (conversationID != null) {
+            if (!conversationAccessCache.exists(conversationID)) {
+                throw new NotFoundException("Conversation not found");
+            }
+            if (!conversationAccessCache.isParticipant(conversationID, senderID)) {
+                throw new UnAuthorizedException("You do not have permission to send messages in this conversation");
+            }
+            if (!conversationAccessCache.isParticipant(conversationID, recipientID)) {
+                throw new UnAuthorizedException("Recipient is not a participant in this conversation");
+            }
+        } else {
+            User sender = userRepository.findById(senderID)
+                .orElseThrow(() -> new NotFoundException("Sender user not found"));
+            User recipient = userRepository.findById(recipientID)
+                .orElseThrow(() -> new NotFoundException("Recipient user not found"));
+            authorizeConversation(sender, recipient);
+        }
+        
+        try {
+            return messageAttachmentService.uploadAttachments(attachments);
+        } catch (IOException e) {
+            log.error("Failed to upload attachments for user {}: {}", senderID, e.getMessage());
+            throw new ValidationException("Failed to upload attachments: " + e.getMessage());
+        }
+    }
+
+    private Message saveMessage(Integer senderID, Integer recipientID, String content,
+                                Integer conversationID, List<UploadedAttachment> uploads) {
         // Get sender
         User sender = userRepository.findById(senderID)
             .orElseThrow(() -> new NotFoundException("Sender user not found"));
@@ -68,12 +130,12 @@ public class MessageServiceImpl implements MessageService {
                 .orElseThrow(() -> new NotFoundException("Conversation not found"));
             
             // Verify sender is a participant in the existing conversation
-            if (!isParticipant(sender, conversation)) {
+            if (!isParticipant(senderID, conversation)) {
                 throw new UnAuthorizedException("You do not have permission to send messages in this conversation");
             }
             
             // Verify recipient is also a participant
-            if (!isParticipant(recipient, conversation)) {
+            if (!isParticipant(recipientID, conversation)) {
                 throw new UnAuthorizedException("Recipient is not a participant in this conversation");
             }
         } else {
@@ -82,7 +144,7 @@ public class MessageServiceImpl implements MessageService {
         }
         
         // Additional security check: Verify sender is a participant in the conversation
-        if (!isParticipant(sender, conversation)) {
+        if (!isParticipant(senderID, conversation)) {
             throw new UnAuthorizedException("You do not have permission to send messages in this conversation");
         }
         
@@ -91,38 +153,33 @@ public class MessageServiceImpl implements MessageService {
             .conversation(conversation)
             .sender(sender)
             .content(content.trim())
-            .isRead(false)
             .createdAt(LocalDateTime.now())
             .build();
         
         // Save message
         message = messageRepository.save(message);
         
-        // Process attachments if provided
-        if (attachments != null && !attachments.isEmpty()) {
-            try {
-                List<MessageAttachment> processedAttachments = 
-                    messageAttachmentService.processAttachments(message, attachments);
-                message.setAttachments(processedAttachments);
-                log.info("Processed {} attachments for message {}", processedAttachments.size(), message.getMessageID());
-            } catch (Exception e) {
-                log.error("Failed to process attachments for message {}: {}", message.getMessageID(), e.getMessage());
-                // Delete the message if attachment processing fails
-                messageRepository.delete(message);
-                throw new ValidationException("Failed to upload attachments: " + e.getMessage());
-            }
+        // Reference the uploaded attachments
+        if (!uploads.isEmpty()) {
+            List<MessageAttachment> savedAttachments = messageAttachmentService.saveAttachments(message, uploads);
+            message.setAttachments(savedAttachments);
+            log.info("Saved {} attachments for message {}", savedAttachments.size(), message.getMessageID());
         }
         
         // Update conversation last message timestamp
         conversation.setLastMessageAt(message.getCreatedAt());
         conversationRepository.save(conversation);
         
-        // Record message sent for rate limiting
-        rateLimitService.recordMessageSent(senderID);
+        // Update the inbox state of both participants in the same transaction
+        conversationStateService.recordMessage(message);
         
         // Stop typing indicator when message is sent
         typingIndicatorService.stopTyping(conversation.getConversationID(), sender);
         
+        // Subscribers get this message after the session is closed, so load what it references now
+        Hibernate.initialize(conversation.getDoctor());
+        Hibernate.initialize(conversation.getFamily());
+        
         // Publish event for notification
         eventPublisher.publishEvent(new NewMessageEvent(this, message));
         
@@ -145,21 +202,14 @@ public class MessageServiceImpl implements MessageService {
         }
         
         // Verify user is a participant in the conversation
-        User user = userRepository.findById(userID)
-            .orElseThrow(() -> new NotFoundException("User not found"));
-        
-        if (!isParticipant(user, message.getConversation())) {
+        if (!isParticipant(userID, message.getConversation())) {
             log.warn("Unauthorized access attempt: User {} tried to mark message {} as read", userID, messageID);
             throw new UnAuthorizedException("You do not have permission to access this message");
         }
         
-        // Mark as read
-        if (!message.getIsRead()) {
-            message.setIsRead(true);
-            message.setReadAt(LocalDateTime.now());
-            message = messageRepository.save(message);
-            log.info("Message {} marked as read", messageID);
-        }
+        // Move the reader's watermark; the message row itself is not written
+        conversationStateService.recordMessageRead(message, userID);
+        log.info("Message {} marked as read", messageID);
         
         return message;
     }
@@ -169,25 +219,53 @@ public class MessageServiceImpl implements MessageService {
     public void markConversationAsRead(Integer conversationID, Integer userID) {
         log.info("Marking all messages in conversation {} as read by user {}", conversationID, userID);
         
-        Conversation conversation = conversationRepository.findById(conversationID)
-            .orElseThrow(() -> new NotFoundException("Conversation not found"));
+        if (!conversationAccessCache.exists(conversationID)) {
+            throw new NotFoundException("Conversation not found");
+        }
         
         // Verify user is a participant
-        User user = userRepository.findById(userID)
-            .orElseThrow(() -> new NotFoundException("User not found"));
-        
-        if (!isParticipant(user, conversation)) {
+        if (!conversationAccessCache.isParticipant(conversationID, userID)) {
             log.warn("Unauthorized access attempt: User {} tried to mark conversation {} as read", 
                     userID, conversationID);
             throw new UnAuthorizedException("You do not have permission to access this conversation");
         }
         
-        // Mark all unread messages as read
-        int updatedCount = messageRepository.markConversationAsRead(
-            conversationID, userID, LocalDateTime.now()
-        );
+        // Single row update of the reader's watermark, however many messages were unread
+        if (!conversationStateService.recordConversationRead(conversationID, userID)) {
+            // No state row yet: create it from history, then move its watermark
+            conversationRepository.findById(conversationID).ifPresent(conversationStateService::initialize);
+            conversationStateService.recordConversationRead(conversationID, userID);
+        }
+        
+        log.info("Conversation {} marked as read by user {}", conversationID, userID);
+    }
+
+    @Override
+    public void markMessagesAsRead(Integer conversationID, Integer userID, Integer upToMessageID, List<Integer> messageIDs) {
+        // Authorized from the participant cache; no row is read here
+        if (!conversationAccessCache.exists(conversationID)) {
+            throw new NotFoundException("Conversation not found");
+        }
+        if (!conversationAccessCache.isParticipant(conversationID, userID)) {
+            log.warn("Unauthorized access attempt: User {} tried to mark messages of conversation {} as read",
+                    userID, conversationID);
+            throw new UnAuthorizedException("You do not have permission to access this conversation");
+        }
+        
+        // Reading a set of messages reads everything up to the newest of them
+        int upTo = upToMessageID != null ? upToMessageID : 0;
+        if (messageIDs != null) {
+            for (Integer messageID : messageIDs) {
+                if (messageID != null) {
+                    upTo = Math.max(upTo, messageID);
+                }
+            }
+        }
+        if (upTo <= 0) {
+            throw new ValidationException("Either upToMessageID or messageIDs is required");
+        }
         
-        log.info("Marked {} messages as read in conversation {}", updatedCount, conversationID);
+        readReceiptService.submit(conversationID, userID, upTo);
     }
 
     @Override
@@ -242,6 +320,7 @@ public class MessageServiceImpl implements MessageService {
                     .build();
                 
                 Conversation saved = conversationRepository.save(newConversation);
+                conversationStateService.initialize(saved);
                 log.info("Created new conversation {}", saved.getConversationID());
                 return saved;
             });
@@ -266,6 +345,56 @@ public class MessageServiceImpl implements MessageService {
         );
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public MessageConnection getConversationMessagesByCursor(Integer conversationID, String before,
+                                                             String after, int size) {
+        log.info("Getting messages for conversation {} (before: {}, after: {}, size: {})",
+                conversationID, before, after, size);
+        
+        if (before != null && after != null) {
+            throw new ValidationException("Only one of before or after cursor can be provided");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ValidationException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        
+        // Fetch one extra row to know whether another page exists without counting
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Message> messages;
+        if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            messages = new ArrayList<>(messageRepository.findAfterCursor(
+                conversationID, cursor.getCreatedAt(), cursor.getMessageID(), limit));
+        } else if (before != null) {
+            MessageCursor cursor = MessageCursor.decode(before);
+            messages = new ArrayList<>(messageRepository.findBeforeCursor(
+                conversationID, cursor.getCreatedAt(), cursor.getMessageID(), limit));
+        } else {
+            messages = new ArrayList<>(messageRepository.findLatestByConversationID(conversationID, limit));
+        }
+        
+        boolean hasMore = messages.size() > size;
+        if (hasMore) {
+            messages = new ArrayList<>(messages.subList(0, size));
+        }
+        
+        // Newer pages are read oldest first; keep the newest-first order of the connection
+        if (after != null) {
+            Collections.reverse(messages);
+        }
+        
+        MessageConnection connection = new MessageConnection();
+        connection.setMessages(messages);
+        connection.setHasMore(hasMore);
+        connection.setConversationID(conversationID);
+        if (!messages.isEmpty()) {
+            connection.setStartCursor(MessageCursor.of(messages.get(0)).encode());
+            connection.setEndCursor(MessageCursor.of(messages.get(messages.size() - 1)).encode());
+        }
+        return connection;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public MessageConnection searchMessages(Integer userID, String keyword, Integer conversationID,
@@ -279,31 +408,45 @@ public class MessageServiceImpl implements MessageService {
         
         // If searching within a specific conversation, verify user is a participant
         if (conversationID != null) {
-            Conversation conversation = conversationRepository.findById(conversationID)
-                .orElseThrow(() -> new NotFoundException("Conversation not found"));
+            if (!conversationAccessCache.exists(conversationID)) {
+                throw new NotFoundException("Conversation not found");
+            }
             
-            if (!isParticipant(user, conversation)) {
+            if (!conversationAccessCache.isParticipant(conversationID, user.getUserID())) {
                 throw new UnAuthorizedException("You do not have permission to search messages in this conversation");
             }
         }
         
-        Pageable pageable = PageRequest.of(page, size, Sort.by("createdAt").descending());
-        Page<Message> messagePage = messageRepository.searchMessages(
-            keyword, conversationID, startDate, endDate, pageable
+        // Scope the query to the caller's conversations before matching, so counts and pages are exact
+        List<Integer> conversationIDs = conversationID != null
+            ? List.of(conversationID)
+            : conversationRepository.findConversationIDsByUserID(user.getUserID());
+        
+        MessageSearchIndex.SearchResult result = messageSearchIndex.search(
+            conversationIDs, keyword, startDate, endDate, page * size, size
         );
         
-        // Filter messages to only include conversations where user is a participant
-        List<Message> filteredMessages = messagePage.getContent().stream()
-            .filter(message -> isParticipant(user, message.getConversation()))
-            .toList();
+        // Load the page and keep the ranking of the index
+        Map<Integer, Message> messagesByID = new HashMap<>();
+        if (!result.messageIDs().isEmpty()) {
+            for (Message message : messageRepository.findAllWithSenderByIDs(result.messageIDs())) {
+                messagesByID.put(message.getMessageID(), message);
+            }
+        }
+        List<Message> messages = new ArrayList<>(result.messageIDs().size());
+        for (Integer messageID : result.messageIDs()) {
+            Message message = messagesByID.get(messageID);
+            if (message != null) {
+                messages.add(message);
+            }
+        }
         
-        log.info("Search returned {} messages for user {} after access control filtering", 
-                filteredMessages.size(), userID);
+        log.info("Search returned {} of {} messages for user {}", messages.size(), result.totalCount(), userID);
         
         return new MessageConnection(
-            filteredMessages,
-            messagePage.getTotalElements(),
-            messagePage.hasNext()
+            messages,
+            result.totalCount(),
+            (long) (page + 1) * size < result.totalCount()
         );
     }
 
@@ -316,33 +459,43 @@ public class MessageServiceImpl implements MessageService {
         userRepository.findById(userID)
             .orElseThrow(() -> new NotFoundException("User not found"));
         
-        return messageRepository.countUnreadByUser(userID);
+        return conversationStateService.getUnreadCount(userID);
     }
 
     /**
      * Helper method to determine and create conversation based on user roles
      */
     private Conversation determineAndCreateConversation(User sender, User recipient) {
+        ConversationParties parties = authorizeConversation(sender, recipient);
+        return getOrCreateConversation(parties.doctorID(), parties.familyID());
+    }
+    
+    /**
+     * Determine the doctor and family of a conversation between two users and verify they may message each other
+     */
+    private ConversationParties authorizeConversation(User sender, User recipient) {
         User doctor;
-        Family family;
+        Integer familyID;
         
         // Determine who is the doctor and who is the family
         if (sender.getRole() == UserRole.BacSi && recipient.getRole() == UserRole.ChuHo) {
             doctor = sender;
-            family = findFamilyByHeadOfFamily(recipient);
+            familyID = findFamilyIDByHeadOfFamily(recipient);
         } else if (sender.getRole() == UserRole.ChuHo && recipient.getRole() == UserRole.BacSi) {
             doctor = recipient;
-            family = findFamilyByHeadOfFamily(sender);
+            familyID = findFamilyIDByHeadOfFamily(sender);
         } else {
             throw new ValidationException("Messages can only be sent between doctors and families");
         }
         
         // Verify doctor-family relationship exists and is active
-        verifyDoctorFamilyRelationship(doctor.getUserID(), family.getFamilyID());
+        verifyDoctorFamilyRelationship(doctor.getUserID(), familyID);
         
-        return getOrCreateConversation(doctor.getUserID(), family.getFamilyID());
+        return new ConversationParties(doctor.getUserID(), familyID);
     }
     
+    private record ConversationParties(Integer doctorID, Integer familyID) {}
+    
     /**
      * Verify that an approved doctor-family relationship exists
      */
@@ -360,26 +513,27 @@ public class MessageServiceImpl implements MessageService {
     }
 
     /**
-     * Helper method to find family by head of family user
+     * Helper method to find the family ID of a head of family user
+     * Served from the family head cache, falling back to the indexed HeadOfFamilyID lookup
      */
-    private Family findFamilyByHeadOfFamily(User user) {
-        return familyRepository.findAll().stream()
-            .filter(f -> f.getHeadOfFamily() != null && 
-                        f.getHeadOfFamily().getUserID().equals(user.getUserID()))
-            .findFirst()
-            .orElseThrow(() -> new NotFoundException("Family not found for user"));
+    private Integer findFamilyIDByHeadOfFamily(User user) {
+        return familyHeadCache.getFamilyID(user.getUserID())
+            .orElseGet(() -> {
+                Family family = familyRepository.findByHeadOfFamily_UserID(user.getUserID());
+                if (family == null) {
+                    throw new NotFoundException("Family not found for user");
+                }
+                familyHeadCache.put(user.getUserID(), family.getFamilyID());
+                return family.getFamilyID();
+            });
     }
 
     /**
      * Helper method to check if a user is a participant in a conversation
+     * Served from the conversation access cache without loading the conversation's doctor or family
      */
-    private boolean isParticipant(User user, Conversation conversation) {
-        if (user.getRole() == UserRole.BacSi) {
-            return conversation.getDoctor().getUserID().equals(user.getUserID());
-        } else if (user.getRole() == UserRole.ChuHo) {
-            return conversation.getFamily().getHeadOfFamily().getUserID().equals(user.getUserID());
-        }
-        return false;
+    private boolean isParticipant(Integer userID, Conversation conversation) {
+        return conversationAccessCache.isParticipant(conversation.getConversationID(), userID);
     }
 
     @Override
@@ -388,19 +542,21 @@ public class MessageServiceImpl implements MessageService {
                 userID, conversationID, isTyping);
         
         // Verify conversation exists
-        Conversation conversation = conversationRepository.findById(conversationID)
-            .orElseThrow(() -> new NotFoundException("Conversation not found"));
-        
-        // Verify user exists and is a participant
-        User user = userRepository.findById(userID)
-            .orElseThrow(() -> new NotFoundException("User not found"));
+        if (!conversationAccessCache.exists(conversationID)) {
+            throw new NotFoundException("Conversation not found");
+        }
         
-        if (!isParticipant(user, conversation)) {
+        // Verify user is a participant
+        if (!conversationAccessCache.isParticipant(conversationID, userID)) {
             log.warn("Unauthorized typing indicator: User {} tried to send typing indicator for conversation {}", 
                     userID, conversationID);
             throw new UnAuthorizedException("You do not have permission to access this conversation");
         }
         
+        // The indicator carries the typing user to subscribers
+        User user = userRepository.findById(userID)
+            .orElseThrow(() -> new NotFoundException("User not found"));
+        
         // Send typing indicator through the service
         typingIndicatorService.sendTypingIndicator(conversationID, user, isTyping);
         
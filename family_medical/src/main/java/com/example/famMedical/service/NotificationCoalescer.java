@@ -0,0 +1,181 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.HeldNotificationDraft;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.config.NotificationCoalescingProperties;
+import com.example.famMedical.dto.NotificationDraft;
+import com.example.famMedical.repository.HeldNotificationDraftRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Notification Coalescer
+ * Sits between the notify* methods and NotificationWriter so that writes and pushes follow distinct changes
+ * rather than raw edit count. Drafts of the configured types are held for one window; at the end of the window
+ * the drafts of each (user, type, entity) key are merged, keeping the latest text and the number of changes, into
+ * the user's unread notification about that entity, or written as a new one.
+ * Digest types are held per user and summed up in one DIGEST notification every digest interval.
+ * Anything else goes to the writer straight away.
+ * Held drafts are stored in held_notification_drafts in the transaction that submits them, so the outbox event
+ * behind them can be completed right away without being lost to a crash. A flush claims them with SKIP LOCKED,
+ * writes them and deletes them in one transaction; if the write fails they stay held for the next flush.
+ */
+@Service
+@Slf4j
+public class NotificationCoalescer {
+
+    static final String DIGEST_TITLE = "Tóm tắt thông báo";
+    static final int FLUSH_BATCH = 500;
+    private static final String WINDOW =
+            "#{T(com.example.famMedical.config.Schedules).millis(@notificationCoalescingProperties.window)}";
+    private static final String DIGEST_INTERVAL =
+            "#{T(com.example.famMedical.config.Schedules).millis(@notificationCoalescingProperties.digestInterval)}";
+
+    private final NotificationWriter notificationWriter;
+    private final HeldNotificationDraftRepository heldNotificationDraftRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final NotificationCoalescingProperties properties;
+
+    public NotificationCoalescer(NotificationWriter notificationWriter,
+                                 HeldNotificationDraftRepository heldNotificationDraftRepository,
+                                 TransactionTemplate transactionTemplate,
+                                 NotificationCoalescingProperties properties) {
+        this.notificationWriter = notificationWriter;
+        this.heldNotificationDraftRepository = heldNotificationDraftRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        log.info("Coalescing {} every {}, digesting {} every {}", properties.getTypes(), properties.getWindow(),
+                properties.getDigestTypes(), properties.getDigestInterval());
+    }
+
+    /**
+     * Hand drafts over for writing, now or once their window or digest interval ends
+     */
+    @Transactional
+    public void submit(List<NotificationDraft> drafts) {
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationDraft> immediate = new ArrayList<>();
+        List<HeldNotificationDraft> held = new ArrayList<>();
+        for (NotificationDraft draft : drafts) {
+            if (properties.getDigestTypes().contains(draft.type())) {
+                held.add(HeldNotificationDraft.of(draft, true, now));
+            } else if (isCoalesced(draft)) {
+                held.add(HeldNotificationDraft.of(draft, false, now));
+            } else {
+                immediate.add(draft);
+            }
+        }
+        if (!held.isEmpty()) {
+            heldNotificationDraftRepository.saveAll(held);
+        }
+        if (!immediate.isEmpty()) {
+            notificationWriter.writeAll(immediate);
+        }
+    }
+
+    /**
+     * Write the drafts held for the current window
+     * Runs even when no type is coalesced any more, so that drafts held before a configuration change still go out
+     */
+    @Scheduled(initialDelayString = WINDOW, fixedRateString = WINDOW)
+    public void flush() {
+        flushHeld(false, NotificationCoalescer::coalesce, notificationWriter::mergeAll, "coalesced notifications");
+    }
+
+    /**
+     * Write one digest per user for the drafts held since the last digest
+     */
+    @Scheduled(initialDelayString = DIGEST_INTERVAL, fixedRateString = DIGEST_INTERVAL)
+    public void flushDigests() {
+        flushHeld(true, NotificationCoalescer::digests, notificationWriter::writeAll, "notification digests");
+    }
+
+    private void flushHeld(boolean digest, UnaryOperator<List<NotificationDraft>> combine,
+                           Consumer<List<NotificationDraft>> write, String what) {
+        Pageable batch = PageRequest.of(0, FLUSH_BATCH);
+        try {
+            while (true) {
+                Integer claimed = transactionTemplate.execute(status -> {
+                    List<HeldNotificationDraft> held = heldNotificationDraftRepository.findClaimable(digest, batch);
+                    if (!held.isEmpty()) {
+                        write.accept(combine.apply(held.stream().map(HeldNotificationDraft::toDraft).toList()));
+                        heldNotificationDraftRepository.deleteAllInBatch(held);
+                    }
+                    return held.size();
+                });
+                if (claimed == null || claimed < FLUSH_BATCH) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to write {}, keeping the drafts for the next flush", what, e);
+        }
+    }
+
+    private boolean isCoalesced(NotificationDraft draft) {
+        return draft.relatedEntityID() != null
+                && properties.getTypes().contains(draft.type())
+                && isPositive(properties.getWindow());
+    }
+
+    private static boolean isPositive(Duration duration) {
+        return !duration.isNegative() && !duration.isZero();
+    }
+
+    // Drafts of the same key merged, in order of their first draft
+    private static List<NotificationDraft> coalesce(List<NotificationDraft> drafts) {
+        Map<CoalescingKey, NotificationDraft> merged = new LinkedHashMap<>();
+        for (NotificationDraft draft : drafts) {
+            merged.merge(CoalescingKey.of(draft), draft, NotificationDraft::merge);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    // One digest per user; a user with drafts on both sides of a batch boundary gets two
+    private static List<NotificationDraft> digests(List<NotificationDraft> drafts) {
+        Map<Integer, List<NotificationDraft>> byUser = new LinkedHashMap<>();
+        for (NotificationDraft draft : drafts) {
+            byUser.computeIfAbsent(draft.userID(), userID -> new ArrayList<>()).add(draft);
+        }
+        return byUser.entrySet().stream()
+                .map(entry -> digest(entry.getKey(), entry.getValue()))
+                .toList();
+    }
+
+    // One line per title with its count, e.g. "Hồ sơ y tế được cập nhật (3)"
+    private static NotificationDraft digest(Integer userID, List<NotificationDraft> drafts) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (NotificationDraft draft : drafts) {
+            counts.merge(draft.title(), draft.occurrences(), Integer::sum);
+        }
+        String message = counts.entrySet().stream()
+                .map(entry -> entry.getKey() + " (" + entry.getValue() + ")")
+                .collect(Collectors.joining("\n"));
+        int occurrences = counts.values().stream().mapToInt(Integer::intValue).sum();
+        return new NotificationDraft(userID, NotificationType.DIGEST, DIGEST_TITLE, message, null, null, occurrences);
+    }
+
+    /**
+     * What makes two drafts the same change
+     */
+    private record CoalescingKey(Integer userID, NotificationType type, String relatedEntityType, Integer relatedEntityID) {
+        static CoalescingKey of(NotificationDraft draft) {
+            return new CoalescingKey(draft.userID(), draft.type(), draft.relatedEntityType(), draft.relatedEntityID());
+        }
+    }
+}
@@ -1,24 +1,31 @@
 package com.example.famMedical.service;
 
+import com.example.famMedical.config.AsyncConfig;
 import com.example.famMedical.dto.events.AppointmentCreatedEvent;
 import com.example.famMedical.dto.events.AppointmentUpdatedEvent;
 import com.example.famMedical.dto.events.DoctorRequestCreatedEvent;
 import com.example.famMedical.dto.events.DoctorRequestStatusChangedEvent;
 import com.example.famMedical.dto.events.MedicalRecordCreatedEvent;
 import com.example.famMedical.dto.events.MedicalRecordUpdatedEvent;
+import com.example.famMedical.dto.events.MessageSnapshot;
 import com.example.famMedical.dto.events.NewMessageEvent;
+import com.example.famMedical.exception.NotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Event listener component that listens to system events and creates notifications
- * Uses @TransactionalEventListener to ensure notifications are only created after
- * the triggering transaction commits successfully
+ * Event listener component that turns system events into notifications and pushes
+ * Events reach it through the outbox: OutboxRelay calls these handlers once the triggering
+ * transaction has committed, and deletes an event when its handler's future completes.
+ * A handler that fails completes its future exceptionally so the relay retries the event after its lease,
+ * unless retrying cannot succeed (see isRetryable).
+ * Each kind of event runs on its own executor (see AsyncConfig), so chat delivery does not queue behind
+ * notification work
  */
 @Component
 @RequiredArgsConstructor
@@ -32,108 +39,114 @@ public class NotificationEventListener {
      * Listen for appointment creation events and create notifications
      * @param event The appointment created event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleAppointmentCreated(AppointmentCreatedEvent event) {
+    @Async(AsyncConfig.APPOINTMENT_EVENTS)
+    public CompletableFuture<Void> handleAppointmentCreated(AppointmentCreatedEvent event) {
         log.info("Handling AppointmentCreatedEvent for appointment ID: {}", 
-                event.getAppointment().getAppointmentID());
+                event.getAppointment().appointmentID());
         
         try {
             notificationService.notifyAppointmentCreated(event.getAppointment());
         } catch (Exception e) {
             log.error("Error creating notification for appointment creation: {}", 
-                    event.getAppointment().getAppointmentID(), e);
+                    event.getAppointment().appointmentID(), e);
+            return failed(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
      * Listen for appointment update events and create notifications
      * @param event The appointment updated event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleAppointmentUpdated(AppointmentUpdatedEvent event) {
+    @Async(AsyncConfig.APPOINTMENT_EVENTS)
+    public CompletableFuture<Void> handleAppointmentUpdated(AppointmentUpdatedEvent event) {
         log.info("Handling AppointmentUpdatedEvent for appointment ID: {}", 
-                event.getAppointment().getAppointmentID());
+                event.getAppointment().appointmentID());
         
         try {
             notificationService.notifyAppointmentUpdated(event.getAppointment());
         } catch (Exception e) {
             log.error("Error creating notification for appointment update: {}", 
-                    event.getAppointment().getAppointmentID(), e);
+                    event.getAppointment().appointmentID(), e);
+            return failed(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
      * Listen for doctor request creation events and create notifications
      * @param event The doctor request created event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleDoctorRequestCreated(DoctorRequestCreatedEvent event) {
+    @Async(AsyncConfig.DOCTOR_REQUEST_EVENTS)
+    public CompletableFuture<Void> handleDoctorRequestCreated(DoctorRequestCreatedEvent event) {
         log.info("Handling DoctorRequestCreatedEvent for request ID: {}", 
-                event.getDoctorRequest().getRequestID());
+                event.getDoctorRequest().requestID());
         
         try {
             notificationService.notifyDoctorRequestCreated(event.getDoctorRequest());
         } catch (Exception e) {
             log.error("Error creating notification for doctor request creation: {}", 
-                    event.getDoctorRequest().getRequestID(), e);
+                    event.getDoctorRequest().requestID(), e);
+            return failed(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
      * Listen for doctor request status change events and create notifications
      * @param event The doctor request status changed event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleDoctorRequestStatusChanged(DoctorRequestStatusChangedEvent event) {
+    @Async(AsyncConfig.DOCTOR_REQUEST_EVENTS)
+    public CompletableFuture<Void> handleDoctorRequestStatusChanged(DoctorRequestStatusChangedEvent event) {
         log.info("Handling DoctorRequestStatusChangedEvent for request ID: {}", 
-                event.getDoctorRequest().getRequestID());
+                event.getDoctorRequest().requestID());
         
         try {
             notificationService.notifyDoctorRequestStatusChanged(event.getDoctorRequest());
         } catch (Exception e) {
             log.error("Error creating notification for doctor request status change: {}", 
-                    event.getDoctorRequest().getRequestID(), e);
+                    event.getDoctorRequest().requestID(), e);
+            return failed(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
      * Listen for medical record creation events and create notifications
      * @param event The medical record created event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleMedicalRecordCreated(MedicalRecordCreatedEvent event) {
+    @Async(AsyncConfig.MEDICAL_RECORD_EVENTS)
+    public CompletableFuture<Void> handleMedicalRecordCreated(MedicalRecordCreatedEvent event) {
         log.info("Handling MedicalRecordCreatedEvent for record ID: {}", 
-                event.getMedicalRecord().getRecordID());
+                event.getMedicalRecord().recordID());
         
         try {
             notificationService.notifyMedicalRecordCreated(event.getMedicalRecord());
         } catch (Exception e) {
             log.error("Error creating notification for medical record creation: {}", 
-                    event.getMedicalRecord().getRecordID(), e);
+                    event.getMedicalRecord().recordID(), e);
+            return failed(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
      * Listen for medical record update events and create notifications
      * @param event The medical record updated event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleMedicalRecordUpdated(MedicalRecordUpdatedEvent event) {
+    @Async(AsyncConfig.MEDICAL_RECORD_EVENTS)
+    public CompletableFuture<Void> handleMedicalRecordUpdated(MedicalRecordUpdatedEvent event) {
         log.info("Handling MedicalRecordUpdatedEvent for record ID: {}", 
-                event.getMedicalRecord().getRecordID());
+                event.getMedicalRecord().recordID());
         
         try {
             notificationService.notifyMedicalRecordUpdated(event.getMedicalRecord());
         } catch (Exception e) {
             log.error("Error creating notification for medical record update: {}", 
-                    event.getMedicalRecord().getRecordID(), e);
+                    event.getMedicalRecord().recordID(), e);
+            return failed(e);
         }
+        return CompletableFuture.completedFuture(null);
     }
     
     /**
@@ -145,27 +158,41 @@ public class NotificationEventListener {
      * 
      * @param event The new message event
      */
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    @Async
-    public void handleNewMessage(NewMessageEvent event) {
-        log.info("Handling NewMessageEvent for message ID: {}", 
-                event.getMessage().getMessageID());
+    @Async(AsyncConfig.MESSAGE_EVENTS)
+    public CompletableFuture<Void> handleNewMessage(NewMessageEvent event) {
+        MessageSnapshot snapshot = event.getSnapshot();
+        log.info("Handling NewMessageEvent for message ID: {}", snapshot.messageID());
         
         try {
             // Publish message to WebSocket subscribers (NO notification created)
-            log.info("Publishing message {} to WebSocket subscribers", 
-                    event.getMessage().getMessageID());
-            messagePublisher.publishMessage(event.getMessage());
+            // Built and routed from the snapshot, without loading the message or its participants again
+            log.info("Publishing message {} to WebSocket subscribers", snapshot.messageID());
+            messagePublisher.publishMessage(snapshot.toMessage(), snapshot.recipientIDs());
             
             // Publish conversation update
-            if (event.getMessage().getConversation() != null) {
-                log.info("Publishing conversation {} update to WebSocket subscribers", 
-                        event.getMessage().getConversation().getConversationID());
-                messagePublisher.publishConversationUpdate(event.getMessage().getConversation());
-            }
+            log.info("Publishing conversation {} update to WebSocket subscribers", snapshot.conversationID());
+            messagePublisher.publishConversationUpdate(snapshot.toConversation(), snapshot.participantIDs());
         } catch (Exception e) {
-            log.error("Error handling new message event for message: {}", 
-                    event.getMessage().getMessageID(), e);
+            log.error("Error handling new message event for message: {}", snapshot.messageID(), e);
+            return failed(e);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private static CompletableFuture<Void> failed(Exception e) {
+        if (!isRetryable(e)) {
+            log.warn("Not retrying event: {}", e.getMessage());
+            return CompletableFuture.completedFuture(null);
         }
+        return CompletableFuture.failedFuture(e);
+    }
+
+    /**
+     * Whether a failed event could succeed later; a missing or invalid entity fails the same way every time
+     */
+    static boolean isRetryable(Exception e) {
+        return !(e instanceof NotFoundException
+                || e instanceof IllegalArgumentException
+                || e instanceof DataIntegrityViolationException);
     }
 }
@@ -2,55 +2,110 @@ package com.example.famMedical.service;
 
 import com.example.famMedical.Entity.Notification;
 import com.example.famMedical.Entity.User;
+import com.example.famMedical.config.AsyncConfig;
+import com.example.famMedical.dto.SubscriptionStats;
+import com.example.famMedical.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Notification Publisher Service
- * Manages real-time notification streaming using Reactor Sinks
- * Publishes notifications to subscribed clients
+ * Manages real-time notification streaming using a per-user subscription hub
+ * Publishes notifications only to the subscribers of the owning user
+ * Subscribers connected to other nodes are reached through the EventBus, which carries only the notification ID
+ * and its user; a node loads the notification only if that user is watched there, on the remote delivery executor
  */
 @Service
+@Slf4j
 public class NotificationPublisher {
 
-    // Sink for broadcasting notifications to all subscribers
-    private final Sinks.Many<Notification> notificationSink = 
-        Sinks.many().multicast().onBackpressureBuffer();
+    static final String NOTIFICATION_TOPIC = "notificationReceived";
+
+    // Maximum number of undelivered notifications buffered for one subscriber
+    static final int SUBSCRIBER_BUFFER_SIZE = 256;
+
+    // Notifications kept per user for catch-up after a reconnect
+    static final int REPLAY_SIZE = 100;
+    private static final Duration REPLAY_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    // Notification subscribers keyed by user ID; a client that falls behind is told to reload and resubscribe
+    private final SubscriptionHub<Integer, Notification> notificationHub =
+        new SubscriptionHub<>("notificationReceived", SUBSCRIBER_BUFFER_SIZE, SubscriptionHub.OverflowPolicy.DISCONNECT,
+            new SubscriptionHub.Replay<>(REPLAY_SIZE, REPLAY_IDLE_TIMEOUT, Notification::setSequence));
+
+    private final EventBus eventBus;
+    private final NotificationRepository notificationRepository;
+    private final Executor remoteDelivery;
+
+    public NotificationPublisher(EventBus eventBus, NotificationRepository notificationRepository,
+                                 @Qualifier(AsyncConfig.REMOTE_DELIVERY) Executor remoteDelivery) {
+        this.eventBus = eventBus;
+        this.notificationRepository = notificationRepository;
+        this.remoteDelivery = remoteDelivery;
+        eventBus.subscribe(NOTIFICATION_TOPIC, NotificationEvent.class, this::deliverRemoteNotification);
+    }
 
     /**
-     * Publish a new notification to all subscribers
+     * Publish a new notification to the subscribers of its user
      * @param notification The notification to publish
      */
     public void publishNotification(Notification notification) {
-        Sinks.EmitResult result = notificationSink.tryEmitNext(notification);
-        if (result.isFailure()) {
-            System.err.println("Failed to publish notification: " + result);
+        if (notification == null || notification.getUser() == null) {
+            log.warn("Cannot publish notification without user");
+            return;
+        }
+
+        Integer userID = notification.getUser().getUserID();
+        notificationHub.publish(userID, notification);
+        if (notification.getNotificationID() != null) {
+            eventBus.publish(NOTIFICATION_TOPIC, new NotificationEvent(notification.getNotificationID(), userID));
         }
     }
 
     /**
-     * Get notification stream filtered for a specific user
-     * Only returns notifications that belong to the specified user
-     * @param user The user to filter notifications for
+     * Get notification stream for a specific user
+     * Only receives notifications that belong to the specified user
+     * @param user The user to stream notifications for
      * @return Flux of notifications for the user
      */
     public Flux<Notification> getNotificationStream(User user) {
-        return notificationSink.asFlux()
-            .filter(notification -> isNotificationForUser(notification, user));
+        return getNotificationStream(user, null);
     }
 
     /**
-     * Check if a notification belongs to a specific user
-     * @param notification The notification to check
-     * @param user The user to check against
-     * @return true if the notification belongs to the user
+     * Get notification stream for a specific user, starting with the notifications missed since a sequence number
+     * @param user The user to stream notifications for
+     * @param sinceSequence Sequence of the last notification the client received, or null for new ones only
+     * @return Flux of the missed notifications followed by new notifications for the user
      */
-    private boolean isNotificationForUser(Notification notification, User user) {
-        if (notification == null || user == null || notification.getUser() == null) {
-            return false;
+    public Flux<Notification> getNotificationStream(User user, Long sinceSequence) {
+        return notificationHub.subscribe(user.getUserID(), sinceSequence);
+    }
+
+    /**
+     * Subscribers and delivery counters of the notification stream
+     */
+    public SubscriptionStats getStats() {
+        return notificationHub.stats();
+    }
+
+    private void deliverRemoteNotification(NotificationEvent event) {
+        if (notificationHub.watchedKeys(List.of(event.userID())).isEmpty()) {
+            return;
         }
-        
-        return notification.getUser().getUserID().equals(user.getUserID());
+        remoteDelivery.execute(() -> notificationRepository.findForDelivery(event.notificationID()).ifPresentOrElse(
+                notification -> notificationHub.publish(event.userID(), notification),
+                () -> log.warn("Notification {} published by another node was not found", event.notificationID())));
     }
+
+    /**
+     * A notification created on another node for a user
+     */
+    record NotificationEvent(Long notificationID, Integer userID) {}
 }
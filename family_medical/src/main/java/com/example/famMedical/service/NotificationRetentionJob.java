@@ -0,0 +1,171 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.config.NotificationRetentionProperties;
+import com.example.famMedical.dto.RetentionStats;
+import com.example.famMedical.repository.ArchivedNotificationRepository;
+import com.example.famMedical.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Notification Retention Job
+ * Keeps the notifications table bounded: every interval, read notifications older than the age configured for
+ * their type are copied into notification_archive and deleted. Each batch walks the primary key from where the
+ * previous one stopped and archives and deletes at most batchSize rows in its own short transaction, so no lock
+ * is held for long and the unread rows users page through are never touched. A batch locks its rows with
+ * SKIP LOCKED, so nodes running the job at the same time never archive the same notification.
+ */
+@Service
+@Slf4j
+public class NotificationRetentionJob {
+
+    private static final String INTERVAL =
+            "#{T(com.example.famMedical.config.Schedules).millis(@notificationRetentionProperties.interval)}";
+
+    private final NotificationRepository notificationRepository;
+    private final ArchivedNotificationRepository archivedNotificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final NotificationRetentionProperties properties;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder archived = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunArchived;
+    private volatile long lastRunMillis;
+
+    public NotificationRetentionJob(NotificationRepository notificationRepository,
+                                    ArchivedNotificationRepository archivedNotificationRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    NotificationRetentionProperties properties) {
+        this.notificationRepository = notificationRepository;
+        this.archivedNotificationRepository = archivedNotificationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+
+        Duration interval = properties.getInterval();
+        if (!interval.isZero() && !interval.isNegative()) {
+            log.info("Archiving read notifications every {} (default age {}, per type {})",
+                    interval, properties.getDefaultAge(), properties.getAges());
+        }
+    }
+
+    /**
+     * Archive every read notification past the age of its type
+     * @return Number of notifications archived, or 0 when a run is already in progress
+     */
+    public long run() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Notification retention already running, skipping");
+            return 0;
+        }
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        long total = 0;
+        try {
+            for (NotificationType type : NotificationType.values()) {
+                Duration age = properties.ageOf(type);
+                if (age.isZero() || age.isNegative()) {
+                    continue;
+                }
+                total += archive(type, now.minus(age), now);
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+            return total;
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            runs.increment();
+            lastRunAt = now;
+            lastRunArchived = total;
+            lastRunMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            running.set(false);
+            if (total > 0) {
+                log.info("Notification retention archived {} notifications in {} ms", total, lastRunMillis);
+            }
+        }
+    }
+
+    public RetentionStats stats() {
+        return new RetentionStats(runs.sum(), archived.sum(), batches.sum(), failures.sum(),
+                lastRunAt, lastRunArchived, lastRunMillis, running.get());
+    }
+
+    private long archive(NotificationType type, LocalDateTime cutoff, LocalDateTime archivedAt) {
+        Pageable batch = PageRequest.of(0, properties.getBatchSize());
+        long afterID = 0;
+        long count = 0;
+        while (true) {
+            long from = afterID;
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> expired = notificationRepository.claimExpired(type, cutoff, from, batch).stream()
+                        .map(Notification::getNotificationID)
+                        .toList();
+                if (!expired.isEmpty()) {
+                    archivedNotificationRepository.archive(expired, archivedAt);
+                    notificationRepository.deleteAllByIdInBatch(expired);
+                }
+                return expired;
+            });
+            if (ids == null || ids.isEmpty()) {
+                break;
+            }
+
+            count += ids.size();
+            archived.add(ids.size());
+            batches.increment();
+            afterID = ids.get(ids.size() - 1);
+            log.debug("Archived {} {} notifications up to ID {}", ids.size(), type, afterID);
+            if (ids.size() < properties.getBatchSize() || !pause()) {
+                break;
+            }
+        }
+        if (count > 0) {
+            log.info("Archived {} read {} notifications created before {}", count, type, cutoff);
+        }
+        return count;
+    }
+
+    private boolean pause() {
+        long millis = properties.getBatchPause().toMillis();
+        if (millis <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            // Shutting down; the rest is archived on the next start
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // With a fixed delay a slow run is never overlapped by the next one
+    @Scheduled(initialDelayString = INTERVAL, fixedDelayString = INTERVAL)
+    void runSafely() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            log.error("Notification retention run failed", e);
+        }
+    }
+}
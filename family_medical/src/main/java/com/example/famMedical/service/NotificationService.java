@@ -1,12 +1,12 @@
 package com.example.famMedical.service;
 
-import com.example.famMedical.Entity.Appointment;
-import com.example.famMedical.Entity.DoctorRequest;
-import com.example.famMedical.Entity.MedicalRecord;
-import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.Notification;
 import com.example.famMedical.Entity.NotificationType;
 import com.example.famMedical.dto.NotificationConnection;
+import com.example.famMedical.dto.events.AppointmentSnapshot;
+import com.example.famMedical.dto.events.DoctorRequestSnapshot;
+import com.example.famMedical.dto.events.MedicalRecordSnapshot;
+import com.example.famMedical.dto.events.MessageSnapshot;
 
 public interface NotificationService {
     
@@ -47,6 +47,16 @@ public interface NotificationService {
      */
     NotificationConnection getUserNotifications(Integer userID, int page, int size);
     
+    /**
+     * Get notifications for a user by keyset cursor, newest first
+     * totalCount is left null and resolved only when requested
+     * @param userID The ID of the user
+     * @param after Cursor returned as endCursor of the previous page, or null for the newest page
+     * @param size The page size
+     * @return NotificationConnection with notifications and the cursor of the next page
+     */
+    NotificationConnection getUserNotificationsByCursor(Integer userID, String after, int size);
+    
     /**
      * Get the count of unread notifications for a user
      * @param userID The ID of the user
@@ -54,47 +64,47 @@ public interface NotificationService {
      */
     int getUnreadNotificationCount(Integer userID);
     
-    // Event-triggered notification creators
+    // Event-triggered notification creators, working only from the snapshots the events carry
     
     /**
      * Create notification when an appointment is created
      * @param appointment The created appointment
      */
-    void notifyAppointmentCreated(Appointment appointment);
+    void notifyAppointmentCreated(AppointmentSnapshot appointment);
     
     /**
      * Create notification when an appointment is updated
      * @param appointment The updated appointment
      */
-    void notifyAppointmentUpdated(Appointment appointment);
+    void notifyAppointmentUpdated(AppointmentSnapshot appointment);
     
     /**
      * Create notification when a doctor request is created
      * @param request The created doctor request
      */
-    void notifyDoctorRequestCreated(DoctorRequest request);
+    void notifyDoctorRequestCreated(DoctorRequestSnapshot request);
     
     /**
      * Create notification when a doctor request status changes
      * @param request The doctor request with updated status
      */
-    void notifyDoctorRequestStatusChanged(DoctorRequest request);
+    void notifyDoctorRequestStatusChanged(DoctorRequestSnapshot request);
     
     /**
      * Create notification when a medical record is created
      * @param record The created medical record
      */
-    void notifyMedicalRecordCreated(MedicalRecord record);
+    void notifyMedicalRecordCreated(MedicalRecordSnapshot record);
     
     /**
      * Create notification when a medical record is updated
      * @param record The updated medical record
      */
-    void notifyMedicalRecordUpdated(MedicalRecord record);
+    void notifyMedicalRecordUpdated(MedicalRecordSnapshot record);
     
     /**
      * Create notification when a new message is received
      * @param message The received message
      */
-    void notifyNewMessage(Message message);
+    void notifyNewMessage(MessageSnapshot message);
 }
@@ -1,18 +1,17 @@
 package com.example.famMedical.service;
 
-import com.example.famMedical.Entity.Appointment;
-import com.example.famMedical.Entity.DoctorRequest;
-import com.example.famMedical.Entity.MedicalRecord;
-import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.Notification;
 import com.example.famMedical.Entity.NotificationType;
-import com.example.famMedical.Entity.User;
 import com.example.famMedical.dto.NotificationConnection;
+import com.example.famMedical.dto.NotificationCursor;
+import com.example.famMedical.dto.NotificationDraft;
+import com.example.famMedical.dto.events.AppointmentSnapshot;
+import com.example.famMedical.dto.events.DoctorRequestSnapshot;
+import com.example.famMedical.dto.events.MedicalRecordSnapshot;
+import com.example.famMedical.dto.events.MessageSnapshot;
 import com.example.famMedical.exception.NotFoundException;
 import com.example.famMedical.exception.UnAuthorizedException;
 import com.example.famMedical.repository.NotificationRepository;
-import com.example.famMedical.repository.UserRepository;
-import com.example.famMedical.repository.DoctorRequestRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -24,6 +23,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -31,9 +32,9 @@ import java.time.format.DateTimeFormatter;
 public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final UserRepository userRepository;
-    private final NotificationPublisher notificationPublisher;
-    private final DoctorRequestRepository doctorRequestRepository;
+    private final NotificationWriter notificationWriter;
+    private final NotificationCoalescer notificationCoalescer;
+    private final UnreadNotificationCounter unreadNotificationCounter;
     
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
@@ -44,27 +45,14 @@ public class NotificationServiceImpl implements NotificationService {
                                           String relatedEntityType, Integer relatedEntityID) {
         log.info("Creating notification for user {} with type {}", userID, type);
         
-        User user = userRepository.findById(userID)
-                .orElseThrow(() -> new NotFoundException("User not found with ID: " + userID));
-        
-        Notification notification = Notification.builder()
-                .user(user)
-                .type(type)
-                .title(title)
-                .message(message)
-                .relatedEntityType(relatedEntityType)
-                .relatedEntityID(relatedEntityID)
-                .isRead(false)
-                .createdAt(LocalDateTime.now())
-                .build();
-        
-        Notification savedNotification = notificationRepository.save(notification);
-        log.info("Notification created with ID: {}", savedNotification.getNotificationID());
-        
-        // Publish notification to subscribers
-        notificationPublisher.publishNotification(savedNotification);
-        log.debug("Notification {} published to subscribers", savedNotification.getNotificationID());
+        List<Notification> written = notificationWriter.writeAll(List.of(
+                new NotificationDraft(userID, type, title, message, relatedEntityType, relatedEntityID)));
+        if (written.isEmpty()) {
+            throw new NotFoundException("User not found with ID: " + userID);
+        }
         
+        Notification savedNotification = written.get(0);
+        log.info("Notification created with ID: {}", savedNotification.getNotificationID());
         return savedNotification;
     }
 
@@ -87,6 +75,7 @@ public class NotificationServiceImpl implements NotificationService {
             notification.setIsRead(true);
             notification.setReadAt(LocalDateTime.now());
             notification = notificationRepository.save(notification);
+            unreadNotificationCounter.read(userID);
             log.info("Notification {} marked as read", notificationID);
         }
         
@@ -99,6 +88,7 @@ public class NotificationServiceImpl implements NotificationService {
         log.info("Marking all notifications as read for user {}", userID);
         
         int updatedCount = notificationRepository.markAllAsReadByUser(userID, LocalDateTime.now());
+        unreadNotificationCounter.allRead(userID);
         log.info("Marked {} notifications as read for user {}", updatedCount, userID);
     }
 
@@ -122,37 +112,68 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     @Transactional(readOnly = true)
+    public NotificationConnection getUserNotificationsByCursor(Integer userID, String after, int size) {
+        log.info("Fetching notifications for user {} - after: {}, size: {}", userID, after, size);
+        
+        // Fetch one extra row to know whether another page exists without counting
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Notification> notifications;
+        if (after != null) {
+            NotificationCursor cursor = NotificationCursor.decode(after);
+            notifications = notificationRepository.findBeforeCursor(
+                    userID, cursor.getCreatedAt(), cursor.getNotificationID(), limit);
+        } else {
+            notifications = notificationRepository.findLatestByUserID(userID, limit);
+        }
+        
+        boolean hasMore = notifications.size() > size;
+        if (hasMore) {
+            notifications = new ArrayList<>(notifications.subList(0, size));
+        }
+        
+        NotificationConnection connection = new NotificationConnection();
+        connection.setNotifications(notifications);
+        connection.setHasMore(hasMore);
+        connection.setUserID(userID);
+        if (!notifications.isEmpty()) {
+            connection.setEndCursor(NotificationCursor.of(notifications.get(notifications.size() - 1)).encode());
+        }
+        return connection;
+    }
+
+    @Override
     public int getUnreadNotificationCount(Integer userID) {
-        log.info("Fetching unread notification count for user {}", userID);
+        log.debug("Fetching unread notification count for user {}", userID);
         
-        int count = notificationRepository.countUnreadByUser(userID);
-        log.info("User {} has {} unread notifications", userID, count);
+        // Served from memory: no transaction and, once the count is cached, no query
+        int count = unreadNotificationCounter.get(userID);
+        log.debug("User {} has {} unread notifications", userID, count);
         
         return count;
     }
 
     @Override
     @Transactional
-    public void notifyAppointmentCreated(Appointment appointment) {
-        log.info("Creating notifications for appointment creation: {}", appointment.getAppointmentID());
+    public void notifyAppointmentCreated(AppointmentSnapshot appointment) {
+        log.info("Creating notifications for appointment creation: {}", appointment.appointmentID());
         
         // CHỈ gửi notification cho Family (Doctor tự tạo appointment nên không cần notification)
         // Notify the family head
-        if (appointment.getFamily().getHeadOfFamily() != null) {
+        if (appointment.familyHeadID() != null) {
             String familyTitle = "Cuộc hẹn mới được tạo";
             String familyMessage = String.format(
                     "Cuộc hẹn với bác sĩ %s đã được tạo vào %s",
-                    appointment.getDoctor().getFullName(),
-                    appointment.getAppointmentDateTime().format(DATE_TIME_FORMATTER)
+                    appointment.doctorName(),
+                    appointment.appointmentDateTime().format(DATE_TIME_FORMATTER)
             );
-            createNotification(
-                    appointment.getFamily().getHeadOfFamily().getUserID(),
+            notificationCoalescer.submit(List.of(new NotificationDraft(
+                    appointment.familyHeadID(),
                     NotificationType.APPOINTMENT_CREATED,
                     familyTitle,
                     familyMessage,
                     "Appointment",
-                    appointment.getAppointmentID()
-            );
+                    appointment.appointmentID()
+            )));
             log.info("Appointment creation notification sent to family");
         } else {
             log.warn("Cannot send notification - family has no head of family");
@@ -161,89 +182,89 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     @Transactional
-    public void notifyAppointmentUpdated(Appointment appointment) {
-        log.info("Creating notifications for appointment update: {}", appointment.getAppointmentID());
+    public void notifyAppointmentUpdated(AppointmentSnapshot appointment) {
+        log.info("Creating notifications for appointment update: {}", appointment.appointmentID());
+        
+        // Both notifications are submitted together
+        List<NotificationDraft> drafts = new ArrayList<>(2);
         
         // Notify the doctor
         String doctorTitle = "Cuộc hẹn được cập nhật";
         String doctorMessage = String.format(
                 "Cuộc hẹn với %s vào %s đã được cập nhật",
-                appointment.getFamily().getFamilyName(),
-                appointment.getAppointmentDateTime().format(DATE_TIME_FORMATTER)
+                appointment.familyName(),
+                appointment.appointmentDateTime().format(DATE_TIME_FORMATTER)
         );
-        createNotification(
-                appointment.getDoctor().getUserID(),
+        drafts.add(new NotificationDraft(
+                appointment.doctorID(),
                 NotificationType.APPOINTMENT_UPDATED,
                 doctorTitle,
                 doctorMessage,
                 "Appointment",
-                appointment.getAppointmentID()
-        );
+                appointment.appointmentID()
+        ));
         
         // Notify the family head
-        if (appointment.getFamily().getHeadOfFamily() != null) {
+        if (appointment.familyHeadID() != null) {
             String familyTitle = "Cuộc hẹn được cập nhật";
             String familyMessage = String.format(
                     "Cuộc hẹn với bác sĩ %s vào %s đã được cập nhật",
-                    appointment.getDoctor().getFullName(),
-                    appointment.getAppointmentDateTime().format(DATE_TIME_FORMATTER)
+                    appointment.doctorName(),
+                    appointment.appointmentDateTime().format(DATE_TIME_FORMATTER)
             );
-            createNotification(
-                    appointment.getFamily().getHeadOfFamily().getUserID(),
+            drafts.add(new NotificationDraft(
+                    appointment.familyHeadID(),
                     NotificationType.APPOINTMENT_UPDATED,
                     familyTitle,
                     familyMessage,
                     "Appointment",
-                    appointment.getAppointmentID()
-            );
+                    appointment.appointmentID()
+            ));
         }
         
+        notificationCoalescer.submit(drafts);
         log.info("Appointment update notifications sent");
     }
 
     @Override
     @Transactional
-    public void notifyDoctorRequestCreated(DoctorRequest request) {
-        log.info("Creating notification for doctor request creation: {}", request.getRequestID());
-        
-        // Reload entity to ensure all relationships are loaded (entity may be detached after transaction commit)
-        DoctorRequest reloadedRequest = doctorRequestRepository.findByIdWithRelations(request.getRequestID())
-                .orElseThrow(() -> new NotFoundException("Doctor request not found with ID: " + request.getRequestID()));
+    public void notifyDoctorRequestCreated(DoctorRequestSnapshot request) {
+        log.info("Creating notification for doctor request creation: {}", request.requestID());
         
         String title = "Yêu cầu phân công mới";
         String message = String.format(
                 "Gia đình %s đã gửi yêu cầu phân công bác sĩ",
-                reloadedRequest.getFamily().getFamilyName()
+                request.familyName()
         );
         
         // Notify the doctor
-        createNotification(
-                reloadedRequest.getDoctor().getUserID(),
+        notificationCoalescer.submit(List.of(new NotificationDraft(
+                request.doctorID(),
                 NotificationType.DOCTOR_REQUEST_CREATED,
                 title,
                 message,
                 "DoctorRequest",
-                reloadedRequest.getRequestID()
-        );
+                request.requestID()
+        )));
         
         log.info("Doctor request creation notification sent to doctor");
     }
 
     @Override
     @Transactional
-    public void notifyDoctorRequestStatusChanged(DoctorRequest request) {
-        log.info("Creating notification for doctor request status change: {}", request.getRequestID());
+    public void notifyDoctorRequestStatusChanged(DoctorRequestSnapshot request) {
+        log.info("Creating notification for doctor request status change: {}", request.requestID());
         
         String title;
         String message;
         NotificationType type;
         
-        switch (request.getStatus()) {
+        switch (request.status()) {
             case ACCEPTED:
                 title = "Yêu cầu bác sĩ được chấp nhận";
                 message = String.format(
                         "Bác sĩ %s đã chấp nhận yêu cầu của bạn",
-                        request.getDoctor().getFullName()
+                        request.doctorName()
                 );
                 type = NotificationType.DOCTOR_REQUEST_ACCEPTED;
                 break;
@@ -251,25 +272,25 @@ public class NotificationServiceImpl implements NotificationService {
                 title = "Yêu cầu bác sĩ bị từ chối";
                 message = String.format(
                         "Bác sĩ %s đã từ chối yêu cầu của bạn",
-                        request.getDoctor().getFullName()
+                        request.doctorName()
                 );
                 type = NotificationType.DOCTOR_REQUEST_REJECTED;
                 break;
             default:
-                log.warn("Unexpected doctor request status: {}", request.getStatus());
+                log.warn("Unexpected doctor request status: {}", request.status());
                 return;
         }
         
         // Notify the family head
-        if (request.getFamily().getHeadOfFamily() != null) {
-            createNotification(
-                    request.getFamily().getHeadOfFamily().getUserID(),
+        if (request.familyHeadID() != null) {
+            notificationCoalescer.submit(List.of(new NotificationDraft(
+                    request.familyHeadID(),
                     type,
                     title,
                     message,
                     "DoctorRequest",
-                    request.getRequestID()
-            );
+                    request.requestID()
+            )));
             log.info("Doctor request status change notification sent: {}", title);
         } else {
             log.warn("Cannot send notification - family has no head of family");
@@ -278,25 +299,25 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     @Transactional
-    public void notifyMedicalRecordCreated(MedicalRecord record) {
-        log.info("Creating notification for medical record creation: {}", record.getRecordID());
+    public void notifyMedicalRecordCreated(MedicalRecordSnapshot record) {
+        log.info("Creating notification for medical record creation: {}", record.recordID());
         
         // Notify the family head
         String title = "Hồ sơ y tế mới";
         String message = String.format(
                 "Hồ sơ y tế mới cho %s đã được tạo",
-                record.getMember().getFullName()
+                record.memberName()
         );
         
-        if (record.getMember().getFamily().getHeadOfFamily() != null) {
-            createNotification(
-                    record.getMember().getFamily().getHeadOfFamily().getUserID(),
+        if (record.familyHeadID() != null) {
+            notificationCoalescer.submit(List.of(new NotificationDraft(
+                    record.familyHeadID(),
                     NotificationType.MEDICAL_RECORD_CREATED,
                     title,
                     message,
                     "MedicalRecord",
-                    record.getRecordID()
-            );
+                    record.recordID()
+            )));
             log.info("Medical record creation notification sent");
         } else {
             log.warn("Cannot send notification - family has no head of family");
@@ -305,24 +326,24 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     @Transactional
-    public void notifyMedicalRecordUpdated(MedicalRecord record) {
-        log.info("Creating notification for medical record update: {}", record.getRecordID());
+    public void notifyMedicalRecordUpdated(MedicalRecordSnapshot record) {
+        log.info("Creating notification for medical record update: {}", record.recordID());
         
         String title = "Hồ sơ y tế được cập nhật";
         String message = String.format(
                 "Hồ sơ y tế của %s đã được cập nhật",
-                record.getMember().getFullName()
+                record.memberName()
         );
         
-        if (record.getMember().getFamily().getHeadOfFamily() != null) {
-            createNotification(
-                    record.getMember().getFamily().getHeadOfFamily().getUserID(),
+        if (record.familyHeadID() != null) {
+            notificationCoalescer.submit(List.of(new NotificationDraft(
+                    record.familyHeadID(),
                     NotificationType.MEDICAL_RECORD_UPDATED,
                     title,
                     message,
                     "MedicalRecord",
-                    record.getRecordID()
-            );
+                    record.recordID()
+            )));
             log.info("Medical record update notification sent");
         } else {
             log.warn("Cannot send notification - family has no head of family");
@@ -331,42 +352,33 @@ public class NotificationServiceImpl implements NotificationService {
 
     @Override
     @Transactional
-    public void notifyNewMessage(Message message) {
-        log.info("Creating notification for new message: {}", message.getMessageID());
-        
-        // Determine the recipient (the user who is not the sender)
-        Integer recipientID;
-        String senderName = message.getSender().getFullName();
-        
-        // Get the conversation to determine the recipient
-        if (message.getConversation().getDoctor().getUserID().equals(message.getSender().getUserID())) {
-            // Sender is the doctor, notify the family head
-            if (message.getConversation().getFamily().getHeadOfFamily() != null) {
-                recipientID = message.getConversation().getFamily().getHeadOfFamily().getUserID();
-            } else {
-                log.warn("Cannot send notification - family has no head of family");
-                return;
-            }
-        } else {
-            // Sender is from family, notify the doctor
-            recipientID = message.getConversation().getDoctor().getUserID();
+    public void notifyNewMessage(MessageSnapshot message) {
+        log.info("Creating notification for new message: {}", message.messageID());
+        
+        // The recipient is the participant who is not the sender
+        List<Integer> recipientIDs = message.recipientIDs();
+        if (recipientIDs.isEmpty()) {
+            log.warn("Cannot send notification - conversation {} has no other participant", message.conversationID());
+            return;
         }
         
         String title = "Tin nhắn mới";
         String messageText = String.format(
                 "Bạn có tin nhắn mới từ %s",
-                senderName
-        );
-        
-        createNotification(
-                recipientID,
-                NotificationType.NEW_MESSAGE,
-                title,
-                messageText,
-                "Message",
-                message.getMessageID()
+                message.senderName()
         );
         
-        log.info("New message notification sent to user {}", recipientID);
+        List<NotificationDraft> drafts = recipientIDs.stream()
+                .map(recipientID -> new NotificationDraft(
+                        recipientID,
+                        NotificationType.NEW_MESSAGE,
+                        title,
+                        messageText,
+                        "Message",
+                        message.messageID()
+                ))
+                .toList();
+        notificationCoalescer.submit(drafts);
+        log.info("New message notification sent to users {}", recipientIDs);
     }
-}
+}
\ No newline at end of file
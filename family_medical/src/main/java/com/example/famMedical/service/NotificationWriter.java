@@ -0,0 +1,196 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.dto.NotificationDraft;
+import com.example.famMedical.repository.NotificationRepository;
+import com.example.famMedical.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Notification Writer
+ * Writes notifications a batch at a time: the recipients are loaded with one query, IDs come from a pooled
+ * generator so Hibernate sends the inserts as JDBC batches, and subscribers are told only after the
+ * transaction commits, so nobody (on this node or another) is sent a notification that is not in the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationWriter {
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final NotificationPublisher notificationPublisher;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+
+    /**
+     * Write the drafts, skipping those whose recipient does not exist
+     * @return the written notifications, in draft order
+     */
+    @Transactional
+    public List<Notification> writeAll(List<NotificationDraft> drafts) {
+        List<Notification> saved = insert(drafts);
+        publishAfterCommit(saved);
+        return saved;
+    }
+
+    /**
+     * Merge each draft into the recipient's unread notification about the same entity, if there is one,
+     * and write the others as new notifications.
+     * A merged notification takes the draft's title and message and adds its occurrences to updateCount.
+     * The unread notifications of all drafts are loaded with one query
+     * @return the merged notifications followed by the new ones
+     */
+    @Transactional
+    public List<Notification> mergeAll(List<NotificationDraft> drafts) {
+        Map<EntityKey, Notification> unread = findUnread(drafts);
+        List<Notification> merged = new ArrayList<>();
+        List<NotificationDraft> fresh = new ArrayList<>();
+        for (NotificationDraft draft : drafts) {
+            Notification notification = unread.get(EntityKey.of(draft));
+            if (notification == null) {
+                fresh.add(draft);
+                continue;
+            }
+            // Saved by dirty checking at commit, batched with the inserts; still one unread notification
+            notification.setTitle(draft.title());
+            notification.setMessage(draft.message());
+            notification.setUpdateCount(notification.getUpdateCount() + draft.occurrences());
+            merged.add(notification);
+        }
+
+        List<Notification> written = new ArrayList<>(merged);
+        written.addAll(insert(fresh));
+        if (!merged.isEmpty()) {
+            log.info("Merged {} notification updates into unread notifications", merged.size());
+        }
+        publishAfterCommit(written);
+        return written;
+    }
+
+    /**
+     * Newest unread notification per (user, type, entity) key of the drafts that name an entity
+     */
+    private Map<EntityKey, Notification> findUnread(List<NotificationDraft> drafts) {
+        Set<EntityKey> keys = new HashSet<>();
+        for (NotificationDraft draft : drafts) {
+            if (draft.relatedEntityID() != null) {
+                keys.add(EntityKey.of(draft));
+            }
+        }
+        if (keys.isEmpty()) {
+            return Map.of();
+        }
+
+        Set<Integer> userIDs = new HashSet<>();
+        Set<NotificationType> types = new HashSet<>();
+        Set<Integer> entityIDs = new HashSet<>();
+        for (EntityKey key : keys) {
+            userIDs.add(key.userID());
+            types.add(key.type());
+            entityIDs.add(key.entityID());
+        }
+        Map<EntityKey, Notification> unread = new HashMap<>();
+        for (Notification notification : notificationRepository.findUnreadForEntities(userIDs, types, entityIDs)) {
+            EntityKey key = new EntityKey(notification.getUser().getUserID(), notification.getType(),
+                    notification.getRelatedEntityType(), notification.getRelatedEntityID());
+            // Newest first, so the first one of a key is kept
+            if (keys.contains(key)) {
+                unread.putIfAbsent(key, notification);
+            }
+        }
+        return unread;
+    }
+
+    private List<Notification> insert(List<NotificationDraft> drafts) {
+        if (drafts.isEmpty()) {
+            return List.of();
+        }
+
+        // Loaded rather than referenced: subscribers read notification.user after the session is gone
+        Set<Integer> userIDs = drafts.stream().map(NotificationDraft::userID).collect(Collectors.toSet());
+        Map<Integer, User> users = userRepository.findAllById(userIDs).stream()
+                .collect(Collectors.toMap(User::getUserID, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<Notification> notifications = new ArrayList<>(drafts.size());
+        for (NotificationDraft draft : drafts) {
+            User user = users.get(draft.userID());
+            if (user == null) {
+                log.warn("Skipping {} notification for unknown user {}", draft.type(), draft.userID());
+                continue;
+            }
+            notifications.add(Notification.builder()
+                    .user(user)
+                    .type(draft.type())
+                    .title(draft.title())
+                    .message(draft.message())
+                    .relatedEntityType(draft.relatedEntityType())
+                    .relatedEntityID(draft.relatedEntityID())
+                    .isRead(false)
+                    .updateCount(draft.occurrences())
+                    .createdAt(now)
+                    .build());
+        }
+        if (notifications.isEmpty()) {
+            return List.of();
+        }
+
+        List<Notification> saved = notificationRepository.saveAll(notifications);
+        unreadNotificationCounter.added(saved.stream()
+                .collect(Collectors.groupingBy(notification -> notification.getUser().getUserID(),
+                        Collectors.summingInt(notification -> 1))));
+        log.info("Wrote {} notifications for {} users", saved.size(), users.size());
+        return saved;
+    }
+
+    private void publishAfterCommit(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(notifications);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(notifications);
+            }
+        });
+    }
+
+    private record EntityKey(Integer userID, NotificationType type, String entityType, Integer entityID) {
+
+        static EntityKey of(NotificationDraft draft) {
+            return new EntityKey(draft.userID(), draft.type(), draft.relatedEntityType(), draft.relatedEntityID());
+        }
+    }
+
+    private void publish(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            try {
+                notificationPublisher.publishNotification(notification);
+            } catch (RuntimeException e) {
+                // Already committed; the user sees it on the next fetch
+                log.error("Failed to publish notification {}", notification.getNotificationID(), e);
+            }
+        }
+    }
+}
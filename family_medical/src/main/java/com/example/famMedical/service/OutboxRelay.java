@@ -0,0 +1,207 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.OutboxEvent;
+import com.example.famMedical.dto.events.AppointmentCreatedEvent;
+import com.example.famMedical.dto.events.AppointmentUpdatedEvent;
+import com.example.famMedical.dto.events.DoctorRequestCreatedEvent;
+import com.example.famMedical.dto.events.DoctorRequestStatusChangedEvent;
+import com.example.famMedical.dto.events.MedicalRecordCreatedEvent;
+import com.example.famMedical.dto.events.MedicalRecordUpdatedEvent;
+import com.example.famMedical.dto.events.NewMessageEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Outbox Relay
+ * Hands the events stored by EventOutbox to NotificationEventListener, at least once.
+ * A relay thread claims due events in batches (SKIP LOCKED, so relays on several nodes share the work),
+ * passes each to its listener on that listener's executor, and deletes it once the listener has finished.
+ * An event whose node dies first is claimed again when its lease runs out.
+ * An event whose executor is full is released again right away, and the relay waits for the next poll.
+ * The relay runs right after every commit that wrote events and polls as a fallback for the others.
+ */
+@Service
+@Slf4j
+public class OutboxRelay {
+
+    private final EventOutbox eventOutbox;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration lease;
+    private final int maxAttempts;
+
+    // Listener of each event class; returns when the listener has finished
+    private final Map<Class<?>, Function<ApplicationEvent, CompletableFuture<Void>>> routes = new HashMap<>();
+
+    // Events handled since the last batch, deleted with the next one
+    private final Queue<Long> completed = new ConcurrentLinkedQueue<>();
+    // Events rejected by a full executor in the current batch
+    private final List<Long> rejected = new ArrayList<>();
+    private final Semaphore wakeups = new Semaphore(0);
+    private volatile boolean running;
+    private Thread relay;
+
+    public OutboxRelay(EventOutbox eventOutbox, NotificationEventListener listener,
+                       @Value("${outbox.batch-size:100}") int batchSize,
+                       @Value("${outbox.poll-interval:1s}") Duration pollInterval,
+                       @Value("${outbox.lease:5m}") Duration lease,
+                       @Value("${outbox.max-attempts:10}") int maxAttempts) {
+        this.eventOutbox = eventOutbox;
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.lease = lease;
+        this.maxAttempts = maxAttempts;
+
+        route(AppointmentCreatedEvent.class, listener::handleAppointmentCreated);
+        route(AppointmentUpdatedEvent.class, listener::handleAppointmentUpdated);
+        route(DoctorRequestCreatedEvent.class, listener::handleDoctorRequestCreated);
+        route(DoctorRequestStatusChangedEvent.class, listener::handleDoctorRequestStatusChanged);
+        route(MedicalRecordCreatedEvent.class, listener::handleMedicalRecordCreated);
+        route(MedicalRecordUpdatedEvent.class, listener::handleMedicalRecordUpdated);
+        route(NewMessageEvent.class, listener::handleNewMessage);
+        eventOutbox.onCommit(wakeups::release);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        relay = new Thread(this::run, "outbox-relay");
+        relay.setDaemon(true);
+        relay.start();
+        log.info("Outbox relay started, batches of {} every {}", batchSize, pollInterval);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        wakeups.release();
+        relay.join(TimeUnit.SECONDS.toMillis(5));
+        deleteCompleted();
+    }
+
+    /**
+     * Delete what finished since the last call, then claim and dispatch one batch
+     * @return number of events claimed and taken by an executor or dropped
+     */
+    int relayOnce() {
+        deleteCompleted();
+        List<OutboxEvent> batch = eventOutbox.claim(batchSize, lease);
+        for (OutboxEvent event : batch) {
+            dispatch(event);
+        }
+        int dispatched = batch.size() - rejected.size();
+        releaseRejected();
+        return dispatched;
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (relayOnce() == batchSize) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Outbox relay failed, retrying in {}: {}", pollInterval, e.getMessage());
+            }
+            try {
+                wakeups.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void dispatch(OutboxEvent row) {
+        Long eventID = row.getEventID();
+        if (row.getAttempts() > maxAttempts) {
+            log.error("Dropping outbox event {} ({}) after {} attempts", eventID, row.getEventType(), maxAttempts);
+            completed.add(eventID);
+            return;
+        }
+
+        ApplicationEvent event;
+        try {
+            event = eventOutbox.decode(row);
+        } catch (RuntimeException e) {
+            log.error("Dropping unreadable outbox event {} ({})", eventID, row.getEventType(), e);
+            completed.add(eventID);
+            return;
+        }
+
+        CompletableFuture<Void> handled;
+        try {
+            handled = routes.get(event.getClass()).apply(event);
+        } catch (RejectedExecutionException e) {
+            rejected.add(eventID);
+            return;
+        }
+        handled.whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                completed.add(eventID);
+            } else {
+                log.warn("Listener failed on outbox event {}, retrying after the lease: {}", eventID, failure.getMessage());
+            }
+        });
+    }
+
+    private void deleteCompleted() {
+        List<Long> eventIDs = new ArrayList<>();
+        Long eventID;
+        while ((eventID = completed.poll()) != null) {
+            eventIDs.add(eventID);
+        }
+        if (eventIDs.isEmpty()) {
+            return;
+        }
+        try {
+            eventOutbox.complete(eventIDs);
+        } catch (RuntimeException e) {
+            // Delivered but not deleted: they come back after their lease, as after a crash
+            log.warn("Cannot delete {} relayed outbox events: {}", eventIDs.size(), e.getMessage());
+        }
+    }
+
+    private void releaseRejected() {
+        if (rejected.isEmpty()) {
+            return;
+        }
+        log.warn("Executors full, handing {} outbox events back for the next poll", rejected.size());
+        try {
+            eventOutbox.release(List.copyOf(rejected));
+        } catch (RuntimeException e) {
+            // Still claimed: they come back after their lease
+            log.warn("Cannot release {} outbox events: {}", rejected.size(), e.getMessage());
+        } finally {
+            rejected.clear();
+        }
+    }
+
+    private <E extends ApplicationEvent> void route(Class<E> type, Function<E, CompletableFuture<Void>> listener) {
+        routes.put(type, event -> listener.apply(type.cast(event)));
+    }
+}
@@ -1,108 +1,206 @@
 package com.example.famMedical.service;
 
+import com.example.famMedical.config.RateLimitProperties;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 /**
- * Rate Limiting Service for Message Sending
- * Implements a simple token bucket algorithm to prevent message spam
- * Optional security feature
+ * Rate Limiting Service
+ * Token bucket per (operation, client), configured per operation in RateLimitProperties.
+ * A bucket is a single AtomicLong holding the time at which it is full again (GCRA form of the
+ * token bucket): a check is one map lookup, one read and one compare-and-set on System.nanoTime values,
+ * without locks. Buckets are keyed by the user ID or address the caller already holds, so a check
+ * builds no key. Buckets that have been full for the idle timeout hold no information any more and
+ * are swept away.
  */
 @Service
 @Slf4j
 public class RateLimitService {
 
-    // Store last message timestamps per user
-    private final Map<Integer, MessageRateLimit> userRateLimits = new ConcurrentHashMap<>();
-    
-    // Configuration
-    private static final int MAX_MESSAGES_PER_MINUTE = 20;
-    private static final int MIN_SECONDS_BETWEEN_MESSAGES = 1;
-    
+    private static final String SWEEP_INTERVAL =
+            "#{T(com.example.famMedical.config.Schedules).millis(@rateLimitProperties.idleTimeout)}";
+
+    private final Map<String, OperationLimiter> limiters;
+    private final long idleNanos;
+    private final LongSupplier clock;
+
+    @Autowired
+    public RateLimitService(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RateLimitService(RateLimitProperties properties, LongSupplier clock) {
+        Map<String, OperationLimiter> configured = new HashMap<>();
+        properties.getOperations().forEach((operation, limit) -> {
+            if (limit.getCapacity() <= 0 || limit.getRefillInterval() == null || limit.getRefillInterval().isNegative()
+                    || limit.getRefillInterval().isZero()) {
+                throw new IllegalArgumentException("Invalid rate limit for " + operation);
+            }
+            configured.put(operation, new OperationLimiter(limit.getCapacity(), limit.getRefillInterval().toNanos()));
+        });
+        this.limiters = Map.copyOf(configured);
+        this.idleNanos = properties.getIdleTimeout().toNanos();
+        this.clock = clock;
+        log.info("Rate limits configured for {}", limiters.keySet());
+    }
+
     /**
-     * Check if a user can send a message based on rate limits
-     * @param userID The user attempting to send a message
-     * @return true if the user is within rate limits, false otherwise
+     * Bucket key of an authenticated user: the ID itself, which never equals an address key
      */
-    public boolean canSendMessage(Integer userID) {
-        LocalDateTime now = LocalDateTime.now();
-        MessageRateLimit rateLimit = userRateLimits.computeIfAbsent(
-            userID, 
-            k -> new MessageRateLimit()
-        );
-        
-        // Check minimum time between messages
-        if (rateLimit.lastMessageTime != null) {
-            long secondsSinceLastMessage = java.time.Duration.between(
-                rateLimit.lastMessageTime, now
-            ).getSeconds();
-            
-            if (secondsSinceLastMessage < MIN_SECONDS_BETWEEN_MESSAGES) {
-                log.warn("Rate limit exceeded for user {}: messages too frequent", userID);
-                return false;
-            }
+    public static Object userKey(Integer userID) {
+        return userID;
+    }
+
+    /**
+     * Bucket key of an anonymous client: the address itself
+     */
+    public static Object addressKey(String address) {
+        return address;
+    }
+
+    /**
+     * Names of the rate limited operations
+     */
+    public Set<String> getOperations() {
+        return limiters.keySet();
+    }
+
+    public boolean isLimited(String operation) {
+        return limiters.containsKey(operation);
+    }
+
+    /**
+     * Take one call from a client's bucket
+     * @param operation The operation being called
+     * @param clientKey userKey or addressKey of the caller
+     * @return true if the call is allowed; always true for operations without a limit
+     */
+    public boolean tryAcquire(String operation, Object clientKey) {
+        OperationLimiter limiter = limiters.get(operation);
+        if (limiter == null) {
+            return true;
         }
-        
-        // Clean up old message timestamps (older than 1 minute)
-        rateLimit.messageTimestamps.removeIf(timestamp -> 
-            java.time.Duration.between(timestamp, now).getSeconds() > 60
-        );
-        
-        // Check messages per minute limit
-        if (rateLimit.messageTimestamps.size() >= MAX_MESSAGES_PER_MINUTE) {
-            log.warn("Rate limit exceeded for user {}: too many messages per minute", userID);
-            return false;
+        boolean allowed = limiter.tryAcquire(clientKey, clock.getAsLong());
+        if (!allowed) {
+            log.warn("Rate limit exceeded for {} on {}", clientKey, operation);
         }
-        
-        return true;
+        return allowed;
     }
-    
+
     /**
-     * Record that a user has sent a message
-     * @param userID The user who sent the message
+     * Take one call per operation of a request from the client's buckets, or none of them
+     * @param operations Operations the request calls, once per call
+     * @param clientKey userKey or addressKey of the caller
+     * @return The operation whose bucket is empty, or null if every call is allowed
      */
-    public void recordMessageSent(Integer userID) {
-        LocalDateTime now = LocalDateTime.now();
-        MessageRateLimit rateLimit = userRateLimits.computeIfAbsent(
-            userID, 
-            k -> new MessageRateLimit()
-        );
-        
-        rateLimit.lastMessageTime = now;
-        rateLimit.messageTimestamps.add(now);
-        
-        log.debug("Recorded message for user {}. Messages in last minute: {}", 
-                userID, rateLimit.messageTimestamps.size());
+    public String tryAcquireAll(List<String> operations, Object clientKey) {
+        long now = clock.getAsLong();
+        for (int i = 0; i < operations.size(); i++) {
+            OperationLimiter limiter = limiters.get(operations.get(i));
+            if (limiter != null && !limiter.tryAcquire(clientKey, now)) {
+                // Give back what the earlier calls took, so a rejected request costs nothing
+                for (int j = 0; j < i; j++) {
+                    OperationLimiter taken = limiters.get(operations.get(j));
+                    if (taken != null) {
+                        taken.release(clientKey);
+                    }
+                }
+                log.warn("Rate limit exceeded for {} on {}", clientKey, operations.get(i));
+                return operations.get(i);
+            }
+        }
+        return null;
     }
-    
+
     /**
-     * Get remaining messages allowed for a user in the current minute
-     * @param userID The user to check
-     * @return Number of messages remaining
+     * Drop the buckets that have been full for longer than the idle timeout
+     * @return Number of buckets dropped
      */
-    public int getRemainingMessages(Integer userID) {
-        MessageRateLimit rateLimit = userRateLimits.get(userID);
-        if (rateLimit == null) {
-            return MAX_MESSAGES_PER_MINUTE;
+    @Scheduled(initialDelayString = SWEEP_INTERVAL, fixedDelayString = SWEEP_INTERVAL)
+    public int evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        for (OperationLimiter limiter : limiters.values()) {
+            evicted += limiter.evictIdle(now, idleNanos);
         }
-        
-        LocalDateTime now = LocalDateTime.now();
-        rateLimit.messageTimestamps.removeIf(timestamp -> 
-            java.time.Duration.between(timestamp, now).getSeconds() > 60
-        );
-        
-        return Math.max(0, MAX_MESSAGES_PER_MINUTE - rateLimit.messageTimestamps.size());
+        if (evicted > 0) {
+            log.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+        return evicted;
     }
-    
+
     /**
-     * Inner class to track rate limit data per user
+     * Number of buckets currently held
      */
-    private static class MessageRateLimit {
-        LocalDateTime lastMessageTime;
-        java.util.List<LocalDateTime> messageTimestamps = new java.util.ArrayList<>();
+    public int bucketCount() {
+        int count = 0;
+        for (OperationLimiter limiter : limiters.values()) {
+            count += limiter.buckets.size();
+        }
+        return count;
+    }
+
+    /**
+     * Buckets of one operation
+     */
+    private static final class OperationLimiter {
+        private final long intervalNanos;
+        // How far ahead of now a bucket's full time may be: capacity - 1 calls in advance
+        private final long toleranceNanos;
+        // Time at which each client's bucket is full again
+        private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        OperationLimiter(int capacity, long intervalNanos) {
+            this.intervalNanos = intervalNanos;
+            this.toleranceNanos = (capacity - 1) * intervalNanos;
+        }
+
+        boolean tryAcquire(Object clientKey, long now) {
+            AtomicLong bucket = buckets.get(clientKey);
+            if (bucket == null) {
+                bucket = buckets.computeIfAbsent(clientKey, key -> new AtomicLong(now));
+            }
+            while (true) {
+                long fullAt = bucket.get();
+                // nanoTime values may wrap, so only their difference is compared
+                long start = fullAt - now > 0 ? fullAt : now;
+                if (start - now > toleranceNanos) {
+                    return false;
+                }
+                if (bucket.compareAndSet(fullAt, start + intervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Give back a call taken just before; the bucket is full in the future then, so the sweep has not dropped it
+         */
+        void release(Object clientKey) {
+            AtomicLong bucket = buckets.get(clientKey);
+            if (bucket != null) {
+                bucket.addAndGet(-intervalNanos);
+            }
+        }
+
+        int evictIdle(long now, long idleNanos) {
+            int evicted = 0;
+            for (Map.Entry<Object, AtomicLong> entry : buckets.entrySet()) {
+                if (now - entry.getValue().get() > idleNanos && buckets.remove(entry.getKey(), entry.getValue())) {
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
     }
 }
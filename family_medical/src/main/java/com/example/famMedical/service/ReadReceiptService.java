@@ -0,0 +1,95 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.config.AsyncConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read Receipt Service
+ * Coalesces read receipts before they reach the database: receipts of one user in one conversation that
+ * arrive within the debounce window collapse into a single watermark update to the highest message read.
+ * Scrolling through history therefore costs one write instead of one per visible message.
+ */
+@Service
+@Slf4j
+public class ReadReceiptService {
+
+    static final long DEBOUNCE_MILLIS = 500;
+
+    private final ConversationStateService conversationStateService;
+    private final TaskScheduler scheduler;
+    private final long debounceMillis;
+
+    // Highest message read per (conversation, user) that is not written yet
+    private final ConcurrentHashMap<ReceiptKey, Integer> pending = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ReadReceiptService(ConversationStateService conversationStateService,
+                              @Qualifier(AsyncConfig.READ_RECEIPT_TIMERS) TaskScheduler scheduler) {
+        this(conversationStateService, scheduler, DEBOUNCE_MILLIS);
+    }
+
+    ReadReceiptService(ConversationStateService conversationStateService, TaskScheduler scheduler, long debounceMillis) {
+        this.conversationStateService = conversationStateService;
+        this.scheduler = scheduler;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Record that a user read a conversation up to a message
+     * The caller must have authorized the user; the write happens when the debounce window closes
+     * @param conversationID ID of the conversation
+     * @param userID ID of the reader
+     * @param upToMessageID Highest message ID read
+     */
+    public void submit(Integer conversationID, Integer userID, Integer upToMessageID) {
+        ReceiptKey key = new ReceiptKey(conversationID, userID);
+        boolean[] opened = new boolean[1];
+        pending.compute(key, (k, current) -> {
+            if (current == null) {
+                opened[0] = true;
+                return upToMessageID;
+            }
+            return Math.max(current, upToMessageID);
+        });
+
+        // The first receipt of a burst opens the window, later ones only raise the pending watermark
+        if (opened[0]) {
+            scheduler.schedule(() -> flush(key), Instant.now().plusMillis(debounceMillis));
+        }
+    }
+
+    /**
+     * Write every pending receipt now
+     */
+    @PreDestroy
+    public void flushAll() {
+        List<ReceiptKey> keys = new ArrayList<>(pending.keySet());
+        keys.forEach(this::flush);
+    }
+
+    private void flush(ReceiptKey key) {
+        Integer messageID = pending.remove(key);
+        if (messageID == null) {
+            return;
+        }
+        try {
+            conversationStateService.recordMessageRead(key.conversationID(), key.userID(), messageID);
+            log.debug("User {} read conversation {} up to message {}", key.userID(), key.conversationID(), messageID);
+        } catch (RuntimeException e) {
+            log.warn("Failed to record read receipt of user {} in conversation {}: {}",
+                key.userID(), key.conversationID(), e.getMessage());
+        }
+    }
+
+    private record ReceiptKey(Integer conversationID, Integer userID) {}
+}
@@ -0,0 +1,178 @@
+package com.example.famMedical.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis Event Bus
+ * Event bus shared by all nodes through Redis pub/sub: every topic is a channel under channelPrefix.
+ * Publishing only queues the encoded envelope; a publisher thread sends what is queued as one pipelined
+ * batch of PUBLISH commands through the StringRedisTemplate, and a RedisMessageListenerContainer listens on
+ * channelPrefix* and dispatches what the other nodes sent on a single delivery thread, in the order received.
+ * The connection, credentials and TLS come from spring.data.redis. The container is started from a thread that
+ * retries until the broker is reachable, so a node starts without it; from then on Lettuce reconnects and
+ * resubscribes on its own. Like Redis pub/sub itself, delivery is at most once, and events that cannot be sent
+ * meanwhile are counted and dropped.
+ */
+@Service
+@ConditionalOnProperty(name = "event-bus.type", havingValue = "redis")
+@Slf4j
+public class RedisEventBus extends AbstractEventBus {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int MAX_BATCH = 256;
+
+    private final StringRedisTemplate redisTemplate;
+    private final String channelPrefix;
+    private final long reconnectDelayMillis;
+
+    private final BlockingQueue<Outgoing> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final Thread publisher;
+    private final Thread subscriber;
+    private final ThreadPoolTaskExecutor delivery;
+    private final RedisMessageListenerContainer listenerContainer;
+    private volatile boolean running = true;
+
+    @Autowired
+    public RedisEventBus(RedisConnectionFactory connectionFactory, StringRedisTemplate redisTemplate,
+                         @Value("${event-bus.redis.channel-prefix:famMedical:}") String channelPrefix) {
+        this(connectionFactory, redisTemplate, channelPrefix, Duration.ofSeconds(2));
+    }
+
+    RedisEventBus(RedisConnectionFactory connectionFactory, StringRedisTemplate redisTemplate, String channelPrefix,
+                  Duration reconnectDelay) {
+        this.redisTemplate = redisTemplate;
+        this.channelPrefix = channelPrefix;
+        this.reconnectDelayMillis = reconnectDelay.toMillis();
+
+        // One thread keeps the events of a node in the order they were published
+        delivery = new ThreadPoolTaskExecutor();
+        delivery.setCorePoolSize(1);
+        delivery.setMaxPoolSize(1);
+        delivery.setThreadNamePrefix("event-bus-delivery-");
+        delivery.initialize();
+
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.setTaskExecutor(delivery);
+        listenerContainer.setRecoveryInterval(reconnectDelayMillis);
+        listenerContainer.addMessageListener((message, pattern) -> dispatch(message.getBody()),
+                new PatternTopic(channelPrefix + "*"));
+        listenerContainer.afterPropertiesSet();
+
+        publisher = new Thread(this::runPublisher, "event-bus-publisher");
+        publisher.setDaemon(true);
+        subscriber = new Thread(this::runSubscriber, "event-bus-subscriber");
+        subscriber.setDaemon(true);
+        publisher.start();
+        subscriber.start();
+        log.info("Using Redis event bus on channels {}*, node {}", channelPrefix, getNodeId());
+    }
+
+    @Override
+    public void publish(String topic, Object event) {
+        byte[] channel = (channelPrefix + topic).getBytes(StandardCharsets.UTF_8);
+        if (!queue.offer(new Outgoing(channel, envelope(topic, event).encode()))) {
+            dropped.increment();
+            log.warn("Event bus queue full, dropping {} event", topic);
+        }
+    }
+
+    /**
+     * Number of events dropped because the broker could not keep up or was unreachable
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        publisher.interrupt();
+        subscriber.interrupt();
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            log.warn("Failed to stop the event subscription: {}", e.getMessage());
+        }
+        delivery.shutdown();
+    }
+
+    private void runPublisher() {
+        List<Outgoing> batch = new ArrayList<>(MAX_BATCH);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (Outgoing outgoing : batch) {
+                        connection.publish(outgoing.channel(), outgoing.envelope());
+                    }
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                return;
+            } catch (DataAccessException e) {
+                dropped.add(batch.size());
+                log.warn("Cannot publish {} events: {}", batch.size(), e.getMessage());
+                if (!pause()) {
+                    return;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void runSubscriber() {
+        while (running) {
+            try {
+                listenerContainer.start();
+                log.info("Subscribed to events on {}*", channelPrefix);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Cannot subscribe to events: {}", e.getMessage());
+                // A container that failed to start stays started until stopped
+                listenerContainer.stop();
+            }
+            if (!pause()) {
+                return;
+            }
+        }
+    }
+
+    private boolean pause() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(reconnectDelayMillis);
+            return running;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * An encoded envelope waiting to be published on its channel
+     */
+    private record Outgoing(byte[] channel, byte[] envelope) {}
+}
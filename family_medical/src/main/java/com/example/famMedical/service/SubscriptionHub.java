@@ -0,0 +1,463 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.dto.SubscriptionStats;
+import com.example.famMedical.exception.SubscriptionOverflowException;
+import com.example.famMedical.exception.SubscriptionResyncException;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Subscription Hub
+ * Routes published items to the subscribers registered under a key (user ID, conversation ID...)
+ * instead of filtering one global stream, so delivery cost only depends on the target key.
+ * Every subscriber owns its own bounded buffer and is removed as soon as its stream terminates.
+ * What happens when a slow subscriber's buffer is full is decided by the hub's OverflowPolicy;
+ * either way a stalled client only ever holds bufferSize items and never delays other subscribers.
+ * A hub created with Replay also stamps every item with a sequence number and keeps the last items of
+ * every key, so a client that reconnects can pass the last sequence it saw and only receive the gap.
+ * Sequence numbers start from the hub's startup time, so a number handed out by another node or by an
+ * earlier run falls outside this hub's range and is answered with a resync instead of a wrong gap.
+ *
+ * @param <K> routing key type
+ * @param <T> item type
+ */
+@Slf4j
+public class SubscriptionHub<K, T> {
+
+    /**
+     * What to do with an item for a subscriber whose buffer is full
+     */
+    public enum OverflowPolicy {
+        // Skip the new item, for streams where any recent item will do
+        DROP_LATEST,
+        // Make room by discarding the oldest buffered item, for streams where only the latest state matters
+        DROP_OLDEST,
+        // Deliver what is buffered, then end the stream with a SubscriptionOverflowException so the client
+        // reloads through its query and resubscribes; for streams where a silent gap is not acceptable
+        DISCONNECT
+    }
+
+    /**
+     * Replay settings
+     * @param size Items kept per key
+     * @param idleTimeout A key without subscribers that received nothing for this long loses its items
+     * @param sequencer Stamps the sequence number on an item before it is delivered
+     */
+    public record Replay<T>(int size, Duration idleTimeout, ObjLongConsumer<T> sequencer) {}
+
+    // Publishes between two sweeps of idle replay buffers
+    private static final int SWEEP_INTERVAL = 1024;
+    // Sequence numbers a hub can hand out per second of uptime before reaching the range of a hub started later;
+    // bases stay below 2^53 so clients parsing JSON numbers as doubles read them exactly
+    private static final int SEQUENCES_PER_SECOND_BITS = 20;
+
+    private final Map<K, Set<Subscriber<T>>> subscribers = new ConcurrentHashMap<>();
+    private final String name;
+    private final int bufferSize;
+    private final OverflowPolicy overflowPolicy;
+
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder replayMisses = new LongAdder();
+
+    private final Replay<T> replay;
+    // Guards everything below, so that sequence order, buffer contents and live delivery always agree
+    private final ReentrantLock replayLock = new ReentrantLock();
+    private final Map<K, ReplayBuffer<T>> replayBuffers = new HashMap<>();
+    private long sequence;
+    // Highest sequence number held by a buffer dropped for being idle, or the first one handed out
+    private long droppedUpTo;
+    private int publishesSinceSweep;
+
+    /**
+     * @param name Name of the stream, reported in stats and overflow errors
+     * @param bufferSize Maximum number of undelivered items per subscriber; the lock-free queues of the
+     *                   DROP_LATEST and DISCONNECT policies round it up to a power of two (at least 8)
+     * @param overflowPolicy What to do when a subscriber's buffer is full
+     */
+    public SubscriptionHub(String name, int bufferSize, OverflowPolicy overflowPolicy) {
+        this(name, bufferSize, overflowPolicy, null);
+    }
+
+    /**
+     * @param replay Replay settings, or null for a live only stream
+     */
+    public SubscriptionHub(String name, int bufferSize, OverflowPolicy overflowPolicy, Replay<T> replay) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        if (replay != null && replay.size() <= 0) {
+            throw new IllegalArgumentException("replay size must be positive");
+        }
+        this.name = name;
+        this.bufferSize = bufferSize;
+        this.overflowPolicy = overflowPolicy;
+        this.replay = replay;
+        this.sequence = Instant.now().getEpochSecond() << SEQUENCES_PER_SECOND_BITS;
+        this.droppedUpTo = sequence;
+    }
+
+    /**
+     * Open a new subscription for a key
+     * The subscriber is registered on subscribe and unregistered on cancel, error or completion
+     * @param key The routing key to listen on
+     * @return Flux of items published for the key
+     */
+    public Flux<T> subscribe(K key) {
+        return Flux.defer(() -> {
+            Subscriber<T> subscriber = newSubscriber();
+            register(key, subscriber);
+            return subscriber.sink.asFlux().doFinally(signal -> unregister(key, subscriber));
+        });
+    }
+
+    /**
+     * Open a subscription that first replays what was published for the key after a sequence number
+     * Fails with a SubscriptionResyncException when part of the gap is no longer kept, or when the
+     * sequence number comes from before a restart; the client then reloads and subscribes without one
+     * @param key The routing key to listen on
+     * @param sinceSequence Last sequence number the client received, or null to only receive new items
+     * @return Flux of the missed items, oldest first, followed by items published for the key
+     */
+    public Flux<T> subscribe(K key, Long sinceSequence) {
+        if (sinceSequence == null || replay == null) {
+            return subscribe(key);
+        }
+        return Flux.defer(() -> {
+            Subscriber<T> subscriber = newSubscriber();
+            List<T> gap;
+            // Registering under the lock puts every item either in the gap or in the live stream, never both
+            replayLock.lock();
+            try {
+                gap = replayGap(key, sinceSequence);
+                if (gap != null) {
+                    register(key, subscriber);
+                }
+            } finally {
+                replayLock.unlock();
+            }
+
+            if (gap == null) {
+                replayMisses.increment();
+                return Flux.error(new SubscriptionResyncException(name, "REPLAY_UNAVAILABLE",
+                        "Events of " + name + " after sequence " + sinceSequence
+                                + " are no longer available. Reload the data and subscribe again."));
+            }
+            replayed.add(gap.size());
+            return Flux.fromIterable(gap)
+                    .concatWith(subscriber.sink.asFlux())
+                    .doFinally(signal -> unregister(key, subscriber));
+        });
+    }
+
+    /**
+     * Deliver an item to every subscriber of a key
+     * Subscribers whose buffer is full are handled by the overflow policy instead of blocking the publisher
+     * @param key The routing key
+     * @param item The item to deliver
+     * @return Number of subscribers the item was delivered to
+     */
+    public int publish(K key, T item) {
+        return replay != null ? publishAll(List.of(key), item) : deliver(key, item);
+    }
+
+    /**
+     * Deliver one item to the subscribers of several keys
+     * With replay, the item gets a single sequence number and is kept for every key
+     * @param keys The routing keys
+     * @param item The item to deliver
+     * @return Number of subscribers the item was delivered to
+     */
+    public int publishAll(Collection<K> keys, T item) {
+        if (replay == null) {
+            int count = 0;
+            for (K key : keys) {
+                count += deliver(key, item);
+            }
+            return count;
+        }
+
+        replayLock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            long itemSequence = ++sequence;
+            replay.sequencer().accept(item, itemSequence);
+            int count = 0;
+            for (K key : keys) {
+                replayBuffers.computeIfAbsent(key, k -> new ReplayBuffer<>(replay.size(), droppedUpTo))
+                        .append(itemSequence, item, now);
+                count += deliver(key, item);
+            }
+            if (++publishesSinceSweep >= SWEEP_INTERVAL) {
+                publishesSinceSweep = 0;
+                sweepIdleBuffers(now);
+            }
+            return count;
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * The keys an item published on another node still has to reach here: those with subscribers and, with
+     * replay, those whose replay buffer a reconnecting client may read. Skipping the others is recorded, so a
+     * client of a skipped key that comes back with an older sequence number is told to resync instead
+     * @param keys The routing keys of the item
+     * @return The watched keys among them
+     */
+    public List<K> watchedKeys(Collection<K> keys) {
+        if (replay == null) {
+            return keys.stream().filter(subscribers::containsKey).toList();
+        }
+
+        replayLock.lock();
+        try {
+            List<K> watched = new ArrayList<>(keys.size());
+            for (K key : keys) {
+                if (subscribers.containsKey(key) || replayBuffers.containsKey(key)) {
+                    watched.add(key);
+                }
+            }
+            if (watched.size() < keys.size()) {
+                droppedUpTo = ++sequence;
+            }
+            return watched;
+        } finally {
+            replayLock.unlock();
+        }
+    }
+
+    /**
+     * @return Number of open subscriptions for a key
+     */
+    public int subscriberCount(K key) {
+        Set<Subscriber<T>> targets = subscribers.get(key);
+        return targets != null ? targets.size() : 0;
+    }
+
+    /**
+     * @return Number of keys that currently have at least one subscriber
+     */
+    public int keyCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Current subscribers and delivery counters since startup
+     */
+    public SubscriptionStats stats() {
+        int subscriberTotal = 0;
+        for (Set<Subscriber<T>> targets : subscribers.values()) {
+            subscriberTotal += targets.size();
+        }
+        return new SubscriptionStats(name, overflowPolicy.name(), bufferSize, subscribers.size(), subscriberTotal,
+                delivered.sum(), dropped.sum(), disconnected.sum(), replayed.sum(), replayMisses.sum());
+    }
+
+    private Subscriber<T> newSubscriber() {
+        // Dropping the oldest item means polling from the publishing thread, which needs a multi-consumer queue
+        Queue<T> queue = overflowPolicy == OverflowPolicy.DROP_OLDEST
+                ? new ArrayBlockingQueue<>(bufferSize)
+                : Queues.<T>get(bufferSize).get();
+        return new Subscriber<>(Sinks.many().unicast().onBackpressureBuffer(queue), queue);
+    }
+
+    /**
+     * Items of a key after a sequence number, or null when they cannot all be replayed
+     */
+    private List<T> replayGap(K key, long sinceSequence) {
+        if (sinceSequence > sequence) {
+            // Numbered by another node or an earlier run of the application
+            return null;
+        }
+        ReplayBuffer<T> buffer = replayBuffers.get(key);
+        if (buffer == null) {
+            // Nothing kept for the key: either nothing was published, or it was dropped while idle
+            return sinceSequence >= droppedUpTo ? List.of() : null;
+        }
+        return buffer.since(sinceSequence);
+    }
+
+    private void sweepIdleBuffers(long now) {
+        long idleMillis = replay.idleTimeout().toMillis();
+        Iterator<Map.Entry<K, ReplayBuffer<T>>> entries = replayBuffers.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<K, ReplayBuffer<T>> entry = entries.next();
+            ReplayBuffer<T> buffer = entry.getValue();
+            if (now - buffer.lastAppendAt > idleMillis && !subscribers.containsKey(entry.getKey())) {
+                droppedUpTo = Math.max(droppedUpTo, buffer.newest());
+                entries.remove();
+            }
+        }
+    }
+
+    private int deliver(K key, T item) {
+        Set<Subscriber<T>> targets = subscribers.get(key);
+        if (targets == null) {
+            return 0;
+        }
+
+        int count = 0;
+        for (Subscriber<T> subscriber : targets) {
+            Sinks.EmitResult result = emit(subscriber, item);
+            if (result == Sinks.EmitResult.FAIL_OVERFLOW) {
+                result = overflow(key, subscriber, item);
+            }
+            if (result.isSuccess()) {
+                count++;
+            } else if (result != Sinks.EmitResult.FAIL_OVERFLOW) {
+                log.debug("Failed to deliver {} item to subscriber of key {}: {}", name, key, result);
+            }
+        }
+        delivered.add(count);
+        return count;
+    }
+
+    private Sinks.EmitResult overflow(K key, Subscriber<T> subscriber, T item) {
+        switch (overflowPolicy) {
+            case DROP_OLDEST -> {
+                // The subscriber may drain concurrently, so retry until the item fits
+                Sinks.EmitResult result;
+                do {
+                    if (subscriber.queue.poll() != null) {
+                        dropped.increment();
+                    }
+                    result = emit(subscriber, item);
+                } while (result == Sinks.EmitResult.FAIL_OVERFLOW);
+                return result;
+            }
+            case DISCONNECT -> {
+                // Stop feeding the subscriber at once; it receives its buffer, then the error
+                unregister(key, subscriber);
+                SubscriptionOverflowException error = new SubscriptionOverflowException(name, bufferSize);
+                while (subscriber.sink.tryEmitError(error) == Sinks.EmitResult.FAIL_NON_SERIALIZED) {
+                    Thread.onSpinWait();
+                }
+                dropped.increment();
+                disconnected.increment();
+                log.warn("Subscriber of {} for key {} fell {} items behind, disconnecting", name, key, bufferSize);
+                return Sinks.EmitResult.FAIL_OVERFLOW;
+            }
+            default -> {
+                dropped.increment();
+                log.warn("Subscriber buffer of {} full for key {}, dropping item", name, key);
+                return Sinks.EmitResult.FAIL_OVERFLOW;
+            }
+        }
+    }
+
+    private Sinks.EmitResult emit(Subscriber<T> subscriber, T item) {
+        // Concurrent publishers to the same subscriber only race for a few instructions, so spin
+        Sinks.EmitResult result;
+        do {
+            result = subscriber.sink.tryEmitNext(item);
+        } while (result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+        return result;
+    }
+
+    private void register(K key, Subscriber<T> subscriber) {
+        subscribers.compute(key, (k, targets) -> {
+            Set<Subscriber<T>> target = targets != null ? targets : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+    }
+
+    private void unregister(K key, Subscriber<T> subscriber) {
+        subscribers.computeIfPresent(key, (k, targets) -> {
+            targets.remove(subscriber);
+            return targets.isEmpty() ? null : targets;
+        });
+    }
+
+    /**
+     * Ring of the last items published for one key with their sequence numbers
+     */
+    private static final class ReplayBuffer<T> {
+        private final long[] sequences;
+        private final Object[] items;
+        // Index of the oldest item
+        private int head;
+        private int size;
+        // Highest sequence number pushed out of the ring
+        private long evictedUpTo;
+        private long lastAppendAt;
+
+        ReplayBuffer(int capacity, long evictedUpTo) {
+            this.sequences = new long[capacity];
+            this.items = new Object[capacity];
+            // Whatever the key had before this buffer existed is gone
+            this.evictedUpTo = evictedUpTo;
+        }
+
+        void append(long itemSequence, T item, long now) {
+            int index;
+            if (size == items.length) {
+                index = head;
+                evictedUpTo = sequences[head];
+                head = (head + 1) % items.length;
+            } else {
+                index = (head + size) % items.length;
+                size++;
+            }
+            sequences[index] = itemSequence;
+            items[index] = item;
+            lastAppendAt = now;
+        }
+
+        /**
+         * Items after a sequence number, oldest first, or null when some of them were pushed out
+         */
+        @SuppressWarnings("unchecked")
+        List<T> since(long sinceSequence) {
+            if (sinceSequence < evictedUpTo) {
+                return null;
+            }
+            List<T> result = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % items.length;
+                if (sequences[index] > sinceSequence) {
+                    result.add((T) items[index]);
+                }
+            }
+            return result;
+        }
+
+        long newest() {
+            return size == 0 ? evictedUpTo : sequences[(head + size - 1) % items.length];
+        }
+    }
+
+    /**
+     * One subscription: its sink and the bounded queue buffering the sink
+     */
+    private static final class Subscriber<T> {
+        final Sinks.Many<T> sink;
+        final Queue<T> queue;
+
+        Subscriber(Sinks.Many<T> sink, Queue<T> queue) {
+            this.sink = sink;
+            this.queue = queue;
+        }
+    }
+}
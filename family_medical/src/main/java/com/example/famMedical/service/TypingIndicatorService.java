@@ -1,81 +1,130 @@
 package com.example.famMedical.service;
 
 import com.example.famMedical.Entity.User;
+import com.example.famMedical.config.AsyncConfig;
+import com.example.famMedical.dto.SubscriptionStats;
 import com.example.famMedical.dto.TypingIndicator;
+import com.example.famMedical.dto.events.MessageSnapshot.Person;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
 
-import java.util.Map;
+import java.time.Instant;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 
 /**
  * Service for managing typing indicators in conversations
- * Handles broadcasting typing status and automatic timeout after 3 seconds
+ * Handles broadcasting typing status and automatic timeout after 3 seconds.
+ * All timeouts run on the typing timer scheduler: a keystroke only pushes the typer's deadline forward,
+ * and the timer re-arms itself for the remaining time when it fires early, so the number of threads
+ * and scheduled tasks does not grow with typing activity. Repeated typing=true events are throttled.
+ * Timeouts are kept by the node the user types on; the indicators it emits reach the other nodes through
+ * the EventBus as (conversation, user, typing) events carrying the user's display fields, and are delivered
+ * there on the remote delivery executor without a database read.
  */
 @Service
 @Slf4j
 public class TypingIndicatorService {
 
-    private final Sinks.Many<TypingIndicator> typingSink;
-    private final Map<String, ScheduledExecutorService> timeoutSchedulers;
+    static final long TYPING_TIMEOUT_MILLIS = 3000;
+    static final long THROTTLE_MILLIS = 1000;
+    static final String TYPING_TOPIC = "typingIndicator";
+    private static final int STREAM_BUFFER_SIZE = 64;
 
-    public TypingIndicatorService() {
-        // Create a multicast sink for broadcasting typing indicators
-        this.typingSink = Sinks.many().multicast().onBackpressureBuffer();
-        this.timeoutSchedulers = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final long throttleMillis;
+    private final EventBus eventBus;
+    private final TaskScheduler timer;
+    private final Executor remoteDelivery;
+
+    // Typing indicators routed by conversation ID; a slow client only needs the latest ones
+    private final SubscriptionHub<Integer, TypingIndicator> hub =
+            new SubscriptionHub<>("typingIndicator", STREAM_BUFFER_SIZE, SubscriptionHub.OverflowPolicy.DROP_OLDEST);
+
+    // Users currently typing, keyed by (conversation, user)
+    private final ConcurrentHashMap<TypingKey, Typer> typers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TypingIndicatorService(EventBus eventBus, @Qualifier(AsyncConfig.TYPING_TIMERS) TaskScheduler timer,
+                                  @Qualifier(AsyncConfig.REMOTE_DELIVERY) Executor remoteDelivery) {
+        this(TYPING_TIMEOUT_MILLIS, THROTTLE_MILLIS, eventBus, timer, remoteDelivery);
+    }
+
+    TypingIndicatorService(long timeoutMillis, long throttleMillis, EventBus eventBus, TaskScheduler timer,
+                           Executor remoteDelivery) {
+        this.timeoutMillis = timeoutMillis;
+        this.throttleMillis = throttleMillis;
+        this.eventBus = eventBus;
+        this.timer = timer;
+        this.remoteDelivery = remoteDelivery;
+        eventBus.subscribe(TYPING_TOPIC, TypingEvent.class, this::deliverRemoteIndicator);
         log.info("TypingIndicatorService initialized");
     }
 
     /**
      * Send a typing indicator for a conversation
-     * Automatically stops typing after 3 seconds if not manually stopped
-     * 
+     * Automatically stops typing after 3 seconds if not manually stopped.
+     * While a user keeps typing, typing=true is re-emitted at most once per throttle window
+     *
      * @param conversationID ID of the conversation
      * @param user User who is typing
      * @param isTyping Whether the user is typing or stopped typing
      */
     public void sendTypingIndicator(Integer conversationID, User user, boolean isTyping) {
-        log.debug("User {} typing indicator: {} in conversation {}", 
+        log.debug("User {} typing indicator: {} in conversation {}",
                 user.getUserID(), isTyping, conversationID);
-        
-        String key = getTypingKey(conversationID, user.getUserID());
-        
-        // Cancel any existing timeout for this user/conversation
-        cancelTimeout(key);
-        
-        // Create and emit the typing indicator
-        TypingIndicator indicator = TypingIndicator.builder()
-                .conversationID(conversationID)
-                .user(user)
-                .isTyping(isTyping)
-                .build();
-        
-        typingSink.tryEmitNext(indicator);
-        
-        // If user started typing, schedule automatic stop after 3 seconds
-        if (isTyping) {
-            scheduleAutoStop(conversationID, user, key);
+
+        if (!isTyping) {
+            stopTyping(conversationID, user);
+            return;
+        }
+
+        TypingKey key = new TypingKey(conversationID, user.getUserID());
+        long now = System.currentTimeMillis();
+        boolean[] emit = new boolean[1];
+        Typer typer = typers.compute(key, (k, current) -> {
+            if (current == null) {
+                emit[0] = true;
+                return new Typer(Person.of(user), now + timeoutMillis, now);
+            }
+            current.deadline = now + timeoutMillis;
+            if (now - current.lastEmittedAt >= throttleMillis) {
+                current.lastEmittedAt = now;
+                emit[0] = true;
+            }
+            return current;
+        });
+
+        // Only a new typer needs a timer; an active one just moved its deadline
+        if (typer.timeout == null) {
+            synchronized (typer) {
+                if (typer.timeout == null) {
+                    typer.timeout = timer.schedule(() -> expire(key, typer), Instant.now().plusMillis(timeoutMillis));
+                }
+            }
+        }
+        if (emit[0]) {
+            emit(conversationID, typer.user, true);
         }
     }
 
     /**
      * Get the stream of typing indicators for a specific conversation
-     * Filters to only include indicators for the specified conversation
-     * 
+     * Only indicators published after the subscription starts are delivered
+     *
      * @param conversationID ID of the conversation to monitor
      * @return Flux of typing indicators for the conversation
      */
     public Flux<TypingIndicator> getTypingStream(Integer conversationID) {
         log.debug("Creating typing indicator stream for conversation {}", conversationID);
-        
-        return typingSink.asFlux()
-                .filter(indicator -> indicator.getConversationID().equals(conversationID))
-                .doOnNext(indicator -> log.trace("Emitting typing indicator for conversation {}: user {} isTyping={}", 
+
+        return hub.subscribe(conversationID)
+                .doOnNext(indicator -> log.trace("Emitting typing indicator for conversation {}: user {} isTyping={}",
                         conversationID, indicator.getUser().getUserID(), indicator.isTyping()))
                 .doOnCancel(() -> log.debug("Typing indicator stream cancelled for conversation {}", conversationID));
     }
@@ -83,67 +132,96 @@ public class TypingIndicatorService {
     /**
      * Stop typing indicator for a user in a conversation
      * Called when a message is sent
-     * 
+     *
      * @param conversationID ID of the conversation
      * @param user User who stopped typing
      */
     public void stopTyping(Integer conversationID, User user) {
-        log.debug("Stopping typing indicator for user {} in conversation {}", 
+        log.debug("Stopping typing indicator for user {} in conversation {}",
                 user.getUserID(), conversationID);
-        
-        String key = getTypingKey(conversationID, user.getUserID());
-        cancelTimeout(key);
-        
-        // Send stop typing indicator
-        TypingIndicator indicator = TypingIndicator.builder()
-                .conversationID(conversationID)
-                .user(user)
-                .isTyping(false)
-                .build();
-        
-        typingSink.tryEmitNext(indicator);
+
+        Typer typer = typers.remove(new TypingKey(conversationID, user.getUserID()));
+        if (typer == null) {
+            // Not typing, or already stopped by the timeout: subscribers saw typing=false already
+            return;
+        }
+        synchronized (typer) {
+            if (typer.timeout != null) {
+                typer.timeout.cancel(false);
+            }
+        }
+        emit(conversationID, typer.user, false);
     }
 
     /**
-     * Schedule automatic stop typing after 3 seconds
+     * Subscribers and delivery counters of the typing indicator stream
      */
-    private void scheduleAutoStop(Integer conversationID, User user, String key) {
-        ScheduledExecutorService scheduler = new ScheduledThreadPoolExecutor(1);
-        timeoutSchedulers.put(key, scheduler);
-        
-        scheduler.schedule(() -> {
-            log.debug("Auto-stopping typing indicator for user {} in conversation {} after 3 seconds", 
-                    user.getUserID(), conversationID);
-            
-            TypingIndicator stopIndicator = TypingIndicator.builder()
-                    .conversationID(conversationID)
-                    .user(user)
-                    .isTyping(false)
-                    .build();
-            
-            typingSink.tryEmitNext(stopIndicator);
-            
-            // Clean up scheduler
-            timeoutSchedulers.remove(key);
-            scheduler.shutdown();
-        }, 3, TimeUnit.SECONDS);
+    public SubscriptionStats getStats() {
+        return hub.stats();
     }
 
     /**
-     * Cancel any existing timeout for a user/conversation
+     * Timer callback: stop the typer if its deadline passed, otherwise wait for the remaining time
      */
-    private void cancelTimeout(String key) {
-        ScheduledExecutorService existingScheduler = timeoutSchedulers.remove(key);
-        if (existingScheduler != null) {
-            existingScheduler.shutdownNow();
-            log.trace("Cancelled existing typing timeout for {}", key);
+    private void expire(TypingKey key, Typer typer) {
+        long remaining = typer.deadline - System.currentTimeMillis();
+        if (remaining > 0) {
+            synchronized (typer) {
+                if (typers.get(key) == typer) {
+                    typer.timeout = timer.schedule(() -> expire(key, typer), Instant.now().plusMillis(remaining));
+                }
+            }
+            return;
+        }
+        if (typers.remove(key, typer)) {
+            log.debug("Auto-stopping typing indicator for user {} in conversation {} after {} ms",
+                    key.userID(), key.conversationID(), timeoutMillis);
+            emit(key.conversationID(), typer.user, false);
         }
     }
 
+    private void emit(Integer conversationID, Person user, boolean isTyping) {
+        publishLocally(conversationID, user, isTyping);
+        eventBus.publish(TYPING_TOPIC, new TypingEvent(conversationID, user, isTyping));
+    }
+
+    private void publishLocally(Integer conversationID, Person user, boolean isTyping) {
+        TypingIndicator indicator = TypingIndicator.builder()
+                .conversationID(conversationID)
+                .user(user.toUser())
+                .isTyping(isTyping)
+                .build();
+        hub.publish(conversationID, indicator);
+    }
+
+    private void deliverRemoteIndicator(TypingEvent event) {
+        if (hub.subscriberCount(event.conversationID()) == 0) {
+            return;
+        }
+        // The single remote delivery thread keeps typing=true ahead of the typing=false that follows it
+        remoteDelivery.execute(() -> publishLocally(event.conversationID(), event.user(), event.typing()));
+    }
+
+    private record TypingKey(Integer conversationID, Integer userID) {}
+
     /**
-     * Generate a unique key for a user typing in a conversation
+     * A typing indicator emitted on another node
      */
-    private String getTypingKey(Integer conversationID, Integer userID) {
-        return conversationID + ":" + userID;
+    record TypingEvent(Integer conversationID, Person user, boolean typing) {}
+
+    /**
+     * A user currently typing in a conversation, with the display fields the indicators carry
+     */
+    private static final class Typer {
+        final Person user;
+        volatile long deadline;
+        volatile long lastEmittedAt;
+        ScheduledFuture<?> timeout;
+
+        Typer(Person user, long deadline, long lastEmittedAt) {
+            this.user = user;
+            this.deadline = deadline;
+            this.lastEmittedAt = lastEmittedAt;
+        }
     }
 }
@@ -0,0 +1,200 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.NotificationRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Unread Notification Counter
+ * Keeps the unread notification count of each user who asked for it, so the notification bell is answered
+ * from memory: a count is loaded once on a miss and then adjusted when notifications are written or read.
+ * Adjustments are applied after the transaction commits and evict the user's count on the other nodes.
+ * Counts can still drift when a load races a commit, so every reconcile interval the cached counts are
+ * recounted in one grouped query and users who did not ask since the previous pass are dropped.
+ * Past MAX_ENTRIES a miss drops those idle users early instead of waiting for the pass; if every cached user
+ * asked since then, the new count is returned without caching it, so users who keep polling never lose theirs.
+ */
+@Service
+@Slf4j
+public class UnreadNotificationCounter {
+
+    static final String UNREAD_COUNT_TOPIC = "unreadNotificationCount";
+    static final int MAX_ENTRIES = 100_000;
+    private static final int RECONCILE_CHUNK = 500;
+    private static final String RECONCILE_INTERVAL =
+            "#{T(com.example.famMedical.config.Schedules).millis('${notification.unread-counter.reconcile-interval:5m}')}";
+
+    private final NotificationRepository notificationRepository;
+    private final EventBus eventBus;
+    private final int maxEntries;
+
+    private final Map<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+    // Users whose count was read since the previous reconciliation
+    private final Set<Integer> readSinceReconcile = ConcurrentHashMap.newKeySet();
+    // Set once idle users were dropped early; nobody becomes idle again before the next pass
+    private final AtomicBoolean idleDropped = new AtomicBoolean();
+
+    @Autowired
+    public UnreadNotificationCounter(NotificationRepository notificationRepository, EventBus eventBus) {
+        this(notificationRepository, eventBus, MAX_ENTRIES);
+    }
+
+    UnreadNotificationCounter(NotificationRepository notificationRepository, EventBus eventBus, int maxEntries) {
+        this.notificationRepository = notificationRepository;
+        this.eventBus = eventBus;
+        this.maxEntries = maxEntries;
+        eventBus.subscribe(UNREAD_COUNT_TOPIC, UnreadCountChanged.class, event -> counts.remove(event.userID()));
+    }
+
+    /**
+     * Unread notification count of a user, from memory unless it has to be loaded
+     */
+    public int get(Integer userID) {
+        readSinceReconcile.add(userID);
+        AtomicInteger count = counts.get(userID);
+        if (count != null) {
+            return count.get();
+        }
+
+        int loaded = notificationRepository.countUnreadByUser(userID);
+        if (!hasRoom()) {
+            return loaded;
+        }
+        // A concurrent adjustment may have created the entry meanwhile; it wins
+        return counts.computeIfAbsent(userID, id -> new AtomicInteger(loaded)).get();
+    }
+
+    /**
+     * Count newly written unread notifications, once the transaction commits
+     * @param addedByUser Number of new notifications per user
+     */
+    public void added(Map<Integer, Integer> addedByUser) {
+        if (addedByUser.isEmpty()) {
+            return;
+        }
+        afterCommit(() -> addedByUser.forEach((userID, added) -> changed(userID, count -> count + added)));
+    }
+
+    /**
+     * Count one notification of the user as read, once the transaction commits
+     */
+    public void read(Integer userID) {
+        afterCommit(() -> changed(userID, count -> Math.max(0, count - 1)));
+    }
+
+    /**
+     * Set the count of a user who read all notifications to zero, once the transaction commits
+     */
+    public void allRead(Integer userID) {
+        afterCommit(() -> {
+            if (counts.containsKey(userID) || hasRoom()) {
+                counts.put(userID, new AtomicInteger());
+            }
+            eventBus.publish(UNREAD_COUNT_TOPIC, new UnreadCountChanged(userID));
+        });
+    }
+
+    /**
+     * Recount the cached users still asking, and drop the others
+     */
+    void reconcile() {
+        List<Integer> active = new ArrayList<>();
+        for (Integer userID : counts.keySet()) {
+            if (readSinceReconcile.contains(userID)) {
+                active.add(userID);
+            } else {
+                counts.remove(userID);
+            }
+        }
+        readSinceReconcile.clear();
+        idleDropped.set(false);
+
+        int corrected = 0;
+        for (int from = 0; from < active.size(); from += RECONCILE_CHUNK) {
+            List<Integer> chunk = active.subList(from, Math.min(from + RECONCILE_CHUNK, active.size()));
+            Map<Integer, Integer> actual = new HashMap<>();
+            for (Object[] row : notificationRepository.countUnreadByUsers(chunk)) {
+                actual.put((Integer) row[0], ((Number) row[1]).intValue());
+            }
+            for (Integer userID : chunk) {
+                int expected = actual.getOrDefault(userID, 0);
+                AtomicInteger count = counts.get(userID);
+                if (count != null && count.getAndSet(expected) != expected) {
+                    corrected++;
+                }
+            }
+        }
+        if (corrected > 0) {
+            log.info("Corrected {} of {} cached unread notification counts", corrected, active.size());
+        }
+    }
+
+    int size() {
+        return counts.size();
+    }
+
+    /**
+     * Whether a new count may be cached, dropping the users reconcile would drop next if the cache is full
+     */
+    private boolean hasRoom() {
+        if (counts.size() < maxEntries) {
+            return true;
+        }
+        if (idleDropped.compareAndSet(false, true)) {
+            int before = counts.size();
+            counts.keySet().removeIf(userID -> !readSinceReconcile.contains(userID));
+            log.info("Unread notification counter full, dropped {} idle users early", before - counts.size());
+        }
+        return counts.size() < maxEntries;
+    }
+
+    private void changed(Integer userID, IntUnaryOperator update) {
+        // Users without a cached count load it on their next read
+        AtomicInteger count = counts.get(userID);
+        if (count != null) {
+            count.updateAndGet(update);
+        }
+        eventBus.publish(UNREAD_COUNT_TOPIC, new UnreadCountChanged(userID));
+    }
+
+    @Scheduled(initialDelayString = RECONCILE_INTERVAL, fixedRateString = RECONCILE_INTERVAL)
+    void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("Failed to reconcile unread notification counts", e);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * The unread count of a user changed on another node
+     */
+    record UnreadCountChanged(Integer userID) {}
+}
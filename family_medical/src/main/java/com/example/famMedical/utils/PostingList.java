@@ -0,0 +1,140 @@
+package com.example.famMedical.utils;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of positive int IDs stored as variable length encoded deltas
+ * Message IDs grow monotonically, so appends are the common case and most deltas fit in one or two bytes
+ * Not thread safe
+ */
+public final class PostingList {
+
+    private static final int[] EMPTY = new int[0];
+
+    private byte[] data = new byte[8];
+    private int length;
+    private int size;
+    private int last;
+
+    /**
+     * Add an ID
+     * @param id Positive ID
+     * @return false if the ID was already present
+     */
+    public boolean add(int id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("IDs must be positive: " + id);
+        }
+        if (id > last) {
+            writeVarInt(id - last);
+            last = id;
+            size++;
+            return true;
+        }
+
+        // Out of order: rare, so rebuild the encoding
+        int[] ids = toArray();
+        int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return false;
+        }
+        int insertAt = -position - 1;
+        int[] merged = new int[ids.length + 1];
+        System.arraycopy(ids, 0, merged, 0, insertAt);
+        merged[insertAt] = id;
+        System.arraycopy(ids, insertAt, merged, insertAt + 1, ids.length - insertAt);
+        encode(merged);
+        return true;
+    }
+
+    /**
+     * Remove an ID
+     * @return false if the ID was not present
+     */
+    public boolean remove(int id) {
+        int[] ids = toArray();
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            return false;
+        }
+        int[] remaining = new int[ids.length - 1];
+        System.arraycopy(ids, 0, remaining, 0, position);
+        System.arraycopy(ids, position + 1, remaining, position, ids.length - position - 1);
+        encode(remaining);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decode the IDs in ascending order
+     */
+    public int[] toArray() {
+        if (size == 0) {
+            return EMPTY;
+        }
+        int[] ids = new int[size];
+        int value = 0;
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[offset++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            value += delta;
+            ids[i] = value;
+        }
+        return ids;
+    }
+
+    /**
+     * Intersect two ascending ID arrays
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private void encode(int[] ids) {
+        data = new byte[Math.max(8, ids.length * 2)];
+        length = 0;
+        size = 0;
+        last = 0;
+        for (int id : ids) {
+            writeVarInt(id - last);
+            last = id;
+            size++;
+        }
+    }
+
+    private void writeVarInt(int value) {
+        if (length + 5 > data.length) {
+            data = Arrays.copyOf(data, data.length * 2);
+        }
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+}
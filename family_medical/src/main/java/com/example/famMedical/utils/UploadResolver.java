@@ -1,23 +1,19 @@
 package com.example.famMedical.utils;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
+import com.example.famMedical.service.BlobStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Map;
 
 @Component
 public class UploadResolver {
 
     @Autowired
-    private Cloudinary cloudinary;
+    private BlobStore blobStore;
 
     public String uploadPdf(MultipartFile file) throws IOException {
-        Map uploadResult = cloudinary.uploader().upload(file.getBytes(),
-                ObjectUtils.asMap("resource_type", "auto"));
-        return (String) uploadResult.get("secure_url");
+        return blobStore.store(file, "medical-records").url();
     }
 }
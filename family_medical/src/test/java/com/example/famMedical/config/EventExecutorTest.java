@@ -0,0 +1,163 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.dto.ExecutorStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Event Executor Tests")
+class EventExecutorTest {
+
+    private final EventExecutor executor = new EventExecutor("testEvents", 1, 2, 3);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should spill into the overflow queue when full and still run every task in order")
+    void testSpillsAndDrains() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        executor.execute(() -> {
+            await(release);
+            order.add(0);
+            done.countDown();
+        });
+        for (int i = 1; i < 6; i++) {
+            int task = i;
+            executor.execute(() -> {
+                order.add(task);
+                done.countDown();
+            });
+        }
+
+        ExecutorStats blocked = executor.stats();
+        assertEquals(2, blocked.queued());
+        assertEquals(3, blocked.overflowQueued());
+        assertEquals(3, blocked.spilled());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), order);
+    }
+
+    @Test
+    @DisplayName("Should reject tasks once the overflow queue is full too")
+    void testRejectsWhenOverflowFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> await(release));
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {}));
+        ExecutorStats stats = executor.stats();
+        assertEquals(3, stats.overflowQueued());
+        assertEquals(1, stats.rejected());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Should settle every accepted task while producers spill and workers drain concurrently")
+    void testConcurrentSpillAndDrain() throws InterruptedException {
+        EventExecutor small = new EventExecutor("raceEvents", 2, 1, 1);
+        int producers = 4;
+        int tasksEach = 2_000;
+        AtomicInteger thrown = new AtomicInteger();
+        List<CompletableFuture<Void>> futures = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            Thread producer = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < tasksEach; i++) {
+                    try {
+                        futures.add(small.submitCompletable(Thread::yield));
+                    } catch (RejectedExecutionException e) {
+                        thrown.incrementAndGet();
+                    }
+                }
+            });
+            producer.start();
+            threads.add(producer);
+        }
+        start.countDown();
+        for (Thread producer : threads) {
+            producer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        int ran = 0;
+        int dropped = 0;
+        try {
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                    ran++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(RejectedExecutionException.class, e.getCause());
+                    dropped++;
+                } catch (TimeoutException e) {
+                    fail("an accepted task was neither run nor rejected");
+                }
+            }
+        } finally {
+            small.shutdown();
+        }
+        // Futures complete just before the task is counted
+        assertTrue(small.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(producers * tasksEach, ran + dropped + thrown.get());
+        ExecutorStats stats = small.stats();
+        assertEquals(ran, stats.completed());
+        assertEquals(dropped + thrown.get(), stats.rejected());
+    }
+
+    @Test
+    @DisplayName("Should count completed tasks and their waiting time")
+    void testStats() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        executor.execute(() -> {
+            await(release);
+            done.countDown();
+        });
+        executor.execute(done::countDown);
+
+        Thread.sleep(50);
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        ExecutorStats stats = executor.stats();
+        assertEquals("testEvents", stats.name());
+        assertEquals(2, stats.completed());
+        assertEquals(0, stats.spilled());
+        assertTrue(stats.maxWaitMillis() >= 40, "second task waited behind the first");
+        assertTrue(stats.averageRunMillis() > 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
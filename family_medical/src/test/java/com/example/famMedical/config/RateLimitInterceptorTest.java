@@ -0,0 +1,174 @@
+package com.example.famMedical.config;
+
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.service.RateLimitService;
+import graphql.ExecutionInput;
+import graphql.GraphQL;
+import graphql.schema.DataFetcher;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.RuntimeWiring;
+import graphql.schema.idl.SchemaGenerator;
+import graphql.schema.idl.SchemaParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.graphql.support.DefaultExecutionGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.LinkedMultiValueMap;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RateLimitInterceptor
+ * Mutation fields are charged against their bucket before execution, on a small schema run by the engine
+ */
+@DisplayName("Rate Limit Interceptor Tests")
+class RateLimitInterceptorTest {
+
+    private static final String SCHEMA = "type Query { myConversations: [Int] }"
+            + " type Mutation { sendMessage(content: String): Int login(email: String): String markAllNotificationsAsRead: Boolean }";
+    private static final String SEND_MESSAGE = "mutation { sendMessage(content: \"hi\") }";
+
+    private RateLimitService rateLimitService;
+    private RateLimitInterceptor interceptor;
+    private GraphQL graphQL;
+    private final AtomicInteger executed = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        RateLimitProperties properties = new RateLimitProperties();
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(2);
+        limit.setRefillInterval(Duration.ofMinutes(1));
+        properties.getOperations().put("sendMessage", limit);
+        properties.getOperations().put("login", limit);
+        rateLimitService = new RateLimitService(properties);
+        interceptor = new RateLimitInterceptor(rateLimitService);
+
+        DataFetcher<Object> counting = environment -> {
+            executed.incrementAndGet();
+            return null;
+        };
+        RuntimeWiring wiring = RuntimeWiring.newRuntimeWiring()
+                .type("Query", type -> type.dataFetcher("myConversations", counting))
+                .type("Mutation", type -> type.dataFetcher("sendMessage", counting).dataFetcher("login", counting)
+                        .dataFetcher("markAllNotificationsAsRead", counting))
+                .build();
+        GraphQLSchema schema = new SchemaGenerator().makeExecutableSchema(new SchemaParser().parse(SCHEMA), wiring);
+        graphQL = GraphQL.newGraphQL(schema).instrumentation(interceptor).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Should reject a mutation once the bucket is empty")
+    void testRejectsWhenExhausted() {
+        authenticate(1);
+
+        assertTrue(execute(SEND_MESSAGE, "10.0.0.1").getErrors().isEmpty());
+        assertTrue(execute(SEND_MESSAGE, "10.0.0.1").getErrors().isEmpty());
+        WebGraphQlResponse rejected = execute(SEND_MESSAGE, "10.0.0.1");
+
+        assertEquals(2, executed.get());
+        assertEquals(1, rejected.getErrors().size());
+        assertEquals("TOO_MANY_REQUESTS", rejected.getErrors().get(0).getErrorType().toString());
+    }
+
+    @Test
+    @DisplayName("Should limit authenticated users per user, not per address")
+    void testKeyedByUser() {
+        authenticate(1);
+        execute(SEND_MESSAGE, "10.0.0.1");
+        execute(SEND_MESSAGE, "10.0.0.1");
+
+        authenticate(2);
+        assertTrue(execute(SEND_MESSAGE, "10.0.0.1").getErrors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should limit anonymous callers per address")
+    void testKeyedByAddress() {
+        String login = "mutation Login { login(email: \"a@b.c\") }";
+
+        execute(login, "10.0.0.1");
+        execute(login, "10.0.0.1");
+        assertFalse(execute(login, "10.0.0.1").getErrors().isEmpty());
+        assertTrue(execute(login, "10.0.0.2").getErrors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should count every aliased and fragment selected occurrence")
+    void testAliasesAndFragments() {
+        authenticate(1);
+        String document = "mutation { a: sendMessage(content: \"1\") ...More }"
+                + " fragment More on Mutation { ... on Mutation { b: sendMessage(content: \"2\") } }";
+
+        assertTrue(execute(document, "10.0.0.1").getErrors().isEmpty());
+        assertFalse(execute(SEND_MESSAGE, "10.0.0.1").getErrors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should charge no bucket when one field of the request is rejected")
+    void testRejectedRequestChargesNothing() {
+        authenticate(1);
+        execute("mutation { login(email: \"a@b.c\") }", "10.0.0.1");
+        execute("mutation { login(email: \"a@b.c\") }", "10.0.0.1");
+        executed.set(0);
+
+        assertFalse(execute("mutation { sendMessage(content: \"hi\") login(email: \"a@b.c\") }", "10.0.0.1")
+                .getErrors().isEmpty());
+
+        assertEquals(0, executed.get());
+        assertTrue(execute(SEND_MESSAGE, "10.0.0.1").getErrors().isEmpty());
+        assertTrue(execute(SEND_MESSAGE, "10.0.0.1").getErrors().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should not charge queries or unlimited mutations")
+    void testIgnoresOtherOperations() {
+        authenticate(1);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(execute("query { sendMessage: myConversations }", "10.0.0.1").getErrors().isEmpty());
+            assertTrue(execute("mutation { markAllNotificationsAsRead }", "10.0.0.1").getErrors().isEmpty());
+        }
+        assertEquals(10, executed.get());
+        assertEquals(0, rateLimitService.bucketCount());
+    }
+
+    private WebGraphQlResponse execute(String document, String address) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", document);
+        WebGraphQlRequest request = new WebGraphQlRequest(URI.create("http://localhost/graphql"), new HttpHeaders(),
+                new LinkedMultiValueMap<>(), new InetSocketAddress(address, 40000), Map.of(), body, "1", Locale.ROOT);
+        WebGraphQlInterceptor.Chain chain = next -> {
+            ExecutionInput input = next.toExecutionInput();
+            return Mono.just(new WebGraphQlResponse(new DefaultExecutionGraphQlResponse(input, graphQL.execute(input))));
+        };
+        return interceptor.intercept(request, chain).block();
+    }
+
+    private static void authenticate(Integer userID) {
+        User user = new User();
+        user.setUserID(userID);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+}
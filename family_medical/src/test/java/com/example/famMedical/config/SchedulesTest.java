@@ -0,0 +1,29 @@
+package com.example.famMedical.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Schedules Tests")
+class SchedulesTest {
+
+    @Test
+    @DisplayName("Should read the simple and ISO durations of application.yml")
+    void testParsesDurations() {
+        assertEquals(60_000, Schedules.millis("1m"));
+        assertEquals(86_400_000, Schedules.millis("1d"));
+        assertEquals(1_500, Schedules.millis("PT1.5S"));
+        assertEquals(3_600_000, Schedules.millis(Duration.ofHours(1)));
+    }
+
+    @Test
+    @DisplayName("Should turn a zero or negative interval into a delay that never comes round")
+    void testDisabledInterval() {
+        assertEquals(Schedules.NEVER, Schedules.millis("0"));
+        assertEquals(Schedules.NEVER, Schedules.millis(Duration.ZERO));
+        assertEquals(Schedules.NEVER, Schedules.millis(Duration.ofMinutes(-1)));
+    }
+}
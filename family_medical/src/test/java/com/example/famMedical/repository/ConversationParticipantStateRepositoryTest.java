@@ -0,0 +1,181 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.Conversation;
+import com.example.famMedical.Entity.ConversationParticipantState;
+import com.example.famMedical.Entity.Family;
+import com.example.famMedical.Entity.Message;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.Entity.UserRole;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// The send and the read run in transactions of their own, as in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("ConversationParticipantStateRepository Tests")
+class ConversationParticipantStateRepositoryTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ConversationParticipantStateRepository stateRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private FamilyRepository familyRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private TransactionTemplate transactionTemplate;
+    private User doctor;
+    private User headOfFamily;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        doctor = persistUser("state-doctor@test.com", UserRole.BacSi);
+        headOfFamily = persistUser("state-head@test.com", UserRole.ChuHo);
+
+        Family family = new Family();
+        family.setFamilyName("State Family");
+        family.setHeadOfFamily(headOfFamily);
+        family = familyRepository.save(family);
+        conversation = conversationRepository.save(Conversation.builder()
+                .doctor(doctor)
+                .family(family)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stateRepository.deleteAll();
+        messageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        familyRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should count a message sent while a read is in progress as unread")
+    void shouldKeepMessageSentDuringRead() throws Exception {
+        Integer conversationID = conversation.getConversationID();
+        persistMessage(doctor);
+        Message second = persistMessage(doctor);
+        persistState(headOfFamily, second, 2);
+        persistState(doctor, second, 0);
+
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch sent = new CountDownLatch(1);
+        CompletableFuture<Integer> read = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(status -> {
+            // The reader has looked at the conversation before the new message commits
+            Integer upTo = messageRepository.findLatestMessageIDUpTo(conversationID, second.getMessageID());
+            readStarted.countDown();
+            await(sent);
+            return stateRepository.recordMessageRead(conversationID, headOfFamily.getUserID(), upTo, LocalDateTime.now());
+        }));
+
+        assertThat(readStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Message third = transactionTemplate.execute(status -> {
+            Message message = messageRepository.save(newMessage(doctor));
+            stateRepository.recordMessage(conversationID, doctor.getUserID(), message.getMessageID(), message.getCreatedAt());
+            return message;
+        });
+        sent.countDown();
+
+        assertThat(read.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        ConversationParticipantState state = findState(headOfFamily);
+        assertThat(state.getLastReadMessageID()).isEqualTo(second.getMessageID());
+        assertThat(state.getLastMessageID()).isEqualTo(third.getMessageID());
+        assertThat(state.getUnreadCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should never move a read watermark back")
+    void shouldNotMoveWatermarkBack() {
+        Integer conversationID = conversation.getConversationID();
+        Message first = persistMessage(doctor);
+        Message second = persistMessage(doctor);
+        persistState(headOfFamily, second, 2);
+
+        int moved = transactionTemplate.execute(status -> stateRepository.recordMessageRead(
+                conversationID, headOfFamily.getUserID(), second.getMessageID(), LocalDateTime.now()));
+        int movedBack = transactionTemplate.execute(status -> stateRepository.recordMessageRead(
+                conversationID, headOfFamily.getUserID(), first.getMessageID(), LocalDateTime.now()));
+
+        assertThat(moved).isEqualTo(1);
+        assertThat(movedBack).isZero();
+        ConversationParticipantState state = findState(headOfFamily);
+        assertThat(state.getLastReadMessageID()).isEqualTo(second.getMessageID());
+        assertThat(state.getUnreadCount()).isZero();
+    }
+
+    private User persistUser(String email, UserRole role) {
+        User user = new User();
+        user.setFullName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hashedPassword");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private Message persistMessage(User sender) {
+        return messageRepository.save(newMessage(sender));
+    }
+
+    private Message newMessage(User sender) {
+        return Message.builder()
+                .conversation(conversation)
+                .sender(sender)
+                .content("Message from " + sender.getEmail())
+                .build();
+    }
+
+    private void persistState(User user, Message lastMessage, int unreadCount) {
+        stateRepository.save(ConversationParticipantState.builder()
+                .conversationID(conversation.getConversationID())
+                .userID(user.getUserID())
+                .lastMessageID(lastMessage.getMessageID())
+                .lastMessageAt(lastMessage.getCreatedAt())
+                .unreadCount(unreadCount)
+                .build());
+    }
+
+    private ConversationParticipantState findState(User user) {
+        return stateRepository.findByUserIDAndConversationIDs(user.getUserID(), List.of(conversation.getConversationID()))
+                .get(0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
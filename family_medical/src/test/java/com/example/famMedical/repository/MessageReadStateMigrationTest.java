@@ -0,0 +1,162 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.*;
+import com.example.famMedical.config.MessageReadStateMigration;
+import com.example.famMedical.service.ConversationStateService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@DataJpaTest(properties = "message-read-state-migration.enabled=true")
+@ActiveProfiles("test")
+@Import(MessageReadStateMigration.class)
+// ALTER TABLE commits on its own, so the test cannot run inside a rolled back transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Message Read State Migration Tests")
+class MessageReadStateMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MessageReadStateMigration migration;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FamilyRepository familyRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private ConversationParticipantStateRepository stateRepository;
+
+    @MockBean
+    private ConversationStateService conversationStateService;
+
+    private User doctor;
+    private User headOfFamily;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        doctor = persistUser("doctor@migration.com", UserRole.BacSi);
+        headOfFamily = persistUser("head@migration.com", UserRole.ChuHo);
+        Family family = new Family();
+        family.setFamilyName("Migration Family");
+        family.setHeadOfFamily(headOfFamily);
+        family = familyRepository.save(family);
+        conversation = conversationRepository.save(Conversation.builder().doctor(doctor).family(family).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (hasIsReadColumn()) {
+            jdbcTemplate.execute("ALTER TABLE messages DROP COLUMN is_read");
+            jdbcTemplate.execute("ALTER TABLE messages DROP COLUMN read_at");
+        }
+        stateRepository.deleteAll();
+        messageRepository.deleteAll();
+        conversationRepository.deleteAll();
+        familyRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should seed watermarks from messages marked read and drop the old columns")
+    void shouldSeedWatermarksAndDropColumns() {
+        jdbcTemplate.execute("ALTER TABLE messages ADD COLUMN is_read BOOLEAN DEFAULT FALSE NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE messages ADD COLUMN read_at TIMESTAMP");
+        Message first = persistMessage(doctor);
+        Message second = persistMessage(doctor);
+        Message reply = persistMessage(headOfFamily);
+        persistMessage(doctor);
+        LocalDateTime readAt = LocalDateTime.of(2024, 1, 1, 9, 0);
+        jdbcTemplate.update("UPDATE messages SET is_read = TRUE, read_at = ? WHERE message_id IN (?, ?)",
+                readAt, first.getMessageID(), second.getMessageID());
+        // The doctor never read the reply
+        ConversationParticipantState headState = persistState(headOfFamily);
+        ConversationParticipantState doctorState = persistState(doctor);
+
+        migration.run();
+
+        verify(conversationStateService, atLeastOnce()).backfillMissingStates();
+        headState = stateRepository.findById(headState.getStateID()).orElseThrow();
+        assertThat(headState.getLastReadMessageID()).isEqualTo(second.getMessageID());
+        assertThat(headState.getLastReadAt()).isEqualTo(readAt);
+        assertThat(headState.getUnreadCount()).isEqualTo(1);
+        doctorState = stateRepository.findById(doctorState.getStateID()).orElseThrow();
+        assertThat(doctorState.getLastReadMessageID()).isNull();
+        assertThat(doctorState.getUnreadCount()).isEqualTo(1);
+        assertThat(reply.getMessageID()).isGreaterThan(second.getMessageID());
+        assertThat(hasIsReadColumn()).isFalse();
+
+        // Nothing left to migrate
+        migration.run();
+    }
+
+    @Test
+    @DisplayName("Should leave the old columns alone unless enabled")
+    void shouldKeepColumnsWhenDisabled() {
+        jdbcTemplate.execute("ALTER TABLE messages ADD COLUMN is_read BOOLEAN DEFAULT FALSE NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE messages ADD COLUMN read_at TIMESTAMP");
+        ConversationParticipantState state = persistState(headOfFamily);
+
+        new MessageReadStateMigration(jdbcTemplate, conversationStateService, false).run();
+
+        assertThat(hasIsReadColumn()).isTrue();
+        assertThat(stateRepository.findById(state.getStateID()).orElseThrow().getUnreadCount()).isZero();
+        verify(conversationStateService, never()).backfillMissingStates();
+    }
+
+    private boolean hasIsReadColumn() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE LOWER(TABLE_NAME) = 'messages' AND LOWER(COLUMN_NAME) = 'is_read'", Integer.class) > 0;
+    }
+
+    private User persistUser(String email, UserRole role) {
+        User user = new User();
+        user.setFullName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hashedPassword");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+
+    private Message persistMessage(User sender) {
+        return messageRepository.save(Message.builder()
+                .conversation(conversation)
+                .sender(sender)
+                .content("Message from " + sender.getEmail())
+                .build());
+    }
+
+    private ConversationParticipantState persistState(User user) {
+        return stateRepository.save(ConversationParticipantState.builder()
+                .conversationID(conversation.getConversationID())
+                .userID(user.getUserID())
+                .unreadCount(0)
+                .build());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("MessageRepository Tests")
+class MessageRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    private User doctor;
+    private User headOfFamily;
+    private Conversation conversation;
+    private Conversation otherConversation;
+    private LocalDateTime baseTime;
+
+    @BeforeEach
+    void setUp() {
+        doctor = persistUser("doctor@test.com", UserRole.BacSi);
+        headOfFamily = persistUser("head@test.com", UserRole.ChuHo);
+        User otherHead = persistUser("other@test.com", UserRole.ChuHo);
+
+        conversation = persistConversation(persistFamily("Test Family", headOfFamily));
+        otherConversation = persistConversation(persistFamily("Other Family", otherHead));
+
+        baseTime = LocalDateTime.of(2024, 1, 1, 8, 0);
+        entityManager.flush();
+    }
+
+    @Test
+    @DisplayName("Should page by keyset in both directions")
+    void shouldPageByKeyset() {
+        Message first = persistMessage(conversation, doctor, baseTime, false);
+        Message second = persistMessage(conversation, headOfFamily, baseTime.plusMinutes(1), false);
+        Message third = persistMessage(conversation, doctor, baseTime.plusMinutes(2), false);
+        persistMessage(otherConversation, doctor, baseTime.plusMinutes(3), false);
+
+        List<Message> latest = messageRepository.findLatestByConversationID(
+                conversation.getConversationID(), PageRequest.of(0, 2));
+        assertThat(latest).containsExactly(third, second);
+
+        List<Message> older = messageRepository.findBeforeCursor(
+                conversation.getConversationID(), second.getCreatedAt(), second.getMessageID(), PageRequest.of(0, 10));
+        assertThat(older).containsExactly(first);
+
+        List<Message> newer = messageRepository.findAfterCursor(
+                conversation.getConversationID(), first.getCreatedAt(), first.getMessageID(), PageRequest.of(0, 10));
+        assertThat(newer).containsExactly(second, third);
+    }
+
+    @Test
+    @DisplayName("Should order by createdAt rather than by insertion order")
+    void shouldOrderByCreatedAtNotInsertion() {
+        Message latest = persistMessage(conversation, doctor, baseTime.plusMinutes(2), false);
+        Message earliest = persistMessage(conversation, headOfFamily, baseTime, false);
+        Message middle = persistMessage(conversation, doctor, baseTime.plusMinutes(1), false);
+        assertThat(earliest.getCreatedAt()).isEqualTo(baseTime);
+
+        Integer conversationID = conversation.getConversationID();
+        assertThat(messageRepository.findLatestByConversationID(conversationID, PageRequest.of(0, 10)))
+                .containsExactly(latest, middle, earliest);
+        assertThat(messageRepository.findBeforeCursor(
+                conversationID, middle.getCreatedAt(), middle.getMessageID(), PageRequest.of(0, 10)))
+                .containsExactly(earliest);
+        assertThat(messageRepository.findAfterCursor(
+                conversationID, earliest.getCreatedAt(), earliest.getMessageID(), PageRequest.of(0, 10)))
+                .containsExactly(middle, latest);
+        assertThat(messageRepository.findLastMessagesByConversationIDs(Set.of(conversationID)))
+                .containsExactly(latest);
+    }
+
+    @Test
+    @DisplayName("Should find the latest message of each conversation")
+    void shouldFindLastMessagesByConversationIDs() {
+        persistMessage(conversation, doctor, baseTime, false);
+        Message latest = persistMessage(conversation, headOfFamily, baseTime.plusMinutes(5), false);
+        Message otherLatest = persistMessage(otherConversation, doctor, baseTime.plusMinutes(1), false);
+
+        List<Message> lastMessages = messageRepository.findLastMessagesByConversationIDs(
+                Set.of(conversation.getConversationID(), otherConversation.getConversationID()));
+
+        assertThat(lastMessages).containsExactlyInAnyOrder(latest, otherLatest);
+    }
+
+    @Test
+    @DisplayName("Should count unread messages after the read watermark")
+    void shouldCountUnreadAfterWatermark() {
+        Message first = persistMessage(conversation, doctor, baseTime, false);
+        persistMessage(conversation, doctor, baseTime.plusMinutes(1), false);
+        persistMessage(conversation, headOfFamily, baseTime.plusMinutes(2), false);
+        Message last = persistMessage(conversation, doctor, baseTime.plusMinutes(3), false);
+        Integer conversationID = conversation.getConversationID();
+
+        // No watermark yet: everything the doctor sent is unread
+        assertThat(messageRepository.countUnreadByConversationAndUser(conversationID, headOfFamily.getUserID())).isEqualTo(3);
+
+        entityManager.persistAndFlush(ConversationParticipantState.builder()
+                .conversationID(conversationID)
+                .userID(headOfFamily.getUserID())
+                .lastReadMessageID(first.getMessageID())
+                .build());
+
+        assertThat(messageRepository.countUnreadByConversationAndUser(conversationID, headOfFamily.getUserID())).isEqualTo(2);
+        assertThat(messageRepository.countUnreadByUser(headOfFamily.getUserID())).isEqualTo(2);
+        assertThat(messageRepository.findLatestMessageIDUpTo(conversationID, first.getMessageID() + 1000)).isEqualTo(last.getMessageID());
+        assertThat(messageRepository.findLatestMessageIDUpTo(conversationID, first.getMessageID() - 1)).isNull();
+    }
+
+    private User persistUser(String email, UserRole role) {
+        User user = new User();
+        user.setFullName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hashedPassword");
+        user.setRole(role);
+        return entityManager.persist(user);
+    }
+
+    private Family persistFamily(String name, User head) {
+        Family family = new Family();
+        family.setFamilyName(name);
+        family.setHeadOfFamily(head);
+        return entityManager.persist(family);
+    }
+
+    private Conversation persistConversation(Family family) {
+        return entityManager.persist(Conversation.builder()
+                .doctor(doctor)
+                .family(family)
+                .build());
+    }
+
+    private Message persistMessage(Conversation target, User sender, LocalDateTime createdAt, boolean isRead) {
+        Message message = entityManager.persistAndFlush(Message.builder()
+                .conversation(target)
+                .sender(sender)
+                .content("Message at " + createdAt)
+                .isRead(isRead)
+                .build());
+        // createdAt is set by @PrePersist and not updatable, so move it in the table to control the ordering
+        entityManager.getEntityManager()
+                .createNativeQuery("UPDATE messages SET created_at = ?1 WHERE message_id = ?2")
+                .setParameter(1, createdAt)
+                .setParameter(2, message.getMessageID())
+                .executeUpdate();
+        entityManager.refresh(message);
+        return message;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.Entity.UserRole;
+import com.example.famMedical.config.IdGeneratorInitializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(IdGeneratorInitializer.class)
+// The generator updates its row in a transaction of its own, which would wait on a test transaction holding it
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Notification ID Generator Tests")
+class NotificationIdGeneratorTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdGeneratorInitializer idGeneratorInitializer;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @AfterEach
+    void tearDown() {
+        notificationRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should hand out IDs above those written before the pooled generator")
+    void shouldSkipExistingIDs() {
+        User user = persistUser();
+        jdbcTemplate.update("INSERT INTO notifications (notification_id, user_id, type, title, message, is_read, created_at) "
+                + "VALUES (5000, ?, 'NEW_MESSAGE', 'legacy', 'legacy', false, CURRENT_TIMESTAMP)", user.getUserID());
+
+        idGeneratorInitializer.run();
+        idGeneratorInitializer.run();
+
+        List<Notification> notifications = new ArrayList<>();
+        for (int i = 0; i < Notification.ID_ALLOCATION_SIZE + 5; i++) {
+            notifications.add(Notification.builder()
+                    .user(user)
+                    .type(NotificationType.NEW_MESSAGE)
+                    .title("Title " + i)
+                    .message("Message " + i)
+                    .build());
+        }
+        List<Notification> saved = notificationRepository.saveAll(notifications);
+
+        assertThat(saved).allSatisfy(notification -> assertThat(notification.getNotificationID()).isGreaterThan(5000L));
+        assertThat(saved.stream().map(Notification::getNotificationID).distinct()).hasSize(saved.size());
+    }
+
+    private User persistUser() {
+        User user = new User();
+        user.setEmail("generator@test.com");
+        user.setPasswordHash("hash");
+        user.setFullName("Generator");
+        user.setRole(UserRole.ChuHo);
+        return userRepository.save(user);
+    }
+}
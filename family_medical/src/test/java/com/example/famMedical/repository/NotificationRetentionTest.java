@@ -0,0 +1,130 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.ArchivedNotification;
+import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.Entity.UserRole;
+import com.example.famMedical.config.NotificationRetentionProperties;
+import com.example.famMedical.dto.RetentionStats;
+import com.example.famMedical.service.NotificationRetentionJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// Every batch commits on its own, as in production
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Notification Retention Tests")
+class NotificationRetentionTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private ArchivedNotificationRepository archivedNotificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private NotificationRetentionJob job;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        NotificationRetentionProperties properties = new NotificationRetentionProperties();
+        properties.setInterval(Duration.ZERO);
+        properties.setDefaultAge(Duration.ofDays(90));
+        properties.getAges().put(NotificationType.NEW_MESSAGE, Duration.ofDays(30));
+        properties.getAges().put(NotificationType.DIGEST, Duration.ZERO);
+        properties.setBatchSize(1);
+        properties.setBatchPause(Duration.ZERO);
+        job = new NotificationRetentionJob(notificationRepository, archivedNotificationRepository,
+                new TransactionTemplate(transactionManager), properties);
+
+        user = new User();
+        user.setEmail("retention@test.com");
+        user.setPasswordHash("hash");
+        user.setFullName("Retention");
+        user.setRole(UserRole.ChuHo);
+        user = userRepository.save(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        archivedNotificationRepository.deleteAll();
+        notificationRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Should archive read notifications past the age of their type in bounded batches")
+    void shouldArchiveExpiredReadNotifications() {
+        Long oldRead1 = persist(NotificationType.APPOINTMENT_CREATED, true, 100);
+        Long oldRead2 = persist(NotificationType.APPOINTMENT_UPDATED, true, 95);
+        Long oldRead3 = persist(NotificationType.APPOINTMENT_CREATED, true, 91);
+        Long message = persist(NotificationType.NEW_MESSAGE, true, 31);
+        Long oldUnread = persist(NotificationType.APPOINTMENT_CREATED, false, 100);
+        Long recentRead = persist(NotificationType.APPOINTMENT_CREATED, true, 60);
+        Long keptDigest = persist(NotificationType.DIGEST, true, 400);
+
+        long archived = job.run();
+
+        assertThat(archived).isEqualTo(4);
+        assertThat(notificationRepository.findAll()).extracting(Notification::getNotificationID)
+                .containsExactlyInAnyOrder(oldUnread, recentRead, keptDigest);
+        assertThat(archivedNotificationRepository.findAll()).extracting(ArchivedNotification::getNotificationID)
+                .containsExactlyInAnyOrder(oldRead1, oldRead2, oldRead3, message);
+
+        ArchivedNotification copy = archivedNotificationRepository.findById(oldRead1).orElseThrow();
+        assertThat(copy.getUserID()).isEqualTo(user.getUserID());
+        assertThat(copy.getTitle()).isEqualTo("Title");
+        assertThat(copy.getArchivedAt()).isNotNull();
+
+        RetentionStats stats = job.stats();
+        assertThat(stats.runs()).isEqualTo(1);
+        assertThat(stats.archived()).isEqualTo(4);
+        // One row per batch, the second APPOINTMENT_CREATED batch continuing after the first one's ID
+        assertThat(stats.batches()).isEqualTo(4);
+        assertThat(stats.lastRunArchived()).isEqualTo(4);
+        assertThat(stats.running()).isFalse();
+
+        assertThat(job.run()).isZero();
+    }
+
+    private Long persist(NotificationType type, boolean read, int ageInDays) {
+        Notification notification = notificationRepository.save(Notification.builder()
+                .user(user)
+                .type(type)
+                .title("Title")
+                .message("Message")
+                .isRead(read)
+                .readAt(read ? LocalDateTime.now() : null)
+                .build());
+        // createdAt is set on persist, so age the row afterwards
+        jdbcTemplate.update("UPDATE notifications SET created_at = ? WHERE notification_id = ?",
+                LocalDateTime.now().minusDays(ageInDays), notification.getNotificationID());
+        return notification.getNotificationID();
+    }
+}
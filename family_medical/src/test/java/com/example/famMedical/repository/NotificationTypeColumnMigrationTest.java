@@ -0,0 +1,60 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.config.NotificationTypeColumnMigration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+// MODIFY COLUMN is MySQL syntax, which the default embedded database does not accept
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:typecolumn;DB_CLOSE_DELAY=-1;MODE=MySQL")
+@Import(NotificationTypeColumnMigration.class)
+// ALTER TABLE commits on its own, so the test cannot run inside a rolled back transaction
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@DisplayName("Notification Type Column Migration Tests")
+class NotificationTypeColumnMigrationTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NotificationTypeColumnMigration migration;
+
+    @Test
+    @DisplayName("Should turn an ENUM type column into VARCHAR so newer types can be written")
+    void shouldWidenEnumColumn() {
+        jdbcTemplate.execute("ALTER TABLE notifications ALTER COLUMN type ENUM('APPOINTMENT_CREATED', 'NEW_MESSAGE') NOT NULL");
+        assertThat(dataType("notifications")).isEqualToIgnoringCase("enum");
+
+        migration.run();
+
+        assertThat(dataType("notifications")).isNotEqualToIgnoringCase("enum");
+        assertThat(columnLength("notifications")).isEqualTo(50);
+        assertThat(dataType("notification_archive")).isNotEqualToIgnoringCase("enum");
+
+        // Nothing left to migrate
+        migration.run();
+    }
+
+    private String dataType(String table) {
+        return jdbcTemplate.queryForObject("SELECT DATA_TYPE FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE LOWER(TABLE_NAME) = ? AND LOWER(COLUMN_NAME) = 'type'", String.class, table);
+    }
+
+    private Integer columnLength(String table) {
+        return jdbcTemplate.queryForObject("SELECT CHARACTER_MAXIMUM_LENGTH FROM INFORMATION_SCHEMA.COLUMNS "
+                + "WHERE LOWER(TABLE_NAME) = ? AND LOWER(COLUMN_NAME) = 'type'", Integer.class, table);
+    }
+}
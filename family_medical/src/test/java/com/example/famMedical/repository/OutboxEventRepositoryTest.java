@@ -0,0 +1,53 @@
+package com.example.famMedical.repository;
+
+import com.example.famMedical.Entity.OutboxEvent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@DisplayName("OutboxEventRepository Tests")
+class OutboxEventRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Test
+    @DisplayName("Should claim due events oldest first, a page at a time")
+    void shouldFindClaimable() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 8, 0);
+        OutboxEvent first = persist(now.minusMinutes(2));
+        OutboxEvent second = persist(now.minusMinutes(1));
+        OutboxEvent third = persist(now);
+        persist(now.plusMinutes(5));
+        entityManager.flush();
+
+        List<OutboxEvent> page = outboxEventRepository.findClaimable(now, PageRequest.of(0, 2));
+        assertThat(page).containsExactly(first, second);
+
+        List<OutboxEvent> due = outboxEventRepository.findClaimable(now, PageRequest.of(0, 10));
+        assertThat(due).containsExactly(first, second, third);
+    }
+
+    private OutboxEvent persist(LocalDateTime availableAt) {
+        return entityManager.persist(OutboxEvent.builder()
+                .eventType("AppointmentCreatedEvent")
+                .payload("{}")
+                .createdAt(availableAt)
+                .availableAt(availableAt)
+                .build());
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Family;
+import com.example.famMedical.Entity.MedicalRecord;
+import com.example.famMedical.Entity.Member;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.Entity.UserRole;
+import com.example.famMedical.repository.MedicalRecordRepository;
+import com.example.famMedical.repository.MessageAttachmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Blob Access Service Tests")
+class BlobAccessServiceTest {
+
+    private static final String KEY = "a".repeat(64);
+    private static final String URL = FileSystemBlobStore.URL_PREFIX + KEY;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private MessageAttachmentRepository messageAttachmentRepository;
+
+    @Mock
+    private MedicalRecordService medicalRecordService;
+
+    @Mock
+    private ConversationAccessCache conversationAccessCache;
+
+    @Mock
+    private BlobStore blobStore;
+
+    @InjectMocks
+    private BlobAccessService blobAccessService;
+
+    private User user;
+    private MedicalRecord record;
+    private final Resource content = new ByteArrayResource(new byte[]{1});
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUserID(7);
+        user.setRole(UserRole.ChuHo);
+
+        Member member = new Member();
+        member.setFamily(new Family());
+        record = new MedicalRecord();
+        record.setMember(member);
+        record.setFileLink(URL);
+    }
+
+    @Test
+    @DisplayName("Should serve a blob of a record the user may download")
+    void testRecordAllowed() {
+        when(medicalRecordRepository.findByFileLink(URL)).thenReturn(List.of(record));
+        when(messageAttachmentRepository.findConversationIDsByFileUrl(URL)).thenReturn(List.of());
+        when(medicalRecordService.canUserDownloadRecord(user, record)).thenReturn(true);
+        when(blobStore.load(KEY)).thenReturn(Optional.of(content));
+
+        assertSame(content, blobAccessService.loadPermitted(user, KEY));
+    }
+
+    @Test
+    @DisplayName("Should serve a blob attached in a conversation the user takes part in")
+    void testAttachmentAllowed() {
+        when(medicalRecordRepository.findByFileLink(URL)).thenReturn(List.of(record));
+        when(messageAttachmentRepository.findConversationIDsByFileUrl(URL)).thenReturn(List.of(3));
+        when(medicalRecordService.canUserDownloadRecord(user, record)).thenReturn(false);
+        when(conversationAccessCache.isParticipant(3, 7)).thenReturn(true);
+        when(blobStore.load(KEY)).thenReturn(Optional.of(content));
+
+        assertSame(content, blobAccessService.loadPermitted(user, KEY));
+    }
+
+    @Test
+    @DisplayName("Should refuse a blob the user may not read, even with its link")
+    void testForbidden() {
+        when(medicalRecordRepository.findByFileLink(URL)).thenReturn(List.of(record));
+        when(messageAttachmentRepository.findConversationIDsByFileUrl(URL)).thenReturn(List.of(3));
+        when(medicalRecordService.canUserDownloadRecord(user, record)).thenReturn(false);
+        when(conversationAccessCache.isParticipant(3, 7)).thenReturn(false);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> blobAccessService.loadPermitted(user, KEY));
+        assertEquals(HttpStatus.FORBIDDEN, e.getStatusCode());
+        verify(blobStore, never()).load(any());
+    }
+
+    @Test
+    @DisplayName("Should not serve blobs nothing references")
+    void testUnreferenced() {
+        when(medicalRecordRepository.findByFileLink(URL)).thenReturn(List.of());
+        when(messageAttachmentRepository.findConversationIDsByFileUrl(URL)).thenReturn(List.of());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> blobAccessService.loadPermitted(user, KEY));
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+}
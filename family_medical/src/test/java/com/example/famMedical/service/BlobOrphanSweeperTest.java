@@ -0,0 +1,90 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.dto.StoredBlob;
+import com.example.famMedical.repository.MedicalRecordRepository;
+import com.example.famMedical.repository.MessageAttachmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Blob Orphan Sweeper Tests")
+class BlobOrphanSweeperTest {
+
+    @TempDir
+    Path root;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private MessageAttachmentRepository messageAttachmentRepository;
+
+    private FileSystemBlobStore blobStore;
+    private BlobOrphanSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new FileSystemBlobStore(root.toString());
+        sweeper = new BlobOrphanSweeper(blobStore, medicalRecordRepository, messageAttachmentRepository,
+                Duration.ofHours(1));
+    }
+
+    @Test
+    @DisplayName("Should delete only old blobs nothing references")
+    void testDeletesUnreferencedOldBlobs() throws IOException {
+        StoredBlob record = age(blobStore.store(pdf("record"), "medical-records"));
+        StoredBlob attachment = age(blobStore.store(pdf("attachment"), "messages"));
+        StoredBlob orphan = age(blobStore.store(pdf("orphan"), "messages"));
+        StoredBlob recent = blobStore.store(pdf("recent"), "messages");
+        when(medicalRecordRepository.findFileLinksIn(anyCollection())).thenReturn(List.of(record.url()));
+        when(messageAttachmentRepository.findFileUrlsIn(anyCollection())).thenReturn(List.of(attachment.url()));
+
+        assertEquals(1, sweeper.sweep());
+
+        assertTrue(blobStore.load(record.key()).isPresent());
+        assertTrue(blobStore.load(attachment.key()).isPresent());
+        assertTrue(blobStore.load(orphan.key()).isEmpty());
+        assertTrue(blobStore.load(recent.key()).isPresent());
+    }
+
+    @Test
+    @DisplayName("Should keep an old blob another upload just reused")
+    void testKeepsReusedBlob() throws IOException {
+        StoredBlob first = age(blobStore.store(pdf("shared"), "messages"));
+        StoredBlob reused = blobStore.store(pdf("shared"), "messages");
+
+        assertFalse(reused.created());
+        assertEquals(0, sweeper.sweep());
+        assertTrue(blobStore.load(first.key()).isPresent());
+        verifyNoInteractions(medicalRecordRepository, messageAttachmentRepository);
+    }
+
+    private StoredBlob age(StoredBlob blob) throws IOException {
+        Path path = blobStore.load(blob.key()).orElseThrow().getFile().toPath();
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofDays(2))));
+        return blob;
+    }
+
+    private static MockMultipartFile pdf(String content) {
+        return new MockMultipartFile("file", "file.pdf", "application/pdf", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Conversation;
+import com.example.famMedical.Entity.Family;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.Entity.UserRole;
+import com.example.famMedical.repository.ConversationRepository;
+import com.example.famMedical.repository.FamilyRepository;
+import com.example.famMedical.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The entity listeners reach the caches in the running application and evict once the write commits
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@DisplayName("Cache Eviction Integration Tests")
+class CacheEvictionIntegrationTest {
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private FamilyRepository familyRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private ConversationAccessCache conversationAccessCache;
+
+    private User doctor;
+    private User head;
+    private User newHead;
+    private Family family;
+    private Conversation conversation;
+
+    @BeforeEach
+    void setUp() {
+        doctor = persistUser("eviction-doctor@test.com", UserRole.BacSi);
+        head = persistUser("eviction-head@test.com", UserRole.ChuHo);
+        newHead = persistUser("eviction-new-head@test.com", UserRole.ChuHo);
+        family = new Family();
+        family.setFamilyName("Eviction Family");
+        family.setHeadOfFamily(head);
+        family = familyRepository.save(family);
+        conversation = conversationRepository.save(Conversation.builder().doctor(doctor).family(family).build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        conversationRepository.deleteAll(conversationRepository.findAllById(
+                conversationRepository.findConversationIDsByFamilyID(family.getFamilyID())));
+        familyRepository.deleteById(family.getFamilyID());
+        userRepository.deleteAll(List.of(doctor, head, newHead));
+    }
+
+    @Test
+    @DisplayName("Should drop the old head of family from the conversation once the family update commits")
+    void familyUpdate_EvictsParticipants() {
+        Integer conversationID = conversation.getConversationID();
+        assertTrue(conversationAccessCache.isParticipant(conversationID, head.getUserID()));
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Family loaded = familyRepository.findById(family.getFamilyID()).orElseThrow();
+            loaded.setHeadOfFamily(newHead);
+            familyRepository.save(loaded);
+        });
+
+        assertFalse(conversationAccessCache.isParticipant(conversationID, head.getUserID()));
+        assertTrue(conversationAccessCache.isParticipant(conversationID, newHead.getUserID()));
+    }
+
+    @Test
+    @DisplayName("Should forget a deleted conversation")
+    void conversationDelete_EvictsConversation() {
+        Integer conversationID = conversation.getConversationID();
+        assertTrue(conversationAccessCache.exists(conversationID));
+
+        conversationRepository.deleteById(conversationID);
+
+        assertFalse(conversationAccessCache.exists(conversationID));
+    }
+
+    private User persistUser(String email, UserRole role) {
+        User user = new User();
+        user.setFullName(email);
+        user.setEmail(email);
+        user.setPasswordHash("hashedPassword");
+        user.setRole(role);
+        return userRepository.save(user);
+    }
+}
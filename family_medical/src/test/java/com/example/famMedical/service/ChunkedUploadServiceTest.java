@@ -0,0 +1,374 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.MedicalRecord;
+import com.example.famMedical.Entity.Member;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.dto.ChunkedUploadInput;
+import com.example.famMedical.dto.ChunkedUploadStatus;
+import com.example.famMedical.dto.StoredBlob;
+import com.example.famMedical.repository.MemberRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Chunked Upload Service Tests")
+class ChunkedUploadServiceTest {
+
+    private static final int CHUNK_SIZE = (int) ChunkedUploadService.MIN_CHUNK_SIZE;
+    private static final String UUID_WITHOUT_SESSION = "00000000-0000-0000-0000-000000000001";
+
+    @Mock
+    private BlobStore blobStore;
+
+    @Mock
+    private MedicalRecordService medicalRecordService;
+
+    @Mock
+    private MemberRepository memberRepository;
+
+    @TempDir
+    Path uploadRoot;
+
+    private ChunkedUploadService chunkedUploadService;
+    private User uploader;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() {
+        chunkedUploadService = newService();
+
+        uploader = new User();
+        uploader.setUserID(1);
+
+        // Two full chunks and a short last one
+        content = new byte[CHUNK_SIZE * 2 + 100];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+    }
+
+    @Test
+    @DisplayName("Should assemble the chunks and create the record on completion")
+    void completeUpload_CreatesRecord() throws IOException {
+        String uploadId = init().uploadId();
+
+        ChunkedUploadStatus status = null;
+        for (int index = 0; index < 3; index++) {
+            status = sendChunk(uploadId, index, chunk(index));
+        }
+        assertEquals(3, status.totalChunks());
+        assertEquals(3, status.nextChunk());
+        assertEquals(content.length, status.receivedBytes());
+
+        byte[][] stored = new byte[1][];
+        when(blobStore.store(any(Path.class), eq("scan.dcm"), eq("medical-records"))).thenAnswer(invocation -> {
+            stored[0] = Files.readAllBytes(invocation.getArgument(0));
+            return new StoredBlob("key", "https://cdn/scan.dcm", content.length, null, true);
+        });
+        Member member = new Member();
+        when(memberRepository.findById(7)).thenReturn(Optional.of(member));
+        when(medicalRecordService.createMedicalRecord(any(MedicalRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MedicalRecord record = chunkedUploadService.completeUpload(uploader, uploadId);
+
+        assertArrayEquals(content, stored[0]);
+        assertSame(member, record.getMember());
+        assertEquals("https://cdn/scan.dcm", record.getFileLink());
+        assertEquals(MedicalRecord.FileType.Chup_MRI, record.getFileType());
+        assertEquals(0, Files.list(uploadRoot).count());
+        assertThrows(ResponseStatusException.class, () -> chunkedUploadService.getStatus(uploader, uploadId));
+    }
+
+    @Test
+    @DisplayName("Should not create a record before every chunk arrived")
+    void completeUpload_Incomplete_Conflict() throws IOException {
+        ChunkedUploadStatus status = init();
+        sendChunk(status.uploadId(), 0, chunk(0));
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+            () -> chunkedUploadService.completeUpload(uploader, status.uploadId()));
+
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+        verifyNoInteractions(blobStore, medicalRecordService);
+    }
+
+    @Test
+    @DisplayName("Should drop a corrupted chunk and resume from the last good one")
+    void uploadChunk_ChecksumMismatch_ResumesFromLastGoodChunk() throws IOException {
+        ChunkedUploadStatus status = init();
+        sendChunk(status.uploadId(), 0, chunk(0));
+
+        byte[] corrupted = chunk(1);
+        String checksum = sha256(corrupted);
+        corrupted[10] ^= 1;
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> chunkedUploadService.uploadChunk(
+            uploader, status.uploadId(), 1, checksum, new ByteArrayInputStream(corrupted)));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+
+        ChunkedUploadStatus resumed = chunkedUploadService.getStatus(uploader, status.uploadId());
+        assertEquals(1, resumed.nextChunk());
+        assertEquals(CHUNK_SIZE, Files.size(uploadRoot.resolve(status.uploadId() + ".part")));
+
+        assertEquals(2, sendChunk(status.uploadId(), 1, chunk(1)).nextChunk());
+    }
+
+    @Test
+    @DisplayName("Should acknowledge a resent chunk and reject chunks out of order")
+    void uploadChunk_Order() throws IOException {
+        ChunkedUploadStatus status = init();
+        sendChunk(status.uploadId(), 0, chunk(0));
+
+        assertEquals(1, sendChunk(status.uploadId(), 0, chunk(0)).nextChunk());
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+            () -> sendChunk(status.uploadId(), 2, chunk(2)));
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should reject a resent chunk whose checksum differs from the one received")
+    void uploadChunk_ResentWithOtherChecksum_Conflict() throws IOException {
+        ChunkedUploadStatus status = init();
+        sendChunk(status.uploadId(), 0, chunk(0));
+
+        byte[] changed = chunk(0);
+        changed[0] ^= 1;
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+            () -> sendChunk(status.uploadId(), 0, changed));
+        assertEquals(HttpStatus.CONFLICT, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should resume an upload after a restart")
+    void uploadChunk_AfterRestart_Resumes() throws IOException {
+        ChunkedUploadStatus status = init();
+        sendChunk(status.uploadId(), 0, chunk(0));
+
+        // Another instance on the same directory, as after a restart or on another node
+        ChunkedUploadService restarted = newService();
+        restarted.recoverUploads();
+        assertEquals(1, restarted.getStatus(uploader, status.uploadId()).nextChunk());
+
+        chunkedUploadService = restarted;
+        sendChunk(status.uploadId(), 1, chunk(1));
+        assertEquals(3, sendChunk(status.uploadId(), 2, chunk(2)).nextChunk());
+
+        byte[][] stored = new byte[1][];
+        when(blobStore.store(any(Path.class), anyString(), anyString())).thenAnswer(invocation -> {
+            stored[0] = Files.readAllBytes(invocation.getArgument(0));
+            return new StoredBlob("key", "https://cdn/scan.dcm", content.length, null, true);
+        });
+        when(memberRepository.findById(7)).thenReturn(Optional.of(new Member()));
+        when(medicalRecordService.createMedicalRecord(any(MedicalRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        MedicalRecord record = restarted.completeUpload(uploader, status.uploadId());
+
+        assertArrayEquals(content, stored[0]);
+        assertEquals(MedicalRecord.FileType.Chup_MRI, record.getFileType());
+        assertEquals(0, Files.list(uploadRoot).count());
+    }
+
+    @Test
+    @DisplayName("Should delete uploads left idle past their TTL at startup, with or without a sidecar")
+    void recoverUploads_DeletesExpired() throws IOException {
+        ChunkedUploadStatus expired = init();
+        ChunkedUploadStatus active = init();
+        Path orphan = Files.createFile(uploadRoot.resolve(UUID_WITHOUT_SESSION + ".part"));
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+        for (Path file : Files.list(uploadRoot).toList()) {
+            if (!file.getFileName().toString().startsWith(active.uploadId())) {
+                Files.setLastModifiedTime(file, old);
+            }
+        }
+
+        newService().recoverUploads();
+
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(uploadRoot.resolve(expired.uploadId() + ".part")));
+        assertThrows(ResponseStatusException.class, () -> chunkedUploadService.getStatus(uploader, expired.uploadId()));
+        assertEquals(0, chunkedUploadService.getStatus(uploader, active.uploadId()).nextChunk());
+    }
+
+    @Test
+    @DisplayName("Should not resolve upload IDs it did not hand out")
+    void getStatus_InvalidId_NotFound() {
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+            () -> chunkedUploadService.getStatus(uploader, "../secrets"));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should reject a chunk of the wrong size")
+    void uploadChunk_WrongSize_BadRequest() throws IOException {
+        ChunkedUploadStatus status = init();
+        byte[] tooLong = Arrays.copyOf(chunk(0), CHUNK_SIZE + 1);
+
+        assertThrows(ResponseStatusException.class, () -> sendChunk(status.uploadId(), 0, tooLong));
+        assertEquals(0, chunkedUploadService.getStatus(uploader, status.uploadId()).nextChunk());
+    }
+
+    @Test
+    @DisplayName("Should only let the uploader access the upload")
+    void uploadChunk_OtherUser_Forbidden() throws IOException {
+        ChunkedUploadStatus status = init();
+        User other = new User();
+        other.setUserID(2);
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () -> chunkedUploadService.uploadChunk(
+            other, status.uploadId(), 0, sha256(chunk(0)), new ByteArrayInputStream(chunk(0))));
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should reject files above the size limit")
+    void initUpload_TooLarge_BadRequest() {
+        when(memberRepository.existsById(7)).thenReturn(true);
+        ChunkedUploadInput input = input();
+        input.setTotalSize(DataSize.ofMegabytes(2).toBytes());
+
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+            () -> chunkedUploadService.initUpload(uploader, input));
+        assertEquals(HttpStatus.BAD_REQUEST, ex.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Should keep the upload so completing can be retried when the record cannot be created")
+    void completeUpload_RecordFails_KeepsSessionForRetry() throws IOException {
+        ChunkedUploadStatus status = init();
+        for (int index = 0; index < 3; index++) {
+            sendChunk(status.uploadId(), index, chunk(index));
+        }
+        when(blobStore.store(any(Path.class), anyString(), anyString()))
+            .thenReturn(new StoredBlob("key", "https://cdn/scan.dcm", content.length, null, true));
+        when(memberRepository.findById(7)).thenReturn(Optional.of(new Member()));
+        MedicalRecord saved = new MedicalRecord();
+        when(medicalRecordService.createMedicalRecord(any(MedicalRecord.class)))
+            .thenThrow(new RuntimeException("DB down"))
+            .thenReturn(saved);
+
+        assertThrows(RuntimeException.class, () -> chunkedUploadService.completeUpload(uploader, status.uploadId()));
+        verify(blobStore, never()).delete(anyString());
+
+        // A new instance reads the stored blob back from the sidecar
+        chunkedUploadService = newService();
+        assertSame(saved, chunkedUploadService.completeUpload(uploader, status.uploadId()));
+        verify(blobStore).store(any(Path.class), anyString(), anyString());
+        assertThrows(ResponseStatusException.class, () -> chunkedUploadService.getStatus(uploader, status.uploadId()));
+    }
+
+    @Test
+    @DisplayName("Should delete the stored blob when an upload whose record failed is aborted")
+    void abortUpload_AfterRecordFailed_DeletesBlob() throws IOException {
+        ChunkedUploadStatus status = init();
+        for (int index = 0; index < 3; index++) {
+            sendChunk(status.uploadId(), index, chunk(index));
+        }
+        when(blobStore.store(any(Path.class), anyString(), anyString()))
+            .thenReturn(new StoredBlob("key", "https://cdn/scan.dcm", content.length, null, true));
+        when(memberRepository.findById(7)).thenReturn(Optional.of(new Member()));
+        when(medicalRecordService.createMedicalRecord(any(MedicalRecord.class))).thenThrow(new RuntimeException("DB down"));
+        assertThrows(RuntimeException.class, () -> chunkedUploadService.completeUpload(uploader, status.uploadId()));
+
+        chunkedUploadService.abortUpload(uploader, status.uploadId());
+
+        verify(blobStore).delete("key");
+    }
+
+    @Test
+    @DisplayName("Should not store the file when the member is gone")
+    void completeUpload_MemberMissing_KeepsSession() throws IOException {
+        ChunkedUploadStatus status = init();
+        for (int index = 0; index < 3; index++) {
+            sendChunk(status.uploadId(), index, chunk(index));
+        }
+        when(memberRepository.findById(7)).thenReturn(Optional.empty());
+
+        assertThrows(ResponseStatusException.class,
+            () -> chunkedUploadService.completeUpload(uploader, status.uploadId()));
+
+        verify(blobStore, never()).store(any(Path.class), anyString(), anyString());
+        assertEquals(3, chunkedUploadService.getStatus(uploader, status.uploadId()).nextChunk());
+    }
+
+    @Test
+    @DisplayName("Should keep content-addressed blobs when the record cannot be created")
+    void completeUpload_RecordFails_KeepsSharedBlob() throws IOException {
+        ChunkedUploadStatus status = init();
+        for (int index = 0; index < 3; index++) {
+            sendChunk(status.uploadId(), index, chunk(index));
+        }
+        // Another upload of the same content may be saving its record right now
+        when(blobStore.store(any(Path.class), anyString(), anyString()))
+            .thenReturn(new StoredBlob("hash", "/api/files/blobs/hash", content.length, "hash", true));
+        when(memberRepository.findById(7)).thenReturn(Optional.of(new Member()));
+        when(medicalRecordService.createMedicalRecord(any(MedicalRecord.class))).thenThrow(new RuntimeException("DB down"));
+
+        assertThrows(RuntimeException.class, () -> chunkedUploadService.completeUpload(uploader, status.uploadId()));
+
+        verify(blobStore, never()).delete(anyString());
+    }
+
+    private ChunkedUploadService newService() {
+        return new ChunkedUploadService(blobStore, medicalRecordService, memberRepository,
+            new ObjectMapper().findAndRegisterModules(), uploadRoot.toString(), DataSize.ofMegabytes(1));
+    }
+
+    private ChunkedUploadStatus init() throws IOException {
+        when(memberRepository.existsById(7)).thenReturn(true);
+        return chunkedUploadService.initUpload(uploader, input());
+    }
+
+    private ChunkedUploadInput input() {
+        ChunkedUploadInput input = new ChunkedUploadInput();
+        input.setMemberID(7);
+        input.setFileType("Chup_MRI");
+        input.setFilename("scan.dcm");
+        input.setRecordDate(LocalDate.of(2024, 1, 1));
+        input.setTotalSize((long) content.length);
+        input.setChunkSize((long) CHUNK_SIZE);
+        return input;
+    }
+
+    private byte[] chunk(int index) {
+        int from = index * CHUNK_SIZE;
+        return Arrays.copyOfRange(content, from, Math.min(from + CHUNK_SIZE, content.length));
+    }
+
+    private ChunkedUploadStatus sendChunk(String uploadId, int index, byte[] chunk) throws IOException {
+        return chunkedUploadService.uploadChunk(uploader, uploadId, index, sha256(chunk), new ByteArrayInputStream(chunk));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
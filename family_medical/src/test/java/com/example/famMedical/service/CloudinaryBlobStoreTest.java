@@ -0,0 +1,93 @@
+package com.example.famMedical.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import com.example.famMedical.dto.StoredBlob;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Cloudinary Blob Store Tests")
+class CloudinaryBlobStoreTest {
+
+    @Mock
+    private Cloudinary cloudinary;
+
+    @Mock
+    private Uploader uploader;
+
+    @InjectMocks
+    private CloudinaryBlobStore blobStore;
+
+    @Test
+    @DisplayName("Should upload from a temp file and remove it afterwards")
+    void store_UploadsFromDisk() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", new byte[1024]);
+        File[] uploaded = new File[1];
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.upload(any(File.class), anyMap())).thenAnswer(invocation -> {
+            uploaded[0] = invocation.getArgument(0);
+            assertEquals(1024L, uploaded[0].length());
+            return Map.of("secure_url", "https://cloudinary.com/test.jpg", "public_id", "messages/1/test");
+        });
+
+        StoredBlob blob = blobStore.store(file, "messages/1");
+
+        assertEquals("messages/1/test", blob.key());
+        assertEquals("https://cloudinary.com/test.jpg", blob.url());
+        assertTrue(blob.created());
+        assertFalse(uploaded[0].exists());
+    }
+
+    @Test
+    @DisplayName("Should upload an assembled file in parts and remove it afterwards")
+    void store_AssembledFile_UploadsLarge(@TempDir Path directory) throws IOException {
+        Path assembled = Files.write(directory.resolve("scan.part"), new byte[2048]);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.uploadLarge(eq(assembled.toFile()), anyMap()))
+            .thenReturn(Map.of("secure_url", "https://cloudinary.com/scan.dcm", "public_id", "medical-records/scan"));
+
+        StoredBlob blob = blobStore.store(assembled, "scan.dcm", "medical-records");
+
+        assertEquals("medical-records/scan", blob.key());
+        assertEquals(2048L, blob.size());
+        assertFalse(Files.exists(assembled));
+    }
+
+    @Test
+    @DisplayName("Should keep an assembled file when its upload fails")
+    void store_AssembledFile_UploadFails_KeepsFile(@TempDir Path directory) throws IOException {
+        Path assembled = Files.write(directory.resolve("scan.part"), new byte[2048]);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.uploadLarge(any(File.class), anyMap())).thenThrow(new IOException("Upload failed"));
+
+        assertThrows(IOException.class, () -> blobStore.store(assembled, "scan.dcm", "medical-records"));
+        assertTrue(Files.exists(assembled));
+    }
+
+    @Test
+    @DisplayName("Should wrap upload failures in an IOException")
+    void store_UploadFails_ThrowsIOException() throws IOException {
+        MockMultipartFile file = new MockMultipartFile("file", "test.jpg", "image/jpeg", new byte[1024]);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.upload(any(File.class), anyMap())).thenThrow(new IOException("Upload failed"));
+
+        assertThrows(IOException.class, () -> blobStore.store(file, "messages/1"));
+    }
+}
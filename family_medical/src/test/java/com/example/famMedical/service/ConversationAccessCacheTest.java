@@ -0,0 +1,136 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.ConversationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Conversation Access Cache Tests")
+class ConversationAccessCacheTest {
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    private ConversationAccessCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ConversationAccessCache(conversationRepository, 8);
+    }
+
+    @Test
+    @DisplayName("Should load participants once and answer later checks from memory")
+    void isParticipant_LoadsOnce() {
+        stubParticipants(1, 10, 20);
+
+        assertTrue(cache.isParticipant(1, 10));
+        assertTrue(cache.isParticipant(1, 20));
+        assertFalse(cache.isParticipant(1, 30));
+        assertArrayEquals(new int[] {10, 20}, cache.getParticipantIDs(1));
+
+        verify(conversationRepository, times(1)).findParticipantIDs(1);
+    }
+
+    @Test
+    @DisplayName("Should treat a missing conversation as having no participants")
+    void isParticipant_MissingConversation() {
+        when(conversationRepository.findParticipantIDs(5)).thenReturn(Collections.emptyList());
+
+        assertFalse(cache.exists(5));
+        assertFalse(cache.isParticipant(5, 10));
+        assertEquals(0, cache.getParticipantIDs(5).length);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should return only the doctor when the family has no head")
+    void getParticipantIDs_WithoutHeadOfFamily() {
+        when(conversationRepository.findParticipantIDs(2)).thenReturn(Collections.singletonList(new Object[] {10, null}));
+
+        assertArrayEquals(new int[] {10}, cache.getParticipantIDs(2));
+    }
+
+    @Test
+    @DisplayName("Should keep colliding entries reachable after an eviction")
+    void evict_KeepsProbeChains() {
+        for (int id = 1; id <= 4; id++) {
+            stubParticipants(id, 100 + id, 200 + id);
+            assertTrue(cache.exists(id));
+        }
+
+        cache.evict(2);
+
+        assertEquals(3, cache.size());
+        assertTrue(cache.isParticipant(1, 101));
+        assertTrue(cache.isParticipant(3, 103));
+        assertTrue(cache.isParticipant(4, 204));
+        verify(conversationRepository, times(1)).findParticipantIDs(3);
+        verify(conversationRepository, times(1)).findParticipantIDs(4);
+
+        // The evicted entry is reloaded on its next use
+        assertTrue(cache.isParticipant(2, 102));
+        verify(conversationRepository, times(2)).findParticipantIDs(2);
+    }
+
+    @Test
+    @DisplayName("Should stay bounded to half of its capacity")
+    void put_StaysBounded() {
+        when(conversationRepository.findParticipantIDs(anyInt()))
+            .thenAnswer(invocation -> Collections.singletonList(new Object[] {1, 2}));
+
+        for (int id = 1; id <= 20; id++) {
+            cache.exists(id);
+            assertTrue(cache.size() <= 4);
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep conversations in use when full")
+    void put_KeepsRecentlyReadEntries() {
+        for (int id = 1; id <= 4; id++) {
+            stubParticipants(id, 100 + id, 200 + id);
+            assertTrue(cache.exists(id));
+        }
+        stubParticipants(5, 105, 205);
+
+        assertTrue(cache.isParticipant(1, 101));
+        assertTrue(cache.exists(5));
+
+        // Another entry made room; conversation 1 is still answered from memory
+        assertEquals(4, cache.size());
+        assertTrue(cache.isParticipant(1, 201));
+        verify(conversationRepository, times(1)).findParticipantIDs(1);
+    }
+
+    @Test
+    @DisplayName("Should not cache participants loaded while the conversation was evicted")
+    void isParticipant_EvictedWhileLoading() {
+        // A family change commits and evicts between the query and the insert
+        when(conversationRepository.findParticipantIDs(1)).thenAnswer(invocation -> {
+            cache.evict(1);
+            return List.<Object[]>of(new Object[] {10, 20});
+        });
+
+        assertTrue(cache.isParticipant(1, 20));
+        assertEquals(0, cache.size());
+
+        assertTrue(cache.isParticipant(1, 20));
+        verify(conversationRepository, times(2)).findParticipantIDs(1);
+    }
+
+    private void stubParticipants(int conversationID, int doctorID, int headID) {
+        when(conversationRepository.findParticipantIDs(conversationID))
+            .thenReturn(List.<Object[]>of(new Object[] {doctorID, headID}));
+    }
+}
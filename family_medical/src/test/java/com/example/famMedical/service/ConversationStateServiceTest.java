@@ -0,0 +1,208 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.*;
+import com.example.famMedical.repository.ConversationParticipantStateRepository;
+import com.example.famMedical.repository.ConversationRepository;
+import com.example.famMedical.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Conversation State Service Tests")
+class ConversationStateServiceTest {
+
+    @Mock
+    private ConversationParticipantStateRepository stateRepository;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private ConversationAccessCache conversationAccessCache;
+
+    @InjectMocks
+    private ConversationStateService conversationStateService;
+
+    private User doctor;
+    private User familyHead;
+    private Conversation conversation;
+    private Message message;
+
+    @BeforeEach
+    void setUp() {
+        doctor = new User();
+        doctor.setUserID(1);
+        doctor.setRole(UserRole.BacSi);
+
+        familyHead = new User();
+        familyHead.setUserID(2);
+        familyHead.setRole(UserRole.ChuHo);
+
+        Family family = new Family();
+        family.setFamilyID(1);
+        family.setHeadOfFamily(familyHead);
+
+        conversation = Conversation.builder()
+            .conversationID(10)
+            .doctor(doctor)
+            .family(family)
+            .build();
+
+        message = Message.builder()
+            .messageID(100)
+            .conversation(conversation)
+            .sender(doctor)
+            .content("Hello")
+            .createdAt(LocalDateTime.now())
+            .build();
+    }
+
+    @Test
+    @DisplayName("Should update existing states with a single statement when a message is sent")
+    void recordMessage_WithExistingStates_UpdatesOnly() {
+        when(stateRepository.recordMessage(10, 1, 100, message.getCreatedAt())).thenReturn(2);
+        when(conversationAccessCache.getParticipantIDs(10)).thenReturn(new int[] {1, 2});
+
+        conversationStateService.recordMessage(message);
+
+        verify(stateRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should create missing states from history when a message is sent")
+    void recordMessage_WithMissingState_InitializesFromHistory() {
+        when(stateRepository.recordMessage(10, 1, 100, message.getCreatedAt())).thenReturn(1);
+        when(conversationAccessCache.getParticipantIDs(10)).thenReturn(new int[] {1, 2});
+        when(stateRepository.findUserIDsByConversationID(10)).thenReturn(List.of(1));
+        when(messageRepository.findLastMessagesByConversationIDs(Set.of(10))).thenReturn(List.of(message));
+        when(messageRepository.countUnreadByConversationAndUser(10, 2)).thenReturn(3);
+
+        conversationStateService.recordMessage(message);
+
+        ArgumentCaptor<ConversationParticipantState> captor = ArgumentCaptor.forClass(ConversationParticipantState.class);
+        verify(stateRepository).save(captor.capture());
+        ConversationParticipantState state = captor.getValue();
+        assertEquals(2, state.getUserID());
+        assertEquals(100, state.getLastMessageID());
+        assertEquals(3, state.getUnreadCount());
+    }
+
+    @Test
+    @DisplayName("Should move the watermark to a read message and recount what follows it")
+    void recordMessageRead_MovesWatermark() {
+        when(stateRepository.recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class))).thenReturn(1);
+
+        conversationStateService.recordMessageRead(message, 2);
+
+        verify(stateRepository).recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class));
+        verify(stateRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Should create a missing state from history before moving its watermark")
+    void recordMessageRead_WithMissingState_InitializesFirst() {
+        when(stateRepository.recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class))).thenReturn(0, 1);
+        when(stateRepository.findUserIDsByConversationID(10)).thenReturn(List.of(1));
+        when(conversationRepository.findById(10)).thenReturn(Optional.of(conversation));
+        when(conversationAccessCache.getParticipantIDs(10)).thenReturn(new int[] {1, 2});
+        when(messageRepository.findLastMessagesByConversationIDs(Set.of(10))).thenReturn(List.of(message));
+        when(messageRepository.countUnreadByConversationAndUser(10, 2)).thenReturn(1);
+
+        conversationStateService.recordMessageRead(message, 2);
+
+        ArgumentCaptor<ConversationParticipantState> captor = ArgumentCaptor.forClass(ConversationParticipantState.class);
+        verify(stateRepository).save(captor.capture());
+        assertEquals(2, captor.getValue().getUserID());
+        verify(stateRepository, times(2)).recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should leave a watermark that is already past the read message")
+    void recordMessageRead_AlreadyRead_DoesNotInitialize() {
+        when(stateRepository.findUserIDsByConversationID(10)).thenReturn(List.of(1, 2));
+
+        conversationStateService.recordMessageRead(message, 2);
+
+        verify(stateRepository, times(1)).recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class));
+        verifyNoInteractions(conversationRepository);
+    }
+
+    @Test
+    @DisplayName("Should clamp a client supplied watermark to an existing message")
+    void recordMessageRead_ClampsToExistingMessage() {
+        when(messageRepository.findLatestMessageIDUpTo(10, 500)).thenReturn(100);
+        when(stateRepository.recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class))).thenReturn(1);
+
+        conversationStateService.recordMessageRead(10, 2, 500);
+
+        verify(stateRepository).recordMessageRead(eq(10), eq(2), eq(100), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should compute message read state from the recipient's watermark")
+    void getReadStates_UsesRecipientWatermark() {
+        LocalDateTime readAt = LocalDateTime.now();
+        Message later = Message.builder()
+            .messageID(101)
+            .conversation(conversation)
+            .sender(doctor)
+            .content("Are you there?")
+            .build();
+        // The sender's own watermark is ahead but does not make the message read
+        when(stateRepository.findByConversationIDs(Set.of(10))).thenReturn(List.of(
+            ConversationParticipantState.builder().conversationID(10).userID(1).lastReadMessageID(101).build(),
+            ConversationParticipantState.builder().conversationID(10).userID(2).lastReadMessageID(100).lastReadAt(readAt).build()));
+
+        Map<Integer, ConversationStateService.ReadState> readStates =
+            conversationStateService.getReadStates(List.of(message, later));
+
+        assertTrue(readStates.get(message.getMessageID()).read());
+        assertEquals(readAt, readStates.get(message.getMessageID()).readAt());
+        assertFalse(readStates.get(101).read());
+        assertNull(readStates.get(101).readAt());
+    }
+
+    @Test
+    @DisplayName("Should read unread count from the state rows")
+    void getUnreadCount_SumsStates() {
+        when(stateRepository.sumUnreadByUser(2)).thenReturn(7L);
+
+        assertEquals(7, conversationStateService.getUnreadCount(2));
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("Should key states by conversation ID")
+    void getStates_KeysByConversation() {
+        ConversationParticipantState state = ConversationParticipantState.builder()
+            .conversationID(10)
+            .userID(2)
+            .unreadCount(4)
+            .build();
+        when(stateRepository.findByUserIDAndConversationIDs(2, Set.of(10))).thenReturn(List.of(state));
+
+        Map<Integer, ConversationParticipantState> states = conversationStateService.getStates(2, Set.of(10));
+
+        assertSame(state, states.get(10));
+    }
+}
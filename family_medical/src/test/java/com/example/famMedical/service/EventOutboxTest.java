@@ -0,0 +1,119 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.*;
+import com.example.famMedical.dto.events.*;
+import com.example.famMedical.repository.OutboxEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Event Outbox Tests")
+class EventOutboxTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    private EventOutbox eventOutbox;
+    private final AtomicInteger commits = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        eventOutbox = new EventOutbox(outboxEventRepository, new ObjectMapper().findAndRegisterModules());
+        eventOutbox.onCommit(commits::incrementAndGet);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should store an event and read it back as the same event")
+    void testRoundTrip() {
+        AppointmentSnapshot appointment = new AppointmentSnapshot(
+                3, 1, "Dr. Smith", "Test Family", 2, LocalDateTime.of(2024, 5, 1, 9, 30));
+
+        OutboxEvent row = record(new AppointmentUpdatedEvent(this, appointment));
+
+        assertEquals("AppointmentUpdatedEvent", row.getEventType());
+        assertEquals(0, row.getAttempts());
+        ApplicationEvent decoded = eventOutbox.decode(row);
+        assertInstanceOf(AppointmentUpdatedEvent.class, decoded);
+        assertEquals(appointment, ((AppointmentUpdatedEvent) decoded).getAppointment());
+    }
+
+    @Test
+    @DisplayName("Should read a new message event back from its snapshot alone")
+    void testNewMessage() {
+        MessageSnapshot.Person doctor = new MessageSnapshot.Person(1, "Dr. Smith", "avatar.png");
+        MessageSnapshot snapshot = new MessageSnapshot(9, "Hello", LocalDateTime.of(2024, 5, 1, 9, 30), doctor,
+                List.of(new MessageSnapshot.Attachment(5, "scan.pdf", "application/pdf", 1024L, "/files/scan.pdf",
+                        LocalDateTime.of(2024, 5, 1, 9, 29))),
+                new MessageSnapshot.ConversationSnapshot(4, LocalDateTime.of(2024, 1, 1, 8, 0), doctor, 3,
+                        "Test Family", new MessageSnapshot.Person(2, "Head", null)));
+
+        OutboxEvent row = record(new NewMessageEvent(this, snapshot));
+        NewMessageEvent decoded = (NewMessageEvent) eventOutbox.decode(row);
+
+        assertEquals(snapshot, decoded.getSnapshot());
+        assertEquals(List.of(1, 2), decoded.getSnapshot().participantIDs());
+    }
+
+    @Test
+    @DisplayName("Should reject a new message row without its conversation")
+    void testIncompleteNewMessage() {
+        OutboxEvent row = OutboxEvent.builder()
+                .eventType("NewMessageEvent")
+                .payload("{\"messageID\":9,\"conversationID\":4,\"senderID\":1}")
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> eventOutbox.decode(row));
+    }
+
+    @Test
+    @DisplayName("Should reject rows of unknown types")
+    void testUnknownType() {
+        OutboxEvent row = OutboxEvent.builder().eventType("SomethingElse").payload("{}").build();
+
+        assertThrows(IllegalArgumentException.class, () -> eventOutbox.decode(row));
+    }
+
+    @Test
+    @DisplayName("Should wake the relay only after the transaction commits")
+    void testCommitHook() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        record(new MedicalRecordCreatedEvent(this, new MedicalRecordSnapshot(1, "Member", 2)));
+
+        assertEquals(0, commits.get());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertEquals(1, commits.get());
+    }
+
+    private OutboxEvent record(ApplicationEvent event) {
+        eventOutbox.record(event);
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.ConversationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test for FamilyCacheInvalidator
+ * Verifies that family caches are evicted only after commit, and on every node
+ */
+class FamilyCacheInvalidatorTest {
+
+    private final InMemoryEventBus nodeA = new InMemoryEventBus();
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private FamilyHeadCache headCacheA;
+    private FamilyHeadCache headCacheB;
+    private ConversationAccessCache accessCacheB;
+    private FamilyCacheInvalidator invalidatorA;
+
+    @BeforeEach
+    void setUp() {
+        when(conversationRepository.findParticipantIDs(1)).thenReturn(List.<Object[]>of(new Object[] {5, 2}));
+        when(conversationRepository.findParticipantIDs(7)).thenReturn(List.<Object[]>of(new Object[] {5, 8}));
+        when(conversationRepository.findConversationIDsByFamilyID(10)).thenReturn(List.of(1));
+        headCacheA = new FamilyHeadCache();
+        headCacheB = new FamilyHeadCache();
+        accessCacheB = new ConversationAccessCache(conversationRepository);
+        invalidatorA = new FamilyCacheInvalidator(headCacheA, new ConversationAccessCache(conversationRepository),
+                conversationRepository, nodeA);
+        new FamilyCacheInvalidator(headCacheB, accessCacheB, conversationRepository, nodeA.join());
+        headCacheA.put(2, 10);
+        headCacheB.put(2, 10);
+        accessCacheB.isParticipant(1, 2);
+        accessCacheB.isParticipant(7, 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void familyChanged_shouldEvictAfterCommitOnEveryNode() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        invalidatorA.familyChanged(10, 3, true);
+
+        // Nothing is evicted while the transaction may still roll back
+        assertThat(headCacheA.getFamilyID(2)).contains(10);
+        assertThat(headCacheB.getFamilyID(2)).contains(10);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        assertThat(headCacheA.getFamilyID(2)).isEmpty();
+        assertThat(headCacheB.getFamilyID(2)).isEmpty();
+        // Only the conversations of the changed family are dropped
+        assertThat(accessCacheB.size()).isEqualTo(1);
+        assertThat(accessCacheB.isParticipant(7, 8)).isTrue();
+        verify(conversationRepository, times(1)).findConversationIDsByFamilyID(10);
+    }
+
+    @Test
+    void familyCreated_shouldKeepConversationParticipants() {
+        invalidatorA.familyChanged(11, 4, false);
+
+        assertThat(headCacheB.getFamilyID(2)).contains(10);
+        assertThat(accessCacheB.size()).isEqualTo(2);
+        verify(conversationRepository, never()).findConversationIDsByFamilyID(11);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.famMedical.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for FamilyHeadCache
+ * Verifies lookups, eviction by family or head and the size bound
+ */
+class FamilyHeadCacheTest {
+
+    private FamilyHeadCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new FamilyHeadCache();
+    }
+
+    @Test
+    void getFamilyID_shouldReturnCachedFamily() {
+        cache.put(2, 10);
+
+        assertThat(cache.getFamilyID(2)).contains(10);
+        assertThat(cache.getFamilyID(3)).isEmpty();
+    }
+
+    @Test
+    void evict_byFamily_shouldDropEntriesPointingAtIt() {
+        cache.put(2, 10);
+        cache.put(3, 11);
+
+        cache.evict(10, null);
+
+        assertThat(cache.getFamilyID(2)).isEmpty();
+        assertThat(cache.getFamilyID(3)).contains(11);
+    }
+
+    @Test
+    void evict_byHead_shouldDropHeadEntry() {
+        cache.put(2, 10);
+
+        cache.evict(null, 2);
+
+        assertThat(cache.getFamilyID(2)).isEmpty();
+    }
+
+    @Test
+    void put_shouldStayWithinMaxEntries() {
+        for (int i = 0; i <= FamilyHeadCache.MAX_ENTRIES; i++) {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(FamilyHeadCache.MAX_ENTRIES);
+    }
+
+    @Test
+    void put_whenFull_shouldDropLeastRecentlyUsedHead() {
+        for (int i = 0; i < FamilyHeadCache.MAX_ENTRIES; i++) {
+            cache.put(i, i);
+        }
+        cache.getFamilyID(0);
+
+        cache.put(FamilyHeadCache.MAX_ENTRIES, 0);
+
+        assertThat(cache.size()).isEqualTo(FamilyHeadCache.MAX_ENTRIES);
+        assertThat(cache.getFamilyID(0)).contains(0);
+        assertThat(cache.getFamilyID(1)).isEmpty();
+        assertThat(cache.getFamilyID(2)).contains(2);
+    }
+}
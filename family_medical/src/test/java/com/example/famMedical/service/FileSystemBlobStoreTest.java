@@ -0,0 +1,114 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.dto.StoredBlob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.Resource;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("File System Blob Store Tests")
+class FileSystemBlobStoreTest {
+
+    // SHA-256 of "lab result"
+    private static final String LAB_RESULT_HASH = "b523c6e8d20a69dd5fbe88f44fa7b28ef3c94389b863ada8a2b2b450e30fdc9e";
+
+    @TempDir
+    Path root;
+
+    private FileSystemBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new FileSystemBlobStore(root.toString());
+    }
+
+    @Test
+    @DisplayName("Should store content under its SHA-256 in sharded directories")
+    void store_WritesContentAddressedBlob() throws IOException {
+        StoredBlob blob = blobStore.store(pdf("lab result"), "medical-records");
+
+        assertTrue(blob.created());
+        assertEquals(10L, blob.size());
+        assertEquals(LAB_RESULT_HASH, blob.sha256());
+        assertEquals(blob.sha256(), blob.key());
+        assertEquals(FileSystemBlobStore.URL_PREFIX + blob.key(), blob.url());
+
+        Path stored = root.resolve(blob.key().substring(0, 2)).resolve(blob.key().substring(2, 4)).resolve(blob.key());
+        assertEquals("lab result", Files.readString(stored));
+        assertEquals(0, Files.list(root.resolve("tmp")).count());
+    }
+
+    @Test
+    @DisplayName("Should deduplicate identical content")
+    void store_SameContent_Deduplicates() throws IOException {
+        StoredBlob first = blobStore.store(pdf("lab result"), "messages/1");
+        StoredBlob second = blobStore.store(pdf("lab result"), "messages/2");
+        StoredBlob other = blobStore.store(pdf("x-ray"), "messages/2");
+
+        assertTrue(first.created());
+        assertFalse(second.created());
+        assertEquals(first.key(), second.key());
+        assertNotEquals(first.key(), other.key());
+    }
+
+    @Test
+    @DisplayName("Should move an assembled file into the store")
+    void store_AssembledFile_MovesIntoPlace() throws IOException {
+        Path assembled = Files.writeString(root.resolve("assembled.part"), "lab result");
+
+        StoredBlob blob = blobStore.store(assembled, "result.pdf", "medical-records");
+
+        assertTrue(blob.created());
+        assertEquals(LAB_RESULT_HASH, blob.key());
+        assertEquals(10L, blob.size());
+        assertFalse(Files.exists(assembled));
+        assertEquals("lab result", blobStore.load(blob.key()).orElseThrow().getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should leave an assembled file where it was when it cannot be stored")
+    void store_AssembledFile_FailureLeavesFile() throws IOException {
+        Path assembled = Files.writeString(root.resolve("assembled.part"), "lab result");
+        // A file where the blob's shard directory belongs makes the final move fail
+        Files.writeString(root.resolve(LAB_RESULT_HASH.substring(0, 2)), "not a directory");
+
+        assertThrows(IOException.class, () -> blobStore.store(assembled, "result.pdf", "medical-records"));
+
+        assertEquals("lab result", Files.readString(assembled));
+        assertEquals(0, Files.list(root.resolve("tmp")).count());
+    }
+
+    @Test
+    @DisplayName("Should load and delete stored content")
+    void loadAndDelete() throws IOException {
+        StoredBlob blob = blobStore.store(pdf("lab result"), "medical-records");
+
+        Optional<Resource> resource = blobStore.load(blob.key());
+        assertTrue(resource.isPresent());
+        assertEquals("lab result", resource.get().getContentAsString(StandardCharsets.UTF_8));
+
+        blobStore.delete(blob.key());
+        assertTrue(blobStore.load(blob.key()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should reject keys that are not SHA-256 hashes")
+    void load_InvalidKey_ReturnsEmpty() {
+        assertTrue(blobStore.load("../../etc/passwd").isEmpty());
+        assertTrue(blobStore.load(LAB_RESULT_HASH.toUpperCase()).isEmpty());
+    }
+
+    private static MockMultipartFile pdf(String content) {
+        return new MockMultipartFile("file", "result.pdf", "application/pdf", content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -12,6 +12,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -43,6 +45,9 @@ public class MedicalRecordServiceTest {
     @Mock
     private CloudinaryService cloudinaryService;
 
+    @Mock
+    private BlobStore blobStore;
+
     @Mock
     private ApplicationEventPublisher eventPublisher;
 
@@ -207,6 +212,59 @@ public class MedicalRecordServiceTest {
         verify(cloudinaryService, times(1)).getSignedDownloadUrl("cloudinary-public-id");
     }
 
+    @Test
+    public void testGetDownloadUrl_LocalBlob_ReturnsContentEndpoint() {
+        // Arrange
+        record.setFileLink(FileSystemBlobStore.URL_PREFIX + "abc");
+        when(medicalRecordRepository.findById(1)).thenReturn(Optional.of(record));
+
+        // Act
+        String url = medicalRecordService.getDownloadUrl(familyHeadUser, 1);
+
+        // Assert
+        assertEquals("/api/files/records/1/content", url);
+        verifyNoInteractions(cloudinaryService);
+    }
+
+    @Test
+    public void testGetRecordContent_LocalBlob() {
+        // Arrange
+        Resource content = new ByteArrayResource(new byte[] {1, 2, 3});
+        record.setFileLink(FileSystemBlobStore.URL_PREFIX + "abc");
+        when(medicalRecordRepository.findById(1)).thenReturn(Optional.of(record));
+        when(blobStore.load("abc")).thenReturn(Optional.of(content));
+
+        // Act & Assert
+        assertSame(content, medicalRecordService.getRecordContent(familyHeadUser, 1));
+    }
+
+    @Test
+    public void testGetRecordContent_RemoteFile_NotFound() {
+        // Arrange
+        when(medicalRecordRepository.findById(1)).thenReturn(Optional.of(record));
+
+        // Act & Assert
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+            medicalRecordService.getRecordContent(familyHeadUser, 1)
+        );
+        assertEquals(HttpStatus.NOT_FOUND, ex.getStatusCode());
+        verifyNoInteractions(blobStore);
+    }
+
+    @Test
+    public void testGetRecordContent_Forbidden_UnauthorizedUser() {
+        // Arrange
+        record.setFileLink(FileSystemBlobStore.URL_PREFIX + "abc");
+        when(medicalRecordRepository.findById(1)).thenReturn(Optional.of(record));
+
+        // Act & Assert
+        ResponseStatusException ex = assertThrows(ResponseStatusException.class, () ->
+            medicalRecordService.getRecordContent(unauthorizedUser, 1)
+        );
+        assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        verifyNoInteractions(blobStore);
+    }
+
     @Test
     public void testGetDownloadUrl_RecordNotFound() {
         // Arrange
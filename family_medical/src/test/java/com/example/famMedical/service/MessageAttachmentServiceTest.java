@@ -1,9 +1,9 @@
 package com.example.famMedical.service;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.Uploader;
 import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.MessageAttachment;
+import com.example.famMedical.dto.StoredBlob;
+import com.example.famMedical.dto.UploadedAttachment;
 import com.example.famMedical.exception.ValidationException;
 import com.example.famMedical.repository.MessageAttachmentRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,16 +11,14 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -33,18 +31,16 @@ class MessageAttachmentServiceTest {
     private MessageAttachmentRepository messageAttachmentRepository;
 
     @Mock
-    private Cloudinary cloudinary;
+    private BlobStore blobStore;
 
-    @Mock
-    private Uploader uploader;
-
-    @InjectMocks
     private MessageAttachmentService messageAttachmentService;
 
     private Message message;
 
     @BeforeEach
     void setUp() {
+        messageAttachmentService = new MessageAttachmentService(messageAttachmentRepository, blobStore,
+            new SyncTaskExecutor());
         message = Message.builder()
             .messageID(1)
             .content("Test message")
@@ -210,11 +206,8 @@ class MessageAttachmentServiceTest {
                 "file", "test.jpg", "image/jpeg", new byte[1024]
             );
             
-            Map<String, Object> uploadResult = new HashMap<>();
-            uploadResult.put("secure_url", "https://cloudinary.com/test.jpg");
-            
-            when(cloudinary.uploader()).thenReturn(uploader);
-            when(uploader.upload(any(byte[].class), anyMap())).thenReturn(uploadResult);
+            when(blobStore.store(file, "messages/1"))
+                .thenReturn(blob("messages/1/test", "https://cloudinary.com/test.jpg", true));
 
             // Act
             String result = messageAttachmentService.uploadFile(file, "messages/1");
@@ -222,7 +215,7 @@ class MessageAttachmentServiceTest {
             // Assert
             assertNotNull(result);
             assertEquals("https://cloudinary.com/test.jpg", result);
-            verify(uploader).upload(any(byte[].class), anyMap());
+            verify(blobStore).store(file, "messages/1");
         }
 
         @Test
@@ -248,8 +241,7 @@ class MessageAttachmentServiceTest {
                 "file", "test.jpg", "image/jpeg", new byte[1024]
             );
             
-            when(cloudinary.uploader()).thenReturn(uploader);
-            when(uploader.upload(any(byte[].class), anyMap()))
+            when(blobStore.store(any(MultipartFile.class), anyString()))
                 .thenThrow(new IOException("Upload failed"));
 
             // Act & Assert
@@ -315,16 +307,10 @@ class MessageAttachmentServiceTest {
             );
             List<MultipartFile> files = List.of(file1, file2);
             
-            Map<String, Object> uploadResult1 = new HashMap<>();
-            uploadResult1.put("secure_url", "https://cloudinary.com/test1.jpg");
-            
-            Map<String, Object> uploadResult2 = new HashMap<>();
-            uploadResult2.put("secure_url", "https://cloudinary.com/test2.pdf");
-            
-            when(cloudinary.uploader()).thenReturn(uploader);
-            when(uploader.upload(any(byte[].class), anyMap()))
-                .thenReturn(uploadResult1)
-                .thenReturn(uploadResult2);
+            when(blobStore.store(eq(file1), anyString()))
+                .thenReturn(blob("messages/test1", "https://cloudinary.com/test1.jpg", true));
+            when(blobStore.store(eq(file2), anyString()))
+                .thenReturn(blob("messages/test2", "https://cloudinary.com/test2.pdf", true));
             
             MessageAttachment attachment1 = MessageAttachment.builder()
                 .attachmentID(1)
@@ -335,9 +321,8 @@ class MessageAttachmentServiceTest {
                 .filename("test2.pdf")
                 .build();
             
-            when(messageAttachmentRepository.save(any(MessageAttachment.class)))
-                .thenReturn(attachment1)
-                .thenReturn(attachment2);
+            when(messageAttachmentRepository.saveAll(anyList()))
+                .thenReturn(List.of(attachment1, attachment2));
 
             // Act
             List<MessageAttachment> result = messageAttachmentService.processAttachments(
@@ -347,8 +332,92 @@ class MessageAttachmentServiceTest {
             // Assert
             assertNotNull(result);
             assertEquals(2, result.size());
-            verify(uploader, times(2)).upload(any(byte[].class), anyMap());
-            verify(messageAttachmentRepository, times(2)).save(any(MessageAttachment.class));
+            verify(blobStore, times(2)).store(any(MultipartFile.class), anyString());
+            verify(messageAttachmentRepository).saveAll(anyList());
+        }
+
+        @Test
+        @DisplayName("Should delete uploaded files when another upload of the batch fails")
+        void uploadAttachments_OneUploadFails_DeletesUploadedFiles() throws IOException {
+            // Arrange
+            MultipartFile file1 = new MockMultipartFile(
+                "file1", "test1.jpg", "image/jpeg", new byte[1024]
+            );
+            MultipartFile file2 = new MockMultipartFile(
+                "file2", "test2.pdf", "application/pdf", new byte[2048]
+            );
+            
+            when(blobStore.store(eq(file1), anyString()))
+                .thenReturn(blob("messages/test1", "https://cloudinary.com/test1.jpg", true));
+            when(blobStore.store(eq(file2), anyString()))
+                .thenThrow(new IOException("Upload failed"));
+
+            // Act & Assert
+            assertThrows(IOException.class, () -> 
+                messageAttachmentService.uploadAttachments(List.of(file1, file2))
+            );
+            verify(blobStore).delete("messages/test1");
+        }
+
+        @Test
+        @DisplayName("Should only delete content no other upload can share when deleting uploads")
+        void deleteUploads_KeepsSharedContent() throws IOException {
+            // Arrange
+            UploadedAttachment deduplicated = new UploadedAttachment(
+                "a.pdf", "application/pdf", 10L, blob("messages/a", "https://cloudinary.com/a.pdf", false)
+            );
+            UploadedAttachment contentAddressed = new UploadedAttachment(
+                "b.pdf", "application/pdf", 10L,
+                new StoredBlob("hash-b", "/api/files/blobs/hash-b", 10L, "hash-b", true)
+            );
+            UploadedAttachment orphan = new UploadedAttachment(
+                "c.pdf", "application/pdf", 10L, blob("messages/c", "https://cloudinary.com/c.pdf", true)
+            );
+
+            // Act
+            messageAttachmentService.deleteUploads(List.of(deduplicated, contentAddressed, orphan));
+
+            // Assert
+            verify(blobStore).delete("messages/c");
+            verifyNoMoreInteractions(blobStore);
+        }
+
+        @Test
+        @DisplayName("Should reject the batch before uploading when one file is invalid")
+        void uploadAttachments_InvalidFile_UploadsNothing() {
+            // Arrange
+            MultipartFile valid = new MockMultipartFile(
+                "file1", "test1.jpg", "image/jpeg", new byte[1024]
+            );
+            MultipartFile invalid = new MockMultipartFile(
+                "file2", "test2.exe", "application/octet-stream", new byte[1024]
+            );
+
+            // Act & Assert
+            assertThrows(ValidationException.class, () -> 
+                messageAttachmentService.uploadAttachments(List.of(valid, invalid))
+            );
+            verifyNoInteractions(blobStore);
+        }
+
+        @Test
+        @DisplayName("Should save references to uploaded files in one batch")
+        void saveAttachments_SavesReferences() {
+            // Arrange
+            UploadedAttachment upload = new UploadedAttachment(
+                "test.jpg", "image/jpeg", 1024L, blob("messages/test", "https://cloudinary.com/test.jpg", true)
+            );
+            when(messageAttachmentRepository.saveAll(anyList()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+            // Act
+            List<MessageAttachment> result = messageAttachmentService.saveAttachments(message, List.of(upload));
+
+            // Assert
+            assertEquals(1, result.size());
+            assertEquals(message, result.get(0).getMessage());
+            assertEquals("https://cloudinary.com/test.jpg", result.get(0).getFileUrl());
+            assertEquals(1024L, result.get(0).getFileSize());
         }
 
         @Test
@@ -407,4 +476,8 @@ class MessageAttachmentServiceTest {
             verify(messageAttachmentRepository).findByMessageID(1);
         }
     }
+
+    private static StoredBlob blob(String key, String url, boolean created) {
+        return new StoredBlob(key, url, 1024L, null, created);
+    }
 }
@@ -4,14 +4,21 @@ import com.example.famMedical.Entity.Conversation;
 import com.example.famMedical.Entity.Family;
 import com.example.famMedical.Entity.Message;
 import com.example.famMedical.Entity.User;
+import com.example.famMedical.repository.ConversationRepository;
+import com.example.famMedical.repository.MessageRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * Test for MessagePublisher Service
@@ -19,6 +26,8 @@ import static org.assertj.core.api.Assertions.assertThat;
  */
 class MessagePublisherTest {
 
+    private final InMemoryEventBus eventBus = new InMemoryEventBus();
+    private ConversationAccessCache conversationAccessCache;
     private MessagePublisher messagePublisher;
     private User testDoctor;
     private User testFamilyHead;
@@ -27,7 +36,12 @@ class MessagePublisherTest {
 
     @BeforeEach
     void setUp() {
-        messagePublisher = new MessagePublisher();
+        // Conversation 1: doctor 1 and head 2; conversation 2: doctor 3 and head 4
+        conversationAccessCache = mock(ConversationAccessCache.class);
+        when(conversationAccessCache.getParticipantIDs(1)).thenReturn(new int[] {1, 2});
+        when(conversationAccessCache.getParticipantIDs(2)).thenReturn(new int[] {3, 4});
+        messagePublisher = new MessagePublisher(conversationAccessCache, eventBus,
+                mock(MessageRepository.class), mock(ConversationRepository.class), Runnable::run);
 
         // Create test doctor
         testDoctor = new User();
@@ -150,4 +164,62 @@ class MessagePublisherTest {
                 .expectNextMatches(c -> c.getConversationID().equals(1)) // Should only receive own conversation
                 .verifyComplete();
     }
+
+    @Test
+    void getMessageStream_sinceSequence_shouldReplayMissedMessages() {
+        Message missed = Message.builder()
+                .messageID(10)
+                .conversation(testConversation)
+                .sender(testDoctor)
+                .content("Sent while offline")
+                .build();
+        messagePublisher.publishMessage(missed);
+
+        assertThat(missed.getSequence()).isNotNull();
+
+        StepVerifier.create(messagePublisher.getMessageStream(testFamilyHead, missed.getSequence() - 1).take(1))
+                .expectNextMatches(m -> m.getMessageID().equals(10))
+                .verifyComplete();
+    }
+
+    @Test
+    void publishMessage_shouldReachRecipientOnAnotherNode() {
+        Message message = Message.builder()
+                .messageID(11)
+                .conversation(testConversation)
+                .sender(testDoctor)
+                .content("Sent on node A")
+                .build();
+
+        // Node B shares the in-process cluster and loads the message node A announces
+        MessageRepository nodeBMessages = mock(MessageRepository.class);
+        when(nodeBMessages.findForDelivery(11)).thenReturn(Optional.of(message));
+        MessagePublisher nodeB = new MessagePublisher(conversationAccessCache, eventBus.join(),
+                nodeBMessages, mock(ConversationRepository.class), Runnable::run);
+
+        StepVerifier.create(nodeB.getMessageStream(testFamilyHead).take(1))
+                .then(() -> messagePublisher.publishMessage(message))
+                .expectNextMatches(m -> m.getMessageID().equals(11))
+                .verifyComplete();
+        // Node B routes by the recipients in the event instead of looking up the participants again
+        verify(conversationAccessCache).getParticipantIDs(1);
+    }
+
+    @Test
+    void publishMessage_shouldNotLoadOnNodeWithoutRecipients() {
+        Message message = Message.builder()
+                .messageID(12)
+                .conversation(testConversation)
+                .sender(testDoctor)
+                .content("Nobody on node B")
+                .build();
+        MessageRepository nodeBMessages = mock(MessageRepository.class);
+        ConversationRepository nodeBConversations = mock(ConversationRepository.class);
+        new MessagePublisher(conversationAccessCache, eventBus.join(), nodeBMessages, nodeBConversations, Runnable::run);
+
+        messagePublisher.publishMessage(message);
+        messagePublisher.publishConversationUpdate(testConversation);
+
+        verifyNoInteractions(nodeBMessages, nodeBConversations);
+    }
 }
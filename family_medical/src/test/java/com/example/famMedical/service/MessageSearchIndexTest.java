@@ -0,0 +1,182 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Conversation;
+import com.example.famMedical.Entity.Message;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.dto.events.NewMessageEvent;
+import com.example.famMedical.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Message Search Index Tests")
+class MessageSearchIndexTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    private final InMemoryEventBus eventBus = new InMemoryEventBus();
+    // Stands in for the messages table: [messageID, conversationID, createdAt, content]
+    private final List<Object[]> stored = new ArrayList<>();
+    private MessageSearchIndex index;
+    private LocalDateTime baseTime;
+
+    @BeforeEach
+    void setUp() {
+        index = new MessageSearchIndex(messageRepository, eventBus, Duration.ZERO);
+        baseTime = LocalDateTime.of(2024, 1, 1, 8, 0);
+        lenient().when(messageRepository.findIndexRowsByConversationIDs(anyCollection())).thenAnswer(invocation -> {
+            Collection<Integer> conversationIDs = invocation.getArgument(0);
+            return stored.stream().filter(row -> conversationIDs.contains((Integer) row[1])).toList();
+        });
+    }
+
+    @Test
+    @DisplayName("Should match terms regardless of Vietnamese diacritics and case")
+    void search_FoldsDiacritics() {
+        store(1, 10, "Bác sĩ đã xem kết quả xét nghiệm", 0);
+        store(1, 11, "Cảm ơn bác sĩ", 1);
+        store(1, 12, "Lịch hẹn tuần sau", 2);
+
+        assertEquals(List.of(11, 10), index.search(Set.of(1), "bac si", null, null, 0, 10).messageIDs());
+        assertEquals(List.of(10), index.search(Set.of(1), "KET QUA", null, null, 0, 10).messageIDs());
+        assertEquals(List.of(10), index.search(Set.of(1), "đã", null, null, 0, 10).messageIDs());
+        assertTrue(index.search(Set.of(1), "bac si hen", null, null, 0, 10).messageIDs().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should only search the given conversations and count them exactly")
+    void search_ScopedToConversations() {
+        for (int i = 0; i < 5; i++) {
+            store(1, 100 + i, "huyet ap " + i, i);
+            store(2, 200 + i, "huyet ap " + i, i);
+        }
+
+        MessageSearchIndex.SearchResult firstPage = index.search(Set.of(1), "huyết áp", null, null, 0, 2);
+        MessageSearchIndex.SearchResult lastPage = index.search(Set.of(1), "huyết áp", null, null, 4, 2);
+
+        assertEquals(5, firstPage.totalCount());
+        assertEquals(List.of(104, 103), firstPage.messageIDs());
+        assertEquals(List.of(100), lastPage.messageIDs());
+        assertEquals(10, index.search(Set.of(1, 2), "huyet", null, null, 0, 20).totalCount());
+        assertEquals(0, index.search(Set.of(3), "huyet", null, null, 0, 20).totalCount());
+    }
+
+    @Test
+    @DisplayName("Should filter by date and match everything for a blank keyword")
+    void search_DateRange() {
+        store(1, 10, "first", 0);
+        store(1, 11, "second", 10);
+        store(1, 12, "third", 20);
+
+        MessageSearchIndex.SearchResult result = index.search(Set.of(1), " ", baseTime.plusMinutes(5), baseTime.plusMinutes(20), 0, 10);
+
+        assertEquals(List.of(12, 11), result.messageIDs());
+    }
+
+    @Test
+    @DisplayName("Should ignore duplicates and accept messages out of order")
+    void add_DuplicatesAndOutOfOrder() {
+        store(1, 12, "xin chao", 2);
+        index.search(Set.of(1), "chao", null, null, 0, 10);
+
+        index.add(message(1, 10, "xin chao", 0));
+        index.add(message(1, 12, "xin chao", 2));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(12, 10), index.search(Set.of(1), "chao", null, null, 0, 10).messageIDs());
+
+        index.evict(1);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    @DisplayName("Should load a conversation once, when it is first searched")
+    void search_LoadsConversationsOnDemand() {
+        store(1, 10, "xin chao", 0);
+        index.add(message(2, 20, "not loaded here", 0));
+        assertEquals(0, index.size());
+        verifyNoInteractions(messageRepository);
+
+        index.search(Set.of(1, 2), "chao", null, null, 0, 10);
+        index.search(Set.of(1, 2), "chao", null, null, 0, 10);
+
+        assertEquals(1, index.size());
+        verify(messageRepository, times(1)).findIndexRowsByConversationIDs(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should drop only the least recently searched conversations when full")
+    void search_WhenFull_DropsLeastRecentlySearched() {
+        store(1, 10, "xin chao", 0);
+        for (int conversationID = 1; conversationID <= MessageSearchIndex.MAX_CONVERSATIONS; conversationID++) {
+            index.search(Set.of(conversationID), "chao", null, null, 0, 10);
+        }
+        // Conversation 1 is searched again, so conversation 2 is now the least recently searched
+        index.search(Set.of(1), "chao", null, null, 0, 10);
+
+        index.search(Set.of(MessageSearchIndex.MAX_CONVERSATIONS + 1), "chao", null, null, 0, 10);
+        index.search(Set.of(1), "chao", null, null, 0, 10);
+        index.search(Set.of(2), "chao", null, null, 0, 10);
+
+        verify(messageRepository, times(1)).findIndexRowsByConversationIDs(Set.of(1));
+        verify(messageRepository, times(2)).findIndexRowsByConversationIDs(Set.of(2));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    @DisplayName("Should index a message committed on another node")
+    void onNewMessage_ReachesOtherNodes() {
+        MessageSearchIndex nodeB = new MessageSearchIndex(messageRepository, eventBus.join(), Duration.ZERO);
+        nodeB.search(Set.of(1), "chao", null, null, 0, 10);
+
+        Message message = message(1, 10, "Xin chào bác sĩ", 0);
+        message.setSender(new User());
+        index.onNewMessage(new NewMessageEvent(this, message));
+
+        assertEquals(List.of(10), nodeB.search(Set.of(1), "chao", null, null, 0, 10).messageIDs());
+    }
+
+    @Test
+    @DisplayName("Should catch up on messages whose event was missed")
+    void catchUp_IndexesMissedMessages() {
+        index.search(Set.of(1), "chao", null, null, 0, 10);
+        when(messageRepository.findIndexRowsCreatedSince(any())).thenReturn(List.<Object[]>of(
+            new Object[] {10, 1, baseTime, "xin chao"},
+            new Object[] {20, 2, baseTime, "not loaded here"}));
+
+        index.catchUp();
+
+        assertEquals(List.of(10), index.search(Set.of(1), "chao", null, null, 0, 10).messageIDs());
+        assertEquals(1, index.size());
+    }
+
+    private void store(int conversationID, int messageID, String content, int minutes) {
+        stored.add(new Object[] {messageID, conversationID, baseTime.plusMinutes(minutes), content});
+    }
+
+    private Message message(int conversationID, int messageID, String content, int minutes) {
+        return Message.builder()
+            .messageID(messageID)
+            .conversation(Conversation.builder().conversationID(conversationID).build())
+            .content(content)
+            .createdAt(baseTime.plusMinutes(minutes))
+            .build();
+    }
+}
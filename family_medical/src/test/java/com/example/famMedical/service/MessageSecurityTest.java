@@ -10,8 +10,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Optional;
@@ -53,7 +56,16 @@ class MessageSecurityTest {
     private TypingIndicatorService typingIndicatorService;
     
     @Mock
-    private RateLimitService rateLimitService;
+    private ConversationStateService conversationStateService;
+
+    @Mock
+    private ConversationAccessCache conversationAccessCache;
+    
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+    
+    @Spy
+    private FamilyHeadCache familyHeadCache = new FamilyHeadCache();
     
     @InjectMocks
     private MessageServiceImpl messageService;
@@ -113,7 +125,7 @@ class MessageSecurityTest {
     void testUnauthorizedMarkMessageAsRead() {
         // Given
         when(messageRepository.findById(1)).thenReturn(Optional.of(message));
-        when(userRepository.findById(3)).thenReturn(Optional.of(unauthorizedUser));
+        when(conversationAccessCache.isParticipant(1, 3)).thenReturn(false);
         
         // When & Then
         assertThrows(UnAuthorizedException.class, () -> {
@@ -142,40 +154,38 @@ class MessageSecurityTest {
     void testAuthorizedMarkMessageAsRead() {
         // Given
         when(messageRepository.findById(1)).thenReturn(Optional.of(message));
-        when(userRepository.findById(2)).thenReturn(Optional.of(familyHead));
-        when(messageRepository.save(any(Message.class))).thenReturn(message);
+        when(conversationAccessCache.isParticipant(1, 2)).thenReturn(true);
         
         // When
         Message result = messageService.markMessageAsRead(1, familyHead.getUserID());
         
         // Then
         assertNotNull(result);
-        verify(messageRepository).save(any(Message.class));
+        verify(conversationStateService).recordMessageRead(message, familyHead.getUserID());
     }
     
     @Test
     @DisplayName(" 7.2: Should prevent unauthorized user from accessing conversation")
     void testUnauthorizedConversationAccess() {
         // Given
-        when(conversationRepository.findById(1)).thenReturn(Optional.of(conversation));
-        when(userRepository.findById(3)).thenReturn(Optional.of(unauthorizedUser));
+        when(conversationAccessCache.exists(1)).thenReturn(true);
+        when(conversationAccessCache.isParticipant(1, 3)).thenReturn(false);
         
         // When & Then
         assertThrows(UnAuthorizedException.class, () -> {
             messageService.markConversationAsRead(1, 3);
         });
         
-        verify(messageRepository, never()).markConversationAsRead(anyInt(), anyInt(), any());
+        verify(conversationStateService, never()).recordConversationRead(anyInt(), anyInt());
     }
     
     @Test
     @DisplayName(" 7.5: Should prevent messaging without doctor-family relationship")
     void testMessagingWithoutRelationship() {
         // Given
-        when(rateLimitService.canSendMessage(anyInt())).thenReturn(true);
         when(userRepository.findById(1)).thenReturn(Optional.of(doctor));
         when(userRepository.findById(2)).thenReturn(Optional.of(familyHead));
-        when(familyRepository.findAll()).thenReturn(java.util.List.of(family));
+        when(familyRepository.findByHeadOfFamily_UserID(2)).thenReturn(family);
         
         // No active relationship
         when(doctorAssignmentRepository.existsByDoctorUserIDAndFamilyFamilyIDAndStatus(
@@ -200,10 +210,9 @@ class MessageSecurityTest {
     @DisplayName(" 7.5: Should allow messaging with active doctor-family relationship")
     void testMessagingWithActiveRelationship() {
         // Given
-        when(rateLimitService.canSendMessage(anyInt())).thenReturn(true);
         when(userRepository.findById(1)).thenReturn(Optional.of(doctor));
         when(userRepository.findById(2)).thenReturn(Optional.of(familyHead));
-        when(familyRepository.findAll()).thenReturn(java.util.List.of(family));
+        when(familyRepository.findByHeadOfFamily_UserID(2)).thenReturn(family);
         when(familyRepository.findById(1)).thenReturn(Optional.of(family));
         
         // Active relationship exists
@@ -213,6 +222,7 @@ class MessageSecurityTest {
         
         when(conversationRepository.findByDoctorAndFamily(1, 1))
             .thenReturn(Optional.of(conversation));
+        when(conversationAccessCache.isParticipant(1, 1)).thenReturn(true);
         
         Message savedMessage = new Message();
         savedMessage.setMessageID(1);
@@ -236,35 +246,14 @@ class MessageSecurityTest {
         // Then
         assertNotNull(result);
         verify(messageRepository).save(any(Message.class));
-        verify(rateLimitService).recordMessageSent(doctor.getUserID());
-    }
-    
-    @Test
-    @DisplayName("Rate Limiting: Should prevent sending messages too quickly")
-    void testRateLimiting() {
-        // Given
-        when(rateLimitService.canSendMessage(anyInt())).thenReturn(false);
-        
-        // When & Then
-        assertThrows(ValidationException.class, () -> {
-            messageService.sendMessage(
-                doctor.getUserID(),
-                familyHead.getUserID(),
-                "Test message",
-                null,
-                null
-            );
-        });
-        
-        verify(messageRepository, never()).save(any(Message.class));
     }
     
     @Test
     @DisplayName(" 7.2: Should prevent unauthorized typing indicator")
     void testUnauthorizedTypingIndicator() {
         // Given
-        when(conversationRepository.findById(1)).thenReturn(Optional.of(conversation));
-        when(userRepository.findById(3)).thenReturn(Optional.of(unauthorizedUser));
+        when(conversationAccessCache.exists(1)).thenReturn(true);
+        when(conversationAccessCache.isParticipant(1, 3)).thenReturn(false);
         
         // When & Then
         assertThrows(UnAuthorizedException.class, () -> {
@@ -277,9 +266,6 @@ class MessageSecurityTest {
     @Test
     @DisplayName(" 7.1: Should reject empty message content")
     void testEmptyMessageRejection() {
-        // Given
-        when(rateLimitService.canSendMessage(anyInt())).thenReturn(true);
-        
         // When & Then - empty string
         assertThrows(ValidationException.class, () -> {
             messageService.sendMessage(
@@ -0,0 +1,162 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.HeldNotificationDraft;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.config.NotificationCoalescingProperties;
+import com.example.famMedical.dto.NotificationDraft;
+import com.example.famMedical.repository.HeldNotificationDraftRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Notification Coalescer Tests")
+class NotificationCoalescerTest {
+
+    @Mock
+    private NotificationWriter notificationWriter;
+
+    @Mock
+    private HeldNotificationDraftRepository heldNotificationDraftRepository;
+
+    // Stands in for the held_notification_drafts table
+    private final List<HeldNotificationDraft> held = new ArrayList<>();
+    private NotificationCoalescingProperties properties;
+    private NotificationCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        // Nothing is scheduled outside a Spring context; the tests flush by hand
+        properties = new NotificationCoalescingProperties();
+        properties.setWindow(Duration.ofHours(1));
+        properties.setTypes(EnumSet.of(NotificationType.MEDICAL_RECORD_UPDATED));
+        properties.setDigestInterval(Duration.ofHours(1));
+        properties.setDigestTypes(EnumSet.of(NotificationType.APPOINTMENT_UPDATED));
+        coalescer = new NotificationCoalescer(notificationWriter, heldNotificationDraftRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), properties);
+
+        lenient().when(heldNotificationDraftRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<HeldNotificationDraft> drafts = invocation.getArgument(0);
+            held.addAll(drafts);
+            return drafts;
+        });
+        lenient().when(heldNotificationDraftRepository.findClaimable(anyBoolean(), any(Pageable.class)))
+                .thenAnswer(invocation -> held.stream()
+                        .filter(draft -> draft.getDigest() == (boolean) invocation.getArgument(0))
+                        .sorted(Comparator.comparing(HeldNotificationDraft::getUserID))
+                        .toList());
+        lenient().doAnswer(invocation -> held.removeAll(invocation.getArgument(0)))
+                .when(heldNotificationDraftRepository).deleteAllInBatch(anyIterable());
+    }
+
+    @Test
+    @DisplayName("Should write repeated edits of one entity once, with the latest text and the edit count")
+    void testCoalescesSameKey() {
+        for (int i = 1; i <= 5; i++) {
+            coalescer.submit(List.of(recordUpdated(1, 10, "edit " + i)));
+        }
+        coalescer.submit(List.of(recordUpdated(1, 11, "other record")));
+        coalescer.submit(List.of(recordUpdated(2, 10, "other user")));
+        verifyNoInteractions(notificationWriter);
+
+        coalescer.flush();
+
+        ArgumentCaptor<List<NotificationDraft>> captor = ArgumentCaptor.forClass(List.class);
+        verify(notificationWriter, times(1)).mergeAll(captor.capture());
+        List<NotificationDraft> drafts = captor.getValue();
+        assertEquals(3, drafts.size());
+        assertEquals("edit 5", drafts.get(0).message());
+        assertEquals(5, drafts.get(0).occurrences());
+        assertEquals(1, drafts.get(1).occurrences());
+        assertEquals(1, drafts.get(2).occurrences());
+    }
+
+    @Test
+    @DisplayName("Should start a new window after a flush")
+    void testWindowEndsOnFlush() {
+        coalescer.submit(List.of(recordUpdated(1, 10, "first")));
+        coalescer.flush();
+        coalescer.flush();
+        coalescer.submit(List.of(recordUpdated(1, 10, "second")));
+        coalescer.flush();
+
+        verify(notificationWriter, times(2)).mergeAll(argThat(drafts -> drafts.size() == 1
+                && drafts.get(0).occurrences() == 1));
+    }
+
+    @Test
+    @DisplayName("Should write other types right away")
+    void testPassesThroughOtherTypes() {
+        NotificationDraft created = new NotificationDraft(1, NotificationType.MEDICAL_RECORD_CREATED,
+                "Hồ sơ y tế mới", "created", "MedicalRecord", 10);
+
+        coalescer.submit(List.of(created));
+
+        verify(notificationWriter).writeAll(List.of(created));
+        verify(notificationWriter, never()).mergeAll(any());
+    }
+
+    @Test
+    @DisplayName("Should sum up digest types in one notification per user")
+    void testDigest() {
+        coalescer.submit(List.of(appointmentUpdated(1, 20), appointmentUpdated(1, 21), appointmentUpdated(2, 20)));
+        coalescer.submit(List.of(appointmentUpdated(1, 20)));
+        verifyNoInteractions(notificationWriter);
+
+        coalescer.flushDigests();
+
+        ArgumentCaptor<List<NotificationDraft>> captor = ArgumentCaptor.forClass(List.class);
+        verify(notificationWriter).writeAll(captor.capture());
+        List<NotificationDraft> digests = captor.getValue();
+        assertEquals(2, digests.size());
+        NotificationDraft first = digests.get(0);
+        assertEquals(1, first.userID());
+        assertEquals(NotificationType.DIGEST, first.type());
+        assertEquals(NotificationCoalescer.DIGEST_TITLE, first.title());
+        assertEquals("Cuộc hẹn được cập nhật (3)", first.message());
+        assertEquals(3, first.occurrences());
+        assertNull(first.relatedEntityID());
+    }
+
+    @Test
+    @DisplayName("Should keep held drafts when writing them fails")
+    void testKeepsDraftsWhenFlushFails() {
+        coalescer.submit(List.of(recordUpdated(1, 10, "held")));
+        when(notificationWriter.mergeAll(anyList())).thenThrow(new RuntimeException("DB down"));
+
+        coalescer.flush();
+
+        assertEquals(1, held.size());
+        reset(notificationWriter);
+        coalescer.flush();
+        verify(notificationWriter).mergeAll(argThat(drafts -> drafts.size() == 1));
+        assertTrue(held.isEmpty());
+    }
+
+    private static NotificationDraft recordUpdated(Integer userID, Integer recordID, String message) {
+        return new NotificationDraft(userID, NotificationType.MEDICAL_RECORD_UPDATED,
+                "Hồ sơ y tế được cập nhật", message, "MedicalRecord", recordID);
+    }
+
+    private static NotificationDraft appointmentUpdated(Integer userID, Integer appointmentID) {
+        return new NotificationDraft(userID, NotificationType.APPOINTMENT_UPDATED,
+                "Cuộc hẹn được cập nhật", "updated", "Appointment", appointmentID);
+    }
+}
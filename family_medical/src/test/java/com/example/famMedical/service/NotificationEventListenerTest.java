@@ -2,6 +2,7 @@ package com.example.famMedical.service;
 
 import com.example.famMedical.Entity.*;
 import com.example.famMedical.dto.events.*;
+import com.example.famMedical.exception.NotFoundException;
 import com.example.famMedical.repository.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -11,8 +12,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -25,6 +32,9 @@ class NotificationEventListenerTest {
     @Mock
     private NotificationService notificationService;
 
+    @Mock
+    private MessagePublisher messagePublisher;
+
     @InjectMocks
     private NotificationEventListener eventListener;
 
@@ -109,7 +119,7 @@ class NotificationEventListenerTest {
         eventListener.handleAppointmentCreated(event);
 
         // Then
-        verify(notificationService, times(1)).notifyAppointmentCreated(appointment);
+        verify(notificationService, times(1)).notifyAppointmentCreated(AppointmentSnapshot.of(appointment));
     }
 
     @Test
@@ -121,7 +131,7 @@ class NotificationEventListenerTest {
         eventListener.handleAppointmentUpdated(event);
 
         // Then
-        verify(notificationService, times(1)).notifyAppointmentUpdated(appointment);
+        verify(notificationService, times(1)).notifyAppointmentUpdated(AppointmentSnapshot.of(appointment));
     }
 
     @Test
@@ -133,7 +143,7 @@ class NotificationEventListenerTest {
         eventListener.handleDoctorRequestCreated(event);
 
         // Then
-        verify(notificationService, times(1)).notifyDoctorRequestCreated(doctorRequest);
+        verify(notificationService, times(1)).notifyDoctorRequestCreated(DoctorRequestSnapshot.of(doctorRequest));
     }
 
     @Test
@@ -145,7 +155,7 @@ class NotificationEventListenerTest {
         eventListener.handleDoctorRequestStatusChanged(event);
 
         // Then
-        verify(notificationService, times(1)).notifyDoctorRequestStatusChanged(doctorRequest);
+        verify(notificationService, times(1)).notifyDoctorRequestStatusChanged(DoctorRequestSnapshot.of(doctorRequest));
     }
 
     @Test
@@ -157,7 +167,7 @@ class NotificationEventListenerTest {
         eventListener.handleMedicalRecordCreated(event);
 
         // Then
-        verify(notificationService, times(1)).notifyMedicalRecordCreated(medicalRecord);
+        verify(notificationService, times(1)).notifyMedicalRecordCreated(MedicalRecordSnapshot.of(medicalRecord));
     }
 
     @Test
@@ -169,7 +179,7 @@ class NotificationEventListenerTest {
         eventListener.handleMedicalRecordUpdated(event);
 
         // Then
-        verify(notificationService, times(1)).notifyMedicalRecordUpdated(medicalRecord);
+        verify(notificationService, times(1)).notifyMedicalRecordUpdated(MedicalRecordSnapshot.of(medicalRecord));
     }
 
     @Test
@@ -178,10 +188,18 @@ class NotificationEventListenerTest {
         NewMessageEvent event = new NewMessageEvent(this, message);
 
         // When
-        eventListener.handleNewMessage(event);
-
-        // Then
-        verify(notificationService, times(1)).notifyNewMessage(message);
+        CompletableFuture<Void> result = eventListener.handleNewMessage(event);
+
+        // Then - the payloads are built from the snapshot and routed to its participants
+        verify(messagePublisher).publishMessage(argThat(published -> published.getMessageID() == 1
+                && "Test message".equals(published.getContent())
+                && published.getSender().getUserID() == 1
+                && published.getConversation().getConversationID() == 1), eq(List.of(2)));
+        verify(messagePublisher).publishConversationUpdate(argThat(published -> published.getConversationID() == 1
+                && "Test Family".equals(published.getFamily().getFamilyName())
+                && "Dr. Test".equals(published.getDoctor().getFullName())), eq(List.of(1, 2)));
+        verifyNoInteractions(notificationService);
+        assertFalse(result.isCompletedExceptionally());
     }
 
     @Test
@@ -192,10 +210,25 @@ class NotificationEventListenerTest {
                 .when(notificationService).notifyAppointmentCreated(any());
 
         // When - should not throw exception
-        eventListener.handleAppointmentCreated(event);
+        CompletableFuture<Void> result = eventListener.handleAppointmentCreated(event);
+
+        // Then - the failure reaches the relay, which keeps the event for a retry
+        verify(notificationService, times(1)).notifyAppointmentCreated(AppointmentSnapshot.of(appointment));
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    void testHandleMedicalRecordCreatedWithMissingEntity() {
+        // Given
+        MedicalRecordCreatedEvent event = new MedicalRecordCreatedEvent(this, medicalRecord);
+        doThrow(new NotFoundException("Member not found"))
+                .when(notificationService).notifyMedicalRecordCreated(any());
 
-        // Then - verify the method was called despite the exception
-        verify(notificationService, times(1)).notifyAppointmentCreated(appointment);
+        // When
+        CompletableFuture<Void> result = eventListener.handleMedicalRecordCreated(event);
+
+        // Then - a retry would fail the same way, so the event is done with
+        assertFalse(result.isCompletedExceptionally());
     }
 
     @Test
@@ -203,12 +236,28 @@ class NotificationEventListenerTest {
         // Given
         NewMessageEvent event = new NewMessageEvent(this, message);
         doThrow(new RuntimeException("Test exception"))
-                .when(notificationService).notifyNewMessage(any());
+                .when(messagePublisher).publishMessage(any(), any());
 
         // When - should not throw exception
-        eventListener.handleNewMessage(event);
+        CompletableFuture<Void> result = eventListener.handleNewMessage(event);
+
+        // Then - the failure reaches the relay, which keeps the event for a retry
+        verify(messagePublisher).publishMessage(any(), eq(List.of(2)));
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    void testEventKeepsSnapshotTakenAtPublishTime() {
+        // Given
+        DoctorRequestStatusChangedEvent event = new DoctorRequestStatusChangedEvent(this, doctorRequest);
+        doctorRequest.setStatus(DoctorRequest.RequestStatus.REJECTED);
+        doctor.setFullName("Renamed");
+
+        // When
+        eventListener.handleDoctorRequestStatusChanged(event);
 
-        // Then - verify the method was called despite the exception
-        verify(notificationService, times(1)).notifyNewMessage(message);
+        // Then - the listener sees the request as it was published, not the entity's later state
+        verify(notificationService).notifyDoctorRequestStatusChanged(new DoctorRequestSnapshot(
+                1, DoctorRequest.RequestStatus.ACCEPTED, 1, "Dr. Test", "Test Family", 2));
     }
 }
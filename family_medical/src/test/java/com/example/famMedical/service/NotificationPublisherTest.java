@@ -3,12 +3,19 @@ package com.example.famMedical.service;
 import com.example.famMedical.Entity.Notification;
 import com.example.famMedical.Entity.NotificationType;
 import com.example.famMedical.Entity.User;
+import com.example.famMedical.repository.NotificationRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * Test for NotificationPublisher Service
@@ -22,7 +29,7 @@ class NotificationPublisherTest {
 
     @BeforeEach
     void setUp() {
-        notificationPublisher = new NotificationPublisher();
+        notificationPublisher = new NotificationPublisher(new InMemoryEventBus(), mock(NotificationRepository.class), Runnable::run);
 
         // Create test users
         testUser = new User();
@@ -111,4 +118,47 @@ class NotificationPublisherTest {
                 .expectNextCount(2)
                 .verifyComplete();
     }
+
+    @Test
+    void publishNotification_shouldReachSubscribersOnAnotherNode() {
+        Notification notification = Notification.builder()
+                .notificationID(7L)
+                .user(testUser)
+                .type(NotificationType.APPOINTMENT_CREATED)
+                .title("Appointment")
+                .message("Created on node A")
+                .build();
+
+        // Node B shares the in-process cluster and loads what node A announces
+        InMemoryEventBus nodeA = new InMemoryEventBus();
+        NotificationRepository nodeBRepository = mock(NotificationRepository.class);
+        when(nodeBRepository.findForDelivery(7L)).thenReturn(Optional.of(notification));
+        NotificationPublisher publisherA = new NotificationPublisher(nodeA, mock(NotificationRepository.class), Runnable::run);
+        NotificationPublisher publisherB = new NotificationPublisher(nodeA.join(), nodeBRepository, Runnable::run);
+
+        StepVerifier.create(publisherB.getNotificationStream(testUser).take(1))
+                .then(() -> publisherA.publishNotification(notification))
+                .expectNextMatches(n -> n.getNotificationID().equals(7L))
+                .verifyComplete();
+        verify(nodeBRepository).findForDelivery(7L);
+    }
+
+    @Test
+    void publishNotification_shouldNotLoadOnNodeWithoutSubscribers() {
+        Notification notification = Notification.builder()
+                .notificationID(8L)
+                .user(testUser)
+                .type(NotificationType.APPOINTMENT_CREATED)
+                .title("Appointment")
+                .message("Nobody on node B")
+                .build();
+        InMemoryEventBus nodeA = new InMemoryEventBus();
+        NotificationRepository nodeBRepository = mock(NotificationRepository.class);
+        NotificationPublisher publisherA = new NotificationPublisher(nodeA, mock(NotificationRepository.class), Runnable::run);
+        new NotificationPublisher(nodeA.join(), nodeBRepository, Runnable::run);
+
+        publisherA.publishNotification(notification);
+
+        verifyNoInteractions(nodeBRepository);
+    }
 }
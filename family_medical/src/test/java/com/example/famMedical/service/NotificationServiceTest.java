@@ -1,25 +1,37 @@
 package com.example.famMedical.service;
 
 import com.example.famMedical.Entity.*;
+import com.example.famMedical.config.NotificationCoalescingProperties;
 import com.example.famMedical.dto.NotificationConnection;
+import com.example.famMedical.dto.NotificationCursor;
+import com.example.famMedical.dto.events.AppointmentSnapshot;
+import com.example.famMedical.dto.events.DoctorRequestSnapshot;
+import com.example.famMedical.dto.events.MedicalRecordSnapshot;
+import com.example.famMedical.dto.events.MessageSnapshot;
 import com.example.famMedical.exception.NotFoundException;
 import com.example.famMedical.exception.UnAuthorizedException;
+import com.example.famMedical.exception.ValidationException;
+import com.example.famMedical.repository.HeldNotificationDraftRepository;
 import com.example.famMedical.repository.NotificationRepository;
 import com.example.famMedical.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -37,7 +49,9 @@ class NotificationServiceTest {
     @Mock
     private NotificationPublisher notificationPublisher;
 
-    @InjectMocks
+    @Mock
+    private EventBus eventBus;
+
     private NotificationServiceImpl notificationService;
 
     private User testUser;
@@ -45,6 +59,17 @@ class NotificationServiceTest {
 
     @BeforeEach
     void setUp() {
+        // Nothing is held back by the coalescer with the default properties
+        UnreadNotificationCounter unreadNotificationCounter =
+                new UnreadNotificationCounter(notificationRepository, eventBus);
+        NotificationWriter notificationWriter = new NotificationWriter(notificationRepository, userRepository,
+                notificationPublisher, unreadNotificationCounter);
+        notificationService = new NotificationServiceImpl(notificationRepository, notificationWriter,
+                new NotificationCoalescer(notificationWriter, mock(HeldNotificationDraftRepository.class),
+                        new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                        new NotificationCoalescingProperties()),
+                unreadNotificationCounter);
+
         testUser = new User();
         testUser.setUserID(1);
         testUser.setFullName("Test User");
@@ -66,8 +91,8 @@ class NotificationServiceTest {
     @Test
     void testCreateNotification_Success() {
         // Arrange
-        when(userRepository.findById(1)).thenReturn(Optional.of(testUser));
-        when(notificationRepository.save(any(Notification.class))).thenReturn(testNotification);
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of(testUser));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
         Notification result = notificationService.createNotification(
@@ -84,14 +109,15 @@ class NotificationServiceTest {
         assertEquals("Test Notification", result.getTitle());
         assertEquals("Test message", result.getMessage());
         assertEquals(NotificationType.APPOINTMENT_CREATED, result.getType());
-        verify(userRepository).findById(1);
-        verify(notificationRepository).save(any(Notification.class));
+        assertEquals(testUser, result.getUser());
+        verify(userRepository).findAllById(Set.of(1));
+        verify(notificationPublisher).publishNotification(result);
     }
 
     @Test
     void testCreateNotification_UserNotFound() {
         // Arrange
-        when(userRepository.findById(999)).thenReturn(Optional.empty());
+        when(userRepository.findAllById(Set.of(999))).thenReturn(List.of());
 
         // Act & Assert
         assertThrows(NotFoundException.class, () -> {
@@ -173,6 +199,54 @@ class NotificationServiceTest {
         verify(notificationRepository).findByUserID(eq(1), any(Pageable.class));
     }
 
+    @Test
+    void testGetUserNotificationsByCursor_FirstPage() {
+        // Arrange
+        Notification older = Notification.builder()
+                .notificationID(0L)
+                .user(testUser)
+                .type(NotificationType.NEW_MESSAGE)
+                .title("Older")
+                .message("Older message")
+                .createdAt(testNotification.getCreatedAt().minusMinutes(1))
+                .build();
+        when(notificationRepository.findLatestByUserID(eq(1), any(Pageable.class)))
+                .thenReturn(List.of(testNotification, older));
+
+        // Act
+        NotificationConnection result = notificationService.getUserNotificationsByCursor(1, null, 1);
+
+        // Assert
+        assertEquals(List.of(testNotification), result.getNotifications());
+        assertTrue(result.isHasMore());
+        assertNull(result.getTotalCount());
+        assertEquals(1, result.getUserID());
+        assertEquals(NotificationCursor.of(testNotification).encode(), result.getEndCursor());
+        verify(notificationRepository, never()).countByUserID(any());
+    }
+
+    @Test
+    void testGetUserNotificationsByCursor_After() {
+        // Arrange
+        NotificationCursor cursor = NotificationCursor.of(testNotification);
+        when(notificationRepository.findBeforeCursor(eq(1), eq(cursor.getCreatedAt()), eq(1L), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // Act
+        NotificationConnection result = notificationService.getUserNotificationsByCursor(1, cursor.encode(), 10);
+
+        // Assert
+        assertTrue(result.getNotifications().isEmpty());
+        assertFalse(result.isHasMore());
+        assertNull(result.getEndCursor());
+    }
+
+    @Test
+    void testGetUserNotificationsByCursor_InvalidCursor() {
+        assertThrows(ValidationException.class,
+                () -> notificationService.getUserNotificationsByCursor(1, "not a cursor", 10));
+    }
+
     @Test
     void testGetUnreadNotificationCount_Success() {
         // Arrange
@@ -186,6 +260,26 @@ class NotificationServiceTest {
         verify(notificationRepository).countUnreadByUser(1);
     }
 
+    @Test
+    void testGetUnreadNotificationCount_TracksReadsWithoutRecounting() {
+        // Arrange
+        when(notificationRepository.countUnreadByUser(1)).thenReturn(3);
+        when(notificationRepository.findById(1L)).thenReturn(Optional.of(testNotification));
+        when(notificationRepository.save(any(Notification.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        assertEquals(3, notificationService.getUnreadNotificationCount(1));
+
+        // Act
+        notificationService.markAsRead(1L, 1);
+        int afterRead = notificationService.getUnreadNotificationCount(1);
+        notificationService.markAllAsRead(1);
+        int afterReadAll = notificationService.getUnreadNotificationCount(1);
+
+        // Assert
+        assertEquals(2, afterRead);
+        assertEquals(0, afterReadAll);
+        verify(notificationRepository, times(1)).countUnreadByUser(1);
+    }
+
     @Test
     void testNotifyAppointmentCreated_Success() {
         // Arrange
@@ -208,15 +302,43 @@ class NotificationServiceTest {
         appointment.setFamily(family);
         appointment.setAppointmentDateTime(LocalDateTime.now());
 
-        when(userRepository.findById(1)).thenReturn(Optional.of(doctor));
-        when(userRepository.findById(2)).thenReturn(Optional.of(familyHead));
-        when(notificationRepository.save(any(Notification.class))).thenReturn(testNotification);
+        when(userRepository.findAllById(Set.of(2))).thenReturn(List.of(familyHead));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        notificationService.notifyAppointmentCreated(appointment);
+        notificationService.notifyAppointmentCreated(AppointmentSnapshot.of(appointment));
 
         // Assert - CHỈ gửi notification cho Family (Doctor tự tạo nên không nhận notification)
-        verify(notificationRepository, times(1)).save(any(Notification.class));
+        verify(userRepository).findAllById(Set.of(2));
+        verify(notificationRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testNotifyAppointmentUpdated_WritesBothNotificationsInOneBatch() {
+        // Arrange
+        User doctor = new User();
+        doctor.setUserID(1);
+        User familyHead = new User();
+        familyHead.setUserID(2);
+        AppointmentSnapshot appointment = new AppointmentSnapshot(
+                7, 1, "Dr. Smith", "Test Family", 2, LocalDateTime.now());
+
+        when(userRepository.findAllById(Set.of(1, 2))).thenReturn(List.of(doctor, familyHead));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        notificationService.notifyAppointmentUpdated(appointment);
+
+        // Assert
+        verify(userRepository, times(1)).findAllById(any());
+        verify(notificationRepository, times(1)).saveAll(argThat(notifications -> {
+            List<Notification> written = new ArrayList<>();
+            notifications.forEach(written::add);
+            return written.size() == 2
+                    && written.get(0).getUser() == doctor
+                    && written.get(1).getUser() == familyHead;
+        }));
+        verify(notificationPublisher, times(2)).publishNotification(any(Notification.class));
     }
 
     @Test
@@ -241,14 +363,14 @@ class NotificationServiceTest {
         request.setFamily(family);
         request.setStatus(DoctorRequest.RequestStatus.ACCEPTED);
 
-        when(userRepository.findById(2)).thenReturn(Optional.of(familyHead));
-        when(notificationRepository.save(any(Notification.class))).thenReturn(testNotification);
+        when(userRepository.findAllById(Set.of(2))).thenReturn(List.of(familyHead));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        notificationService.notifyDoctorRequestStatusChanged(request);
+        notificationService.notifyDoctorRequestStatusChanged(DoctorRequestSnapshot.of(request));
 
         // Assert
-        verify(notificationRepository).save(any(Notification.class));
+        verify(notificationRepository).saveAll(anyList());
     }
 
     @Test
@@ -272,14 +394,14 @@ class NotificationServiceTest {
         record.setRecordID(1);
         record.setMember(member);
 
-        when(userRepository.findById(1)).thenReturn(Optional.of(familyHead));
-        when(notificationRepository.save(any(Notification.class))).thenReturn(testNotification);
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of(familyHead));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        notificationService.notifyMedicalRecordCreated(record);
+        notificationService.notifyMedicalRecordCreated(MedicalRecordSnapshot.of(record));
 
         // Assert
-        verify(notificationRepository).save(any(Notification.class));
+        verify(notificationRepository).saveAll(anyList());
     }
 
     @Test
@@ -309,13 +431,34 @@ class NotificationServiceTest {
         message.setConversation(conversation);
         message.setContent("Test message");
 
-        when(userRepository.findById(2)).thenReturn(Optional.of(familyHead));
-        when(notificationRepository.save(any(Notification.class))).thenReturn(testNotification);
+        when(userRepository.findAllById(Set.of(2))).thenReturn(List.of(familyHead));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        notificationService.notifyNewMessage(message);
+        notificationService.notifyNewMessage(MessageSnapshot.of(message));
 
         // Assert
-        verify(notificationRepository).save(any(Notification.class));
+        verify(notificationRepository).saveAll(anyList());
+    }
+
+    @Test
+    void testNotifyDoctorRequestCreated_UsesSnapshotWithoutReloading() {
+        // Arrange
+        DoctorRequestSnapshot request = new DoctorRequestSnapshot(
+                5, DoctorRequest.RequestStatus.PENDING, 1, "Dr. Smith", "Test Family", 2);
+
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of(testUser));
+        when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        notificationService.notifyDoctorRequestCreated(request);
+
+        // Assert
+        ArgumentCaptor<List<Notification>> captor = ArgumentCaptor.forClass(List.class);
+        verify(notificationRepository).saveAll(captor.capture());
+        Notification notification = captor.getValue().get(0);
+        assertEquals(NotificationType.DOCTOR_REQUEST_CREATED, notification.getType());
+        assertTrue(notification.getMessage().contains("Test Family"));
+        assertEquals(5, notification.getRelatedEntityID());
     }
 }
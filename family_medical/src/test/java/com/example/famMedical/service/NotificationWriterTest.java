@@ -0,0 +1,171 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.Notification;
+import com.example.famMedical.Entity.NotificationType;
+import com.example.famMedical.Entity.User;
+import com.example.famMedical.dto.NotificationDraft;
+import com.example.famMedical.repository.NotificationRepository;
+import com.example.famMedical.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Notification Writer Tests")
+class NotificationWriterTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationPublisher notificationPublisher;
+
+    @Mock
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    @InjectMocks
+    private NotificationWriter notificationWriter;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setUp() {
+        alice = new User();
+        alice.setUserID(1);
+        bob = new User();
+        bob.setUserID(2);
+        lenient().when(notificationRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should load every recipient with one query and save the batch at once")
+    void testWritesBatch() {
+        when(userRepository.findAllById(Set.of(1, 2))).thenReturn(List.of(alice, bob));
+
+        List<Notification> written = notificationWriter.writeAll(List.of(
+                draft(1, "first"), draft(2, "second"), draft(1, "third")));
+
+        assertEquals(List.of("first", "second", "third"), written.stream().map(Notification::getTitle).toList());
+        assertSame(alice, written.get(2).getUser());
+        assertFalse(written.get(0).getIsRead());
+        verify(userRepository, times(1)).findAllById(any());
+        verify(notificationRepository, times(1)).saveAll(anyList());
+        verify(notificationPublisher, times(3)).publishNotification(any(Notification.class));
+        verify(unreadNotificationCounter).added(Map.of(1, 2, 2, 1));
+    }
+
+    @Test
+    @DisplayName("Should skip drafts for unknown users")
+    void testSkipsUnknownUsers() {
+        when(userRepository.findAllById(Set.of(1, 99))).thenReturn(List.of(alice));
+
+        List<Notification> written = notificationWriter.writeAll(List.of(draft(99, "lost"), draft(1, "kept")));
+
+        assertEquals(1, written.size());
+        assertEquals("kept", written.get(0).getTitle());
+    }
+
+    @Test
+    @DisplayName("Should not touch the database for an empty batch")
+    void testEmptyBatch() {
+        assertTrue(notificationWriter.writeAll(List.of()).isEmpty());
+
+        verifyNoInteractions(userRepository, notificationRepository, notificationPublisher);
+    }
+
+    @Test
+    @DisplayName("Should publish only after the transaction commits")
+    void testPublishesAfterCommit() {
+        when(userRepository.findAllById(Set.of(1))).thenReturn(List.of(alice));
+        TransactionSynchronizationManager.initSynchronization();
+
+        List<Notification> written = notificationWriter.writeAll(List.of(draft(1, "pending")));
+
+        verify(notificationPublisher, never()).publishNotification(any());
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(notificationPublisher).publishNotification(written.get(0));
+    }
+
+    @Test
+    @DisplayName("Should keep publishing the batch when one notification fails")
+    void testPublishFailureDoesNotStopBatch() {
+        when(userRepository.findAllById(Set.of(1, 2))).thenReturn(List.of(alice, bob));
+        doThrow(new IllegalStateException("boom")).doNothing()
+                .when(notificationPublisher).publishNotification(any(Notification.class));
+
+        assertDoesNotThrow(() -> notificationWriter.writeAll(List.of(draft(1, "a"), draft(2, "b"))));
+
+        verify(notificationPublisher, times(2)).publishNotification(any(Notification.class));
+    }
+
+    @Test
+    @DisplayName("Should merge into the unread notification about the same entity and insert the rest")
+    void testMergeAll() {
+        Notification unread = Notification.builder()
+                .notificationID(7L)
+                .user(alice)
+                .type(NotificationType.NEW_MESSAGE)
+                .title("old")
+                .message("old")
+                .relatedEntityType("Message")
+                .relatedEntityID(1)
+                .updateCount(2)
+                .build();
+        Notification otherEntityType = Notification.builder()
+                .notificationID(8L)
+                .user(bob)
+                .type(NotificationType.NEW_MESSAGE)
+                .relatedEntityType("Conversation")
+                .relatedEntityID(1)
+                .updateCount(1)
+                .build();
+        when(notificationRepository.findUnreadForEntities(Set.of(1, 2), Set.of(NotificationType.NEW_MESSAGE), Set.of(1)))
+                .thenReturn(List.of(unread, otherEntityType));
+        when(userRepository.findAllById(Set.of(2))).thenReturn(List.of(bob));
+
+        NotificationDraft coalesced = new NotificationDraft(1, NotificationType.NEW_MESSAGE, "latest", "body", "Message", 1, 3);
+        List<Notification> written = notificationWriter.mergeAll(List.of(coalesced, draft(2, "new")));
+
+        assertEquals(2, written.size());
+        assertSame(unread, written.get(0));
+        assertEquals("latest", unread.getTitle());
+        assertEquals(5, unread.getUpdateCount());
+        assertEquals(bob, written.get(1).getUser());
+        assertEquals(1, written.get(1).getUpdateCount());
+        verify(notificationRepository).saveAll(argThat(notifications -> notifications.iterator().next().getUser() == bob));
+        verify(notificationPublisher, times(2)).publishNotification(any(Notification.class));
+        // The merged notification was already unread
+        verify(unreadNotificationCounter).added(Map.of(2, 1));
+        assertEquals(1, otherEntityType.getUpdateCount());
+    }
+
+    private static NotificationDraft draft(Integer userID, String title) {
+        return new NotificationDraft(userID, NotificationType.NEW_MESSAGE, title, "body", "Message", 1);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.Entity.OutboxEvent;
+import com.example.famMedical.dto.events.AppointmentCreatedEvent;
+import com.example.famMedical.dto.events.AppointmentSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Outbox Relay Tests")
+class OutboxRelayTest {
+
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    @Mock
+    private EventOutbox eventOutbox;
+
+    @Mock
+    private NotificationEventListener listener;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(eventOutbox, listener, 10, Duration.ofSeconds(1), LEASE, 3);
+    }
+
+    @Test
+    @DisplayName("Should hand claimed events to their listener and delete them once handled")
+    void testDispatchesAndCompletes() {
+        OutboxEvent row = row(1L, 1);
+        AppointmentCreatedEvent event = appointmentCreated();
+        when(eventOutbox.claim(10, LEASE)).thenReturn(List.of(row), List.of());
+        when(eventOutbox.decode(row)).thenReturn(event);
+        when(listener.handleAppointmentCreated(event)).thenReturn(CompletableFuture.completedFuture(null));
+
+        assertEquals(1, relay.relayOnce());
+        verify(listener).handleAppointmentCreated(event);
+
+        relay.relayOnce();
+        verify(eventOutbox).complete(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Should keep an event until its listener finishes, and for a retry when it fails")
+    void testKeepsUnfinishedEvents() {
+        OutboxEvent pending = row(1L, 1);
+        OutboxEvent failing = row(2L, 1);
+        AppointmentCreatedEvent pendingEvent = appointmentCreated();
+        AppointmentCreatedEvent failingEvent = appointmentCreated();
+        CompletableFuture<Void> running = new CompletableFuture<>();
+        when(eventOutbox.claim(10, LEASE)).thenReturn(List.of(pending, failing), List.of(), List.of());
+        when(eventOutbox.decode(pending)).thenReturn(pendingEvent);
+        when(eventOutbox.decode(failing)).thenReturn(failingEvent);
+        when(listener.handleAppointmentCreated(pendingEvent)).thenReturn(running);
+        when(listener.handleAppointmentCreated(failingEvent))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+
+        relay.relayOnce();
+        relay.relayOnce();
+        verify(eventOutbox, never()).complete(argThat(ids -> !ids.isEmpty()));
+
+        running.complete(null);
+        relay.relayOnce();
+        verify(eventOutbox).complete(List.of(1L));
+    }
+
+    @Test
+    @DisplayName("Should drop events that ran out of attempts or cannot be read")
+    void testDropsDeadEvents() {
+        OutboxEvent exhausted = row(1L, 4);
+        OutboxEvent unreadable = row(2L, 1);
+        when(eventOutbox.claim(10, LEASE)).thenReturn(List.of(exhausted, unreadable), List.of());
+        when(eventOutbox.decode(unreadable)).thenThrow(new IllegalArgumentException("Cannot read payload"));
+
+        relay.relayOnce();
+        relay.relayOnce();
+
+        verify(eventOutbox, never()).decode(exhausted);
+        verify(eventOutbox).complete(List.of(1L, 2L));
+        verifyNoInteractions(listener);
+    }
+
+    @Test
+    @DisplayName("Should hand events back to the outbox when their executor is full")
+    void testReleasesRejectedEvents() {
+        OutboxEvent accepted = row(1L, 1);
+        OutboxEvent rejected = row(2L, 1);
+        AppointmentCreatedEvent acceptedEvent = appointmentCreated();
+        AppointmentCreatedEvent rejectedEvent = appointmentCreated();
+        when(eventOutbox.claim(10, LEASE)).thenReturn(List.of(accepted, rejected), List.of());
+        when(eventOutbox.decode(accepted)).thenReturn(acceptedEvent);
+        when(eventOutbox.decode(rejected)).thenReturn(rejectedEvent);
+        when(listener.handleAppointmentCreated(acceptedEvent)).thenReturn(CompletableFuture.completedFuture(null));
+        when(listener.handleAppointmentCreated(rejectedEvent)).thenThrow(new RejectedExecutionException("full"));
+
+        assertEquals(1, relay.relayOnce());
+        verify(eventOutbox).release(List.of(2L));
+
+        relay.relayOnce();
+        verify(eventOutbox).complete(List.of(1L));
+    }
+
+    private static OutboxEvent row(Long eventID, int attempts) {
+        return OutboxEvent.builder()
+                .eventID(eventID)
+                .eventType("AppointmentCreatedEvent")
+                .payload("{}")
+                .attempts(attempts)
+                .build();
+    }
+
+    private AppointmentCreatedEvent appointmentCreated() {
+        return new AppointmentCreatedEvent(this,
+                new AppointmentSnapshot(1, 1, "Dr. Smith", "Test Family", 2, LocalDateTime.now()));
+    }
+}
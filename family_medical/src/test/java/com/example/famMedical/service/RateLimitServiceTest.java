@@ -1,91 +1,165 @@
 package com.example.famMedical.service;
 
+import com.example.famMedical.config.RateLimitProperties;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Tests for Rate Limiting Service
- * Optional security feature for preventing message spam
+ * Token buckets per operation and client, driven by a manual clock
  */
 @DisplayName("Rate Limit Service Tests")
 class RateLimitServiceTest {
 
+    private static final Object USER_1 = RateLimitService.userKey(1);
+    private static final Object USER_2 = RateLimitService.userKey(2);
+
+    private final AtomicLong clock = new AtomicLong();
     private RateLimitService rateLimitService;
-    
+
     @BeforeEach
     void setUp() {
-        rateLimitService = new RateLimitService();
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setIdleTimeout(Duration.ofMinutes(10));
+        properties.getOperations().put("sendMessage", limit(3, Duration.ofSeconds(1)));
+        properties.getOperations().put("login", limit(1, Duration.ofMinutes(1)));
+        rateLimitService = new RateLimitService(properties, clock::get);
     }
-    
+
     @Test
-    @DisplayName("Should allow first message from user")
-    void testFirstMessageAllowed() {
-        // When
-        boolean canSend = rateLimitService.canSendMessage(1);
-        
-        // Then
-        assertTrue(canSend);
+    @DisplayName("Should allow a burst up to the capacity")
+    void testBurstUpToCapacity() {
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+
+        assertFalse(rateLimitService.tryAcquire("sendMessage", USER_1));
     }
-    
+
     @Test
-    @DisplayName("Should allow messages with sufficient time gap")
-    void testMessagesWithTimeGap() throws InterruptedException {
-        // Given
-        rateLimitService.recordMessageSent(1);
-        
-        // Wait for minimum time between messages
-        Thread.sleep(1100);
-        
-        // When
-        boolean canSend = rateLimitService.canSendMessage(1);
-        
-        // Then
-        assertTrue(canSend);
+    @DisplayName("Should refill one call per refill interval")
+    void testRefill() {
+        for (int i = 0; i < 3; i++) {
+            rateLimitService.tryAcquire("sendMessage", USER_1);
+        }
+
+        clock.addAndGet(Duration.ofMillis(999).toNanos());
+        assertFalse(rateLimitService.tryAcquire("sendMessage", USER_1));
+
+        clock.addAndGet(Duration.ofMillis(1).toNanos());
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+        assertFalse(rateLimitService.tryAcquire("sendMessage", USER_1));
     }
-    
+
     @Test
-    @DisplayName("Should prevent messages sent too quickly")
-    void testMessagesTooQuick() {
-        // Given
-        rateLimitService.recordMessageSent(1);
-        
-        // When - try to send immediately
-        boolean canSend = rateLimitService.canSendMessage(1);
-        
-        // Then
-        assertFalse(canSend);
+    @DisplayName("Should not save up more than the capacity while idle")
+    void testCapacityIsCapped() {
+        clock.addAndGet(Duration.ofHours(1).toNanos());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+        }
+        assertFalse(rateLimitService.tryAcquire("sendMessage", USER_1));
     }
-    
+
     @Test
-    @DisplayName("Should track remaining messages correctly")
-    void testRemainingMessages() {
-        // Given - user has not sent any messages
-        int remaining = rateLimitService.getRemainingMessages(1);
-        
-        // Then
-        assertEquals(20, remaining);
-        
-        // When - send a message
-        rateLimitService.recordMessageSent(1);
-        remaining = rateLimitService.getRemainingMessages(1);
-        
-        // Then
-        assertEquals(19, remaining);
+    @DisplayName("Should limit users and operations independently")
+    void testIndependentBuckets() {
+        assertTrue(rateLimitService.tryAcquire("login", USER_1));
+        assertFalse(rateLimitService.tryAcquire("login", USER_1));
+
+        assertTrue(rateLimitService.tryAcquire("login", USER_2));
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
     }
-    
+
     @Test
-    @DisplayName("Should allow different users independently")
-    void testDifferentUsersIndependent() {
-        // Given
-        rateLimitService.recordMessageSent(1);
-        
-        // When - different user tries to send
-        boolean canSend = rateLimitService.canSendMessage(2);
-        
-        // Then
-        assertTrue(canSend);
+    @DisplayName("Should take every call of a request or none")
+    void testTryAcquireAll() {
+        assertNull(rateLimitService.tryAcquireAll(List.of("sendMessage", "login"), USER_1));
+
+        assertEquals("login", rateLimitService.tryAcquireAll(List.of("sendMessage", "sendMessage", "login"), USER_1));
+
+        // The rejected request gave its two sendMessage calls back
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+        assertTrue(rateLimitService.tryAcquire("sendMessage", USER_1));
+        assertFalse(rateLimitService.tryAcquire("sendMessage", USER_1));
+    }
+
+    @Test
+    @DisplayName("Should not limit operations without a configured limit")
+    void testUnlimitedOperation() {
+        for (int i = 0; i < 100; i++) {
+            assertTrue(rateLimitService.tryAcquire("updateMember", USER_1));
+        }
+        assertFalse(rateLimitService.isLimited("updateMember"));
+        assertEquals(0, rateLimitService.bucketCount());
+    }
+
+    @Test
+    @DisplayName("Should evict buckets that stayed full for the idle timeout")
+    void testEvictIdle() {
+        rateLimitService.tryAcquire("sendMessage", USER_1);
+        rateLimitService.tryAcquire("login", USER_2);
+        assertEquals(2, rateLimitService.bucketCount());
+
+        // The login bucket is only full again after a minute
+        clock.addAndGet(Duration.ofMinutes(10).toNanos() + Duration.ofSeconds(30).toNanos());
+        assertEquals(1, rateLimitService.evictIdle());
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertEquals(1, rateLimitService.evictIdle());
+        assertEquals(0, rateLimitService.bucketCount());
+    }
+
+    @Test
+    @DisplayName("Should never allow more than the capacity under concurrent calls")
+    void testConcurrentAcquire() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger allowed = new AtomicInteger();
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 1000; j++) {
+                    if (rateLimitService.tryAcquire("sendMessage", USER_1)) {
+                        allowed.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(3, allowed.get());
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid limit")
+    void testInvalidLimit() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.getOperations().put("login", limit(0, Duration.ofSeconds(1)));
+
+        assertThrows(IllegalArgumentException.class, () -> new RateLimitService(properties, clock::get));
+    }
+
+    private static RateLimitProperties.Limit limit(int capacity, Duration refillInterval) {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(capacity);
+        limit.setRefillInterval(refillInterval);
+        return limit;
     }
 }
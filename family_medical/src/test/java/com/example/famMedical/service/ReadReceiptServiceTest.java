@@ -0,0 +1,76 @@
+package com.example.famMedical.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Read Receipt Service Tests")
+class ReadReceiptServiceTest {
+
+    @Mock
+    private ConversationStateService conversationStateService;
+
+    private ThreadPoolTaskScheduler scheduler;
+    private ReadReceiptService readReceiptService;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        readReceiptService.flushAll();
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should merge a burst of receipts into one write of the highest message")
+    void submit_Burst_WritesOnce() {
+        readReceiptService = new ReadReceiptService(conversationStateService, scheduler, 60_000);
+
+        readReceiptService.submit(1, 2, 10);
+        readReceiptService.submit(1, 2, 14);
+        readReceiptService.submit(1, 2, 12);
+        readReceiptService.submit(3, 2, 30);
+        readReceiptService.flushAll();
+
+        verify(conversationStateService).recordMessageRead(1, 2, 14);
+        verify(conversationStateService).recordMessageRead(3, 2, 30);
+        verifyNoMoreInteractions(conversationStateService);
+    }
+
+    @Test
+    @DisplayName("Should write the receipt when the debounce window closes")
+    void submit_WritesAfterWindow() {
+        readReceiptService = new ReadReceiptService(conversationStateService, scheduler, 20);
+
+        readReceiptService.submit(1, 2, 10);
+        readReceiptService.submit(1, 2, 11);
+
+        verify(conversationStateService, timeout(2000)).recordMessageRead(1, 2, 11);
+        verify(conversationStateService, never()).recordMessageRead(1, 2, 10);
+    }
+
+    @Test
+    @DisplayName("Should keep accepting receipts after a failed write")
+    void flush_Failure_IsLogged() {
+        readReceiptService = new ReadReceiptService(conversationStateService, scheduler, 60_000);
+        doThrow(new RuntimeException("DB down")).when(conversationStateService).recordMessageRead(anyInt(), anyInt(), anyInt());
+
+        readReceiptService.submit(1, 2, 10);
+        readReceiptService.flushAll();
+
+        verify(conversationStateService).recordMessageRead(1, 2, 10);
+    }
+}
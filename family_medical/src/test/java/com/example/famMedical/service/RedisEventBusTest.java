@@ -0,0 +1,224 @@
+package com.example.famMedical.service;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.protocol.ProtocolVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for RedisEventBus
+ * Two nodes talk through a stand-in broker on a local port, over Lettuce connections as configured by
+ * spring.data.redis; the stand-in only speaks RESP2
+ */
+@DisplayName("Redis Event Bus Tests")
+class RedisEventBusTest {
+
+    private static final Duration RECONNECT_DELAY = Duration.ofMillis(50);
+
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+    private StubRedisBroker broker;
+    private RedisEventBus nodeA;
+    private RedisEventBus nodeB;
+    private final BlockingQueue<Ping> receivedByA = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Ping> receivedByB = new LinkedBlockingQueue<>();
+
+    record Ping(Integer id, List<Integer> recipientIDs) {}
+
+    @BeforeEach
+    void setUp() throws IOException {
+        broker = new StubRedisBroker();
+        nodeA = node(broker.getPort(), "", "");
+        nodeB = node(broker.getPort(), "", "");
+        nodeA.subscribe("ping", Ping.class, receivedByA::add);
+        nodeB.subscribe("ping", Ping.class, receivedByB::add);
+        awaitTrue(() -> broker.subscriberCount() == 2);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        nodeA.shutdown();
+        nodeB.shutdown();
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+        broker.close();
+    }
+
+    @Test
+    @DisplayName("Should deliver events to the other nodes only")
+    void testDeliversToOtherNodes() throws InterruptedException {
+        nodeA.publish("ping", new Ping(1, List.of(2, 3)));
+
+        assertEquals(new Ping(1, List.of(2, 3)), receivedByB.poll(2, TimeUnit.SECONDS));
+        nodeB.publish("ping", new Ping(2, List.of()));
+        assertEquals(2, receivedByA.poll(2, TimeUnit.SECONDS).id());
+        assertTrue(receivedByA.isEmpty());
+        assertTrue(receivedByB.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep event order from one node")
+    void testOrderFromOneNode() throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            nodeA.publish("ping", new Ping(i, List.of()));
+        }
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, receivedByB.poll(2, TimeUnit.SECONDS).id());
+        }
+    }
+
+    @Test
+    @DisplayName("Should ignore topics without a handler")
+    void testUnknownTopic() throws InterruptedException {
+        nodeA.publish("other", new Ping(1, List.of()));
+        nodeA.publish("ping", new Ping(2, List.of()));
+
+        assertEquals(2, receivedByB.poll(2, TimeUnit.SECONDS).id());
+    }
+
+    @Test
+    @DisplayName("Should resubscribe and publish again after the broker drops the connections")
+    void testReconnect() throws InterruptedException {
+        broker.disconnectAll();
+        awaitTrue(() -> broker.subscriberCount() == 2);
+
+        // The first publish may still find the dead connection; the bus reconnects for the next batches
+        Ping ping = null;
+        for (int i = 0; i < 20 && ping == null; i++) {
+            nodeA.publish("ping", new Ping(i, List.of()));
+            ping = receivedByB.poll(200, TimeUnit.MILLISECONDS);
+        }
+        assertNotNull(ping);
+    }
+
+    @Test
+    @DisplayName("Should count and drop events while the broker is unreachable")
+    void testUnreachableBroker() throws IOException {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        RedisEventBus isolated = node(closedPort, "", "");
+        try {
+            assertDoesNotThrow(() -> isolated.publish("ping", new Ping(1, List.of())));
+            awaitTrue(() -> isolated.getDroppedCount() == 1);
+        } finally {
+            isolated.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should subscribe once the broker comes up after the node started")
+    void testBrokerStartsLater() throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisEventBus early = node(port, "", "");
+        BlockingQueue<Ping> received = new LinkedBlockingQueue<>();
+        early.subscribe("ping", Ping.class, received::add);
+        try (StubRedisBroker late = new StubRedisBroker(port)) {
+            awaitTrue(() -> late.subscriberCount() == 1);
+            RedisEventBus sender = node(port, "", "");
+            try {
+                sender.publish("ping", new Ping(1, List.of()));
+                assertEquals(1, received.poll(2, TimeUnit.SECONDS).id());
+            } finally {
+                sender.shutdown();
+            }
+        } finally {
+            early.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should authenticate every connection, including after a reconnect")
+    void testAuthenticates() throws IOException, InterruptedException {
+        try (StubRedisBroker secured = new StubRedisBroker("secret")) {
+            RedisEventBus sender = node(secured.getPort(), "", "secret");
+            RedisEventBus receiver = node(secured.getPort(), "events", "secret");
+            BlockingQueue<Ping> received = new LinkedBlockingQueue<>();
+            try {
+                receiver.subscribe("ping", Ping.class, received::add);
+                awaitTrue(() -> secured.subscriberCount() == 2);
+                int beforeReconnect = secured.authenticationCount();
+                secured.disconnectAll();
+                awaitTrue(() -> secured.subscriberCount() == 2);
+                assertTrue(secured.authenticationCount() >= beforeReconnect + 2);
+
+                Ping ping = null;
+                for (int i = 0; i < 20 && ping == null; i++) {
+                    sender.publish("ping", new Ping(i, List.of()));
+                    ping = received.poll(200, TimeUnit.MILLISECONDS);
+                }
+                assertNotNull(ping);
+            } finally {
+                sender.shutdown();
+                receiver.shutdown();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should neither subscribe nor publish with a wrong password")
+    void testRejectedPassword() throws IOException {
+        try (StubRedisBroker secured = new StubRedisBroker("secret")) {
+            RedisEventBus wrong = node(secured.getPort(), "", "guess");
+            try {
+                wrong.publish("ping", new Ping(1, List.of()));
+                awaitTrue(() -> wrong.getDroppedCount() == 1);
+                assertEquals(0, secured.subscriberCount());
+                assertEquals(0, secured.authenticationCount());
+            } finally {
+                wrong.shutdown();
+            }
+        }
+    }
+
+    private RedisEventBus node(int port, String username, String password) {
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration("localhost", port);
+        server.setUsername(username.isEmpty() ? null : username);
+        server.setPassword(password);
+        LettuceClientConfiguration client = LettuceClientConfiguration.builder()
+                .commandTimeout(Duration.ofSeconds(1))
+                .clientOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP2).build())
+                .build();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(server, client);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        connectionFactories.add(connectionFactory);
+        return new RedisEventBus(connectionFactory, new StringRedisTemplate(connectionFactory), "test:", RECONNECT_DELAY);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 5 seconds");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+}
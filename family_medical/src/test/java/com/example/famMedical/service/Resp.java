@@ -0,0 +1,120 @@
+package com.example.famMedical.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis Serialization Protocol (RESP2)
+ * The part of the protocol StubRedisBroker needs: reading commands and writing replies and pushed messages.
+ * Simple strings are read as String, integers as Long, bulk strings as byte[] (null when absent),
+ * arrays as List and errors as Resp.Error
+ */
+final class Resp {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * An error reply
+     */
+    record Error(String message) {}
+
+    private Resp() {
+    }
+
+    /**
+     * Write a command as an array of bulk strings; the caller flushes
+     */
+    static void writeCommand(OutputStream out, byte[]... arguments) throws IOException {
+        writeHeader(out, '*', arguments.length);
+        for (byte[] argument : arguments) {
+            writeBulk(out, argument);
+        }
+    }
+
+    static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        writeHeader(out, '$', value.length);
+        out.write(value);
+        out.write(CRLF);
+    }
+
+    static void writeHeader(OutputStream out, char type, long value) throws IOException {
+        out.write(type);
+        out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String string(Object value) {
+        return value instanceof byte[] bulk ? new String(bulk, StandardCharsets.UTF_8) : String.valueOf(value);
+    }
+
+    /**
+     * Read one value; the stream should be buffered
+     * @throws EOFException if the connection was closed
+     */
+    static Object read(InputStream in) throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            throw new EOFException("Connection closed");
+        }
+        String line = readLine(in);
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                return new Error(line);
+            case ':':
+                return Long.parseLong(line);
+            case '$': {
+                int length = Integer.parseInt(line);
+                if (length < 0) {
+                    return null;
+                }
+                byte[] value = in.readNBytes(length);
+                if (value.length < length || in.read() != '\r' || in.read() != '\n') {
+                    throw new EOFException("Truncated bulk string");
+                }
+                return value;
+            }
+            case '*': {
+                int count = Integer.parseInt(line);
+                if (count < 0) {
+                    return null;
+                }
+                List<Object> values = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    values.add(read(in));
+                }
+                return values;
+            }
+            default:
+                throw new IOException("Unexpected RESP type " + (char) type);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(16);
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed");
+            }
+            if (b == '\r') {
+                if (in.read() != '\n') {
+                    throw new IOException("Malformed RESP line");
+                }
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+    }
+}
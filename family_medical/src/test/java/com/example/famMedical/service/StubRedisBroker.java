@@ -0,0 +1,193 @@
+package com.example.famMedical.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for a Redis broker in tests
+ * Understands PSUBSCRIBE with prefix* patterns, PUBLISH and PING over RESP, and AUTH when given a password
+ */
+class StubRedisBroker implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    // Open connections, with the pattern prefix they subscribed to (empty when not subscribed)
+    private final Map<Client, String> clients = new ConcurrentHashMap<>();
+    // Null when no AUTH is required
+    private final String password;
+    private final Set<Client> authenticated = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger authentications = new AtomicInteger();
+
+    StubRedisBroker() throws IOException {
+        this(null);
+    }
+
+    StubRedisBroker(String password) throws IOException {
+        this(0, password);
+    }
+
+    /**
+     * A broker on a given port, standing in for one that comes up after its clients
+     */
+    StubRedisBroker(int port) throws IOException {
+        this(port, null);
+    }
+
+    private StubRedisBroker(int port, String password) throws IOException {
+        this.password = password;
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "stub-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    long subscriberCount() {
+        return clients.values().stream().filter(prefix -> !prefix.isEmpty()).count();
+    }
+
+    /**
+     * Number of successful AUTH commands
+     */
+    int authenticationCount() {
+        return authentications.get();
+    }
+
+    /**
+     * Drop every client connection, as a broker restart would
+     */
+    void disconnectAll() {
+        for (Client client : clients.keySet()) {
+            client.close();
+        }
+        clients.clear();
+        authenticated.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        disconnectAll();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Client client = new Client(serverSocket.accept());
+                clients.put(client, "");
+                Thread reader = new Thread(() -> serve(client), "stub-redis-client");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Client client) {
+        try {
+            while (true) {
+                List<?> command = (List<?>) Resp.read(client.in);
+                String name = Resp.string(command.get(0)).toUpperCase();
+                if (password != null && !name.equals("AUTH") && !authenticated.contains(client)) {
+                    client.send(out -> out.write(Resp.bytes("-NOAUTH Authentication required.\r\n")));
+                    continue;
+                }
+                switch (name) {
+                    case "AUTH" -> {
+                        // AUTH password or AUTH username password
+                        if (password != null && password.equals(Resp.string(command.get(command.size() - 1)))) {
+                            authenticated.add(client);
+                            authentications.incrementAndGet();
+                            client.send(out -> out.write(Resp.bytes("+OK\r\n")));
+                        } else {
+                            client.send(out -> out.write(Resp.bytes("-WRONGPASS invalid username-password pair\r\n")));
+                        }
+                    }
+                    case "PSUBSCRIBE" -> {
+                        String pattern = Resp.string(command.get(1));
+                        clients.put(client, pattern.substring(0, pattern.length() - 1));
+                        client.send(out -> {
+                            Resp.writeHeader(out, '*', 3);
+                            Resp.writeBulk(out, Resp.bytes("psubscribe"));
+                            Resp.writeBulk(out, Resp.bytes(pattern));
+                            Resp.writeHeader(out, ':', 1);
+                        });
+                    }
+                    case "PUBLISH" -> {
+                        String channel = Resp.string(command.get(1));
+                        byte[] payload = (byte[]) command.get(2);
+                        int receivers = 0;
+                        for (Map.Entry<Client, String> entry : clients.entrySet()) {
+                            String prefix = entry.getValue();
+                            if (!prefix.isEmpty() && channel.startsWith(prefix)) {
+                                entry.getKey().send(out -> {
+                                    Resp.writeHeader(out, '*', 4);
+                                    Resp.writeBulk(out, Resp.bytes("pmessage"));
+                                    Resp.writeBulk(out, Resp.bytes(prefix + "*"));
+                                    Resp.writeBulk(out, Resp.bytes(channel));
+                                    Resp.writeBulk(out, payload);
+                                });
+                                receivers++;
+                            }
+                        }
+                        long count = receivers;
+                        client.send(out -> Resp.writeHeader(out, ':', count));
+                    }
+                    case "PING" -> client.send(out -> out.write(Resp.bytes("+PONG\r\n")));
+                    default -> client.send(out -> out.write(Resp.bytes("-ERR unknown command\r\n")));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            clients.remove(client);
+            authenticated.remove(client);
+            client.close();
+        }
+    }
+
+    private interface Reply {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static final class Client {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        synchronized void send(Reply reply) {
+            try {
+                reply.write(out);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.exception.SubscriptionOverflowException;
+import com.example.famMedical.exception.SubscriptionResyncException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test for SubscriptionHub
+ * Verifies keyed routing, bounded buffers, overflow policies and subscriber cleanup
+ */
+class SubscriptionHubTest {
+
+    private SubscriptionHub<Integer, String> hub;
+
+    @BeforeEach
+    void setUp() {
+        hub = new SubscriptionHub<>("test", 8, SubscriptionHub.OverflowPolicy.DROP_LATEST);
+    }
+
+    @Test
+    void publish_shouldOnlyReachSubscribersOfKey() {
+        Flux<String> stream = hub.subscribe(1).take(1).timeout(Duration.ofSeconds(2));
+
+        StepVerifier.create(stream)
+                .then(() -> {
+                    hub.publish(2, "for user 2");
+                    hub.publish(1, "for user 1");
+                })
+                .expectNext("for user 1")
+                .verifyComplete();
+    }
+
+    @Test
+    void publish_shouldReachEverySubscriberOfKey() {
+        Flux<String> stream1 = hub.subscribe(1).take(1);
+        Flux<String> stream2 = hub.subscribe(1).take(1);
+
+        StepVerifier.create(Flux.merge(stream1, stream2))
+                .then(() -> assertThat(hub.publish(1, "hello")).isEqualTo(2))
+                .expectNext("hello", "hello")
+                .verifyComplete();
+    }
+
+    @Test
+    void publish_withoutSubscribers_shouldDeliverToNobody() {
+        assertThat(hub.publish(1, "lost")).isZero();
+        assertThat(hub.keyCount()).isZero();
+    }
+
+    @Test
+    void cancel_shouldRemoveSubscriberAndKey() {
+        Disposable subscription = hub.subscribe(1).subscribe();
+        assertThat(hub.subscriberCount(1)).isEqualTo(1);
+
+        subscription.dispose();
+
+        assertThat(hub.subscriberCount(1)).isZero();
+        assertThat(hub.keyCount()).isZero();
+    }
+
+    @Test
+    void publish_shouldDropItemsWhenSubscriberBufferIsFull() {
+        // Request nothing so every item stays in the subscriber buffer
+        StepVerifier.create(hub.subscribe(1), 0)
+                .then(() -> {
+                    for (int i = 0; i < 8; i++) {
+                        assertThat(hub.publish(1, "item" + i)).isEqualTo(1);
+                    }
+                    assertThat(hub.publish(1, "overflow")).isZero();
+                })
+                .thenRequest(8)
+                .expectNext("item0", "item1", "item2", "item3", "item4", "item5", "item6", "item7")
+                .thenCancel()
+                .verify();
+
+        assertThat(hub.stats().delivered()).isEqualTo(8);
+        assertThat(hub.stats().dropped()).isEqualTo(1);
+    }
+
+    @Test
+    void publish_dropOldest_shouldKeepLatestItems() {
+        SubscriptionHub<Integer, String> latestHub = new SubscriptionHub<>("typing", 3, SubscriptionHub.OverflowPolicy.DROP_OLDEST);
+
+        StepVerifier.create(latestHub.subscribe(1), 0)
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        assertThat(latestHub.publish(1, "item" + i)).isEqualTo(1);
+                    }
+                })
+                .thenRequest(3)
+                .expectNext("item2", "item3", "item4")
+                .thenCancel()
+                .verify();
+
+        assertThat(latestHub.stats().dropped()).isEqualTo(2);
+    }
+
+    @Test
+    void publish_disconnect_shouldDeliverBufferThenFailWithResyncError() {
+        SubscriptionHub<Integer, String> strictHub = new SubscriptionHub<>("messages", 8, SubscriptionHub.OverflowPolicy.DISCONNECT);
+
+        StepVerifier.create(strictHub.subscribe(1), 0)
+                .then(() -> {
+                    for (int i = 0; i < 8; i++) {
+                        strictHub.publish(1, "item" + i);
+                    }
+                    assertThat(strictHub.publish(1, "overflow")).isZero();
+                    // The subscriber is detached at once and receives nothing more
+                    assertThat(strictHub.subscriberCount(1)).isZero();
+                    assertThat(strictHub.publish(1, "after")).isZero();
+                })
+                .thenRequest(8)
+                .expectNextCount(8)
+                .expectErrorSatisfies(error -> {
+                    assertThat(error).isInstanceOf(SubscriptionOverflowException.class);
+                    assertThat(((SubscriptionOverflowException) error).getStream()).isEqualTo("messages");
+                })
+                .verify(Duration.ofSeconds(2));
+
+        assertThat(strictHub.stats().disconnected()).isEqualTo(1);
+    }
+
+    @Test
+    void publish_disconnect_shouldNotAffectOtherSubscribers() {
+        SubscriptionHub<Integer, String> strictHub = new SubscriptionHub<>("messages", 8, SubscriptionHub.OverflowPolicy.DISCONNECT);
+        // A stalled subscriber that never requests
+        strictHub.subscribe(1).subscribe(new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+            }
+        });
+
+        StepVerifier.create(strictHub.subscribe(1).take(10))
+                .then(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        strictHub.publish(1, "item" + i);
+                    }
+                })
+                .expectNextCount(10)
+                .verifyComplete();
+
+        assertThat(strictHub.stats().disconnected()).isEqualTo(1);
+        assertThat(strictHub.stats().subscribers()).isZero();
+    }
+
+    @Test
+    void subscribeSince_shouldReplayGapThenContinueLive() {
+        SubscriptionHub<Integer, Event> replayHub = replayHub(3);
+        Event a = new Event("a");
+        replayHub.publish(1, a);
+        replayHub.publish(1, new Event("b"));
+        replayHub.publish(1, new Event("c"));
+
+        StepVerifier.create(replayHub.subscribe(1, a.sequence).map(Event::toString).take(3))
+                .expectNext("b", "c")
+                .then(() -> replayHub.publish(1, new Event("d")))
+                .expectNext("d")
+                .verifyComplete();
+
+        assertThat(replayHub.stats().replayed()).isEqualTo(2);
+    }
+
+    @Test
+    void subscribeSince_shouldFailWithResyncWhenGapIsNoLongerKept() {
+        SubscriptionHub<Integer, Event> replayHub = replayHub(3);
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Event event = new Event("e" + i);
+            replayHub.publish(1, event);
+            events.add(event);
+        }
+
+        // e1 was pushed out, so a client that last saw e0 missed more than is kept
+        StepVerifier.create(replayHub.subscribe(1, events.get(0).sequence))
+                .expectErrorSatisfies(error -> assertThat(((SubscriptionResyncException) error).getReason())
+                        .isEqualTo("REPLAY_UNAVAILABLE"))
+                .verify(Duration.ofSeconds(2));
+        StepVerifier.create(replayHub.subscribe(1, events.get(1).sequence).map(Event::toString).take(3))
+                .expectNext("e2", "e3", "e4")
+                .verifyComplete();
+
+        assertThat(replayHub.stats().replayMisses()).isEqualTo(1);
+        assertThat(replayHub.subscriberCount(1)).isZero();
+    }
+
+    @Test
+    void subscribeSince_shouldFailWithResyncForSequenceOfAnotherHub() {
+        SubscriptionHub<Integer, Event> replayHub = replayHub(3);
+        Event event = new Event("a");
+        replayHub.publish(1, event);
+
+        // Numbers of an earlier run, or of another node, are outside this hub's range
+        StepVerifier.create(replayHub.subscribe(1, 42L))
+                .expectError(SubscriptionResyncException.class)
+                .verify(Duration.ofSeconds(2));
+        StepVerifier.create(replayHub.subscribe(1, event.sequence + 1000))
+                .expectError(SubscriptionResyncException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void subscribeSince_withoutMissedItems_shouldOnlyStreamLive() {
+        SubscriptionHub<Integer, Event> replayHub = replayHub(3);
+        Event other = new Event("for user 2");
+        replayHub.publish(2, other);
+
+        StepVerifier.create(replayHub.subscribe(1, other.sequence).map(Event::toString).take(1))
+                .then(() -> replayHub.publish(1, new Event("live")))
+                .expectNext("live")
+                .verifyComplete();
+    }
+
+    @Test
+    void publishAll_shouldUseOneSequenceForEveryKey() {
+        SubscriptionHub<Integer, Event> replayHub = replayHub(3);
+        Event first = new Event("first");
+        replayHub.publish(3, first);
+        Event shared = new Event("shared");
+
+        assertThat(replayHub.publishAll(List.of(1, 2), shared)).isZero();
+
+        assertThat(shared.sequence).isEqualTo(first.sequence + 1);
+        StepVerifier.create(replayHub.subscribe(2, first.sequence).map(Event::toString).take(1))
+                .expectNext("shared")
+                .verifyComplete();
+    }
+
+    @Test
+    void watchedKeys_shouldOnlyKeepKeysWithSubscribers() {
+        Disposable subscription = hub.subscribe(2).subscribe();
+
+        assertThat(hub.watchedKeys(List.of(1, 2, 3))).containsExactly(2);
+
+        subscription.dispose();
+        assertThat(hub.watchedKeys(List.of(1, 2, 3))).isEmpty();
+    }
+
+    @Test
+    void watchedKeys_shouldKeepReplayedKeysAndResyncSkippedOnes() {
+        SubscriptionHub<Integer, Event> replayHub = replayHub(3);
+        Event kept = new Event("kept");
+        replayHub.publish(2, kept);
+
+        // Key 2 has a replay buffer a client may come back for; key 1 has nothing here
+        assertThat(replayHub.watchedKeys(List.of(1, 2))).containsExactly(2);
+
+        // The item skipped for key 1 is not in any buffer, so a client of key 1 must reload
+        StepVerifier.create(replayHub.subscribe(1, kept.sequence))
+                .expectError(SubscriptionResyncException.class)
+                .verify(Duration.ofSeconds(2));
+    }
+
+    private static SubscriptionHub<Integer, Event> replayHub(int replaySize) {
+        return new SubscriptionHub<>("events", 8, SubscriptionHub.OverflowPolicy.DISCONNECT,
+                new SubscriptionHub.Replay<>(replaySize, Duration.ofMinutes(30), Event::setSequence));
+    }
+
+    private static final class Event {
+        final String value;
+        long sequence;
+
+        Event(String value) {
+            this.value = value;
+        }
+
+        void setSequence(long sequence) {
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String toString() {
+            return value;
+        }
+    }
+}
@@ -3,10 +3,12 @@ package com.example.famMedical.service;
 import com.example.famMedical.Entity.User;
 import com.example.famMedical.Entity.UserRole;
 import com.example.famMedical.dto.TypingIndicator;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import reactor.core.publisher.Flux;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import reactor.test.StepVerifier;
 
 import java.time.Duration;
@@ -19,33 +21,37 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class TypingIndicatorServiceTest {
 
+    private ThreadPoolTaskScheduler scheduler;
     private TypingIndicatorService typingIndicatorService;
     private User testUser;
 
     @BeforeEach
     void setUp() {
-        typingIndicatorService = new TypingIndicatorService();
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        typingIndicatorService = new TypingIndicatorService(new InMemoryEventBus(), scheduler, new SyncTaskExecutor());
         
         testUser = new User();
         testUser.setUserID(1);
         testUser.setFullName("Test User");
+        testUser.setAvatarUrl("https://avatars.test/1.png");
         testUser.setEmail("test@test.com");
         testUser.setRole(UserRole.BacSi);
     }
 
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
     @Test
     @DisplayName("Should broadcast typing indicator to conversation stream")
     void sendTypingIndicator_BroadcastsToStream() {
         Integer conversationID = 1;
-        
-        // Subscribe to the typing stream
-        Flux<TypingIndicator> stream = typingIndicatorService.getTypingStream(conversationID);
-        
-        // Send typing indicator
-        typingIndicatorService.sendTypingIndicator(conversationID, testUser, true);
-        
-        // Verify the indicator is received
-        StepVerifier.create(stream.take(1))
+
+        // Subscribe to the typing stream, then send typing indicator
+        StepVerifier.create(typingIndicatorService.getTypingStream(conversationID).take(1))
+            .then(() -> typingIndicatorService.sendTypingIndicator(conversationID, testUser, true))
             .assertNext(indicator -> {
                 assertEquals(conversationID, indicator.getConversationID());
                 assertEquals(testUser.getUserID(), indicator.getUser().getUserID());
@@ -55,23 +61,18 @@ class TypingIndicatorServiceTest {
     }
 
     @Test
-    @DisplayName("Should filter typing indicators by conversation ID")
-    void getTypingStream_FiltersByConversationID() {
+    @DisplayName("Should only deliver typing indicators of the subscribed conversation")
+    void getTypingStream_RoutesByConversationID() {
         Integer conversationID1 = 1;
         Integer conversationID2 = 2;
-        
-        // Subscribe to conversation 1 stream
-        Flux<TypingIndicator> stream = typingIndicatorService.getTypingStream(conversationID1);
-        
-        // Send indicators to both conversations
-        typingIndicatorService.sendTypingIndicator(conversationID1, testUser, true);
-        typingIndicatorService.sendTypingIndicator(conversationID2, testUser, true);
-        
-        // Verify only conversation 1 indicator is received
-        StepVerifier.create(stream.take(1))
-            .assertNext(indicator -> {
-                assertEquals(conversationID1, indicator.getConversationID());
+
+        // Send indicators to both conversations, conversation 2 first
+        StepVerifier.create(typingIndicatorService.getTypingStream(conversationID1).take(1))
+            .then(() -> {
+                typingIndicatorService.sendTypingIndicator(conversationID2, testUser, true);
+                typingIndicatorService.sendTypingIndicator(conversationID1, testUser, true);
             })
+            .assertNext(indicator -> assertEquals(conversationID1, indicator.getConversationID()))
             .verifyComplete();
     }
 
@@ -79,15 +80,13 @@ class TypingIndicatorServiceTest {
     @DisplayName("Should send stop typing indicator")
     void stopTyping_SendsStopIndicator() {
         Integer conversationID = 1;
-        
-        // Subscribe to the typing stream
-        Flux<TypingIndicator> stream = typingIndicatorService.getTypingStream(conversationID);
-        
-        // Stop typing
-        typingIndicatorService.stopTyping(conversationID, testUser);
-        
-        // Verify stop indicator is received
-        StepVerifier.create(stream.take(1))
+
+        StepVerifier.create(typingIndicatorService.getTypingStream(conversationID).take(2))
+            .then(() -> {
+                typingIndicatorService.sendTypingIndicator(conversationID, testUser, true);
+                typingIndicatorService.stopTyping(conversationID, testUser);
+            })
+            .assertNext(indicator -> assertTrue(indicator.isTyping()))
             .assertNext(indicator -> {
                 assertEquals(conversationID, indicator.getConversationID());
                 assertEquals(testUser.getUserID(), indicator.getUser().getUserID());
@@ -96,53 +95,118 @@ class TypingIndicatorServiceTest {
             .verifyComplete();
     }
 
+    @Test
+    @DisplayName("Should not send a stop indicator for a user who was not typing")
+    void stopTyping_NotTyping_SendsNothing() {
+        Integer conversationID = 1;
+
+        // Sending a message stops typing, whether or not the sender was typing
+        StepVerifier.create(typingIndicatorService.getTypingStream(conversationID).take(1))
+            .then(() -> {
+                typingIndicatorService.stopTyping(conversationID, testUser);
+                typingIndicatorService.sendTypingIndicator(conversationID, testUser, false);
+                typingIndicatorService.sendTypingIndicator(conversationID, testUser, true);
+            })
+            .assertNext(indicator -> assertTrue(indicator.isTyping()))
+            .verifyComplete();
+    }
+
     @Test
     @DisplayName("Should automatically stop typing after 3 seconds")
     void sendTypingIndicator_AutoStopsAfter3Seconds() {
         Integer conversationID = 1;
-        
-        // Subscribe to the typing stream
-        Flux<TypingIndicator> stream = typingIndicatorService.getTypingStream(conversationID);
-        
-        // Send start typing indicator
-        typingIndicatorService.sendTypingIndicator(conversationID, testUser, true);
-        
+
         // Verify we receive start typing, then stop typing after 3 seconds
-        StepVerifier.create(stream.take(2).timeout(Duration.ofSeconds(5)))
-            .assertNext(indicator -> {
-                assertTrue(indicator.isTyping(), "First indicator should be typing=true");
+        StepVerifier.create(typingIndicatorService.getTypingStream(conversationID).take(2).timeout(Duration.ofSeconds(5)))
+            .then(() -> typingIndicatorService.sendTypingIndicator(conversationID, testUser, true))
+            .assertNext(indicator -> assertTrue(indicator.isTyping(), "First indicator should be typing=true"))
+            .assertNext(indicator -> assertFalse(indicator.isTyping(), "Second indicator should be typing=false after timeout"))
+            .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Should extend the timeout when new typing indicator is sent")
+    void sendTypingIndicator_ExtendsTimeout() {
+        TypingIndicatorService service = newService(300, 100);
+        Integer conversationID = 1;
+        long[] secondSentAt = new long[1];
+
+        // Type again after 200 ms: typing=true is re-emitted and the stop comes 300 ms after the second event
+        StepVerifier.create(service.getTypingStream(conversationID).take(3).timeout(Duration.ofSeconds(3)))
+            .then(() -> service.sendTypingIndicator(conversationID, testUser, true))
+            .assertNext(indicator -> assertTrue(indicator.isTyping()))
+            .thenAwait(Duration.ofMillis(200))
+            .then(() -> {
+                secondSentAt[0] = System.currentTimeMillis();
+                service.sendTypingIndicator(conversationID, testUser, true);
             })
+            .assertNext(indicator -> assertTrue(indicator.isTyping()))
             .assertNext(indicator -> {
-                assertFalse(indicator.isTyping(), "Second indicator should be typing=false after timeout");
+                assertFalse(indicator.isTyping());
+                assertTrue(System.currentTimeMillis() - secondSentAt[0] >= 250, "Stop should wait for the extended deadline");
             })
             .verifyComplete();
     }
 
     @Test
-    @DisplayName("Should cancel previous timeout when new typing indicator is sent")
-    void sendTypingIndicator_CancelsPreviousTimeout() {
+    @DisplayName("Should not re-emit typing=true within the throttle window")
+    void sendTypingIndicator_ThrottlesRepeatedEvents() {
+        TypingIndicatorService service = newService(300, 10_000);
         Integer conversationID = 1;
-        
-        // Subscribe to the typing stream
-        Flux<TypingIndicator> stream = typingIndicatorService.getTypingStream(conversationID);
-        
-        // Send start typing indicator
-        typingIndicatorService.sendTypingIndicator(conversationID, testUser, true);
-        
-        // Wait 2 seconds and send another start typing (should reset the 3-second timer)
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
-            fail("Thread interrupted");
-        }
-        
-        typingIndicatorService.sendTypingIndicator(conversationID, testUser, true);
-        
-        // Verify we receive two start indicators, then one stop after 3 seconds from the second start
-        StepVerifier.create(stream.take(3).timeout(Duration.ofSeconds(6)))
-            .assertNext(indicator -> assertTrue(indicator.isTyping()))
+
+        // Ten keystrokes produce one typing=true and, after the timeout, one typing=false
+        StepVerifier.create(service.getTypingStream(conversationID).take(2).timeout(Duration.ofSeconds(3)))
+            .then(() -> {
+                for (int i = 0; i < 10; i++) {
+                    service.sendTypingIndicator(conversationID, testUser, true);
+                }
+            })
             .assertNext(indicator -> assertTrue(indicator.isTyping()))
             .assertNext(indicator -> assertFalse(indicator.isTyping()))
             .verifyComplete();
     }
+
+    @Test
+    @DisplayName("Should not start a thread per typing user")
+    void sendTypingIndicator_UsesConstantThreadCount() throws InterruptedException {
+        TypingIndicatorService service = newService(200, 100);
+        int threadsBefore = Thread.activeCount();
+
+        for (int userID = 1; userID <= 1000; userID++) {
+            User typer = new User();
+            typer.setUserID(userID);
+            service.sendTypingIndicator(userID % 10, typer, true);
+        }
+
+        // At most the shared timer thread was added
+        assertTrue(Thread.activeCount() <= threadsBefore + 1);
+    }
+
+    @Test
+    @DisplayName("Should deliver indicators emitted on another node with the typer's display fields")
+    void getTypingStream_DeliversRemoteIndicators() {
+        InMemoryEventBus nodeA = new InMemoryEventBus();
+        TypingIndicatorService serviceA = new TypingIndicatorService(nodeA, scheduler, new SyncTaskExecutor());
+        TypingIndicatorService serviceB = new TypingIndicatorService(nodeA.join(), scheduler, new SyncTaskExecutor());
+        Integer conversationID = 1;
+
+        StepVerifier.create(serviceB.getTypingStream(conversationID).take(2).timeout(Duration.ofSeconds(3)))
+            .then(() -> {
+                serviceA.sendTypingIndicator(conversationID, testUser, true);
+                serviceA.stopTyping(conversationID, testUser);
+            })
+            .assertNext(indicator -> {
+                assertTrue(indicator.isTyping());
+                assertEquals(testUser.getUserID(), indicator.getUser().getUserID());
+                assertEquals("Test User", indicator.getUser().getFullName());
+                assertEquals("https://avatars.test/1.png", indicator.getUser().getAvatarUrl());
+            })
+            .assertNext(indicator -> assertFalse(indicator.isTyping()))
+            .verifyComplete();
+    }
+
+    private TypingIndicatorService newService(long timeoutMillis, long throttleMillis) {
+        return new TypingIndicatorService(timeoutMillis, throttleMillis, new InMemoryEventBus(), scheduler,
+                new SyncTaskExecutor());
+    }
 }
@@ -0,0 +1,144 @@
+package com.example.famMedical.service;
+
+import com.example.famMedical.repository.NotificationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Unread Notification Counter Tests")
+class UnreadNotificationCounterTest {
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    private InMemoryEventBus eventBus;
+    private UnreadNotificationCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        eventBus = new InMemoryEventBus();
+        counter = new UnreadNotificationCounter(notificationRepository, eventBus);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should load a count once and answer later reads from memory")
+    void testLoadsOnce() {
+        when(notificationRepository.countUnreadByUser(1)).thenReturn(4);
+
+        assertEquals(4, counter.get(1));
+        counter.added(Map.of(1, 2));
+        counter.read(1);
+
+        assertEquals(5, counter.get(1));
+        verify(notificationRepository, times(1)).countUnreadByUser(1);
+    }
+
+    @Test
+    @DisplayName("Should apply adjustments only after the transaction commits")
+    void testAdjustsAfterCommit() {
+        when(notificationRepository.countUnreadByUser(1)).thenReturn(1);
+        counter.get(1);
+
+        TransactionSynchronizationManager.initSynchronization();
+        counter.added(Map.of(1, 1));
+        assertEquals(1, counter.get(1));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        assertEquals(2, counter.get(1));
+    }
+
+    @Test
+    @DisplayName("Should not count below zero and reset when everything is read")
+    void testReadAndAllRead() {
+        when(notificationRepository.countUnreadByUser(1)).thenReturn(1);
+        counter.get(1);
+
+        counter.read(1);
+        counter.read(1);
+        assertEquals(0, counter.get(1));
+
+        // Nothing cached for user 2 yet: marking all read caches zero without a query
+        counter.allRead(2);
+        assertEquals(0, counter.get(2));
+        verify(notificationRepository, never()).countUnreadByUser(2);
+    }
+
+    @Test
+    @DisplayName("Should recount active users and drop idle ones on reconciliation")
+    void testReconcile() {
+        when(notificationRepository.countUnreadByUser(anyInt())).thenReturn(1);
+        counter.get(1);
+        counter.get(2);
+        counter.reconcile();
+
+        // Only user 1 asks again before the next pass, and its count drifted
+        counter.added(Map.of(1, 5));
+        counter.get(1);
+        when(notificationRepository.countUnreadByUsers(List.of(1))).thenReturn(List.<Object[]>of(new Object[]{1, 3L}));
+        counter.reconcile();
+
+        assertEquals(1, counter.size());
+        assertEquals(3, counter.get(1));
+    }
+
+    @Test
+    @DisplayName("Should drop idle users when full and keep the counts of users still asking")
+    void testBoundedByIdleUsers() {
+        UnreadNotificationCounter small = new UnreadNotificationCounter(notificationRepository, eventBus, 2);
+        when(notificationRepository.countUnreadByUser(anyInt())).thenReturn(1);
+        when(notificationRepository.countUnreadByUsers(anyList())).thenReturn(List.of());
+        small.get(1);
+        small.get(2);
+        small.reconcile();
+
+        // User 1 keeps asking; user 2 went idle and makes room for user 3
+        small.get(1);
+        small.get(3);
+        assertEquals(2, small.size());
+
+        // Everyone cached is active: user 4 is answered without evicting them
+        assertEquals(1, small.get(4));
+        assertEquals(2, small.size());
+        small.get(1);
+        small.get(3);
+        verify(notificationRepository, times(1)).countUnreadByUser(1);
+        verify(notificationRepository, times(1)).countUnreadByUser(3);
+    }
+
+    @Test
+    @DisplayName("Should evict the count on the other nodes when it changes")
+    void testEvictsOnOtherNodes() {
+        InMemoryEventBus otherBus = eventBus.join();
+        UnreadNotificationCounter other = new UnreadNotificationCounter(notificationRepository, otherBus);
+        when(notificationRepository.countUnreadByUser(1)).thenReturn(2, 3);
+        assertEquals(2, other.get(1));
+
+        counter.added(Map.of(1, 1));
+
+        assertEquals(3, other.get(1));
+        verify(notificationRepository, times(2)).countUnreadByUser(1);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.famMedical.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("File Range Writer Tests")
+class FileRangeWriterTest {
+
+    private static final String ETAG = "\"abc123\"";
+
+    @TempDir
+    Path directory;
+
+    private Path file;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.writeString(directory.resolve("blob"), "0123456789");
+        request = new MockHttpServletRequest("GET", "/api/files/records/1/content");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    @DisplayName("Should send the whole file without a Range header")
+    void write_FullContent() throws IOException {
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+    }
+
+    @Test
+    @DisplayName("Should send only the requested byte range")
+    void write_Range() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("Should resume from an open-ended range")
+    void write_OpenEndedRange() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=7-");
+
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("789", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Should reject a range past the end of the file")
+    void write_UnsatisfiableRange() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    @DisplayName("Should ignore the range when If-Range does not match")
+    void write_StaleIfRange() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    @DisplayName("Should answer 304 when If-None-Match matches")
+    void write_NotModified() throws IOException {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("Should hand the region to the connector when sendfile is supported")
+    void write_Sendfile() throws IOException {
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        FileRangeWriter.write(request, response, file, ETAG, "record-1");
+
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.famMedical.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Posting List Tests")
+class PostingListTest {
+
+    @Test
+    @DisplayName("Should keep IDs sorted and unique across encodings")
+    void add_KeepsSortedUniqueIDs() {
+        PostingList list = new PostingList();
+        int[] ids = {5, 130, 20_000, 2_000_000, 2_000_001};
+        for (int id : ids) {
+            assertTrue(list.add(id));
+        }
+        assertFalse(list.add(130));
+        assertTrue(list.add(7));
+
+        assertArrayEquals(new int[] {5, 7, 130, 20_000, 2_000_000, 2_000_001}, list.toArray());
+        assertTrue(list.remove(20_000));
+        assertFalse(list.remove(20_000));
+        assertArrayEquals(new int[] {5, 7, 130, 2_000_000, 2_000_001}, list.toArray());
+        assertTrue(list.add(3_000_000));
+        assertEquals(6, list.size());
+    }
+
+    @Test
+    @DisplayName("Should intersect sorted arrays")
+    void intersect() {
+        assertArrayEquals(new int[] {3, 9}, PostingList.intersect(new int[] {1, 3, 5, 9}, new int[] {2, 3, 9, 11}));
+        assertArrayEquals(new int[0], PostingList.intersect(new int[] {1}, new int[0]));
+    }
+}